@@ -55,6 +55,7 @@ import org.apache.wicket.markup.resolver.WicketMessageResolver;
 import org.apache.wicket.page.DefaultPageManagerContext;
 import org.apache.wicket.page.IPageManager;
 import org.apache.wicket.page.IPageManagerContext;
+import org.apache.wicket.page.PageLockStatistics;
 import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
 import org.apache.wicket.protocol.http.IRequestLogger;
@@ -1312,6 +1313,33 @@ public abstract class Application implements UnboundListener, IEventSink
 	 */
 	private final IPageManagerContext pageManagerContext = new DefaultPageManagerContext();
 
+	/**
+	 * Collects the wait times of the page locks of all sessions
+	 */
+	private final PageLockStatistics pageLockStatistics = new PageLockStatistics();
+
+	/**
+	 * Gets the statistics about the time requests wait for page locks
+	 * 
+	 * @return the page lock statistics
+	 */
+	public final PageLockStatistics getPageLockStatistics()
+	{
+		return pageLockStatistics;
+	}
+
+	/**
+	 * Returns an unsynchronized version of page manager. Pages should be accessed through
+	 * {@link Session#getPageManager()}, this method is meant for management purposes like
+	 * monitoring the page stores.
+	 * 
+	 * @return the page manager
+	 */
+	public final IPageManager getPageManager()
+	{
+		return internalGetPageManager();
+	}
+
 	/**
 	 * Returns an unsynchronized version of page manager
 	 * 
@@ -23,9 +23,11 @@ import org.apache.wicket.page.IPageManagerContext;
 import org.apache.wicket.page.PageStoreManager;
 import org.apache.wicket.pageStore.AsynchronousDataStore;
 import org.apache.wicket.pageStore.DefaultPageStore;
+import org.apache.wicket.pageStore.DeltaDataStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
+import org.apache.wicket.serialize.CompressingSerializer;
 import org.apache.wicket.serialize.ISerializer;
 import org.apache.wicket.settings.IStoreSettings;
 import org.apache.wicket.util.lang.Bytes;
@@ -53,10 +55,18 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 		IDataStore dataStore = newDataStore();
 
 		IStoreSettings storeSettings = getStoreSettings();
+		if (storeSettings.isStorePageDeltas())
+		{
+			dataStore = new DeltaDataStore(dataStore, DeltaDataStore.DEFAULT_REBASE_RATIO,
+				storeSettings.getMaxSizePerSession());
+		}
+
 		if (storeSettings.isAsynchronous())
 		{
 			int capacity = storeSettings.getAsynchronousQueueCapacity();
-			dataStore = new AsynchronousDataStore(dataStore, capacity);
+			int writerThreads = storeSettings.getAsynchronousWriterThreads();
+			int batchSize = storeSettings.getAsynchronousBatchSize();
+			dataStore = new AsynchronousDataStore(dataStore, capacity, writerThreads, batchSize);
 		}
 
 		IPageStore pageStore = newPageStore(dataStore);
@@ -68,6 +78,10 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 	{
 		int inmemoryCacheSize = getStoreSettings().getInmemoryCacheSize();
 		ISerializer pageSerializer = application.getFrameworkSettings().getSerializer();
+		if (getStoreSettings().isCompressPages())
+		{
+			pageSerializer = new CompressingSerializer(pageSerializer);
+		}
 		return new DefaultPageStore(pageSerializer, dataStore, inmemoryCacheSize);
 	}
 
@@ -16,6 +16,7 @@
  */
 package org.apache.wicket;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -23,13 +24,13 @@ import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.markup.repeater.AbstractRepeater;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.resource.loader.IStringResourceLoader;
 import org.apache.wicket.settings.IResourceSettings;
-import org.apache.wicket.util.lang.Generics;
+import org.apache.wicket.util.collections.MostRecentlyUsedMap;
+import org.apache.wicket.util.lang.Objects;
 import org.apache.wicket.util.string.AppendingStringBuffer;
 import org.apache.wicket.util.string.interpolator.PropertyVariableInterpolator;
 import org.slf4j.Logger;
@@ -56,14 +57,17 @@ public class Localizer
 {
 	private static final Logger log = LoggerFactory.getLogger(Localizer.class);
 
-	/** ConcurrentHashMap does not allow null values */
-	private static final String NULL_VALUE = "<null-value>";
+	/**
+	 * Cached for keys without a value, ConcurrentHashMap does not allow null values. Compared by
+	 * identity.
+	 */
+	protected static final String NULL_VALUE = "<null-value>";
 
 	/** Cache properties */
-	private Map<String, String> cache = newCache();
+	private Map<CacheKey, String> cache = newCache();
 
-	/** Database that maps class names to an integer id. */
-	private final ClassMetaDatabase metaDatabase = new ClassMetaDatabase();
+	/** root of the interned component paths of the cache keys */
+	private volatile ComponentPath paths = new ComponentPath(null, null, null);
 
 	/**
 	 * @return Same as Application.get().getResourceSettings().getLocalizer()
@@ -92,6 +96,7 @@ public class Localizer
 		{
 			cache = newCache();
 		}
+		paths = new ComponentPath(null, null, null);
 	}
 
 	/**
@@ -309,7 +314,7 @@ public class Localizer
 			}
 		}
 
-		String cacheKey = null;
+		CacheKey cacheKey = null;
 		String value = null;
 
 		// Make sure locale, style and variation have the right values
@@ -335,15 +340,17 @@ public class Localizer
 
 		// If this component is not yet added to page we do not want to check
 		// cache as we can generate an invalid cache key
+		String cachedValue = null;
 		if ((cache != null) && ((component == null) || addedToPage))
 		{
 			cacheKey = getCacheKey(key, component, locale, style, variation);
+			cachedValue = getFromCache(cacheKey);
 		}
 
-		// Value not found are cached as well (value = null)
-		if ((cacheKey != null) && cache.containsKey(cacheKey))
+		// Value not found are cached as well (value = NULL_VALUE)
+		if (cachedValue != null)
 		{
-			value = getFromCache(cacheKey);
+			value = (cachedValue == NULL_VALUE) ? null : cachedValue;
 			if (log.isDebugEnabled())
 			{
 				log.debug("Property found in cache: '" + key + "'; Component: '" +
@@ -412,8 +419,9 @@ public class Localizer
 	 * @param cacheKey
 	 * @param string
 	 */
-	protected void putIntoCache(final String cacheKey, final String string)
+	protected void putIntoCache(final CacheKey cacheKey, final String string)
 	{
+		final Map<CacheKey, String> cache = this.cache;
 		if (cache == null)
 		{
 			return;
@@ -431,30 +439,27 @@ public class Localizer
 	}
 
 	/**
-	 * Get the value associated with the key from the cache.
+	 * Get the value associated with the key from the cache. The cache is looked up once only, a
+	 * bounded cache may evict the entry in between two lookups.
 	 * 
 	 * @param cacheKey
-	 * @return The value of the key
+	 * @return The value of the key, {@link #NULL_VALUE} if the key is cached without a value or
+	 *         <code>null</code> if the key is not cached
 	 */
-	protected String getFromCache(final String cacheKey)
+	protected String getFromCache(final CacheKey cacheKey)
 	{
+		final Map<CacheKey, String> cache = this.cache;
 		if (cache == null)
 		{
 			return null;
 		}
-
-		final String value = cache.get(cacheKey);
-
-		// ConcurrentHashMap does not allow null values
-		if (NULL_VALUE == value)
-		{
-			return null;
-		}
-		return value;
+		return cache.get(cacheKey);
 	}
 
 	/**
-	 * Gets the cache key
+	 * Gets the cache key. The class names and ids found walking up the component hierarchy are
+	 * looked up in a tree of interned {@link ComponentPath}s, so that a cache hit neither
+	 * concatenates strings nor builds the path of the component.
 	 * 
 	 * @param key
 	 * @param component
@@ -464,51 +469,38 @@ public class Localizer
 	 * @param variation
 	 * @return The value of the key
 	 */
-	protected String getCacheKey(final String key, final Component component, final Locale locale,
-		final String style, final String variation)
+	protected CacheKey getCacheKey(final String key, final Component component,
+		final Locale locale, final String style, final String variation)
 	{
 		if (component != null)
 		{
-			StringBuilder buffer = new StringBuilder(200);
-			buffer.append(key);
-
+			ComponentPath path = paths;
 			Component cursor = component;
-
 			while (cursor != null)
 			{
-				buffer.append('-').append(metaDatabase.id(cursor.getClass()));
-
-				if (cursor instanceof Page)
-				{
-					break;
-				}
-
 				/*
-				 * only append component id if component is not a loop item because (a) these ids
-				 * are irrelevant when generating resource cache keys (b) they cause a lot of
-				 * redundant keys to be generated
+				 * only add component id if component is not a loop item because (a) these ids are
+				 * irrelevant when generating resource cache keys (b) they cause a lot of redundant
+				 * keys to be generated
 				 */
 				final Component parent = cursor.getParent();
-				final boolean skip = parent instanceof AbstractRepeater;
+				final boolean skip = (cursor instanceof Page) ||
+					(parent instanceof AbstractRepeater);
+
+				path = path.getParent(cursor.getClass(), skip ? null : cursor.getId());
 
-				if (skip == false)
+				if (cursor instanceof Page)
 				{
-					buffer.append(':').append(cursor.getId());
+					break;
 				}
-
 				cursor = parent;
 			}
 
-			buffer.append('-').append(locale);
-			buffer.append('-').append(style);
-			buffer.append('-').append(variation);
-
-			return buffer.toString();
+			return new CacheKey(key, path, locale, style, variation);
 		}
 		else
 		{
-			// locale is guaranteed to be != null
-			return key + '-' + locale.toString() + '-' + style;
+			return new CacheKey(key, null, locale, style, null);
 		}
 	}
 
@@ -553,49 +545,224 @@ public class Localizer
 
 	/**
 	 * Create a new cache, override this method if you want a different map to store the cache keys,
-	 * for example a map that hold only the last X number of elements..
+	 * for example a map that hold only the last X number of elements, see
+	 * {@link #newBoundedCache(int)}.
 	 * 
-	 * By default it uses the {@link ConcurrentHashMap}
+	 * By default it uses the {@link ConcurrentHashMap}, which is unbounded.
 	 * 
 	 * @return cache
 	 */
-	protected Map<String, String> newCache()
+	protected Map<CacheKey, String> newCache()
 	{
-		return new ConcurrentHashMap<String, String>();
+		return new ConcurrentHashMap<CacheKey, String>();
 	}
 
 	/**
-	 * Database that maps class names to an integer id. This is used to make localizer keys shorter
-	 * because sometimes they can contain a large number of class names.
+	 * Creates a thread safe cache holding only the most recently used <code>maxEntries</code>
+	 * entries. Useful for applications generating many different keys, e.g. because of deep or
+	 * dynamic component hierarchies:
+	 * 
+	 * <pre>
+	 * protected Map&lt;CacheKey, String&gt; newCache()
+	 * {
+	 * 	return newBoundedCache(5000);
+	 * }
+	 * </pre>
 	 * 
-	 * @author igor.vaynberg
+	 * @param maxEntries
+	 *            maximum number of entries kept in the cache
+	 * @return cache
 	 */
-	private static class ClassMetaDatabase
+	protected static Map<CacheKey, String> newBoundedCache(final int maxEntries)
 	{
-		private final ConcurrentMap<String, Long> nameToId = Generics.newConcurrentHashMap();
-		private final AtomicLong nameCounter = new AtomicLong();
+		return Collections.synchronizedMap(new MostRecentlyUsedMap<CacheKey, String>(maxEntries));
+	}
+
+	/**
+	 * The class names and ids of a component and its parents up to the page. Each path is created
+	 * once by a localizer, so paths are compared by identity.
+	 */
+	public static final class ComponentPath
+	{
+		/** the path of the child component, <code>null</code> for the root */
+		private final ComponentPath child;
+
+		private final Class<?> componentClass;
+
+		/** <code>null</code> for pages and loop items */
+		private final String id;
+
+		/** paths extended by a parent with an id, by the class and id of the parent */
+		private final ConcurrentMap<Class<?>, ConcurrentMap<String, ComponentPath>> parents = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, ComponentPath>>(
+			4);
+
+		/** paths extended by a parent without an id, by the class of the parent */
+		private final ConcurrentMap<Class<?>, ComponentPath> anonymousParents = new ConcurrentHashMap<Class<?>, ComponentPath>(
+			4);
+
+		private ComponentPath(final ComponentPath child, final Class<?> componentClass,
+			final String id)
+		{
+			this.child = child;
+			this.componentClass = componentClass;
+			this.id = id;
+		}
 
 		/**
-		 * Returns a unique id that represents this class' name. This can be used for compressing
-		 * class names. Notice this id should not be used across cluster nodes.
-		 * 
-		 * @param clazz
-		 * @return long id of class name
+		 * @param parentClass
+		 * @param parentId
+		 *            may be <code>null</code>
+		 * @return this path extended by the parent
 		 */
-		public long id(Class<?> clazz)
+		private ComponentPath getParent(final Class<?> parentClass, final String parentId)
 		{
-			final String name = clazz.getName();
-			Long id = nameToId.get(name);
-			if (id == null)
+			if (parentId == null)
+			{
+				ComponentPath parent = anonymousParents.get(parentClass);
+				if (parent == null)
+				{
+					parent = new ComponentPath(this, parentClass, null);
+					ComponentPath existing = anonymousParents.putIfAbsent(parentClass, parent);
+					if (existing != null)
+					{
+						parent = existing;
+					}
+				}
+				return parent;
+			}
+
+			ConcurrentMap<String, ComponentPath> ids = parents.get(parentClass);
+			if (ids == null)
 			{
-				id = nameCounter.incrementAndGet();
-				Long previousId = nameToId.putIfAbsent(name, id);
-				if (previousId != null)
+				ids = new ConcurrentHashMap<String, ComponentPath>(4);
+				ConcurrentMap<String, ComponentPath> existing = parents.putIfAbsent(parentClass,
+					ids);
+				if (existing != null)
 				{
-					id = previousId;
+					ids = existing;
 				}
 			}
-			return id;
+			ComponentPath parent = ids.get(parentId);
+			if (parent == null)
+			{
+				parent = new ComponentPath(this, parentClass, parentId);
+				ComponentPath existing = ids.putIfAbsent(parentId, parent);
+				if (existing != null)
+				{
+					parent = existing;
+				}
+			}
+			return parent;
+		}
+
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString()
+		{
+			// from the page down to the component
+			AppendingStringBuffer buffer = new AppendingStringBuffer();
+			for (ComponentPath path = this; path.child != null; path = path.child)
+			{
+				if (path != this)
+				{
+					buffer.append('/');
+				}
+				buffer.append(path.componentClass.getName()).append(':').append(path.id);
+			}
+			return buffer.toString();
+		}
+	}
+
+	/**
+	 * The key of a cached localized string. It is immutable and computes its hash code once, so
+	 * that it can be compared quickly when looking up the cache.
+	 */
+	public static final class CacheKey
+	{
+		private final String key;
+
+		/** the component hierarchy */
+		private final ComponentPath path;
+
+		private final Locale locale;
+
+		private final String style;
+
+		private final String variation;
+
+		private final int hashCode;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param key
+		 *            resource key
+		 * @param path
+		 *            path of the component hierarchy, may be <code>null</code>
+		 * @param locale
+		 * @param style
+		 * @param variation
+		 */
+		public CacheKey(final String key, final ComponentPath path, final Locale locale,
+			final String style, final String variation)
+		{
+			this.key = key;
+			this.path = path;
+			this.locale = locale;
+			this.style = style;
+			this.variation = variation;
+
+			int result = hash(key);
+			result = 31 * result + hash(path);
+			result = 31 * result + hash(locale);
+			result = 31 * result + hash(style);
+			result = 31 * result + hash(variation);
+			hashCode = result;
+		}
+
+		private static int hash(final Object object)
+		{
+			return (object != null) ? object.hashCode() : 0;
+		}
+
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		/**
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (!(obj instanceof CacheKey))
+			{
+				return false;
+			}
+			final CacheKey that = (CacheKey)obj;
+			return (hashCode == that.hashCode) && (path == that.path) &&
+				Objects.equal(key, that.key) && Objects.equal(locale, that.locale) &&
+				Objects.equal(style, that.style) && Objects.equal(variation, that.variation);
+		}
+
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString()
+		{
+			return key + '-' + path + '-' + locale + '-' + style + '-' + variation;
 		}
 	}
 }
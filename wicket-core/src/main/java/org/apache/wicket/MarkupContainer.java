@@ -20,8 +20,10 @@ import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.IMarkupFragment;
@@ -1088,7 +1090,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 	 * @param object
 	 * @return The id of the object (object can be component or componentsourcentry)
 	 */
-	private final String getId(Object object)
+	private static String getId(Object object)
 	{
 		if (object instanceof Component)
 		{
@@ -1129,12 +1131,33 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		}
 		else
 		{
+			if (this.children instanceof Object[] &&
+				((Object[])this.children).length > ChildList.INDEX_THRESHOLD)
+			{
+				// large containers are looked up through the index of the child list
+				this.children = new ChildList(this.children);
+			}
+
 			Object[] children;
 			int size = 0;
 			if (this.children instanceof ChildList)
 			{
-				children = ((ChildList)this.children).childs;
-				size = ((ChildList)this.children).size;
+				ChildList lst = (ChildList)this.children;
+				children = lst.childs;
+				size = lst.size;
+				if (size > ChildList.INDEX_THRESHOLD)
+				{
+					int i = lst.indexOfId(id);
+					if (i != -1)
+					{
+						component = (Component)postprocess(children[i], true, this, i);
+						if (children[i] != component)
+						{
+							children[i] = component;
+						}
+					}
+					return component;
+				}
 			}
 			else
 			{
@@ -1177,6 +1200,12 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		}
 		else
 		{
+			if (this.children instanceof Object[] &&
+				((Object[])this.children).length > ChildList.INDEX_THRESHOLD)
+			{
+				this.children = new ChildList(this.children);
+			}
+
 			int size = 0;
 			Object[] children;
 			if (this.children instanceof Object[])
@@ -1186,8 +1215,13 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			}
 			else
 			{
-				children = ((ChildList)this.children).childs;
-				size = ((ChildList)this.children).size;
+				ChildList lst = (ChildList)this.children;
+				if (lst.size > ChildList.INDEX_THRESHOLD)
+				{
+					return lst.indexOfId(child.getId());
+				}
+				children = lst.childs;
+				size = lst.size;
 			}
 
 			for (int i = 0; i < size; i++)
@@ -1683,9 +1717,17 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		if (children instanceof ChildList)
 		{
 			ChildList lst = (ChildList)children;
-			Object[] tmp = new Object[lst.size];
-			System.arraycopy(lst.childs, 0, tmp, 0, lst.size);
-			children = tmp;
+			if (lst.size > ChildList.INDEX_THRESHOLD)
+			{
+				// keep the list and its index, but release the unused capacity
+				lst.trimToSize();
+			}
+			else
+			{
+				Object[] tmp = new Object[lst.size];
+				System.arraycopy(lst.childs, 0, tmp, 0, lst.size);
+				children = tmp;
+			}
 		}
 	}
 
@@ -1837,9 +1879,19 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 	private static class ChildList extends AbstractList<Object> implements IClusterable
 	{
 		private static final long serialVersionUID = -7861580911447631127L;
+
+		/**
+		 * Lists with more children than this are looked up by id through a hash index instead of a
+		 * linear scan
+		 */
+		private static final int INDEX_THRESHOLD = 32;
+
 		private int size;
 		private Object[] childs;
 
+		/** Child id to position, lazily built and not serialized */
+		private transient Map<String, Integer> index;
+
 		/**
 		 * Construct.
 		 * 
@@ -1875,6 +1927,14 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		public boolean add(Object o)
 		{
 			ensureCapacity(size + 1);
+			if (index != null)
+			{
+				String id = getId(o);
+				if (index.containsKey(id) == false)
+				{
+					index.put(id, size);
+				}
+			}
 			childs[size++] = o;
 			return true;
 		}
@@ -1891,6 +1951,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			System.arraycopy(childs, index, childs, index + 1, size - index);
 			childs[index] = element;
 			size++;
+			this.index = null;
 		}
 
 		@Override
@@ -1903,6 +1964,20 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 
 			Object oldValue = childs[index];
 			childs[index] = element;
+			if (this.index != null)
+			{
+				String oldId = getId(oldValue);
+				String newId = getId(element);
+				if (oldId.equals(newId) == false)
+				{
+					Integer position = this.index.get(oldId);
+					if ((position != null) && (position == index))
+					{
+						this.index.remove(oldId);
+					}
+					this.index.put(newId, index);
+				}
+			}
 			return oldValue;
 		}
 
@@ -1920,12 +1995,55 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			if (numMoved > 0)
 			{
 				System.arraycopy(childs, index + 1, childs, index, numMoved);
+
+				// the positions of the following children changed
+				this.index = null;
+			}
+			else if (this.index != null)
+			{
+				this.index.remove(getId(oldValue));
 			}
 			childs[--size] = null; // Let gc do its work
 
 			return oldValue;
 		}
 
+		/**
+		 * Gets the position of the child with the given id using the index, which is built if
+		 * necessary.
+		 * 
+		 * @param id
+		 *            The id of the child
+		 * @return The position of the child or -1 if there is no such child
+		 */
+		public int indexOfId(String id)
+		{
+			if (index == null)
+			{
+				index = new HashMap<String, Integer>((int)(size / 0.75f) + 1);
+				for (int i = size; i-- > 0;)
+				{
+					// iterate backwards so the first child wins in case of duplicate ids
+					index.put(getId(childs[i]), i);
+				}
+			}
+			Integer position = index.get(id);
+			return position != null ? position : -1;
+		}
+
+		/**
+		 * Shrinks the array to the number of children.
+		 */
+		public void trimToSize()
+		{
+			if (size < childs.length)
+			{
+				Object[] tmp = new Object[size];
+				System.arraycopy(childs, 0, tmp, 0, size);
+				childs = tmp;
+			}
+		}
+
 		/**
 		 * @param minCapacity
 		 */
@@ -1985,9 +2103,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		else
 		{
 			ChildList list = (ChildList)children;
-			Object tmp = list.childs[idx1];
-			list.childs[idx1] = list.childs[idx2];
-			list.childs[idx2] = tmp;
+			list.set(idx2, list.set(idx1, list.childs[idx2]));
 		}
 	}
 
@@ -16,13 +16,21 @@
  */
 package org.apache.wicket;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.handler.BookmarkablePageRequestHandler;
 import org.apache.wicket.request.mapper.BookmarkableMapper;
 import org.apache.wicket.request.mapper.BufferedResponseMapper;
 import org.apache.wicket.request.mapper.CompoundRequestMapper;
 import org.apache.wicket.request.mapper.HomePageMapper;
 import org.apache.wicket.request.mapper.PageInstanceMapper;
 import org.apache.wicket.request.mapper.ResourceReferenceMapper;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.mapper.parameter.PageParametersEncoder;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.util.ClassProvider;
@@ -30,6 +38,10 @@ import org.apache.wicket.util.IProvider;
 
 /**
  * Mapper that encapsulates mappers that are necessary for Wicket to function.
+ * <p>
+ * The urls of bookmarkable pages without parameters are cached by page class, until a mapper is
+ * added or removed. The mappers are therefore expected to encode such pages independently of
+ * the current request.
  * 
  * @author igor.vaynberg
  * 
@@ -38,6 +50,9 @@ public class SystemMapper extends CompoundRequestMapper
 {
 	private final Application application;
 
+	/** Encoded urls of bookmarkable pages without parameters */
+	private volatile ConcurrentMap<Class<?>, Url> bookmarkableUrls = newUrlCache();
+
 	/**
 	 * Constructor
 	 * 
@@ -55,6 +70,65 @@ public class SystemMapper extends CompoundRequestMapper
 		add(new BufferedResponseMapper());
 	}
 
+	/**
+	 * @see org.apache.wicket.request.mapper.CompoundRequestMapper#add(org.apache.wicket.request.IRequestMapper)
+	 */
+	@Override
+	public CompoundRequestMapper add(final IRequestMapper encoder)
+	{
+		super.add(encoder);
+		bookmarkableUrls = newUrlCache();
+		return this;
+	}
+
+	/**
+	 * @see org.apache.wicket.request.mapper.CompoundRequestMapper#remove(org.apache.wicket.request.IRequestMapper)
+	 */
+	@Override
+	public CompoundRequestMapper remove(final IRequestMapper encoder)
+	{
+		super.remove(encoder);
+		bookmarkableUrls = newUrlCache();
+		return this;
+	}
+
+	/**
+	 * @see org.apache.wicket.request.mapper.CompoundRequestMapper#mapHandler(org.apache.wicket.request.IRequestHandler)
+	 */
+	@Override
+	public Url mapHandler(final IRequestHandler handler)
+	{
+		if (handler.getClass() == BookmarkablePageRequestHandler.class)
+		{
+			BookmarkablePageRequestHandler pageHandler = (BookmarkablePageRequestHandler)handler;
+			PageParameters parameters = pageHandler.getPageParameters();
+			if ((parameters == null) || parameters.isEmpty())
+			{
+				final ConcurrentMap<Class<?>, Url> urls = bookmarkableUrls;
+				Class<?> pageClass = pageHandler.getPageClass();
+				Url url = urls.get(pageClass);
+				if (url == null)
+				{
+					url = super.mapHandler(handler);
+					if (url != null)
+					{
+						urls.put(pageClass, new Url(url));
+					}
+					return url;
+				}
+
+				// urls are mutable, never hand out the cached instance
+				return new Url(url);
+			}
+		}
+		return super.mapHandler(handler);
+	}
+
+	private static ConcurrentMap<Class<?>, Url> newUrlCache()
+	{
+		return new ConcurrentHashMap<Class<?>, Url>();
+	}
+
 	private IProvider<IResourceCachingStrategy> getResourceCachingStrategy()
 	{
 		return new IProvider<IResourceCachingStrategy>()
@@ -0,0 +1,449 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.markup.MarkupCache.ICache;
+import org.apache.wicket.util.lang.Bytes;
+
+/**
+ * A {@link MarkupCache.ICache} bounded by the number of entries and by the estimated size of the
+ * cached values. The least recently used entries are evicted when a limit is exceeded.
+ * <p>
+ * The cache is split into segments by the hash of the key. Each segment is a synchronized access
+ * ordered map with its share of the limits, so concurrent threads rarely lock the same segment.
+ * <p>
+ * Evicted markup is simply loaded again when it is needed, so the limits trade memory for markup
+ * loading time.
+ * 
+ * @see org.apache.wicket.settings.IMarkupSettings#setMarkupCacheMaxEntries(int)
+ * @see org.apache.wicket.settings.IMarkupSettings#setMarkupCacheMaxSize(Bytes)
+ * 
+ * @param <K>
+ *            The key type
+ * @param <V>
+ *            The value type
+ */
+public class LruCacheImplementation<K, V> implements ICache<K, V>
+{
+	private static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * The minimal number of entries per segment if the number of entries is bounded
+	 */
+	private static final int MIN_SEGMENT_ENTRIES = 16;
+
+	/**
+	 * The estimated size of a parsed markup element, in addition to its text
+	 */
+	private static final int MARKUP_ELEMENT_WEIGHT = 64;
+
+	/**
+	 * The estimated size of a map entry
+	 */
+	private static final int ENTRY_WEIGHT = 64;
+
+	private final Segment<K, V>[] segments;
+
+	private final IWeigher<? super V> weigher;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Estimates the memory used by a cached value
+	 * 
+	 * @param <V>
+	 *            The value type
+	 */
+	public interface IWeigher<V>
+	{
+		/**
+		 * @param value
+		 * @return the estimated size of the value in bytes
+		 */
+		long weigh(V value);
+	}
+
+	/**
+	 * The default {@link IWeigher}, knows {@link Markup} and strings
+	 */
+	public static final IWeigher<Object> DEFAULT_WEIGHER = new IWeigher<Object>()
+	{
+		public long weigh(final Object value)
+		{
+			if (value instanceof Markup)
+			{
+				// the markup keeps the text of the file plus the parsed elements. Only the
+				// elements are looked at, the resource stream would have to be opened
+				Markup markup = (Markup)value;
+				long characters = 0;
+				for (int i = 0; i < markup.size(); i++)
+				{
+					MarkupElement element = markup.get(i);
+					if (element instanceof RawMarkup)
+					{
+						characters += element.toCharSequence().length();
+					}
+					else if (element instanceof ComponentTag)
+					{
+						characters += ((ComponentTag)element).getLength();
+					}
+				}
+				return ENTRY_WEIGHT + 2 * characters + markup.size() *
+					(long)MARKUP_ELEMENT_WEIGHT;
+			}
+			else if (value instanceof CharSequence)
+			{
+				return ENTRY_WEIGHT + 2 * ((CharSequence)value).length();
+			}
+			return ENTRY_WEIGHT;
+		}
+	};
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxEntries
+	 *            the maximal number of entries, {@code 0} for no limit
+	 * @param maxSize
+	 *            the maximal estimated size of the values, {@code null} for no limit
+	 */
+	public LruCacheImplementation(final int maxEntries, final Bytes maxSize)
+	{
+		this(maxEntries, maxSize, DEFAULT_WEIGHER);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxEntries
+	 *            the maximal number of entries, {@code 0} for no limit
+	 * @param maxSize
+	 *            the maximal estimated size of the values, {@code null} for no limit
+	 * @param weigher
+	 *            estimates the size of the values
+	 */
+	public LruCacheImplementation(final int maxEntries, final Bytes maxSize,
+		final IWeigher<? super V> weigher)
+	{
+		if (maxEntries < 0)
+		{
+			throw new IllegalArgumentException("Argument 'maxEntries' must not be negative");
+		}
+		this.weigher = weigher;
+
+		int segmentCount = MAX_SEGMENTS;
+		if (maxEntries > 0)
+		{
+			segmentCount = Math.max(1, Math.min(MAX_SEGMENTS, maxEntries / MIN_SEGMENT_ENTRIES));
+		}
+		final int segmentEntries = maxEntries > 0 ? (maxEntries + segmentCount - 1) /
+			segmentCount : Integer.MAX_VALUE;
+		final long segmentWeight = maxSize != null ? Math.max(1, maxSize.bytes() / segmentCount)
+			: Long.MAX_VALUE;
+
+		segments = newSegments(segmentCount);
+		for (int i = 0; i < segmentCount; i++)
+		{
+			segments[i] = new Segment<K, V>(segmentEntries, segmentWeight);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> Segment<K, V>[] newSegments(final int count)
+	{
+		return (Segment<K, V>[])new Segment<?, ?>[count];
+	}
+
+	private Segment<K, V> segmentFor(final Object key)
+	{
+		int hash = key.hashCode();
+		// spread the bits, segments are chosen by the lower bits
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return segments[(hash & 0x7fffffff) % segments.length];
+	}
+
+	public void clear()
+	{
+		for (Segment<K, V> segment : segments)
+		{
+			synchronized (segment)
+			{
+				segment.clear();
+				segment.weight = 0;
+			}
+		}
+	}
+
+	public boolean remove(final K key)
+	{
+		if (key == null)
+		{
+			return false;
+		}
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment)
+		{
+			CacheEntry<V> entry = segment.remove(key);
+			if (entry != null)
+			{
+				segment.weight -= entry.weight;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	public V get(final K key)
+	{
+		if (key == null)
+		{
+			return null;
+		}
+		Segment<K, V> segment = segmentFor(key);
+		CacheEntry<V> entry;
+		synchronized (segment)
+		{
+			entry = segment.get(key);
+		}
+		if (entry != null)
+		{
+			hits.incrementAndGet();
+			return entry.value;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Returns a snapshot of the keys. Removing a key through the iterator removes the entry from
+	 * the cache.
+	 */
+	public Collection<K> getKeys()
+	{
+		final List<K> keys = new ArrayList<K>();
+		for (Segment<K, V> segment : segments)
+		{
+			synchronized (segment)
+			{
+				keys.addAll(segment.keySet());
+			}
+		}
+		return new AbstractCollection<K>()
+		{
+			@Override
+			public Iterator<K> iterator()
+			{
+				final Iterator<K> iterator = keys.iterator();
+				return new Iterator<K>()
+				{
+					private K current;
+
+					public boolean hasNext()
+					{
+						return iterator.hasNext();
+					}
+
+					public K next()
+					{
+						current = iterator.next();
+						return current;
+					}
+
+					public void remove()
+					{
+						iterator.remove();
+						LruCacheImplementation.this.remove(current);
+					}
+				};
+			}
+
+			@Override
+			public int size()
+			{
+				return keys.size();
+			}
+		};
+	}
+
+	public boolean containsKey(final K key)
+	{
+		if (key == null)
+		{
+			return false;
+		}
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment)
+		{
+			return segment.containsKey(key);
+		}
+	}
+
+	public int size()
+	{
+		int size = 0;
+		for (Segment<K, V> segment : segments)
+		{
+			synchronized (segment)
+			{
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public void put(final K key, final V value)
+	{
+		final CacheEntry<V> entry = new CacheEntry<V>(value, weigher.weigh(value));
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment)
+		{
+			CacheEntry<V> previous = segment.put(key, entry);
+			if (previous != null)
+			{
+				segment.weight -= previous.weight;
+			}
+			segment.weight += entry.weight;
+			evictions.addAndGet(segment.evict(key));
+		}
+	}
+
+	public void shutdown()
+	{
+		clear();
+	}
+
+	/**
+	 * @return the estimated size of the cached values, in bytes
+	 */
+	public long getWeight()
+	{
+		long weight = 0;
+		for (Segment<K, V> segment : segments)
+		{
+			synchronized (segment)
+			{
+				weight += segment.weight;
+			}
+		}
+		return weight;
+	}
+
+	/**
+	 * @return the number of lookups which found an entry
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups which did not find an entry
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of entries evicted because a limit was exceeded
+	 */
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * A cached value with its estimated size
+	 * 
+	 * @param <V>
+	 */
+	private static class CacheEntry<V>
+	{
+		private final V value;
+
+		private final long weight;
+
+		private CacheEntry(final V value, final long weight)
+		{
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * An access ordered map with its share of the limits, guarded by its own monitor
+	 * 
+	 * @param <K>
+	 * @param <V>
+	 */
+	private static class Segment<K, V> extends LinkedHashMap<K, CacheEntry<V>>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int maxEntries;
+
+		private final long maxWeight;
+
+		private long weight;
+
+		private Segment(final int maxEntries, final long maxWeight)
+		{
+			super(16, 0.75f, true);
+			this.maxEntries = maxEntries;
+			this.maxWeight = maxWeight;
+		}
+
+		/**
+		 * Removes the least recently used entries until the limits are met, but never the entry
+		 * just put.
+		 * 
+		 * @param newKey
+		 * @return the number of evicted entries
+		 */
+		private int evict(final K newKey)
+		{
+			int evicted = 0;
+			Iterator<Map.Entry<K, CacheEntry<V>>> iterator = entrySet().iterator();
+			while ((size() > maxEntries || weight > maxWeight) && iterator.hasNext())
+			{
+				Map.Entry<K, CacheEntry<V>> eldest = iterator.next();
+				if (eldest.getKey().equals(newKey))
+				{
+					continue;
+				}
+				iterator.remove();
+				weight -= eldest.getValue().weight;
+				evicted++;
+			}
+			return evicted;
+		}
+	}
+}
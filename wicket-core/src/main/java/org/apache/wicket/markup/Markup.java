@@ -19,8 +19,12 @@ package org.apache.wicket.markup;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
@@ -52,6 +56,12 @@ public class Markup implements IMarkupFragment
 	/** The associated markup file */
 	private final MarkupResourceStream markupResourceStream;
 
+	/**
+	 * The fragments of each nesting level by component id, keyed by the index of the enclosing tag
+	 * (-1 for the markup itself). Available once the markup has been made immutable.
+	 */
+	private volatile ConcurrentMap<Integer, Map<String, IMarkupFragment>> fragmentIndex;
+
 	/**
 	 * Take the markup string, parse it and return the Markup (list of MarkupElements).
 	 * <p>
@@ -182,12 +192,99 @@ public class Markup implements IMarkupFragment
 		}
 
 		markupElements = Collections.unmodifiableList(markupElements);
+		fragmentIndex = new ConcurrentHashMap<Integer, Map<String, IMarkupFragment>>();
 	}
 
 	public final IMarkupFragment find(final String id)
 	{
 		Args.notEmpty(id, "id");
 
+		return find(-1, this, id);
+	}
+
+	/**
+	 * Finds the component with the given id in a nesting level of this markup. Once the markup is
+	 * immutable, the components of a level are indexed by id on the first lookup.
+	 * 
+	 * @param index
+	 *            The index of the enclosing tag, -1 for the markup itself
+	 * @param scope
+	 *            The markup of the nesting level, which is this markup or a fragment of it
+	 * @param id
+	 *            The id of the component to find
+	 * @return The markup fragment of the component or null if not found
+	 */
+	final IMarkupFragment find(final int index, final IMarkupFragment scope, final String id)
+	{
+		final ConcurrentMap<Integer, Map<String, IMarkupFragment>> fragmentIndex = this.fragmentIndex;
+		if (fragmentIndex == null)
+		{
+			return scan(scope, id, null);
+		}
+
+		Map<String, IMarkupFragment> fragments = fragmentIndex.get(index);
+		if (fragments == null)
+		{
+			fragments = new HashMap<String, IMarkupFragment>();
+			try
+			{
+				scan(scope, null, fragments);
+			}
+			catch (MarkupException ex)
+			{
+				// Broken markup. Let the lookup fail the way it always did
+				return scan(scope, id, null);
+			}
+			fragmentIndex.putIfAbsent(index, fragments);
+		}
+
+		IMarkupFragment fragment = fragments.get(id);
+		if ((fragment != null) && id.equals(((ComponentTag)fragment.get(0)).getId()))
+		{
+			return fragment;
+		}
+
+		// The id of a tag may still be changed after the index was built, e.g. for auto resolved
+		// components by MarkupContainer.onMarkupAttached(). Make sure the index is not stale.
+		fragment = scan(scope, id, null);
+		if (fragment != null)
+		{
+			fragmentIndex.remove(index);
+		}
+		return fragment;
+	}
+
+	/**
+	 * @param scope
+	 *            This markup or a fragment of it
+	 * @param id
+	 *            The id of the component to find
+	 * @param fragments
+	 *            If not null, all components of the nesting level are collected
+	 * @return The markup fragment of the component or null if not found
+	 */
+	private IMarkupFragment scan(final IMarkupFragment scope, final String id,
+		final Map<String, IMarkupFragment> fragments)
+	{
+		if (scope instanceof MarkupFragment)
+		{
+			return ((MarkupFragment)scope).find(id, fragments);
+		}
+		return find(id, fragments);
+	}
+
+	/**
+	 * Scans the markup for the component with the given id.
+	 * 
+	 * @param id
+	 *            The id of the component to find
+	 * @param fragments
+	 *            If not null, all components of the nesting level are collected and null is
+	 *            returned
+	 * @return The markup fragment of the component or null if not found
+	 */
+	private IMarkupFragment find(final String id, final Map<String, IMarkupFragment> fragments)
+	{
 		MarkupStream stream = new MarkupStream(this);
 		stream.setCurrentIndex(0);
 		while (stream.hasMore())
@@ -198,7 +295,14 @@ public class Markup implements IMarkupFragment
 				ComponentTag tag = stream.getTag();
 				if (tag.isOpen() || tag.isOpenClose())
 				{
-					if (tag.getId().equals(id))
+					if (fragments != null)
+					{
+						if (fragments.containsKey(tag.getId()) == false)
+						{
+							fragments.put(tag.getId(), stream.getMarkupFragment());
+						}
+					}
+					else if (tag.getId().equals(id))
 					{
 						return stream.getMarkupFragment();
 					}
@@ -19,12 +19,16 @@ package org.apache.wicket.markup;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.settings.IMarkupSettings;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.listener.IChangeListener;
 import org.apache.wicket.util.watch.IModifiable;
 import org.apache.wicket.util.watch.IModificationWatcher;
@@ -64,6 +68,12 @@ public class MarkupCache implements IMarkupCache
 	 */
 	private final ICache<String, String> markupKeyCache;
 
+	/** The markups being loaded: cache key => pending load */
+	private final ConcurrentMap<String, PendingLoad> pendingLoads = new ConcurrentHashMap<String, PendingLoad>();
+
+	/** The number of threads which waited for a markup loaded by another thread */
+	private final AtomicLong coalescedLoads = new AtomicLong();
+
 	/** The markup cache key provider used by MarkupCache */
 	private IMarkupCacheKeyProvider markupCacheKeyProvider;
 
@@ -281,26 +291,13 @@ public class MarkupCache implements IMarkupCache
 		// If markup not found in cache or cache disabled, than ...
 		if (markup == null)
 		{
-			if (log.isDebugEnabled())
+			if ((enforceReload == false) && (cacheKey != null))
 			{
-				log.debug("Load markup: cacheKey=" + cacheKey);
-			}
-
-			// Get the markup resource stream for the container
-			final MarkupResourceStream resourceStream = MarkupFactory.get()
-				.getMarkupResourceStream(container, containerClass);
-
-			// Found markup?
-			if (resourceStream != null)
-			{
-				resourceStream.setCacheKey(cacheKey);
-
-				// load the markup and watch for changes
-				markup = loadMarkupAndWatchForChanges(container, resourceStream, enforceReload);
+				markup = loadMarkupOnce(cacheKey, container, containerClass);
 			}
 			else
 			{
-				markup = onMarkupNotFound(cacheKey, container, Markup.NO_MARKUP);
+				markup = findAndLoadMarkup(cacheKey, container, containerClass, enforceReload);
 			}
 		}
 
@@ -313,6 +310,102 @@ public class MarkupCache implements IMarkupCache
 		return markup;
 	}
 
+	/**
+	 * Loads the markup which is not in the cache yet. If another thread loads the markup for the
+	 * same cache key already, waits for its result instead of loading the markup again.
+	 * 
+	 * @param cacheKey
+	 * @param container
+	 * @param containerClass
+	 * @return the markup, Markup.NO_MARKUP if not found
+	 */
+	private Markup loadMarkupOnce(final String cacheKey, final MarkupContainer container,
+		final Class<?> containerClass)
+	{
+		final PendingLoad load = new PendingLoad();
+		final PendingLoad pending = pendingLoads.putIfAbsent(cacheKey, load);
+		if (pending == null)
+		{
+			Markup markup = null;
+			try
+			{
+				// another thread may have completed the load since we looked into the cache
+				markup = getMarkupFromCache(cacheKey, container);
+				if (markup == null)
+				{
+					markup = findAndLoadMarkup(cacheKey, container, containerClass, false);
+				}
+			}
+			finally
+			{
+				// wakes up the waiting threads, they load the markup themselves in case of an error
+				load.complete(markup);
+				pendingLoads.remove(cacheKey, load);
+			}
+			return markup;
+		}
+
+		if (pending.thread != Thread.currentThread())
+		{
+			coalescedLoads.incrementAndGet();
+			if (log.isDebugEnabled())
+			{
+				log.debug("Wait for markup being loaded by another thread: cacheKey=" + cacheKey);
+			}
+			Markup markup = pending.await();
+			if (markup != null)
+			{
+				return markup;
+			}
+		}
+
+		// the markup of the key is loaded recursively by this thread or the other thread failed
+		return findAndLoadMarkup(cacheKey, container, containerClass, false);
+	}
+
+	/**
+	 * Finds the markup resource stream for the container and loads the markup.
+	 * 
+	 * @param cacheKey
+	 * @param container
+	 * @param containerClass
+	 * @param enforceReload
+	 * @return the markup, Markup.NO_MARKUP if not found
+	 */
+	private Markup findAndLoadMarkup(final String cacheKey, final MarkupContainer container,
+		final Class<?> containerClass, final boolean enforceReload)
+	{
+		if (log.isDebugEnabled())
+		{
+			log.debug("Load markup: cacheKey=" + cacheKey);
+		}
+
+		// Get the markup resource stream for the container
+		final MarkupResourceStream resourceStream = MarkupFactory.get().getMarkupResourceStream(
+			container, containerClass);
+
+		// Found markup?
+		if (resourceStream != null)
+		{
+			resourceStream.setCacheKey(cacheKey);
+
+			// load the markup and watch for changes
+			return loadMarkupAndWatchForChanges(container, resourceStream, enforceReload);
+		}
+		return onMarkupNotFound(cacheKey, container, Markup.NO_MARKUP);
+	}
+
+	/**
+	 * Gets the number of times a thread did not load a markup because another thread was loading
+	 * the markup for the same cache key and waited for its result instead.
+	 * 
+	 * @return the number of coalesced markup loads
+	 */
+	public final long getCoalescedLoadCount()
+	{
+		return coalescedLoads.get();
+	}
+
 	/**
 	 * Will be called if the markup was not in the cache yet and could not be found either.
 	 * <p>
@@ -557,6 +650,8 @@ public class MarkupCache implements IMarkupCache
 	/**
 	 * Allows you to change the map implementation which will hold the cache data. By default it is
 	 * a ConcurrentHashMap() in order to allow multiple thread to access the data in a secure way.
+	 * If the size of the markup cache is limited by the {@link IMarkupSettings} a
+	 * {@link LruCacheImplementation} is used.
 	 * 
 	 * @param <K>
 	 * @param <V>
@@ -564,6 +659,13 @@ public class MarkupCache implements IMarkupCache
 	 */
 	protected <K, V> ICache<K, V> newCacheImplementation()
 	{
+		IMarkupSettings settings = application.getMarkupSettings();
+		int maxEntries = settings.getMarkupCacheMaxEntries();
+		Bytes maxSize = settings.getMarkupCacheMaxSize();
+		if (maxEntries > 0 || maxSize != null)
+		{
+			return new LruCacheImplementation<K, V>(maxEntries, maxSize);
+		}
 		return new DefaultCacheImplementation<K, V>();
 	}
 
@@ -706,4 +808,39 @@ public class MarkupCache implements IMarkupCache
 			clear();
 		}
 	}
+
+	/**
+	 * A markup being loaded by a thread. Other threads wait for its result.
+	 */
+	private static class PendingLoad
+	{
+		private final Thread thread = Thread.currentThread();
+
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private volatile Markup markup;
+
+		private void complete(final Markup markup)
+		{
+			this.markup = markup;
+			done.countDown();
+		}
+
+		/**
+		 * @return the loaded markup, {@code null} if the load failed
+		 */
+		private Markup await()
+		{
+			try
+			{
+				done.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			return markup;
+		}
+	}
 }
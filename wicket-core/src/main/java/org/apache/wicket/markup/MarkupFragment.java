@@ -17,6 +17,7 @@
 package org.apache.wicket.markup;
 
 import java.util.Iterator;
+import java.util.Map;
 
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.string.AppendingStringBuffer;
@@ -46,6 +47,9 @@ public class MarkupFragment implements IMarkupFragment
 	/** The size of the fragment (usually from open to close tag) */
 	private final int size;
 
+	/** The index at which the fragment starts, relative to the root markup */
+	private final int rootIndex;
+
 	/**
 	 * Construct.
 	 * 
@@ -74,6 +78,15 @@ public class MarkupFragment implements IMarkupFragment
 		this.markup = markup;
 		this.startIndex = startIndex;
 
+		int index = startIndex;
+		IMarkupFragment parent = markup;
+		while (parent instanceof MarkupFragment)
+		{
+			index += ((MarkupFragment)parent).startIndex;
+			parent = ((MarkupFragment)parent).markup;
+		}
+		rootIndex = index;
+
 		// Make sure we are at an open tag
 		MarkupElement startElem = markup.get(startIndex);
 		if ((startElem instanceof ComponentTag) == false)
@@ -142,6 +155,27 @@ public class MarkupFragment implements IMarkupFragment
 	{
 		Args.notEmpty(id, "id");
 
+		Markup root = getRootMarkup();
+		if (root != null)
+		{
+			// Let the root markup look up its index
+			return root.find(rootIndex, this, id);
+		}
+		return find(id, null);
+	}
+
+	/**
+	 * Scans the fragment for the component with the given id.
+	 * 
+	 * @param id
+	 *            The id of the component to find
+	 * @param fragments
+	 *            If not null, all components of the nesting level are collected and null is
+	 *            returned
+	 * @return The markup fragment of the component or null if not found
+	 */
+	final IMarkupFragment find(final String id, final Map<String, IMarkupFragment> fragments)
+	{
 		MarkupStream stream = new MarkupStream(this);
 		stream.setCurrentIndex(1);
 		while (stream.hasMore())
@@ -152,7 +186,14 @@ public class MarkupFragment implements IMarkupFragment
 				ComponentTag tag = stream.getTag();
 				if (tag.isOpen() || tag.isOpenClose())
 				{
-					if (tag.getId().equals(id))
+					if (fragments != null)
+					{
+						if (fragments.containsKey(tag.getId()) == false)
+						{
+							fragments.put(tag.getId(), stream.getMarkupFragment());
+						}
+					}
+					else if (tag.getId().equals(id))
 					{
 						return stream.getMarkupFragment();
 					}
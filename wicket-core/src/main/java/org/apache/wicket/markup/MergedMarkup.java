@@ -84,6 +84,9 @@ public class MergedMarkup extends Markup
 		// Merge derived and base markup
 		merge(markup, baseMarkup, extendIndex);
 
+		// Like any other markup loaded, the merged markup must not change anymore
+		makeImmutable();
+
 		if (log.isDebugEnabled())
 		{
 			log.debug("Merge markup: " + toString());
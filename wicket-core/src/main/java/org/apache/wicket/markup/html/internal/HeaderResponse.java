@@ -47,6 +47,15 @@ public abstract class HeaderResponse implements IHeaderResponse
 {
 	private final Set<Object> rendered = new HashSet<Object>();
 
+	/**
+	 * Keys of the javascript references rendered so far. Allows to skip rendering the url of an
+	 * already rendered reference.
+	 */
+	private final Set<ResourceReference.Key> renderedJavaScriptReferences = new HashSet<ResourceReference.Key>();
+
+	/** Keys (and media) of the css references rendered so far */
+	private final Set<Object> renderedCSSReferences = new HashSet<Object>();
+
 	private boolean closed;
 
 	/**
@@ -106,9 +115,26 @@ public abstract class HeaderResponse implements IHeaderResponse
 		}
 		if (!closed)
 		{
+			// references with parameters may have different urls
+			Object token = null;
+			if (pageParameters == null)
+			{
+				token = (media == null) ? reference.getKey() : Arrays.asList(reference.getKey(),
+					media);
+				if (renderedCSSReferences.contains(token))
+				{
+					return;
+				}
+			}
+
 			IRequestHandler handler = new ResourceReferenceRequestHandler(reference, pageParameters);
 			CharSequence url = RequestCycle.get().urlFor(handler);
 			internalRenderCSSReference(url.toString(), media, condition);
+
+			if (token != null)
+			{
+				renderedCSSReferences.add(token);
+			}
 		}
 	}
 
@@ -200,9 +226,19 @@ public abstract class HeaderResponse implements IHeaderResponse
 
 		if (!closed)
 		{
+			// references with parameters may have different urls
+			final ResourceReference.Key key = (pageParameters == null) ? reference.getKey() : null;
+			if ((key != null) && renderedJavaScriptReferences.contains(key))
+			{
+				return;
+			}
+
 			IRequestHandler handler = new ResourceReferenceRequestHandler(reference, pageParameters);
 			CharSequence url = RequestCycle.get().urlFor(handler);
-			internalRenderJavaScriptReference(url.toString(), id, defer);
+			if (internalRenderJavaScriptReference(url.toString(), id, defer) && (key != null))
+			{
+				renderedJavaScriptReferences.add(key);
+			}
 		}
 	}
 
@@ -221,7 +257,13 @@ public abstract class HeaderResponse implements IHeaderResponse
 		internalRenderJavaScriptReference(relative(url), id, defer);
 	}
 
-	private void internalRenderJavaScriptReference(String url, String id, boolean defer)
+	/**
+	 * @param url
+	 * @param id
+	 * @param defer
+	 * @return <code>true</code> if the url has been rendered, now or before
+	 */
+	private boolean internalRenderJavaScriptReference(String url, String id, boolean defer)
 	{
 		if (Strings.isEmpty(url))
 		{
@@ -246,7 +288,11 @@ public abstract class HeaderResponse implements IHeaderResponse
 					markRendered(token2);
 				}
 			}
+
+			// skipped because of the id only, it might be rendered with another id later on
+			return (token1Unused == false) || token2Unused;
 		}
+		return false;
 	}
 
 	/**
@@ -17,19 +17,25 @@
 package org.apache.wicket.page;
 
 import java.io.Serializable;
-import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.LockSupport;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.util.IProvider;
 import org.apache.wicket.util.LazyInitializer;
 import org.apache.wicket.util.time.Duration;
-import org.apache.wicket.util.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Synchronizes access to page instances from multiple threads
+ * <p>
+ * There is one {@link PageLock} per locked page. The lock is reentrant, i.e. a thread may lock a
+ * page it already owns, and it is fair: threads waiting for a page acquire it in the order they
+ * started to wait. A waiting thread is parked until it is the first in the queue and the page is
+ * released, or until the timeout elapses.
  * 
  * @author Igor Vaynberg (ivaynberg)
  */
@@ -54,6 +60,15 @@ public class PageAccessSynchronizer implements Serializable
 	/** timeout value for acquiring a page lock */
 	private final Duration timeout;
 
+	/** whether the wait times are collected */
+	private final boolean collectStatistics;
+
+	/**
+	 * collects the wait times, may be {@code null}. Not serialized, the statistics of the
+	 * application are used after the session has been deserialized.
+	 */
+	private transient volatile PageLockStatistics statistics;
+
 	/**
 	 * Constructor
 	 * 
@@ -61,13 +76,38 @@ public class PageAccessSynchronizer implements Serializable
 	 *            timeout value for acquiring a page lock
 	 */
 	public PageAccessSynchronizer(Duration timeout)
+	{
+		this(timeout, null);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param timeout
+	 *            timeout value for acquiring a page lock
+	 * @param statistics
+	 *            collects the time spent waiting for the pages, may be {@code null}
+	 */
+	public PageAccessSynchronizer(Duration timeout, PageLockStatistics statistics)
 	{
 		this.timeout = timeout;
+		this.statistics = statistics;
+		collectStatistics = statistics != null;
 	}
 
-	private static long remaining(Time start, Duration timeout)
+	/**
+	 * @return the statistics to record the wait times to, {@code null} if they are not collected
+	 */
+	private PageLockStatistics getStatistics()
 	{
-		return Math.max(0, timeout.subtract(start.elapsedSince()).getMilliseconds());
+		PageLockStatistics result = statistics;
+		if (result == null && collectStatistics && Application.exists())
+		{
+			// lost when the session has been serialized
+			result = Application.get().getPageLockStatistics();
+			statistics = result;
+		}
+		return result;
 	}
 
 	/**
@@ -80,71 +120,97 @@ public class PageAccessSynchronizer implements Serializable
 	 */
 	public void lockPage(int pageId) throws CouldNotLockPageException
 	{
-		final Thread thread = Thread.currentThread();
-		final PageLock lock = new PageLock(pageId, thread);
-		final Time start = Time.now();
-
-		boolean locked = false;
+		lockPageInternal(pageId);
+	}
 
+	/**
+	 * Acquires the lock to a page
+	 * 
+	 * @param pageId
+	 * @return the nanoseconds waited for the lock, {@code 0} if the lock was acquired without
+	 *         contention
+	 * @throws CouldNotLockPageException
+	 */
+	private long lockPageInternal(final int pageId) throws CouldNotLockPageException
+	{
+		final Thread thread = Thread.currentThread();
 		final boolean isDebugEnabled = logger.isDebugEnabled();
+		if (isDebugEnabled)
+		{
+			logger.debug("'{}' attempting to acquire lock to page with id '{}'", thread.getName(),
+				pageId);
+		}
 
-		while (!locked && start.elapsedSince().lessThan(timeout))
+		final ConcurrentMap<Integer, PageLock> locks = this.locks.get();
+		final long timeoutNanos = timeout.getMilliseconds() * 1000000L;
+		long start = 0;
+		long waited = 0;
+		while (true)
 		{
-			if (isDebugEnabled)
+			PageLock lock = locks.get(pageId);
+			if (lock == null)
 			{
-				logger.debug("'{}' attempting to acquire lock to page with id '{}'",
-					thread.getName(), pageId);
+				lock = new PageLock(pageId);
+				PageLock previous = locks.putIfAbsent(pageId, lock);
+				if (previous != null)
+				{
+					lock = previous;
+				}
 			}
 
-			PageLock previous = locks.get().putIfAbsent(pageId, lock);
-			if (previous == null || previous.getThread() == thread)
+			if (start == 0)
+			{
+				start = System.nanoTime();
+			}
+			long remaining = timeoutNanos - (System.nanoTime() - start);
+			int result;
+			try
 			{
-				// first thread to acquire lock or lock is already owned by this thread
-				locked = true;
+				result = lock.acquire(thread, remaining);
 			}
-			else
+			finally
 			{
-				// wait for a lock to become available
-				long remaining = remaining(start, timeout);
-				if (remaining > 0)
+				if (lock.isDiscarded())
 				{
-					synchronized (previous)
-					{
-						if (isDebugEnabled)
-						{
-							logger.debug("{} waiting for lock to page {} for {}", new Object[] {
-									thread.getName(), pageId, Duration.milliseconds(remaining) });
-						}
-						try
-						{
-							previous.wait(remaining);
-						}
-						catch (InterruptedException e)
-						{
-							// TODO better exception
-							throw new RuntimeException(e);
-						}
-					}
+					// the lock was discarded before or became idle while waiting for it. Another
+					// thread may already have replaced it with a new one, which must not be removed
+					locks.remove(pageId, lock);
 				}
 			}
-		}
-		if (locked)
-		{
-			if (isDebugEnabled)
+			if (result == PageLock.ACQUIRED)
 			{
-				logger.debug("{} acquired lock to page {}", thread.getName(), pageId);
+				waited = System.nanoTime() - start;
+				break;
 			}
-		}
-		else
-		{
-			if (logger.isWarnEnabled())
+			else if (result == PageLock.ACQUIRED_UNCONTENDED)
 			{
-				logger.warn(
-					"{} failed to acquire lock to page {}, attempted for {} out of allowed {}",
-					new Object[] { thread.getName(), pageId, start.elapsedSince(), timeout });
+				break;
 			}
-			throw new CouldNotLockPageException(pageId, thread.getName(), timeout);
+			else if (result == PageLock.TIMED_OUT)
+			{
+				long elapsed = System.nanoTime() - start;
+				final PageLockStatistics statistics = getStatistics();
+				if (statistics != null)
+				{
+					statistics.timedOut();
+				}
+				if (logger.isWarnEnabled())
+				{
+					logger.warn(
+						"{} failed to acquire lock to page {}, attempted for {} out of allowed {}",
+						new Object[] { thread.getName(), pageId,
+								Duration.milliseconds(elapsed / 1000000L), timeout });
+				}
+				throw new CouldNotLockPageException(pageId, thread.getName(), timeout);
+			}
+			// else the lock was discarded after it was looked up, try again with a new one
+		}
+
+		if (isDebugEnabled)
+		{
+			logger.debug("{} acquired lock to page {}", thread.getName(), pageId);
 		}
+		return waited;
 	}
 
 	/**
@@ -153,29 +219,23 @@ public class PageAccessSynchronizer implements Serializable
 	public void unlockAllPages()
 	{
 		final Thread thread = Thread.currentThread();
-		final Iterator<PageLock> locks = this.locks.get().values().iterator();
+		final ConcurrentMap<Integer, PageLock> locks = this.locks.get();
 
 		final boolean isDebugEnabled = logger.isDebugEnabled();
 
-		while (locks.hasNext())
+		for (PageLock lock : locks.values())
 		{
-			// remove all locks held by this thread
-			final PageLock lock = locks.next();
 			if (lock.getThread() == thread)
 			{
-				locks.remove();
-				if (isDebugEnabled)
+				if (lock.release(thread))
 				{
-					logger.debug("{} released lock to page {}", thread.getName(), lock.getPageId());
+					// nobody waits for the page. Another thread may already have replaced the
+					// discarded lock with a new one, which must not be removed
+					locks.remove(lock.getPageId(), lock);
 				}
-				// if any locks were removed notify threads waiting for a lock
-				synchronized (lock)
+				if (isDebugEnabled)
 				{
-					if (isDebugEnabled)
-					{
-						logger.debug("{} notifying blocked threads", thread.getName());
-					}
-					lock.notifyAll();
+					logger.debug("{} released lock to page {}", thread.getName(), lock.getPageId());
 				}
 			}
 		}
@@ -194,14 +254,25 @@ public class PageAccessSynchronizer implements Serializable
 			@Override
 			public IManageablePage getPage(int id)
 			{
-				lockPage(id);
-				return super.getPage(id);
+				long waited = lockPageInternal(id);
+				IManageablePage page = super.getPage(id);
+				final PageLockStatistics statistics = getStatistics();
+				if (statistics != null && page != null)
+				{
+					statistics.locked(page.getClass(), waited);
+				}
+				return page;
 			}
 
 			@Override
 			public void touchPage(IManageablePage page)
 			{
-				lockPage(page.getPageId());
+				long waited = lockPageInternal(page.getPageId());
+				final PageLockStatistics statistics = getStatistics();
+				if (statistics != null)
+				{
+					statistics.locked(page.getClass(), waited);
+				}
 				super.touchPage(page);
 			}
 
@@ -221,27 +292,54 @@ public class PageAccessSynchronizer implements Serializable
 	}
 
 	/**
-	 * Thread's lock on a page
+	 * Lock on a page. Owned by at most one thread, the other threads wait in FIFO order.
 	 * 
 	 * @author igor
 	 */
 	public static class PageLock
 	{
+		private static final int ACQUIRED_UNCONTENDED = 0;
+
+		private static final int ACQUIRED = 1;
+
+		private static final int TIMED_OUT = 2;
+
+		private static final int DISCARDED = 3;
+
 		/** page id */
 		private final int pageId;
 
 		/** thread that owns the lock */
-		private final Thread thread;
+		private volatile Thread thread;
+
+		/** the threads waiting for the lock in the order they arrived, guarded by this */
+		private final LinkedList<Thread> waiters = new LinkedList<Thread>();
+
+		/** set when the lock is removed from the map, written while holding this */
+		private volatile boolean discarded;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param pageId
+		 */
+		public PageLock(int pageId)
+		{
+			this.pageId = pageId;
+		}
 
 		/**
 		 * Constructor
 		 * 
 		 * @param pageId
 		 * @param thread
+		 *            thread that owns the lock
+		 * @deprecated use {@link #PageLock(int)}, the lock is owned by the thread acquiring it
 		 */
+		@Deprecated
 		public PageLock(int pageId, Thread thread)
 		{
-			this.pageId = pageId;
+			this(pageId);
 			this.thread = thread;
 		}
 
@@ -260,5 +358,132 @@ public class PageAccessSynchronizer implements Serializable
 		{
 			return thread;
 		}
+
+		/**
+		 * @return {@code true} if the lock is no longer used and has to be removed from the map
+		 */
+		private boolean isDiscarded()
+		{
+			return discarded;
+		}
+
+		/**
+		 * Acquires the lock, waits up to {@code timeoutNanos} if necessary.
+		 * 
+		 * @param current
+		 *            the current thread
+		 * @param timeoutNanos
+		 * @return one of the result constants
+		 */
+		private int acquire(final Thread current, final long timeoutNanos)
+		{
+			synchronized (this)
+			{
+				if (discarded)
+				{
+					return DISCARDED;
+				}
+				if (thread == current)
+				{
+					return ACQUIRED_UNCONTENDED;
+				}
+				if (thread == null && waiters.isEmpty())
+				{
+					thread = current;
+					return ACQUIRED_UNCONTENDED;
+				}
+				waiters.addLast(current);
+			}
+
+			final long deadline = System.nanoTime() + timeoutNanos;
+			while (true)
+			{
+				synchronized (this)
+				{
+					if (thread == null && waiters.getFirst() == current)
+					{
+						waiters.removeFirst();
+						thread = current;
+						return ACQUIRED;
+					}
+				}
+
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0)
+				{
+					abandon(current);
+					return TIMED_OUT;
+				}
+
+				if (logger.isDebugEnabled())
+				{
+					logger.debug("{} waiting for lock to page {} for {}", new Object[] {
+							current.getName(), pageId,
+							Duration.milliseconds(remaining / 1000000L) });
+				}
+				LockSupport.parkNanos(remaining);
+				if (Thread.interrupted())
+				{
+					abandon(current);
+					// TODO better exception
+					throw new RuntimeException(new InterruptedException());
+				}
+			}
+		}
+
+		/**
+		 * Removes the thread from the waiters and wakes up the next one if the lock is free. The
+		 * lock is discarded if it is neither owned nor waited for anymore.
+		 * 
+		 * @param current
+		 */
+		private void abandon(final Thread current)
+		{
+			Thread next = null;
+			synchronized (this)
+			{
+				waiters.remove(current);
+				if (thread == null)
+				{
+					if (waiters.isEmpty())
+					{
+						discarded = true;
+					}
+					else
+					{
+						next = waiters.getFirst();
+					}
+				}
+			}
+			LockSupport.unpark(next);
+		}
+
+		/**
+		 * Releases the lock and wakes up the first waiting thread
+		 * 
+		 * @param current
+		 *            the current thread
+		 * @return {@code true} if nobody waits for the lock and it is discarded
+		 */
+		private boolean release(final Thread current)
+		{
+			Thread next;
+			synchronized (this)
+			{
+				if (thread != current)
+				{
+					return false;
+				}
+				thread = null;
+				if (waiters.isEmpty())
+				{
+					discarded = true;
+					return true;
+				}
+				next = waiters.getFirst();
+			}
+			LockSupport.unpark(next);
+			return false;
+		}
 	}
 }
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.page;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects how long the requests wait for the page locks of {@link PageAccessSynchronizer}, per
+ * page class. Helps to find the pages which are accessed concurrently, e.g. by several Ajax timers.
+ * 
+ * @see org.apache.wicket.Application#getPageLockStatistics()
+ */
+public class PageLockStatistics
+{
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private final AtomicLong timeouts = new AtomicLong();
+
+	/**
+	 * Records an acquired page lock
+	 * 
+	 * @param pageClass
+	 *            the class of the locked page
+	 * @param waitedNanos
+	 *            the time waited for the lock, {@code 0} if it was not owned by another thread
+	 */
+	public void locked(final Class<?> pageClass, final long waitedNanos)
+	{
+		final String name = pageClass.getName();
+		Entry entry = entries.get(name);
+		if (entry == null)
+		{
+			entry = new Entry(name);
+			Entry existing = entries.putIfAbsent(name, entry);
+			if (existing != null)
+			{
+				entry = existing;
+			}
+		}
+		entry.record(waitedNanos);
+	}
+
+	/**
+	 * Records a failed attempt to lock a page
+	 */
+	public void timedOut()
+	{
+		timeouts.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of failed attempts to lock a page
+	 */
+	public long getTimeoutCount()
+	{
+		return timeouts.get();
+	}
+
+	/**
+	 * @return the statistics per page class, the page class with the longest total wait time first
+	 */
+	public List<Entry> getEntries()
+	{
+		List<Entry> result = new ArrayList<Entry>(entries.values());
+		Collections.sort(result, new Comparator<Entry>()
+		{
+			public int compare(Entry e1, Entry e2)
+			{
+				long w1 = e1.getTotalWaitNanos();
+				long w2 = e2.getTotalWaitNanos();
+				return w1 < w2 ? 1 : (w1 == w2 ? 0 : -1);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Clears the collected statistics
+	 */
+	public void clear()
+	{
+		entries.clear();
+		timeouts.set(0);
+	}
+
+	/**
+	 * The lock statistics of a page class
+	 */
+	public static class Entry
+	{
+		private final String pageClass;
+
+		private final AtomicLong acquisitions = new AtomicLong();
+
+		private final AtomicLong contentions = new AtomicLong();
+
+		private final AtomicLong totalWaitNanos = new AtomicLong();
+
+		private final AtomicLong maxWaitNanos = new AtomicLong();
+
+		private Entry(final String pageClass)
+		{
+			this.pageClass = pageClass;
+		}
+
+		private void record(final long waitedNanos)
+		{
+			acquisitions.incrementAndGet();
+			if (waitedNanos > 0)
+			{
+				contentions.incrementAndGet();
+				totalWaitNanos.addAndGet(waitedNanos);
+				long max;
+				while ((max = maxWaitNanos.get()) < waitedNanos &&
+					!maxWaitNanos.compareAndSet(max, waitedNanos))
+				{
+					// retry
+				}
+			}
+		}
+
+		/**
+		 * @return the name of the page class
+		 */
+		public String getPageClass()
+		{
+			return pageClass;
+		}
+
+		/**
+		 * @return how many times the pages of this class were locked
+		 */
+		public long getAcquisitions()
+		{
+			return acquisitions.get();
+		}
+
+		/**
+		 * @return how many times a lock was owned by another thread and the request had to wait
+		 */
+		public long getContentions()
+		{
+			return contentions.get();
+		}
+
+		/**
+		 * @return the total time waited for the locks, in nanoseconds
+		 */
+		public long getTotalWaitNanos()
+		{
+			return totalWaitNanos.get();
+		}
+
+		/**
+		 * @return the longest time waited for a lock, in nanoseconds
+		 */
+		public long getMaxWaitNanos()
+		{
+			return maxWaitNanos.get();
+		}
+
+		@Override
+		public String toString()
+		{
+			return pageClass + ": acquisitions=" + getAcquisitions() + ", contentions=" +
+				getContentions() + ", totalWait=" + getTotalWaitNanos() / 1000000L +
+				"ms, maxWait=" + getMaxWaitNanos() / 1000000L + "ms";
+		}
+	}
+}
@@ -65,6 +65,14 @@ public class PageStoreManager extends AbstractPageManager
 		managers.put(applicationName, this);
 	}
 
+	/**
+	 * @return the {@link IPageStore} used by this manager
+	 */
+	public IPageStore getPageStore()
+	{
+		return pageStore;
+	}
+
 	/**
 	 * Represents entry for single session. This is stored as session attribute and caches pages
 	 * between requests.
@@ -16,28 +16,40 @@
  */
 package org.apache.wicket.pageStore;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.util.lang.Args;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Facade for {@link IDataStore} that does the actual saving in worker thread.
+ * Facade for {@link IDataStore} that does the actual saving in worker threads.
  * <p>
- * Creates an {@link Entry} for each triple (sessionId, pageId, data) and puts it in
- * {@link #entries} queue if there is room. Acts as producer.<br/>
- * Later {@link PageSavingRunnable} reads in blocking manner from {@link #entries} and saves each
- * entry. Acts as consumer.
+ * Creates an {@link Entry} for each triple (sessionId, pageId, data) and puts it in one of the
+ * {@link #queues} if there is room. Acts as producer.<br/>
+ * Later a {@link PageSavingRunnable} per queue reads in blocking manner from its queue and saves
+ * the entries. Acts as consumer.
  * </p>
- * It starts only one instance of {@link PageSavingRunnable} because all we need is to make the page
- * storing asynchronous. We don't want to write concurrently in the wrapped {@link IDataStore},
- * though it may happen in the extreme case when the queue is full. These cases should be avoided.
+ * The entries of a session always go to the same queue, so the pages of a session are stored in
+ * the order they were passed to {@link #storeData(String, int, byte[])}. A consumer drains up to
+ * <code>batchSize</code> entries at once, skips the ones superseded by a newer version of the same
+ * page and passes the pages of each session in a single call to the wrapped store if it is an
+ * {@link IBatchDataStore}.
+ * <p>
+ * When a queue is full the entry is stored synchronously by the calling thread. These cases should
+ * be avoided with a bigger capacity or more writer threads.
  * 
  * @author Matej Knopp
  */
@@ -61,15 +73,28 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	private final AtomicBoolean destroy;
 
+	/**
+	 * Counted down by each {@link PageSavingRunnable} when it stops
+	 */
+	private final CountDownLatch stopped;
+
 	/**
 	 * The wrapped {@link IDataStore} that actually stores that pages
 	 */
 	private final IDataStore dataStore;
 
 	/**
-	 * The queue where the entries which have to be saved are temporary stored
+	 * The queues where the entries which have to be saved are temporary stored. One per writer
+	 * thread.
 	 */
-	private final BlockingQueue<Entry> entries;
+	private final BlockingQueue<Entry>[] queues;
+
+	/**
+	 * One lock per queue. Held while the entries of the queue are stored so that a synchronous
+	 * store of a newer version of a page never overtakes an older version being stored
+	 * asynchronously.
+	 */
+	private final Object[] locks;
 
 	/**
 	 * A map 'sessionId:::pageId' -> {@link Entry}. Used for fast retrieval of {@link Entry}s which
@@ -77,6 +102,8 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	private final ConcurrentMap<String, Entry> entryMap;
 
+	private final Statistics statistics = new Statistics();
+
 	/**
 	 * Construct.
 	 * 
@@ -87,14 +114,52 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	public AsynchronousDataStore(final IDataStore dataStore, final int capacity)
 	{
+		this(dataStore, capacity, 1, 1);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually saved the data
+	 * @param capacity
+	 *            the total capacity of the queues that delay the saving
+	 * @param writerThreads
+	 *            the number of threads that save the data
+	 * @param batchSize
+	 *            the maximum number of entries a thread saves at once
+	 */
+	public AsynchronousDataStore(final IDataStore dataStore, final int capacity,
+		final int writerThreads, final int batchSize)
+	{
+		Args.withinRange(1, Integer.MAX_VALUE, writerThreads, "writerThreads");
+		Args.withinRange(1, Integer.MAX_VALUE, batchSize, "batchSize");
+
 		this.dataStore = dataStore;
 		destroy = new AtomicBoolean(false);
-		entries = new LinkedBlockingQueue<Entry>(capacity);
+		stopped = new CountDownLatch(writerThreads);
 		entryMap = new ConcurrentHashMap<String, Entry>();
 
-		PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, entries, entryMap,
-			destroy);
-		new Thread(savingRunnable, "Wicket-PageSavingThread").start();
+		int queueCapacity = Math.max(1, (capacity + writerThreads - 1) / writerThreads);
+		queues = newQueues(writerThreads);
+		locks = new Object[writerThreads];
+		for (int i = 0; i < writerThreads; i++)
+		{
+			queues[i] = new LinkedBlockingQueue<Entry>(queueCapacity);
+			locks[i] = new Object();
+
+			PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, queues[i],
+				locks[i], entryMap, destroy, stopped, batchSize, statistics);
+			String name = writerThreads == 1 ? "Wicket-PageSavingThread"
+				: "Wicket-PageSavingThread-" + i;
+			new Thread(savingRunnable, name).start();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static BlockingQueue<Entry>[] newQueues(final int count)
+	{
+		return (BlockingQueue<Entry>[])new BlockingQueue<?>[count];
 	}
 
 	/**
@@ -106,10 +171,7 @@ public class AsynchronousDataStore implements IDataStore
 
 		try
 		{
-			synchronized (destroy)
-			{
-				destroy.wait();
-			}
+			stopped.await();
 		}
 		catch (InterruptedException e)
 		{
@@ -131,6 +193,43 @@ public class AsynchronousDataStore implements IDataStore
 		return entryMap.get(getKey(sessionId, id));
 	}
 
+	/**
+	 * @param sessionId
+	 * @return the index of the queue for the entries of the session with <code>sessionId</code>
+	 */
+	private int getQueueIndex(final String sessionId)
+	{
+		int hash = sessionId.hashCode();
+		hash ^= (hash >>> 16);
+		return (hash & 0x7fffffff) % queues.length;
+	}
+
+	/**
+	 * @param sessionId
+	 * @return the queue for the entries of the session with <code>sessionId</code>
+	 */
+	private BlockingQueue<Entry> getQueue(final String sessionId)
+	{
+		return queues[getQueueIndex(sessionId)];
+	}
+
+	/**
+	 * Stores the entry with the calling thread
+	 * 
+	 * @param entry
+	 */
+	private void storeSynchronously(final Entry entry)
+	{
+		log.debug("Storing synchronously page with id '{}' in session '{}'", entry.getPageId(),
+			entry.getSessionId());
+		statistics.fallbacks.incrementAndGet();
+		synchronized (locks[getQueueIndex(entry.getSessionId())])
+		{
+			dataStore.storeData(entry.getSessionId(), entry.getPageId(), entry.getData());
+			entryMap.remove(getKey(entry), entry);
+		}
+	}
+
 	/**
 	 * @see org.apache.wicket.pageStore.IDataStore#getData(java.lang.String, int)
 	 */
@@ -165,17 +264,18 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	public void removeData(final String sessionId, final int id)
 	{
-		String key = getKey(sessionId, id);
-		if (key != null)
+		// a writer which already took the entry from the queue either stores it before the
+		// removal or finds it removed from the map
+		synchronized (locks[getQueueIndex(sessionId)])
 		{
-			Entry entry = entryMap.remove(key);
+			Entry entry = entryMap.remove(getKey(sessionId, id));
 			if (entry != null)
 			{
-				entries.remove(entry);
+				getQueue(sessionId).remove(entry);
 			}
-		}
 
-		dataStore.removeData(sessionId, id);
+			dataStore.removeData(sessionId, id);
+		}
 	}
 
 	/**
@@ -183,18 +283,26 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	public void removeData(final String sessionId)
 	{
-		// make a copy to iterate to avoid ConcurrentModificationException
-		Entry[] entriesCopy = entries.toArray(new Entry[entries.size()]);
-		for (Entry entry : entriesCopy)
+		BlockingQueue<Entry> entries = getQueue(sessionId);
+
+		// the entries a writer already moved from the queue into its batch are still in the map.
+		// Removing them under the lock of the queue makes the writer skip them, so no page is
+		// stored after the session's data is removed
+		synchronized (locks[getQueueIndex(sessionId)])
 		{
-			if (entry.getSessionId().equals(sessionId))
+			Iterator<Entry> iterator = entryMap.values().iterator();
+			while (iterator.hasNext())
 			{
-				entryMap.remove(getKey(entry));
-				entries.remove(entry);
+				Entry entry = iterator.next();
+				if (entry.getSessionId().equals(sessionId))
+				{
+					iterator.remove();
+					entries.remove(entry);
+				}
 			}
-		}
 
-		dataStore.removeData(sessionId);
+			dataStore.removeData(sessionId);
+		}
 	}
 
 	/**
@@ -206,27 +314,83 @@ public class AsynchronousDataStore implements IDataStore
 	public void storeData(final String sessionId, final int id, final byte[] data)
 	{
 		Entry entry = new Entry(sessionId, id, data);
+		String key = getKey(entry);
+
+		// register the entry before offering it so that a consumer never sees an entry
+		// which is not in the map yet. A previous version of the page still in the queue
+		// is superseded by this one
+		entryMap.put(key, entry);
 		try
 		{
-			boolean added = entries.offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS);
+			boolean added = getQueue(sessionId).offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS);
 
 			if (added == false)
 			{
-				log.debug("Storing synchronously page with id '{}' in session '{}'", id, sessionId);
-				dataStore.storeData(sessionId, id, data);
-			}
-			else
-			{
-				entryMap.put(getKey(entry), entry);
+				storeSynchronously(entry);
 			}
 		}
 		catch (InterruptedException e)
 		{
 			log.error(e.getMessage(), e);
-			dataStore.storeData(sessionId, id, data);
+			storeSynchronously(entry);
 		}
 	}
 
+	/**
+	 * @return the number of entries waiting to be stored
+	 */
+	public int getQueueSize()
+	{
+		int size = 0;
+		for (BlockingQueue<Entry> queue : queues)
+		{
+			size += queue.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of writer threads
+	 */
+	public int getWriterThreads()
+	{
+		return queues.length;
+	}
+
+	/**
+	 * @return the number of entries stored asynchronously
+	 */
+	public long getStoredCount()
+	{
+		return statistics.stored.get();
+	}
+
+	/**
+	 * @return the number of batches passed to the wrapped {@link IDataStore}. Together with
+	 *         {@link #getStoredCount()} it gives the average batch size.
+	 */
+	public long getBatchCount()
+	{
+		return statistics.batches.get();
+	}
+
+	/**
+	 * @return the number of entries which were not stored because a newer version of the same page
+	 *         was queued meanwhile
+	 */
+	public long getSupersededCount()
+	{
+		return statistics.superseded.get();
+	}
+
+	/**
+	 * @return the number of entries stored synchronously because the queue was full
+	 */
+	public long getFallbackCount()
+	{
+		return statistics.fallbacks.get();
+	}
+
 	/**
 	 * 
 	 * @param pageId
@@ -249,7 +413,8 @@ public class AsynchronousDataStore implements IDataStore
 	}
 
 	/**
-	 * The structure used for an entry in the queue
+	 * The structure used for an entry in the queue. Entries are compared by identity so that a
+	 * newer version of a page is never mistaken for an older one.
 	 */
 	private static class Entry
 	{
@@ -279,38 +444,6 @@ public class AsynchronousDataStore implements IDataStore
 			return data;
 		}
 
-		@Override
-		public int hashCode()
-		{
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + pageId;
-			result = prime * result + ((sessionId == null) ? 0 : sessionId.hashCode());
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj)
-		{
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Entry other = (Entry)obj;
-			if (pageId != other.pageId)
-				return false;
-			if (sessionId == null)
-			{
-				if (other.sessionId != null)
-					return false;
-			}
-			else if (!sessionId.equals(other.sessionId))
-				return false;
-			return true;
-		}
-
 		@Override
 		public String toString()
 		{
@@ -319,6 +452,17 @@ public class AsynchronousDataStore implements IDataStore
 
 	}
 
+	/**
+	 * The counters shared by the {@link PageSavingRunnable}s
+	 */
+	private static class Statistics
+	{
+		private final AtomicLong stored = new AtomicLong();
+		private final AtomicLong batches = new AtomicLong();
+		private final AtomicLong superseded = new AtomicLong();
+		private final AtomicLong fallbacks = new AtomicLong();
+	}
+
 	/**
 	 * The thread that acts as consumer of {@link Entry}ies
 	 */
@@ -328,46 +472,151 @@ public class AsynchronousDataStore implements IDataStore
 
 		private final AtomicBoolean destroy;
 
+		private final CountDownLatch stopped;
+
 		private final BlockingQueue<Entry> entries;
 
+		private final Object lock;
+
 		private final ConcurrentMap<String, Entry> entryMap;
 
 		private final IDataStore dataStore;
 
+		private final int batchSize;
+
+		private final Statistics statistics;
+
 		private PageSavingRunnable(IDataStore dataStore, BlockingQueue<Entry> entries,
-			ConcurrentMap<String, Entry> entryMap, AtomicBoolean destroy)
+			Object lock, ConcurrentMap<String, Entry> entryMap, AtomicBoolean destroy, CountDownLatch stopped,
+			int batchSize, Statistics statistics)
 		{
 			this.dataStore = dataStore;
 			this.entries = entries;
+			this.lock = lock;
 			this.entryMap = entryMap;
 			this.destroy = destroy;
+			this.stopped = stopped;
+			this.batchSize = batchSize;
+			this.statistics = statistics;
 		}
 
 		public void run()
 		{
-			while (destroy.get() == false)
+			List<Entry> batch = new ArrayList<Entry>(batchSize);
+			try
+			{
+				while (destroy.get() == false)
+				{
+					Entry entry = null;
+					try
+					{
+						entry = entries.poll(POLL_WAIT, TimeUnit.MILLISECONDS);
+					}
+					catch (InterruptedException e)
+					{
+						log.error(e.getMessage(), e);
+					}
+
+					if (entry != null)
+					{
+						batch.add(entry);
+						entries.drainTo(batch, batchSize - 1);
+						save(batch);
+					}
+				}
+
+				// store the entries queued before the destroy
+				while (entries.drainTo(batch, batchSize) > 0)
+				{
+					save(batch);
+				}
+			}
+			finally
+			{
+				stopped.countDown();
+			}
+		}
+
+		/**
+		 * Saves and clears the batch
+		 * 
+		 * @param batch
+		 */
+		private void save(final List<Entry> batch)
+		{
+			try
 			{
-				Entry entry = null;
-				try
+				synchronized (lock)
 				{
-					entry = entries.poll(POLL_WAIT, TimeUnit.MILLISECONDS);
+					saveBatch(batch);
 				}
-				catch (InterruptedException e)
+			}
+			catch (RuntimeException e)
+			{
+				log.error("An error occurred while saving the pages asynchronously", e);
+			}
+			finally
+			{
+				batch.clear();
+			}
+		}
+
+		/**
+		 * Saves the entries grouped by session. Only the latest version of a page is saved.
+		 * 
+		 * @param batch
+		 */
+		private void saveBatch(final List<Entry> batch)
+		{
+			Map<String, Map<Integer, Entry>> sessions = new LinkedHashMap<String, Map<Integer, Entry>>();
+			for (Entry entry : batch)
+			{
+				if (entryMap.get(getKey(entry)) != entry)
 				{
-					log.error(e.getMessage(), e);
+					// removed or superseded by a newer version of the page
+					statistics.superseded.incrementAndGet();
+					continue;
 				}
 
-				if (entry != null)
+				Map<Integer, Entry> pages = sessions.get(entry.getSessionId());
+				if (pages == null)
 				{
-					log.debug("Saving asynchronously: {}...", entry);
-					dataStore.storeData(entry.getSessionId(), entry.getPageId(), entry.getData());
-					entryMap.remove(getKey(entry));
+					pages = new LinkedHashMap<Integer, Entry>();
+					sessions.put(entry.getSessionId(), pages);
 				}
+				pages.put(entry.getPageId(), entry);
 			}
 
-			synchronized (destroy)
+			for (Map.Entry<String, Map<Integer, Entry>> session : sessions.entrySet())
 			{
-				destroy.notify();
+				String sessionId = session.getKey();
+				Map<Integer, Entry> pages = session.getValue();
+				log.debug("Saving asynchronously {} page(s) of session '{}'...", pages.size(),
+					sessionId);
+
+				if (dataStore instanceof IBatchDataStore && pages.size() > 1)
+				{
+					Map<Integer, byte[]> data = new LinkedHashMap<Integer, byte[]>();
+					for (Entry entry : pages.values())
+					{
+						data.put(entry.getPageId(), entry.getData());
+					}
+					((IBatchDataStore)dataStore).storeData(sessionId, data);
+				}
+				else
+				{
+					for (Entry entry : pages.values())
+					{
+						dataStore.storeData(sessionId, entry.getPageId(), entry.getData());
+					}
+				}
+				statistics.batches.incrementAndGet();
+				statistics.stored.addAndGet(pages.size());
+
+				for (Entry entry : pages.values())
+				{
+					entryMap.remove(getKey(entry), entry);
+				}
 			}
 		}
 	}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Creates and applies binary deltas between two versions of serialized data.
+ * <p>
+ * The base data is split into blocks which are indexed by their hash. The target data is scanned
+ * with a rolling hash and every region found in the base is written as a copy instruction, the
+ * rest is written literally. This works well for serialized pages where a new version differs from
+ * the previous one in a few places only.
+ * <p>
+ * The format of a delta is the length of the target followed by a list of instructions:
+ * <ul>
+ * <li>{@code COPY offset length} - copy bytes from the base</li>
+ * <li>{@code INSERT length bytes} - insert the bytes</li>
+ * </ul>
+ * All numbers are variable length encoded.
+ */
+public final class BinaryDelta
+{
+	private static final int COPY = 0;
+
+	private static final int INSERT = 1;
+
+	/**
+	 * The size of the indexed blocks of the base, also the minimal length of a copied region
+	 */
+	private static final int BLOCK_SIZE = 16;
+
+	private static final int HASH_MULTIPLIER = 31;
+
+	/**
+	 * {@code HASH_MULTIPLIER ^ (BLOCK_SIZE - 1)}, used to remove the leading byte from the hash
+	 */
+	private static final int HASH_LEADING_FACTOR;
+
+	static
+	{
+		int factor = 1;
+		for (int i = 1; i < BLOCK_SIZE; i++)
+		{
+			factor *= HASH_MULTIPLIER;
+		}
+		HASH_LEADING_FACTOR = factor;
+	}
+
+	/**
+	 * Construct.
+	 */
+	private BinaryDelta()
+	{
+	}
+
+	/**
+	 * Creates a delta that turns {@code base} into {@code target}.
+	 * 
+	 * @param base
+	 * @param target
+	 * @return the delta
+	 */
+	public static byte[] create(final byte[] base, final byte[] target)
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+		writeNumber(out, target.length);
+
+		final int[] index = index(base);
+		final int mask = index.length - 1;
+
+		// start of the target bytes not written yet
+		int pending = 0;
+		int position = 0;
+		int hash = target.length >= BLOCK_SIZE ? hash(target, 0) : 0;
+		while (position + BLOCK_SIZE <= target.length)
+		{
+			int candidate = index.length > 0 ? index[hash & mask] - 1 : -1;
+			if (candidate >= 0 && regionMatches(base, candidate, target, position, BLOCK_SIZE))
+			{
+				// extend the match backwards into the pending bytes and forwards
+				int start = position;
+				int baseStart = candidate;
+				while (start > pending && baseStart > 0 && base[baseStart - 1] == target[start - 1])
+				{
+					start--;
+					baseStart--;
+				}
+				int end = position + BLOCK_SIZE;
+				int baseEnd = candidate + BLOCK_SIZE;
+				while (end < target.length && baseEnd < base.length && base[baseEnd] == target[end])
+				{
+					end++;
+					baseEnd++;
+				}
+
+				writeInsert(out, target, pending, start);
+				out.write(COPY);
+				writeNumber(out, baseStart);
+				writeNumber(out, end - start);
+
+				pending = end;
+				position = end;
+				if (position + BLOCK_SIZE <= target.length)
+				{
+					hash = hash(target, position);
+				}
+			}
+			else
+			{
+				if (position + BLOCK_SIZE < target.length)
+				{
+					hash = (hash - target[position] * HASH_LEADING_FACTOR) * HASH_MULTIPLIER +
+						target[position + BLOCK_SIZE];
+				}
+				position++;
+			}
+		}
+		writeInsert(out, target, pending, target.length);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Applies a delta created by {@link #create(byte[], byte[])} to the base.
+	 * 
+	 * @param base
+	 * @param delta
+	 * @param offset
+	 *            the position of the delta in the {@code delta} array
+	 * @return the target
+	 */
+	public static byte[] apply(final byte[] base, final byte[] delta, final int offset)
+	{
+		final int[] position = new int[] { offset };
+		final byte[] target = new byte[readNumber(delta, position)];
+		int written = 0;
+		while (position[0] < delta.length)
+		{
+			int instruction = delta[position[0]++];
+			if (instruction == COPY)
+			{
+				int from = readNumber(delta, position);
+				int length = readNumber(delta, position);
+				System.arraycopy(base, from, target, written, length);
+				written += length;
+			}
+			else if (instruction == INSERT)
+			{
+				int length = readNumber(delta, position);
+				System.arraycopy(delta, position[0], target, written, length);
+				position[0] += length;
+				written += length;
+			}
+			else
+			{
+				throw new IllegalArgumentException("Unknown delta instruction: " + instruction);
+			}
+		}
+		if (written != target.length)
+		{
+			throw new IllegalArgumentException("Corrupted delta, expected " + target.length +
+				" bytes but got " + written);
+		}
+		return target;
+	}
+
+	/**
+	 * Builds an open addressed hash table of the offsets of the blocks of base. The offsets are
+	 * stored incremented by one so zero means an empty slot.
+	 */
+	private static int[] index(final byte[] base)
+	{
+		int blocks = base.length / BLOCK_SIZE;
+		if (blocks == 0)
+		{
+			return new int[0];
+		}
+		int size = Integer.highestOneBit(blocks) << 2;
+		int[] index = new int[size];
+		int mask = size - 1;
+		for (int offset = 0; offset + BLOCK_SIZE <= base.length; offset += BLOCK_SIZE)
+		{
+			int slot = hash(base, offset) & mask;
+			// keep the first occurrence
+			if (index[slot] == 0)
+			{
+				index[slot] = offset + 1;
+			}
+		}
+		return index;
+	}
+
+	private static int hash(final byte[] data, final int offset)
+	{
+		int hash = 0;
+		for (int i = offset; i < offset + BLOCK_SIZE; i++)
+		{
+			hash = hash * HASH_MULTIPLIER + data[i];
+		}
+		return hash;
+	}
+
+	private static boolean regionMatches(final byte[] a, final int aOffset, final byte[] b,
+		final int bOffset, final int length)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			if (a[aOffset + i] != b[bOffset + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void writeInsert(final ByteArrayOutputStream out, final byte[] data,
+		final int from, final int to)
+	{
+		if (to > from)
+		{
+			out.write(INSERT);
+			writeNumber(out, to - from);
+			out.write(data, from, to - from);
+		}
+	}
+
+	private static void writeNumber(final ByteArrayOutputStream out, int value)
+	{
+		while ((value & ~0x7f) != 0)
+		{
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readNumber(final byte[] data, final int[] position)
+	{
+		int value = 0;
+		int shift = 0;
+		int b;
+		do
+		{
+			b = data[position[0]++] & 0xff;
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		return value;
+	}
+}
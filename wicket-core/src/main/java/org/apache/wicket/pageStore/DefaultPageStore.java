@@ -18,12 +18,18 @@ package org.apache.wicket.pageStore;
 
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.page.IManageablePage;
 import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.settings.IStoreSettings;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Objects;
 
@@ -74,6 +80,50 @@ public class DefaultPageStore implements IPageStore
 		pageDataStore.destroy();
 	}
 
+	/**
+	 * @return the {@link IDataStore} that actually stores the pages
+	 */
+	public IDataStore getDataStore()
+	{
+		return pageDataStore;
+	}
+
+	/**
+	 * @return the number of pages currently held in the in-memory cache of serialized pages
+	 * @see IStoreSettings#setInmemoryCacheSize(int)
+	 */
+	public int getInmemoryCacheCount()
+	{
+		return serializedPagesCache.getCount();
+	}
+
+	/**
+	 * @return the number of lookups in the in-memory cache of serialized pages that found the page
+	 */
+	public long getInmemoryCacheHits()
+	{
+		return serializedPagesCache.getHits();
+	}
+
+	/**
+	 * @return the number of lookups in the in-memory cache of serialized pages that didn't find
+	 *         the page and had to ask the {@link IDataStore}
+	 */
+	public long getInmemoryCacheMisses()
+	{
+		return serializedPagesCache.getMisses();
+	}
+
+	/**
+	 * @return the number of pages evicted from the in-memory cache of serialized pages. A high
+	 *         value compared to the hits suggests a bigger
+	 *         {@link IStoreSettings#setInmemoryCacheSize(int) cache size}
+	 */
+	public long getInmemoryCacheEvictions()
+	{
+		return serializedPagesCache.getEvictions();
+	}
+
 	/**
 	 * @param sessionId
 	 * @param pageId
@@ -375,14 +425,47 @@ public class DefaultPageStore implements IPageStore
 	 * For example a page is serialized during request, but it might be also later serialized on
 	 * session replication. The purpose of this cache is to make sure that the data obtained from
 	 * first serialization is reused on second serialization.
+	 * <p>
+	 * The cache is split in segments by session id. Each segment has its own lock, a hash index by
+	 * (sessionId, pageId) and a secondary index by session id. This way requests for different
+	 * sessions rarely contend for the same lock. The segments share the total size, so a single
+	 * session may use the whole cache: once the size is exceeded, the segment whose least recently
+	 * used entry was accessed the longest time ago evicts that entry.
+	 * <p>
+	 * Both the size and the recency are only approximated across segments: concurrent stores to
+	 * different segments may exceed the size briefly before one of them evicts, and the victim is
+	 * chosen from access times read without holding the other segments' locks.
 	 * 
 	 * @author Matej Knopp
 	 */
 	static class SerializedPagesCache
 	{
+		/**
+		 * The maximum number of segments
+		 */
+		private static final int MAX_SEGMENTS = 16;
+
+		/**
+		 * The minimum number of entries per segment. Small caches use less segments, as they are
+		 * scanned for the least recently used entry on eviction.
+		 */
+		private static final int MIN_SEGMENT_SIZE = 16;
+
 		private final int size;
 
-		private final List<SoftReference<SerializedPage>> cache;
+		private final Segment[] segments;
+
+		/** The number of entries in all segments */
+		private final AtomicInteger totalEntries = new AtomicInteger();
+
+		/** Orders the accesses of the entries across all segments */
+		private final AtomicLong clock = new AtomicLong();
+
+		private final AtomicLong hits = new AtomicLong();
+
+		private final AtomicLong misses = new AtomicLong();
+
+		private final AtomicLong evictions = new AtomicLong();
 
 		/**
 		 * Construct.
@@ -392,7 +475,29 @@ public class DefaultPageStore implements IPageStore
 		public SerializedPagesCache(final int size)
 		{
 			this.size = size;
-			cache = new ArrayList<SoftReference<SerializedPage>>(size);
+
+			int count = 1;
+			while (count < MAX_SEGMENTS && size / (count * 2) >= MIN_SEGMENT_SIZE)
+			{
+				count *= 2;
+			}
+
+			segments = new Segment[count];
+			for (int i = 0; i < count; i++)
+			{
+				segments[i] = new Segment();
+			}
+		}
+
+		/**
+		 * @param sessionId
+		 * @return the segment responsible for the pages of the session with <code>sessionId</code>
+		 */
+		private Segment segmentFor(final String sessionId)
+		{
+			int hash = sessionId.hashCode();
+			hash ^= (hash >>> 16) ^ (hash >>> 8);
+			return segments[hash & (segments.length - 1)];
 		}
 
 		/**
@@ -407,20 +512,7 @@ public class DefaultPageStore implements IPageStore
 
 			if (size > 0)
 			{
-				synchronized (cache)
-				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
-					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getPageId() == id &&
-							entry.getSessionId().equals(sessionId))
-						{
-							i.remove();
-							return entry;
-						}
-					}
-				}
+				return segmentFor(sessionId).remove(new PageKey(sessionId, id));
 			}
 			return null;
 		}
@@ -437,18 +529,7 @@ public class DefaultPageStore implements IPageStore
 
 			if (size > 0)
 			{
-				synchronized (cache)
-				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
-					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getSessionId().equals(sessionId))
-						{
-							i.remove();
-						}
-					}
-				}
+				segmentFor(sessionId).removeSession(sessionId);
 			}
 		}
 
@@ -468,26 +549,14 @@ public class DefaultPageStore implements IPageStore
 			SerializedPage result = null;
 			if (size > 0)
 			{
-				synchronized (cache)
+				result = segmentFor(sessionId).get(new PageKey(sessionId, pageId));
+				if (result != null)
 				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
-					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getPageId() == pageId &&
-							entry.getSessionId().equals(sessionId))
-						{
-							i.remove();
-							result = entry;
-							break;
-						}
-					}
-
-					if (result != null)
-					{
-						// move to top
-						storePage(result);
-					}
+					hits.incrementAndGet();
+				}
+				else
+				{
+					misses.incrementAndGet();
 				}
 			}
 			return result;
@@ -496,35 +565,263 @@ public class DefaultPageStore implements IPageStore
 		/**
 		 * Store the serialized page in cache
 		 * 
-		 * @param sessionId
 		 * @param page
 		 */
 		void storePage(SerializedPage page)
 		{
-			SoftReference<SerializedPage> ref = new SoftReference<SerializedPage>(page);
-
 			if (size > 0)
 			{
-				synchronized (cache)
+				PageKey key = new PageKey(page.getSessionId(), page.getPageId());
+				segmentFor(page.getSessionId()).put(key, page);
+
+				// the segments share the size, evict across them
+				while (totalEntries.get() > size)
 				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
+					if (evictLeastRecentlyUsed() == false)
 					{
-						SoftReference<SerializedPage> r = i.next();
-						SerializedPage entry = r.get();
-						if (entry != null && entry.equals(page))
-						{
-							i.remove();
-							break;
-						}
+						break;
 					}
+				}
+			}
+		}
 
-					cache.add(ref);
-					if (cache.size() > size)
+		/**
+		 * Evicts the least recently used entry of all segments.
+		 * 
+		 * @return <code>false</code> if there was nothing to evict
+		 */
+		private boolean evictLeastRecentlyUsed()
+		{
+			Segment victim = segments[0];
+			for (Segment segment : segments)
+			{
+				if (segment.eldestAccess < victim.eldestAccess)
+				{
+					victim = segment;
+				}
+			}
+			return victim.evictEldest();
+		}
+
+		/**
+		 * @return the number of entries currently held in the cache. Entries whose data has been
+		 *         reclaimed by the garbage collector but that are not yet purged are included.
+		 */
+		int getCount()
+		{
+			return totalEntries.get();
+		}
+
+		/**
+		 * @return the number of lookups that found a page in the cache
+		 */
+		long getHits()
+		{
+			return hits.get();
+		}
+
+		/**
+		 * @return the number of lookups that didn't find a page in the cache
+		 */
+		long getMisses()
+		{
+			return misses.get();
+		}
+
+		/**
+		 * @return the number of pages removed from the cache because it was full or because their
+		 *         data has been reclaimed by the garbage collector
+		 */
+		long getEvictions()
+		{
+			return evictions.get();
+		}
+
+		/**
+		 * A part of the cache that holds the pages of a subset of the sessions.
+		 */
+		private final class Segment
+		{
+			/**
+			 * The access time of the least recently used page, readable without the lock
+			 */
+			private volatile long eldestAccess = Long.MAX_VALUE;
+
+			/**
+			 * The cached pages in least recently used order
+			 */
+			private final LinkedHashMap<PageKey, CachedPage> pages;
+
+			/**
+			 * The keys of the cached pages per session
+			 */
+			private final Map<String, Set<PageKey>> sessions;
+
+			private Segment()
+			{
+				pages = new LinkedHashMap<PageKey, CachedPage>(16, 0.75f, true);
+				sessions = new HashMap<String, Set<PageKey>>();
+			}
+
+			private synchronized SerializedPage get(final PageKey key)
+			{
+				CachedPage ref = pages.get(key);
+				if (ref == null)
+				{
+					return null;
+				}
+
+				SerializedPage entry = ref.get();
+				if (entry == null)
+				{
+					// reclaimed by the garbage collector
+					removeEntry(key);
+					evictions.incrementAndGet();
+				}
+				else
+				{
+					ref.access = clock.incrementAndGet();
+					updateEldestAccess();
+				}
+				return entry;
+			}
+
+			private synchronized void put(final PageKey key, final SerializedPage page)
+			{
+				// remove first so that re-stored pages are moved at the top
+				if (pages.remove(key) == null)
+				{
+					Set<PageKey> keys = sessions.get(key.sessionId);
+					if (keys == null)
 					{
-						cache.remove(0);
+						keys = new HashSet<PageKey>();
+						sessions.put(key.sessionId, keys);
 					}
+					keys.add(key);
+					totalEntries.incrementAndGet();
+				}
+				pages.put(key, new CachedPage(page, clock.incrementAndGet()));
+				updateEldestAccess();
+			}
+
+			private synchronized boolean evictEldest()
+			{
+				Iterator<PageKey> eldest = pages.keySet().iterator();
+				if (eldest.hasNext() == false)
+				{
+					return false;
 				}
+				PageKey evicted = eldest.next();
+				eldest.remove();
+				unindex(evicted);
+				totalEntries.decrementAndGet();
+				evictions.incrementAndGet();
+				updateEldestAccess();
+				return true;
+			}
+
+			private synchronized SerializedPage remove(final PageKey key)
+			{
+				CachedPage ref = removeEntry(key);
+				return ref != null ? ref.get() : null;
 			}
+
+			private synchronized void removeSession(final String sessionId)
+			{
+				Set<PageKey> keys = sessions.remove(sessionId);
+				if (keys != null)
+				{
+					for (PageKey key : keys)
+					{
+						pages.remove(key);
+					}
+					totalEntries.addAndGet(-keys.size());
+					updateEldestAccess();
+				}
+			}
+
+			private CachedPage removeEntry(final PageKey key)
+			{
+				CachedPage ref = pages.remove(key);
+				if (ref != null)
+				{
+					unindex(key);
+					totalEntries.decrementAndGet();
+					updateEldestAccess();
+				}
+				return ref;
+			}
+
+			private void updateEldestAccess()
+			{
+				Iterator<CachedPage> eldest = pages.values().iterator();
+				eldestAccess = eldest.hasNext() ? eldest.next().access : Long.MAX_VALUE;
+			}
+
+			private void unindex(final PageKey key)
+			{
+				Set<PageKey> keys = sessions.get(key.sessionId);
+				if (keys != null)
+				{
+					keys.remove(key);
+					if (keys.isEmpty())
+					{
+						sessions.remove(key.sessionId);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * A softly referenced {@link SerializedPage} in {@link SerializedPagesCache} along with the
+	 * time it has been accessed last
+	 */
+	private static final class CachedPage extends SoftReference<SerializedPage>
+	{
+		private long access;
+
+		private CachedPage(final SerializedPage page, final long access)
+		{
+			super(page);
+			this.access = access;
+		}
+	}
+
+	/**
+	 * The key of a {@link SerializedPage} in {@link SerializedPagesCache}
+	 */
+	private static final class PageKey
+	{
+		private final String sessionId;
+
+		private final int pageId;
+
+		private PageKey(final String sessionId, final int pageId)
+		{
+			this.sessionId = sessionId;
+			this.pageId = pageId;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if ((obj instanceof PageKey) == false)
+			{
+				return false;
+			}
+			PageKey rhs = (PageKey)obj;
+			return pageId == rhs.pageId && sessionId.equals(rhs.sessionId);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * sessionId.hashCode() + pageId;
 		}
 	}
 }
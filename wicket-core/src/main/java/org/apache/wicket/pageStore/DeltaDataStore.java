@@ -0,0 +1,699 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Facade for {@link IDataStore} that stores a page as a binary delta against a snapshot of an
+ * earlier page of the same session.
+ * <p>
+ * A page re-stored after an Ajax request, or a new version of a page, usually differs in a few
+ * bytes only from the data stored before. Instead of passing the full data to the wrapped store
+ * again, the pages of a session are stored as {@link BinaryDelta}s against a snapshot (the base).
+ * The bases are stored in the wrapped store too, with negative ids counting up from a random start,
+ * so they are counted in the size limit of the session and removed together with it. A page is
+ * stored as a new base once its delta grows beyond <code>rebaseRatio</code> times the size of the
+ * page. Bases and deltas carry a random number of the session's lineage, so a page whose base was
+ * overwritten after a restart of the application is expired instead of restored wrongly.
+ * <p>
+ * A wrapped store with a size limit per session, like {@link DiskDataStore}, drops the oldest data
+ * of a session first, which would be the base all newer pages depend on. If the limit is passed
+ * to this facade a base is stored again as the newest data of the session once half of the limit
+ * has been stored after it, as long as a page which is still within the limit is stored against
+ * it. Pages stored before the last limit worth of data are considered dropped by the wrapped store
+ * and forgotten, and so are pages the wrapped store does not return anymore.
+ * <p>
+ * Data stored by the wrapped store without this facade is returned as is, so it is possible to
+ * turn this facade on for an existing store. Deltas work best for uncompressed data because the
+ * compressed form of two similar pages has little in common.
+ */
+public class DeltaDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(DeltaDataStore.class);
+
+	/**
+	 * The default ratio between the size of the delta and the size of the page above which a new
+	 * base is stored
+	 */
+	public static final float DEFAULT_REBASE_RATIO = 0.3f;
+
+	/**
+	 * Marks the data of a page stored as delta. Followed by the id of the base and the delta.
+	 */
+	private static final byte DELTA_RECORD = (byte)0xDE;
+
+	/**
+	 * Marks the data of a base. Followed by the number of the lineage and the data.
+	 */
+	private static final byte BASE_RECORD = (byte)0xBA;
+
+	private static final int RECORD_HEADER_LENGTH = 9;
+
+	private static final int BASE_HEADER_LENGTH = 5;
+
+	/**
+	 * The lowest id used for the bases of a session. A session starts at a random offset above, so
+	 * that it rarely reuses the ids of the bases stored before a restart of the application.
+	 */
+	private static final int FIRST_BASE_ID = Integer.MIN_VALUE;
+
+	private static final Random RANDOM = new Random();
+
+	private final IDataStore dataStore;
+
+	private final float rebaseRatio;
+
+	/**
+	 * The size limit of a session in the wrapped store, 0 if there is none
+	 */
+	private final long maxSizePerSession;
+
+	/**
+	 * The number of bytes stored for a session after a base after which the base is stored again,
+	 * 0 if the bases are never stored again
+	 */
+	private final long refreshBytes;
+
+	private final ConcurrentMap<String, SessionLineage> lineages = new ConcurrentHashMap<String, SessionLineage>();
+
+	private final AtomicLong baseCount = new AtomicLong();
+
+	private final AtomicLong deltaCount = new AtomicLong();
+
+	private final AtomicLong storedBytes = new AtomicLong();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore}
+	 */
+	public DeltaDataStore(final IDataStore dataStore)
+	{
+		this(dataStore, DEFAULT_REBASE_RATIO);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore}
+	 * @param rebaseRatio
+	 *            the ratio between the size of the delta and the size of the page above which the
+	 *            page is stored as new base
+	 */
+	public DeltaDataStore(final IDataStore dataStore, final float rebaseRatio)
+	{
+		this(dataStore, rebaseRatio, null);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore}
+	 * @param rebaseRatio
+	 *            the ratio between the size of the delta and the size of the page above which the
+	 *            page is stored as new base
+	 * @param maxSizePerSession
+	 *            the size limit of a session in the wrapped store, may be {@code null} if there is
+	 *            none. The bases are stored again before the wrapped store drops them.
+	 */
+	public DeltaDataStore(final IDataStore dataStore, final float rebaseRatio,
+		final Bytes maxSizePerSession)
+	{
+		this.dataStore = Args.notNull(dataStore, "dataStore");
+		if (rebaseRatio <= 0 || rebaseRatio > 1)
+		{
+			throw new IllegalArgumentException("Argument 'rebaseRatio' must be in (0, 1]: " +
+				rebaseRatio);
+		}
+		this.rebaseRatio = rebaseRatio;
+		this.maxSizePerSession = maxSizePerSession != null ? maxSizePerSession.bytes() : 0;
+		refreshBytes = this.maxSizePerSession / 2;
+	}
+
+	public byte[] getData(final String sessionId, final int id)
+	{
+		SessionLineage lineage = lineages.get(sessionId);
+		byte[] record = dataStore.getData(sessionId, id);
+		if (record == null && lineage != null)
+		{
+			// dropped by the wrapped store
+			synchronized (lineage)
+			{
+				if (lineage.setBase(id, null))
+				{
+					removeUnusedBases(sessionId, lineage);
+				}
+			}
+		}
+		if (record == null || record.length < RECORD_HEADER_LENGTH || record[0] != DELTA_RECORD)
+		{
+			return record;
+		}
+
+		int baseId = readInt(record, 1);
+		int lineageNumber = readInt(record, 5);
+		byte[] base = null;
+		if (lineage != null)
+		{
+			synchronized (lineage)
+			{
+				if (lineage.number == lineageNumber)
+				{
+					base = lineage.getCachedBase(baseId);
+				}
+			}
+		}
+		if (base == null)
+		{
+			base = loadBase(sessionId, baseId, lineageNumber);
+			if (base == null)
+			{
+				log.debug("The base {} of page {} in session {} is not available anymore",
+					new Object[] { baseId, id, sessionId });
+				if (lineage != null)
+				{
+					synchronized (lineage)
+					{
+						if (lineage.number == lineageNumber)
+						{
+							lineage.dropPagesOf(baseId);
+							removeUnusedBases(sessionId, lineage);
+						}
+					}
+				}
+				return null;
+			}
+		}
+		return BinaryDelta.apply(base, record, RECORD_HEADER_LENGTH);
+	}
+
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		SessionLineage lineage = getLineage(sessionId);
+		synchronized (lineage)
+		{
+			Integer baseId = lineage.getBaseIdFor(id);
+			if (baseId != null)
+			{
+				byte[] base = lineage.getCachedBase(baseId);
+				if (base == null)
+				{
+					base = loadBase(sessionId, baseId, lineage.number);
+					if (base == null)
+					{
+						// dropped by the wrapped store, so are the pages stored against it
+						lineage.dropPagesOf(baseId);
+					}
+				}
+				if (base != null)
+				{
+					byte[] delta = BinaryDelta.create(base, data);
+					if (delta.length <= data.length * rebaseRatio)
+					{
+						storeRecord(sessionId, lineage, id, baseId, delta);
+						lineage.setBase(id, baseId);
+						deltaCount.incrementAndGet();
+						reconcile(sessionId, lineage);
+						return;
+					}
+				}
+			}
+
+			// store the page as new base and a delta that copies all of it
+			int newBaseId = lineage.newBaseId();
+			storeBase(sessionId, lineage, newBaseId, data);
+			lineage.cacheBase(newBaseId, data);
+			storeRecord(sessionId, lineage, id, newBaseId, BinaryDelta.create(data, data));
+			lineage.setBase(id, newBaseId);
+			baseCount.incrementAndGet();
+			reconcile(sessionId, lineage);
+		}
+	}
+
+	public void removeData(final String sessionId, final int id)
+	{
+		SessionLineage lineage = lineages.get(sessionId);
+		if (lineage != null)
+		{
+			synchronized (lineage)
+			{
+				dataStore.removeData(sessionId, id);
+				lineage.setBase(id, null);
+				removeUnusedBases(sessionId, lineage);
+			}
+		}
+		else
+		{
+			dataStore.removeData(sessionId, id);
+		}
+	}
+
+	public void removeData(final String sessionId)
+	{
+		lineages.remove(sessionId);
+		dataStore.removeData(sessionId);
+	}
+
+	public void destroy()
+	{
+		lineages.clear();
+		dataStore.destroy();
+	}
+
+	public boolean isReplicated()
+	{
+		return dataStore.isReplicated();
+	}
+
+	/**
+	 * @return the wrapped {@link IDataStore}
+	 */
+	public IDataStore getDataStore()
+	{
+		return dataStore;
+	}
+
+	/**
+	 * @return the number of pages stored as new base
+	 */
+	public long getBaseCount()
+	{
+		return baseCount.get();
+	}
+
+	/**
+	 * @return the number of pages stored as delta against an existing base
+	 */
+	public long getDeltaCount()
+	{
+		return deltaCount.get();
+	}
+
+	/**
+	 * @return the number of bytes passed to the wrapped store
+	 */
+	public long getStoredBytes()
+	{
+		return storedBytes.get();
+	}
+
+	/**
+	 * @param sessionId
+	 * @return the number of pages of the session whose base is known
+	 */
+	public int getTrackedPageCount(final String sessionId)
+	{
+		SessionLineage lineage = lineages.get(sessionId);
+		if (lineage == null)
+		{
+			return 0;
+		}
+		synchronized (lineage)
+		{
+			return lineage.pageBases.size();
+		}
+	}
+
+	private SessionLineage getLineage(final String sessionId)
+	{
+		SessionLineage lineage = lineages.get(sessionId);
+		if (lineage == null)
+		{
+			lineage = new SessionLineage();
+			SessionLineage existing = lineages.putIfAbsent(sessionId, lineage);
+			if (existing != null)
+			{
+				lineage = existing;
+			}
+		}
+		return lineage;
+	}
+
+	private void storeRecord(final String sessionId, final SessionLineage lineage, final int id,
+		final int baseId, final byte[] delta)
+	{
+		byte[] record = new byte[RECORD_HEADER_LENGTH + delta.length];
+		record[0] = DELTA_RECORD;
+		writeInt(record, 1, baseId);
+		writeInt(record, 5, lineage.number);
+		System.arraycopy(delta, 0, record, RECORD_HEADER_LENGTH, delta.length);
+		dataStore.storeData(sessionId, id, record);
+		storedBytes.addAndGet(record.length);
+		lineage.storedBytes += record.length;
+		lineage.pageStoredAt.remove(id);
+		lineage.pageStoredAt.put(id, lineage.storedBytes);
+	}
+
+	private void storeBase(final String sessionId, final SessionLineage lineage,
+		final int baseId, final byte[] data)
+	{
+		byte[] record = new byte[BASE_HEADER_LENGTH + data.length];
+		record[0] = BASE_RECORD;
+		writeInt(record, 1, lineage.number);
+		System.arraycopy(data, 0, record, BASE_HEADER_LENGTH, data.length);
+		dataStore.storeData(sessionId, baseId, record);
+		storedBytes.addAndGet(record.length);
+		lineage.storedBytes += record.length;
+		lineage.baseStoredAt.put(baseId, lineage.storedBytes);
+	}
+
+	/**
+	 * @param sessionId
+	 * @param baseId
+	 * @param lineageNumber
+	 * @return the data of the base or <code>null</code> if it is not available or has been
+	 *         overwritten by another lineage of the session
+	 */
+	private byte[] loadBase(final String sessionId, final int baseId, final int lineageNumber)
+	{
+		byte[] record = dataStore.getData(sessionId, baseId);
+		if (record == null || record.length < BASE_HEADER_LENGTH || record[0] != BASE_RECORD ||
+			readInt(record, 1) != lineageNumber)
+		{
+			return null;
+		}
+		byte[] base = new byte[record.length - BASE_HEADER_LENGTH];
+		System.arraycopy(record, BASE_HEADER_LENGTH, base, 0, base.length);
+		return base;
+	}
+
+	/**
+	 * Forgets the pages the wrapped store has dropped because of the size limit, removes the bases
+	 * no page is stored against anymore and stores the others again before they are dropped too.
+	 * 
+	 * @param sessionId
+	 * @param lineage
+	 */
+	private void reconcile(final String sessionId, final SessionLineage lineage)
+	{
+		if (maxSizePerSession > 0)
+		{
+			lineage.dropPagesBefore(lineage.storedBytes - maxSizePerSession);
+		}
+		removeUnusedBases(sessionId, lineage);
+		refreshBases(sessionId, lineage);
+	}
+
+	/**
+	 * Stores the bases again which would be the oldest data of the session soon
+	 * 
+	 * @param sessionId
+	 * @param lineage
+	 */
+	private void refreshBases(final String sessionId, final SessionLineage lineage)
+	{
+		if (refreshBytes <= 0)
+		{
+			return;
+		}
+		for (Integer baseId : lineage.getBasesToRefresh(refreshBytes))
+		{
+			byte[] base = lineage.getCachedBase(baseId);
+			if (base == null)
+			{
+				base = loadBase(sessionId, baseId, lineage.number);
+			}
+			if (base != null)
+			{
+				log.debug("Storing base {} of session {} again", baseId, sessionId);
+				storeBase(sessionId, lineage, baseId, base);
+			}
+		}
+	}
+
+	private void removeUnusedBases(final String sessionId, final SessionLineage lineage)
+	{
+		for (Integer baseId : lineage.removeUnusedBases())
+		{
+			dataStore.removeData(sessionId, baseId);
+		}
+	}
+
+	private static int readInt(final byte[] data, final int offset)
+	{
+		return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16) |
+			((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+	}
+
+	private static void writeInt(final byte[] data, final int offset, final int value)
+	{
+		data[offset] = (byte)(value >>> 24);
+		data[offset + 1] = (byte)(value >>> 16);
+		data[offset + 2] = (byte)(value >>> 8);
+		data[offset + 3] = (byte)value;
+	}
+
+	/**
+	 * Keeps track of the bases of a session and which page is stored against which base. Guarded
+	 * by its own monitor.
+	 */
+	private class SessionLineage
+	{
+		/**
+		 * page id -> base id
+		 */
+		private final Map<Integer, Integer> pageBases = new HashMap<Integer, Integer>();
+
+		/**
+		 * page id -> the number of bytes stored for the session when the page was stored last,
+		 * the oldest first
+		 */
+		private final Map<Integer, Long> pageStoredAt = new LinkedHashMap<Integer, Long>();
+
+		/**
+		 * base id -> the number of pages stored against it
+		 */
+		private final Map<Integer, Integer> references = new HashMap<Integer, Integer>();
+
+		/**
+		 * The data of the recent bases. Soft references because they can always be read from the
+		 * wrapped store.
+		 */
+		private final Map<Integer, SoftReference<byte[]>> cachedBases = new HashMap<Integer, SoftReference<byte[]>>();
+
+		/**
+		 * base id -> the number of bytes stored for the session when the base was stored last
+		 */
+		private final Map<Integer, Long> baseStoredAt = new HashMap<Integer, Long>();
+
+		/**
+		 * The number of bytes stored for the session so far
+		 */
+		private long storedBytes = 0;
+
+		/**
+		 * The base new pages are stored against
+		 */
+		private Integer latestBaseId;
+
+		/**
+		 * Tells the bases and deltas of this lineage apart from the ones stored by another lineage
+		 * of the same session before a restart
+		 */
+		private final int number = RANDOM.nextInt();
+
+		/**
+		 * The next id to use for a base
+		 */
+		private int nextBaseId = FIRST_BASE_ID + (RANDOM.nextInt() >>> 2);
+
+		private Integer getBaseIdFor(final int pageId)
+		{
+			Integer baseId = pageBases.get(pageId);
+			return baseId != null ? baseId : latestBaseId;
+		}
+
+		/**
+		 * @param pageId
+		 * @param baseId
+		 *            the base the page is stored against, <code>null</code> if the page is removed
+		 * @return whether the page was stored against a base before
+		 */
+		private boolean setBase(final int pageId, final Integer baseId)
+		{
+			Integer previous;
+			if (baseId != null)
+			{
+				previous = pageBases.put(pageId, baseId);
+			}
+			else
+			{
+				previous = pageBases.remove(pageId);
+				pageStoredAt.remove(pageId);
+			}
+			if (previous != null)
+			{
+				references.put(previous, references.get(previous) - 1);
+			}
+			if (baseId != null)
+			{
+				Integer count = references.get(baseId);
+				references.put(baseId, count != null ? count + 1 : 1);
+			}
+			return previous != null;
+		}
+
+		/**
+		 * Forgets the pages stored before the given position
+		 * 
+		 * @param position
+		 */
+		private void dropPagesBefore(final long position)
+		{
+			Iterator<Map.Entry<Integer, Long>> iterator = pageStoredAt.entrySet().iterator();
+			while (iterator.hasNext())
+			{
+				Map.Entry<Integer, Long> entry = iterator.next();
+				if (entry.getValue() > position)
+				{
+					break;
+				}
+				iterator.remove();
+				Integer baseId = pageBases.remove(entry.getKey());
+				if (baseId != null)
+				{
+					references.put(baseId, references.get(baseId) - 1);
+				}
+			}
+		}
+
+		/**
+		 * Forgets the pages stored against the given base
+		 * 
+		 * @param baseId
+		 */
+		private void dropPagesOf(final int baseId)
+		{
+			Iterator<Map.Entry<Integer, Integer>> iterator = pageBases.entrySet().iterator();
+			while (iterator.hasNext())
+			{
+				Map.Entry<Integer, Integer> entry = iterator.next();
+				if (entry.getValue() == baseId)
+				{
+					iterator.remove();
+					pageStoredAt.remove(entry.getKey());
+				}
+			}
+			if (references.containsKey(baseId))
+			{
+				references.put(baseId, 0);
+			}
+			if (Integer.valueOf(baseId).equals(latestBaseId))
+			{
+				latestBaseId = null;
+			}
+		}
+
+		/**
+		 * Allocates the id of a new base. The ids of a lineage start at a random offset, a base of
+		 * an earlier lineage with the same id is detected by its number.
+		 */
+		private int newBaseId()
+		{
+			int id = nextBaseId++;
+			latestBaseId = id;
+			references.put(id, 0);
+			return id;
+		}
+
+		private void cacheBase(final int baseId, final byte[] data)
+		{
+			cachedBases.put(baseId, new SoftReference<byte[]>(data));
+		}
+
+		private byte[] getCachedBase(final int baseId)
+		{
+			SoftReference<byte[]> reference = cachedBases.get(baseId);
+			return reference != null ? reference.get() : null;
+		}
+
+		/**
+		 * @param refreshBytes
+		 * @return the ids of the bases still in use after which at least <code>refreshBytes</code>
+		 *         have been stored
+		 */
+		private List<Integer> getBasesToRefresh(final long refreshBytes)
+		{
+			List<Integer> result = null;
+			for (Map.Entry<Integer, Long> entry : baseStoredAt.entrySet())
+			{
+				Integer baseId = entry.getKey();
+				Integer count = references.get(baseId);
+				boolean used = (count != null && count > 0) || baseId.equals(latestBaseId);
+				if (used && storedBytes - entry.getValue() >= refreshBytes)
+				{
+					if (result == null)
+					{
+						result = new ArrayList<Integer>();
+					}
+					result.add(entry.getKey());
+				}
+			}
+			return result != null ? result : Collections.<Integer> emptyList();
+		}
+
+		/**
+		 * @return the ids of the bases no page is stored against anymore
+		 */
+		private List<Integer> removeUnusedBases()
+		{
+			List<Integer> unused = null;
+			for (Map.Entry<Integer, Integer> entry : references.entrySet())
+			{
+				if (entry.getValue() == 0 && !entry.getKey().equals(latestBaseId))
+				{
+					if (unused == null)
+					{
+						unused = new ArrayList<Integer>();
+					}
+					unused.add(entry.getKey());
+				}
+			}
+			if (unused == null)
+			{
+				return Collections.emptyList();
+			}
+			for (Integer baseId : unused)
+			{
+				references.remove(baseId);
+				cachedBases.remove(baseId);
+				baseStoredAt.remove(baseId);
+			}
+			return unused;
+		}
+	}
+}
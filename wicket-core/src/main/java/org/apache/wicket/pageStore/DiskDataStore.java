@@ -47,7 +47,7 @@ import org.slf4j.LoggerFactory;
 /**
  * A data store implementation which stores the data on disk (in a file system)
  */
-public class DiskDataStore implements IDataStore
+public class DiskDataStore implements IBatchDataStore
 {
 	private static final Logger log = LoggerFactory.getLogger(DiskDataStore.class);
 
@@ -171,6 +171,19 @@ public class DiskDataStore implements IDataStore
 		}
 	}
 
+	/**
+	 * @see org.apache.wicket.pageStore.IBatchDataStore#storeData(java.lang.String, java.util.Map)
+	 */
+	public void storeData(final String sessionId, final Map<Integer, byte[]> pages)
+	{
+		SessionEntry sessionEntry = getSessionEntry(sessionId, true);
+		if (sessionEntry != null)
+		{
+			log.debug("Storing data for {} pages in session with id '{}'", pages.size(), sessionId);
+			sessionEntry.savePages(pages);
+		}
+	}
+
 	/**
 	 * 
 	 * @param sessionId
@@ -336,6 +349,47 @@ public class DiskDataStore implements IDataStore
 			}
 		}
 
+		/**
+		 * Saves several serialized pages to appropriate file opening it only once.
+		 * 
+		 * @param pages
+		 *            page id -> page data
+		 */
+		public synchronized void savePages(Map<Integer, byte[]> pages)
+		{
+			if (unbound)
+			{
+				return;
+			}
+
+			FileChannel channel = getFileChannel(true);
+			try
+			{
+				for (Entry<Integer, byte[]> page : pages.entrySet())
+				{
+					byte[] data = page.getValue();
+					// only save page that has some data
+					if (data != null)
+					{
+						// allocate window for page
+						PageWindow window = getManager().createPageWindow(page.getKey(),
+							data.length);
+
+						// write the content
+						channel.write(ByteBuffer.wrap(data), window.getFilePartOffset());
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				log.error("Error writing to a channel " + channel, e);
+			}
+			finally
+			{
+				IOUtils.closeQuietly(channel);
+			}
+		}
+
 		/**
 		 * Removes the page from pagemap file.
 		 * 
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.Map;
+
+/**
+ * An {@link IDataStore} that can store several pages of a session at once more efficiently than
+ * with one {@link #storeData(String, int, byte[])} call per page.
+ * 
+ * @see AsynchronousDataStore
+ */
+public interface IBatchDataStore extends IDataStore
+{
+	/**
+	 * Store the data of several pages of the same session
+	 * 
+	 * @param sessionId
+	 *            Session ID
+	 * @param pages
+	 *            Page ID -> Page data, in the order the pages should be stored
+	 */
+	void storeData(String sessionId, Map<Integer, byte[]> pages);
+}
@@ -0,0 +1,1079 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A data store implementation which stores the data of all sessions in a few preallocated,
+ * memory-mapped segment files.
+ * <p>
+ * Unlike {@link DiskDataStore} which keeps one file per session and opens a new
+ * {@link FileChannel} for each read and write, this data store maps its segment files once and
+ * keeps an in-memory index from (sessionId, pageId) to (segment, offset, length). Pages are
+ * appended to the active segment. The space of removed and replaced pages is reclaimed by a
+ * background thread which moves the live pages out of mostly empty segments and then reuses them.
+ * When all segments are full, the pages in the least recently activated segment are evicted to
+ * make room, just like {@link DiskDataStore} drops the oldest pages of a session.
+ * <p>
+ * Unbinding a session only drops its index, no file has to be deleted. The pages do not survive a
+ * restart of the application.
+ */
+public class MappedDiskDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(MappedDiskDataStore.class);
+
+	/**
+	 * The default size of a single segment file
+	 */
+	public static final Bytes DEFAULT_SEGMENT_SIZE = Bytes.megabytes(64);
+
+	/**
+	 * The default maximum number of segment files
+	 */
+	public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+	/**
+	 * The default interval between two runs of the compaction
+	 */
+	public static final Duration DEFAULT_COMPACTION_INTERVAL = Duration.seconds(10);
+
+	/**
+	 * A sealed segment is compacted when less than this part of its used space is still live
+	 */
+	private static final double COMPACTION_THRESHOLD = 0.5;
+
+	private final String applicationName;
+
+	private final File fileStoreFolder;
+
+	private final long maxSizePerSession;
+
+	private final int segmentSize;
+
+	private final int maxSegments;
+
+	private final ConcurrentMap<String, SessionIndex> sessionIndexMap;
+
+	/**
+	 * All segments ever created. Guarded by {@link #allocationLock}
+	 */
+	private final List<Segment> segments;
+
+	/**
+	 * Segments that are free to become the active segment. Guarded by {@link #allocationLock}
+	 */
+	private final LinkedList<Segment> freeSegments;
+
+	/**
+	 * The segment where new pages are appended to. Guarded by {@link #allocationLock}
+	 */
+	private Segment activeSegment;
+
+	/**
+	 * Counts the activations of segments. Guarded by {@link #allocationLock}
+	 */
+	private long activations = 0;
+
+	private final Object allocationLock = new Object();
+
+	private final Compactor compactor;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 */
+	public MappedDiskDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession)
+	{
+		this(applicationName, fileStoreFolder, maxSizePerSession, DEFAULT_SEGMENT_SIZE,
+			DEFAULT_MAX_SEGMENTS, DEFAULT_COMPACTION_INTERVAL);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 *            the maximum size of the pages of a single session. The oldest pages of the
+	 *            session are removed once it is exceeded
+	 * @param segmentSize
+	 *            the size of a single segment file. Must be less than 2GB
+	 * @param maxSegments
+	 *            the maximum number of segment files
+	 * @param compactionInterval
+	 *            the interval between two runs of the background compaction
+	 */
+	public MappedDiskDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final Bytes segmentSize, final int maxSegments,
+		final Duration compactionInterval)
+	{
+		Args.notNull(maxSizePerSession, "maxSizePerSession");
+		Args.notNull(segmentSize, "segmentSize");
+		Args.withinRange(1L, (long)Integer.MAX_VALUE, segmentSize.bytes(), "segmentSize");
+		Args.withinRange(1, Integer.MAX_VALUE, maxSegments, "maxSegments");
+		Args.notNull(compactionInterval, "compactionInterval");
+
+		this.applicationName = applicationName;
+		this.fileStoreFolder = fileStoreFolder;
+		this.maxSizePerSession = maxSizePerSession.bytes();
+		this.segmentSize = (int)segmentSize.bytes();
+		this.maxSegments = maxSegments;
+		sessionIndexMap = new ConcurrentHashMap<String, SessionIndex>();
+		segments = new ArrayList<Segment>();
+		freeSegments = new LinkedList<Segment>();
+
+		try
+		{
+			// segments of a previous run are not reusable because the index is not persisted
+			removeStoreFolder();
+			getStoreFolder().mkdirs();
+		}
+		catch (SecurityException e)
+		{
+			throw new WicketRuntimeException(
+				"SecurityException occurred while creating MappedDiskDataStore. Consider using a non-disk based IDataStore implementation. "
+					+ "See org.apache.wicket.Application.setPageManagerProvider(IPageManagerProvider)",
+				e);
+		}
+
+		compactor = new Compactor(compactionInterval);
+		Thread compactorThread = new Thread(compactor, "Wicket-MappedDiskDataStore-Compactor");
+		compactorThread.setDaemon(true);
+		compactorThread.start();
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#destroy()
+	 */
+	public void destroy()
+	{
+		log.debug("Destroying...");
+		compactor.stop();
+		sessionIndexMap.clear();
+		synchronized (allocationLock)
+		{
+			for (Segment segment : segments)
+			{
+				segment.close();
+			}
+			segments.clear();
+			freeSegments.clear();
+			activeSegment = null;
+		}
+		removeStoreFolder();
+		log.debug("Destroyed.");
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#getData(java.lang.String, int)
+	 */
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] pageData = null;
+		SessionIndex sessionIndex = sessionIndexMap.get(sessionId);
+		if (sessionIndex != null)
+		{
+			// the location may become stale if the segment is compacted meanwhile. The compactor
+			// updates the index before it reuses the segment so a second lookup finds the page
+			for (int attempt = 0; attempt < 2 && pageData == null; attempt++)
+			{
+				Location location = sessionIndex.get(id);
+				if (location == null)
+				{
+					break;
+				}
+				pageData = location.segment.read(location);
+			}
+		}
+
+		log.debug("Returning data{} for page with id '{}' in session with id '{}'", new Object[] {
+				pageData != null ? "" : "(null)", id, sessionId });
+		return pageData;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#isReplicated()
+	 */
+	public boolean isReplicated()
+	{
+		return false;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String, int)
+	 */
+	public void removeData(final String sessionId, final int id)
+	{
+		SessionIndex sessionIndex = sessionIndexMap.get(sessionId);
+		if (sessionIndex != null)
+		{
+			log.debug("Removing data for page with id '{}' in session with id '{}'", new Object[] {
+					id, sessionId });
+			sessionIndex.remove(id);
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String)
+	 */
+	public void removeData(final String sessionId)
+	{
+		SessionIndex sessionIndex = sessionIndexMap.remove(sessionId);
+		if (sessionIndex != null)
+		{
+			log.debug("Removing data for pages in session with id '{}'", sessionId);
+			sessionIndex.unbind();
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#storeData(java.lang.String, int, byte[])
+	 */
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		// only save page that has some data
+		if (data == null)
+		{
+			return;
+		}
+
+		Location location = allocate(data.length);
+		for (int attempt = 0; location == null && data.length <= segmentSize &&
+			attempt < maxSegments && evictOldestSegment(); attempt++)
+		{
+			location = allocate(data.length);
+		}
+		if (location == null)
+		{
+			log.warn(
+				"There is no room for page with id '{}' in session with id '{}'. Consider a bigger segment size or more segments.",
+				id, sessionId);
+			return;
+		}
+		try
+		{
+			location.segment.write(location, data);
+
+			SessionIndex sessionIndex = getSessionIndex(sessionId);
+			log.debug("Storing data for page with id '{}' in session with id '{}'", new Object[] {
+					id, sessionId });
+			sessionIndex.put(id, location);
+		}
+		finally
+		{
+			// the segment may be compacted only once the location is published in the index
+			unpin(location.segment);
+		}
+	}
+
+	/**
+	 * @return the number of segment files created so far
+	 */
+	public int getSegmentCount()
+	{
+		synchronized (allocationLock)
+		{
+			return segments.size();
+		}
+	}
+
+	/**
+	 * @return the number of bytes occupied by pages which are still in use
+	 */
+	public long getLiveBytes()
+	{
+		long result = 0;
+		synchronized (allocationLock)
+		{
+			for (Segment segment : segments)
+			{
+				result += segment.liveBytes.get();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compacts all sealed segments whose live data dropped below the threshold. Called periodically
+	 * by the background thread.
+	 */
+	public void compact()
+	{
+		List<Segment> candidates = new ArrayList<Segment>();
+		synchronized (allocationLock)
+		{
+			for (Segment segment : segments)
+			{
+				if (isReclaimable(segment) && segment.isCompactable())
+				{
+					segment.reclaiming = true;
+					candidates.add(segment);
+				}
+			}
+		}
+
+		for (Segment segment : candidates)
+		{
+			compact(segment);
+		}
+	}
+
+	/**
+	 * Moves the live pages of the given segment to the active segment and makes it free. The
+	 * segment stays in use if not all of its pages can be moved.
+	 * 
+	 * @param segment
+	 */
+	private void compact(final Segment segment)
+	{
+		log.debug("Compacting segment {}", segment.file);
+
+		for (SessionIndex sessionIndex : sessionIndexMap.values())
+		{
+			if (sessionIndex.relocate(segment) == false)
+			{
+				log.warn(
+					"There is no room to move the pages out of {}. Its compaction is aborted. Consider a bigger segment size or more segments.",
+					segment.file);
+				synchronized (allocationLock)
+				{
+					segment.reclaiming = false;
+				}
+				return;
+			}
+		}
+
+		free(segment);
+	}
+
+	/**
+	 * Drops the pages stored in the least recently activated segment and makes it free. Called when
+	 * there is no room for a new page.
+	 * 
+	 * @return <code>false</code> if there is no segment which can be evicted
+	 */
+	private boolean evictOldestSegment()
+	{
+		Segment victim = null;
+		synchronized (allocationLock)
+		{
+			for (Segment segment : segments)
+			{
+				if (isReclaimable(segment) &&
+					(victim == null || segment.activation < victim.activation))
+				{
+					victim = segment;
+				}
+			}
+			if (victim == null)
+			{
+				return false;
+			}
+			victim.reclaiming = true;
+		}
+
+		log.warn(
+			"There is no room for new pages. The pages in {} are evicted. Consider a bigger segment size or more segments.",
+			victim.file);
+		for (SessionIndex sessionIndex : sessionIndexMap.values())
+		{
+			sessionIndex.drop(victim);
+		}
+
+		free(victim);
+		return true;
+	}
+
+	/**
+	 * Guarded by {@link #allocationLock}
+	 * 
+	 * @param segment
+	 * @return whether the segment may be compacted or evicted
+	 */
+	private boolean isReclaimable(final Segment segment)
+	{
+		return segment != activeSegment && segment.reclaiming == false &&
+			freeSegments.contains(segment) == false && segment.isPinned() == false;
+	}
+
+	/**
+	 * Makes a segment which is no longer referenced by any index free for reuse
+	 * 
+	 * @param segment
+	 */
+	private void free(final Segment segment)
+	{
+		segment.reset();
+		synchronized (allocationLock)
+		{
+			segment.reclaiming = false;
+			if (segments.contains(segment))
+			{
+				freeSegments.add(segment);
+			}
+		}
+	}
+
+	/**
+	 * Reserves room for the given number of bytes in the active segment. The segment of the
+	 * returned location is pinned and must be unpinned once the location is stored in the index.
+	 * 
+	 * @param length
+	 * @return the reserved location or <code>null</code> if there is no room
+	 */
+	private Location allocate(final int length)
+	{
+		if (length > segmentSize)
+		{
+			return null;
+		}
+
+		synchronized (allocationLock)
+		{
+			if (activeSegment != null)
+			{
+				Location location = activeSegment.allocate(length);
+				if (location != null)
+				{
+					return location;
+				}
+			}
+
+			Segment next = freeSegments.poll();
+			if (next == null && segments.size() < maxSegments)
+			{
+				next = newSegment(segments.size());
+				if (next != null)
+				{
+					segments.add(next);
+				}
+			}
+
+			if (next == null)
+			{
+				return null;
+			}
+			activeSegment = next;
+			activeSegment.activation = activations++;
+			return activeSegment.allocate(length);
+		}
+	}
+
+	/**
+	 * Allows the compaction of the segment again once an allocated location is stored in the index.
+	 * 
+	 * @param segment
+	 */
+	private void unpin(final Segment segment)
+	{
+		synchronized (allocationLock)
+		{
+			segment.pins--;
+		}
+	}
+
+	/**
+	 * Creates a new preallocated and mapped segment file.
+	 * 
+	 * @param index
+	 * @return the new segment or <code>null</code> if the file cannot be created
+	 */
+	private Segment newSegment(final int index)
+	{
+		File file = new File(getStoreFolder(), "segment-" + index);
+		RandomAccessFile randomAccessFile = null;
+		try
+		{
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			randomAccessFile.setLength(segmentSize);
+			MappedByteBuffer buffer = randomAccessFile.getChannel().map(
+				FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			return new Segment(file, buffer);
+		}
+		catch (IOException e)
+		{
+			log.error("Couldn't create segment file " + file, e);
+			return null;
+		}
+		finally
+		{
+			// the mapping stays valid after the channel is closed
+			if (randomAccessFile != null)
+			{
+				try
+				{
+					randomAccessFile.close();
+				}
+				catch (IOException e)
+				{
+					log.warn("Couldn't close segment file " + file, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param sessionId
+	 * @return the index for the session with <code>sessionId</code>
+	 */
+	private SessionIndex getSessionIndex(final String sessionId)
+	{
+		SessionIndex sessionIndex = sessionIndexMap.get(sessionId);
+		if (sessionIndex == null)
+		{
+			sessionIndex = new SessionIndex();
+			SessionIndex existing = sessionIndexMap.putIfAbsent(sessionId, sessionIndex);
+			if (existing != null)
+			{
+				sessionIndex = existing;
+			}
+		}
+		return sessionIndex;
+	}
+
+	/**
+	 * Deletes the segment files and their folder
+	 */
+	private void removeStoreFolder()
+	{
+		File storeFolder = getStoreFolder();
+		File[] files = storeFolder.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				Files.remove(file);
+			}
+		}
+		if (storeFolder.exists())
+		{
+			Files.remove(storeFolder);
+		}
+	}
+
+	/**
+	 * 
+	 * @return folder
+	 */
+	private File getStoreFolder()
+	{
+		return new File(fileStoreFolder, applicationName + "-segmentstore");
+	}
+
+	/**
+	 * The position of a page's data in a segment
+	 */
+	private static final class Location
+	{
+		private final Segment segment;
+
+		/**
+		 * The generation of the segment at the time of the allocation. A location is stale when the
+		 * segment has been reset since then.
+		 */
+		private final long generation;
+
+		private final int offset;
+
+		private final int length;
+
+		private Location(final Segment segment, final long generation, final int offset,
+			final int length)
+		{
+			this.segment = segment;
+			this.generation = generation;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * A preallocated, memory-mapped file where pages are appended to.
+	 */
+	private static final class Segment
+	{
+		private final File file;
+
+		private final MappedByteBuffer buffer;
+
+		/**
+		 * Readers and writers of allocated locations share the lock, {@link #reset()} needs it
+		 * exclusively
+		 */
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+		/**
+		 * The number of bytes occupied by pages which are still in use
+		 */
+		private final AtomicLong liveBytes = new AtomicLong();
+
+		/**
+		 * Guarded by the allocation lock of the data store
+		 */
+		private int writePosition = 0;
+
+		/**
+		 * The number of allocated locations which are not yet stored in the index. Guarded by the
+		 * allocation lock of the data store
+		 */
+		private int pins = 0;
+
+		/**
+		 * The order in which the segment became the active one the last time. Guarded by the
+		 * allocation lock of the data store
+		 */
+		private long activation = 0;
+
+		/**
+		 * Whether the segment is being compacted or evicted. Guarded by the allocation lock of the
+		 * data store
+		 */
+		private boolean reclaiming = false;
+
+		/**
+		 * Whether the buffer has been unmapped. Guarded by {@link #lock}
+		 */
+		private boolean closed = false;
+
+		private volatile long generation = 0;
+
+		private Segment(final File file, final MappedByteBuffer buffer)
+		{
+			this.file = file;
+			this.buffer = buffer;
+		}
+
+		private Location allocate(final int length)
+		{
+			if (buffer.capacity() - writePosition < length)
+			{
+				return null;
+			}
+			Location location = new Location(this, generation, writePosition, length);
+			writePosition += length;
+			liveBytes.addAndGet(length);
+			pins++;
+			return location;
+		}
+
+		/**
+		 * Guarded by the allocation lock of the data store
+		 * 
+		 * @return whether a location allocated in this segment is not yet stored in the index
+		 */
+		private boolean isPinned()
+		{
+			return pins > 0;
+		}
+
+		private void write(final Location location, final byte[] data)
+		{
+			lock.readLock().lock();
+			try
+			{
+				if (closed == false && location.generation == generation)
+				{
+					ByteBuffer target = buffer.duplicate();
+					target.position(location.offset);
+					target.put(data, 0, location.length);
+				}
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * @param location
+		 * @return the data at the given location or <code>null</code> if the location is stale
+		 */
+		private byte[] read(final Location location)
+		{
+			lock.readLock().lock();
+			try
+			{
+				if (closed || location.generation != generation)
+				{
+					return null;
+				}
+				byte[] data = new byte[location.length];
+				ByteBuffer source = buffer.duplicate();
+				source.position(location.offset);
+				source.get(data);
+				return data;
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+
+		private void release(final Location location)
+		{
+			if (location.generation == generation)
+			{
+				liveBytes.addAndGet(-location.length);
+			}
+		}
+
+		/**
+		 * Releases bytes of locations in the current generation of this segment which are summed
+		 * up by the caller
+		 * 
+		 * @param length
+		 */
+		private void release(final long length)
+		{
+			liveBytes.addAndGet(-length);
+		}
+
+		private boolean isCompactable()
+		{
+			return writePosition > 0 && liveBytes.get() < writePosition * COMPACTION_THRESHOLD;
+		}
+
+		/**
+		 * Makes all locations in this segment stale so that it can be reused
+		 */
+		private void reset()
+		{
+			lock.writeLock().lock();
+			try
+			{
+				generation++;
+				writePosition = 0;
+				liveBytes.set(0);
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+		}
+
+		/**
+		 * Unmaps the buffer so that the file can be deleted right away. The segment must not be
+		 * used afterwards.
+		 */
+		private void close()
+		{
+			lock.writeLock().lock();
+			try
+			{
+				if (closed == false)
+				{
+					closed = true;
+					unmap(buffer);
+				}
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Releases the mapping of the buffer without waiting for the garbage collector. There is no
+	 * public API for this, so it is left to the garbage collector on virtual machines which offer
+	 * neither <code>sun.misc.Unsafe.invokeCleaner()</code> nor <code>DirectBuffer.cleaner()</code>.
+	 * 
+	 * @param buffer
+	 */
+	private static void unmap(final MappedByteBuffer buffer)
+	{
+		try
+		{
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		}
+		catch (Exception e)
+		{
+			// not available before Java 9
+		}
+
+		try
+		{
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null)
+			{
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		}
+		catch (Exception e)
+		{
+			log.debug("Couldn't unmap the segment, it is released by the garbage collector", e);
+		}
+	}
+
+	/**
+	 * The locations of the pages of a single session, the oldest first.
+	 */
+	private final class SessionIndex
+	{
+		private Map<Integer, Location> locations = new LinkedHashMap<Integer, Location>();
+
+		/**
+		 * The number of bytes of the session's pages per segment, so that unbinding does not have to
+		 * visit every page
+		 */
+		private final Map<Segment, Long> segmentBytes = new HashMap<Segment, Long>();
+
+		private long size = 0;
+
+		private boolean unbound = false;
+
+		private synchronized Location get(final int pageId)
+		{
+			return locations.get(pageId);
+		}
+
+		private synchronized void put(final int pageId, final Location location)
+		{
+			if (unbound)
+			{
+				location.segment.release(location);
+				return;
+			}
+
+			// remove first so that the replaced page becomes the newest one
+			Location previous = locations.remove(pageId);
+			if (previous != null)
+			{
+				release(previous);
+			}
+			locations.put(pageId, location);
+			add(location);
+
+			// like PageWindowManager drop the oldest pages when the session grows too big
+			Iterator<Location> oldest = locations.values().iterator();
+			while (maxSizePerSession > 0 && size > maxSizePerSession && locations.size() > 1)
+			{
+				Location evicted = oldest.next();
+				oldest.remove();
+				release(evicted);
+			}
+		}
+
+		private synchronized void remove(final int pageId)
+		{
+			Location location = locations.remove(pageId);
+			if (location != null)
+			{
+				release(location);
+			}
+		}
+
+		private synchronized void unbind()
+		{
+			unbound = true;
+			for (Map.Entry<Segment, Long> entry : segmentBytes.entrySet())
+			{
+				entry.getKey().release(entry.getValue());
+			}
+			segmentBytes.clear();
+			locations = new LinkedHashMap<Integer, Location>();
+			size = 0;
+		}
+
+		/**
+		 * Drops the pages stored in the given segment, which is about to be reset.
+		 * 
+		 * @param segment
+		 */
+		private synchronized void drop(final Segment segment)
+		{
+			if (segmentBytes.containsKey(segment) == false)
+			{
+				return;
+			}
+			Iterator<Location> iterator = locations.values().iterator();
+			while (iterator.hasNext())
+			{
+				Location location = iterator.next();
+				if (location.segment == segment)
+				{
+					iterator.remove();
+					subtract(location);
+				}
+			}
+		}
+
+		/**
+		 * Moves the pages stored in the given segment to the active segment.
+		 * 
+		 * @param segment
+		 * @return <code>false</code> if not all pages could be moved
+		 */
+		private synchronized boolean relocate(final Segment segment)
+		{
+			if (segmentBytes.containsKey(segment) == false)
+			{
+				return true;
+			}
+			for (Map.Entry<Integer, Location> entry : locations.entrySet())
+			{
+				Location location = entry.getValue();
+				if (location.segment != segment)
+				{
+					continue;
+				}
+
+				byte[] data = segment.read(location);
+				if (data == null)
+				{
+					// stale already, nothing to move
+					continue;
+				}
+				Location relocated = allocate(data.length);
+				if (relocated == null)
+				{
+					return false;
+				}
+				try
+				{
+					relocated.segment.write(relocated, data);
+					// replacing the value of an existing key keeps the order
+					entry.setValue(relocated);
+					release(location);
+					add(relocated);
+				}
+				finally
+				{
+					unpin(relocated.segment);
+				}
+			}
+			return true;
+		}
+
+		private void release(final Location location)
+		{
+			subtract(location);
+			location.segment.release(location);
+		}
+
+		private void add(final Location location)
+		{
+			size += location.length;
+			Long bytes = segmentBytes.get(location.segment);
+			segmentBytes.put(location.segment, (bytes != null ? bytes : 0L) + location.length);
+		}
+
+		private void subtract(final Location location)
+		{
+			size -= location.length;
+			long bytes = segmentBytes.get(location.segment) - location.length;
+			if (bytes > 0)
+			{
+				segmentBytes.put(location.segment, bytes);
+			}
+			else
+			{
+				segmentBytes.remove(location.segment);
+			}
+		}
+	}
+
+	/**
+	 * Periodically compacts the segments in a background thread
+	 */
+	private final class Compactor implements Runnable
+	{
+		private final Duration interval;
+
+		private volatile boolean stopped = false;
+
+		private Compactor(final Duration interval)
+		{
+			this.interval = interval;
+		}
+
+		public void run()
+		{
+			while (!stopped)
+			{
+				synchronized (this)
+				{
+					try
+					{
+						wait(interval.getMilliseconds());
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+
+				if (!stopped)
+				{
+					try
+					{
+						compact();
+					}
+					catch (RuntimeException e)
+					{
+						log.error("An error occurred while compacting the segments", e);
+					}
+				}
+			}
+		}
+
+		private synchronized void stop()
+		{
+			stopped = true;
+			notifyAll();
+		}
+	}
+}
@@ -48,6 +48,9 @@ import org.slf4j.LoggerFactory;
  * }
  * <!--@formatter:on-->
  * </pre>
+ * 
+ * To keep the bytes of the pages outside of the heap pass an {@link OffHeapPageStorage} shared by
+ * all sessions of the node. The session holds then only the handles of the pages.
  */
 public class HttpSessionDataStore implements IDataStore
 {
@@ -60,6 +63,8 @@ public class HttpSessionDataStore implements IDataStore
 
 	private final DataStoreEvictionStrategy evictionStrategy;
 
+	private final OffHeapPageStorage offHeapStorage;
+
 	/**
 	 * Construct.
 	 * 
@@ -68,9 +73,24 @@ public class HttpSessionDataStore implements IDataStore
 	 */
 	public HttpSessionDataStore(IPageManagerContext pageManagerContext,
 		DataStoreEvictionStrategy evictionStrategy)
+	{
+		this(pageManagerContext, evictionStrategy, null);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param pageManagerContext
+	 * @param evictionStrategy
+	 * @param offHeapStorage
+	 *            the storage for the bytes of the pages, {@code null} to keep them in the session
+	 */
+	public HttpSessionDataStore(IPageManagerContext pageManagerContext,
+		DataStoreEvictionStrategy evictionStrategy, OffHeapPageStorage offHeapStorage)
 	{
 		this.pageManagerContext = pageManagerContext;
 		this.evictionStrategy = evictionStrategy;
+		this.offHeapStorage = offHeapStorage;
 	}
 
 	/**
@@ -142,9 +162,15 @@ public class HttpSessionDataStore implements IDataStore
 			pageTable = (PageTable)pageManagerContext.getSessionAttribute(PAGE_TABLE_KEY);
 			if (pageTable == null && create)
 			{
-				pageTable = new PageTable();
+				pageTable = offHeapStorage != null ? new OffHeapPageTable(offHeapStorage)
+					: new PageTable();
 				pageManagerContext.setSessionAttribute(PAGE_TABLE_KEY, pageTable);
 			}
+			else if (pageTable instanceof OffHeapPageTable && offHeapStorage != null)
+			{
+				// the table may have been deserialized, e.g. after session passivation
+				((OffHeapPageTable)pageTable).attach(offHeapStorage);
+			}
 		}
 		return pageTable;
 	}
@@ -18,7 +18,6 @@ package org.apache.wicket.pageStore.memory;
 
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Bytes;
-import org.apache.wicket.util.lang.WicketObjects;
 
 /**
  * An eviction strategy that keeps the data store size up to configured bytes
@@ -48,7 +47,7 @@ public class MemorySizeEvictionStrategy implements DataStoreEvictionStrategy
 	public void evict(PageTable pageTable)
 	{
 
-		long storeCurrentSize = WicketObjects.sizeof(pageTable);
+		long storeCurrentSize = pageTable.getSizeInBytes();
 
 		if (storeCurrentSize > maxBytes.bytes())
 		{
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.memory;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps page bytes outside of the Java heap, in direct {@link ByteBuffer} slabs. Shared by all
+ * {@link OffHeapPageTable}s of a node, the total size of the slabs is limited by a memory budget.
+ * <p>
+ * The slabs are divided in blocks of equal size, a page occupies as many blocks as needed. The
+ * blocks of a page are released when it is removed from its table or when the table is garbage
+ * collected, e.g. after the session expired or was passivated.
+ * 
+ * @see HttpSessionDataStore#HttpSessionDataStore(org.apache.wicket.page.IPageManagerContext,
+ *      DataStoreEvictionStrategy, OffHeapPageStorage)
+ */
+public class OffHeapPageStorage
+{
+	private static final Logger log = LoggerFactory.getLogger(OffHeapPageStorage.class);
+
+	/**
+	 * The default size of a block
+	 */
+	public static final Bytes DEFAULT_BLOCK_SIZE = Bytes.kilobytes(4);
+
+	/**
+	 * The default size of a slab
+	 */
+	public static final Bytes DEFAULT_SLAB_SIZE = Bytes.megabytes(1);
+
+	private final int blockSize;
+
+	private final int blocksPerSlab;
+
+	private final int maxSlabs;
+
+	/**
+	 * The allocated slabs, guarded by this
+	 */
+	private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+
+	/**
+	 * Stack of the free block numbers, guarded by this
+	 */
+	private int[] freeBlocks = new int[64];
+
+	private int freeBlockCount = 0;
+
+	private long usedBytes = 0;
+
+	/**
+	 * The handles of the page tables, cleared when a table is garbage collected. Guarded by this.
+	 */
+	private final Set<TableReference> tables = new HashSet<TableReference>();
+
+	private final ReferenceQueue<Object> collectedTables = new ReferenceQueue<Object>();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the memory budget of all slabs
+	 */
+	public OffHeapPageStorage(final Bytes maxSize)
+	{
+		this(maxSize, DEFAULT_SLAB_SIZE, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the memory budget of all slabs
+	 * @param slabSize
+	 *            the size of a slab
+	 * @param blockSize
+	 *            the size of a block, the unit of allocation
+	 */
+	public OffHeapPageStorage(final Bytes maxSize, final Bytes slabSize, final Bytes blockSize)
+	{
+		Args.notNull(maxSize, "maxSize");
+		Args.notNull(slabSize, "slabSize");
+		Args.notNull(blockSize, "blockSize");
+		Args.withinRange(1L, (long)Integer.MAX_VALUE, slabSize.bytes(), "slabSize");
+		Args.withinRange(1L, slabSize.bytes(), blockSize.bytes(), "blockSize");
+
+		this.blockSize = (int)blockSize.bytes();
+		blocksPerSlab = (int)(slabSize.bytes() / blockSize.bytes());
+		maxSlabs = (int)Math.max(1, maxSize.bytes() / (blocksPerSlab * (long)this.blockSize));
+	}
+
+	/**
+	 * Copies the bytes to free blocks.
+	 * 
+	 * @param data
+	 * @return the handle of the stored bytes, {@code null} if the memory budget is exhausted
+	 */
+	synchronized Slot allocate(final byte[] data)
+	{
+		releaseCollectedTables();
+
+		final int count = (data.length + blockSize - 1) / blockSize;
+		while (freeBlockCount < count)
+		{
+			if (slabs.size() == maxSlabs)
+			{
+				return null;
+			}
+			addSlab();
+		}
+
+		final int[] blocks = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			final int block = freeBlocks[--freeBlockCount];
+			blocks[i] = block;
+
+			final int offset = i * blockSize;
+			final ByteBuffer buffer = slab(block);
+			buffer.position(position(block));
+			buffer.put(data, offset, Math.min(blockSize, data.length - offset));
+		}
+		usedBytes += count * (long)blockSize;
+		return new Slot(blocks, data.length);
+	}
+
+	/**
+	 * Reads the bytes of a page.
+	 * 
+	 * @param slot
+	 *            the handle returned by {@link #allocate(byte[])}
+	 * @return the bytes of the page
+	 */
+	synchronized byte[] read(final Slot slot)
+	{
+		final int[] blocks = slot.blocks;
+		final int length = slot.length;
+		final byte[] data = new byte[length];
+		for (int i = 0; i < blocks.length; i++)
+		{
+			final int offset = i * blockSize;
+			final ByteBuffer buffer = slab(blocks[i]);
+			buffer.position(position(blocks[i]));
+			buffer.get(data, offset, Math.min(blockSize, length - offset));
+		}
+		return data;
+	}
+
+	/**
+	 * Releases the stored bytes.
+	 * 
+	 * @param slot
+	 *            the handle returned by {@link #allocate(byte[])}
+	 */
+	synchronized void free(final Slot slot)
+	{
+		pushFreeBlocks(slot.blocks);
+		usedBytes -= slot.blocks.length * (long)blockSize;
+	}
+
+	private void pushFreeBlocks(final int[] blocks)
+	{
+		if (freeBlockCount + blocks.length > freeBlocks.length)
+		{
+			int[] larger = new int[Math.max(freeBlocks.length * 2, freeBlockCount + blocks.length)];
+			System.arraycopy(freeBlocks, 0, larger, 0, freeBlockCount);
+			freeBlocks = larger;
+		}
+		System.arraycopy(blocks, 0, freeBlocks, freeBlockCount, blocks.length);
+		freeBlockCount += blocks.length;
+	}
+
+	/**
+	 * Registers a table, its pages are freed when the table is garbage collected.
+	 * 
+	 * @param table
+	 * @param pages
+	 *            the handles of the pages of the table
+	 */
+	synchronized void register(final Object table, final Map<?, Slot> pages)
+	{
+		releaseCollectedTables();
+		tables.add(new TableReference(table, pages, collectedTables));
+	}
+
+	/**
+	 * @return the bytes used by the pages, including the unused rest of their last blocks
+	 */
+	public synchronized long getUsedBytes()
+	{
+		return usedBytes;
+	}
+
+	/**
+	 * @return the bytes allocated outside of the heap
+	 */
+	public synchronized long getAllocatedBytes()
+	{
+		return slabs.size() * (long)blocksPerSlab * blockSize;
+	}
+
+	/**
+	 * @return the memory budget
+	 */
+	public long getMaxBytes()
+	{
+		return maxSlabs * (long)blocksPerSlab * blockSize;
+	}
+
+	private void addSlab()
+	{
+		final int slab = slabs.size();
+		log.debug("Allocating slab {} of {}", slab + 1, maxSlabs);
+		slabs.add(ByteBuffer.allocateDirect(blocksPerSlab * blockSize));
+
+		// push the blocks in reverse order so they are used from the start of the slab
+		int[] blocks = new int[blocksPerSlab];
+		for (int i = 0; i < blocksPerSlab; i++)
+		{
+			blocks[i] = (slab + 1) * blocksPerSlab - 1 - i;
+		}
+		pushFreeBlocks(blocks);
+	}
+
+	private ByteBuffer slab(final int block)
+	{
+		return slabs.get(block / blocksPerSlab);
+	}
+
+	private int position(final int block)
+	{
+		return (block % blocksPerSlab) * blockSize;
+	}
+
+	private void releaseCollectedTables()
+	{
+		TableReference reference;
+		while ((reference = (TableReference)collectedTables.poll()) != null)
+		{
+			tables.remove(reference);
+			for (Slot slot : reference.pages.values())
+			{
+				free(slot);
+			}
+		}
+	}
+
+	/**
+	 * Keeps the handles of the pages of a table reachable until the table is garbage collected
+	 */
+	private static class TableReference extends WeakReference<Object>
+	{
+		private final Map<?, Slot> pages;
+
+		private TableReference(final Object table, final Map<?, Slot> pages,
+			final ReferenceQueue<Object> queue)
+		{
+			super(table, queue);
+			this.pages = pages;
+		}
+	}
+
+	/**
+	 * The handle of the bytes of a page
+	 */
+	static final class Slot
+	{
+		private final int[] blocks;
+
+		private final int length;
+
+		private Slot(final int[] blocks, final int length)
+		{
+			this.blocks = blocks;
+			this.length = length;
+		}
+
+		/**
+		 * @return the length of the page
+		 */
+		int getLength()
+		{
+			return length;
+		}
+	}
+}
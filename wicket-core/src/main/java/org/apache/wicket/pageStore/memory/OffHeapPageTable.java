@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.memory;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.pageStore.memory.OffHeapPageStorage.Slot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link PageTable} that keeps the bytes of the pages in an {@link OffHeapPageStorage}. The
+ * table itself holds only small handles, so a session keeps little on the heap.
+ * <p>
+ * When the table is serialized, e.g. when the session is passivated or replicated, the bytes of
+ * the pages are written with it. A deserialized table keeps the pages on the heap until it is
+ * {@link #attach(OffHeapPageStorage) attached} to the storage of the node again. Pages are kept on
+ * the heap as well if the memory budget of the storage is exhausted.
+ */
+class OffHeapPageTable extends PageTable
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger log = LoggerFactory.getLogger(OffHeapPageTable.class);
+
+	private transient volatile OffHeapPageStorage storage;
+
+	/**
+	 * page id => handle of the bytes in the storage
+	 */
+	private transient ConcurrentMap<Integer, Slot> slots;
+
+	/**
+	 * page id => page as bytes, for pages which could not be stored in the storage
+	 */
+	private transient ConcurrentMap<Integer, byte[]> heapPages;
+
+	private transient AtomicLong sizeInBytes;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param storage
+	 */
+	OffHeapPageTable(final OffHeapPageStorage storage)
+	{
+		init();
+		attach(storage);
+	}
+
+	private void init()
+	{
+		slots = new ConcurrentHashMap<Integer, Slot>();
+		heapPages = new ConcurrentHashMap<Integer, byte[]>();
+		sizeInBytes = new AtomicLong();
+	}
+
+	/**
+	 * Sets the storage for the pages of this table. Moves the pages kept on the heap to the
+	 * storage if it was not set before.
+	 * 
+	 * @param storage
+	 */
+	void attach(final OffHeapPageStorage storage)
+	{
+		if (this.storage == storage)
+		{
+			return;
+		}
+		synchronized (getLock())
+		{
+			if (this.storage == null)
+			{
+				this.storage = storage;
+				storage.register(this, slots);
+				for (Map.Entry<Integer, byte[]> entry : heapPages.entrySet())
+				{
+					Slot slot = storage.allocate(entry.getValue());
+					if (slot != null)
+					{
+						slots.put(entry.getKey(), slot);
+						heapPages.remove(entry.getKey());
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	void putBytes(final Integer pageId, final byte[] pageAsBytes)
+	{
+		removeBytes(pageId);
+
+		Slot slot = storage != null ? storage.allocate(pageAsBytes) : null;
+		if (slot != null)
+		{
+			slots.put(pageId, slot);
+		}
+		else
+		{
+			if (storage != null)
+			{
+				log.debug("The off-heap page storage is full, keeping page {} on the heap", pageId);
+			}
+			heapPages.put(pageId, pageAsBytes);
+		}
+		sizeInBytes.addAndGet(pageAsBytes.length);
+	}
+
+	@Override
+	byte[] getBytes(final Integer pageId)
+	{
+		Slot slot = slots.get(pageId);
+		if (slot != null)
+		{
+			return storage.read(slot);
+		}
+		return heapPages.get(pageId);
+	}
+
+	@Override
+	byte[] removeBytes(final Integer pageId)
+	{
+		byte[] pageAsBytes;
+		Slot slot = slots.remove(pageId);
+		if (slot != null)
+		{
+			pageAsBytes = storage.read(slot);
+			storage.free(slot);
+		}
+		else
+		{
+			pageAsBytes = heapPages.remove(pageId);
+		}
+		if (pageAsBytes != null)
+		{
+			sizeInBytes.addAndGet(-pageAsBytes.length);
+		}
+		return pageAsBytes;
+	}
+
+	@Override
+	void clearBytes()
+	{
+		for (Slot slot : slots.values())
+		{
+			storage.free(slot);
+		}
+		slots.clear();
+		heapPages.clear();
+		sizeInBytes.set(0);
+	}
+
+	@Override
+	public int size()
+	{
+		return slots.size() + heapPages.size();
+	}
+
+	/**
+	 * @return the size of the stored pages
+	 */
+	@Override
+	long getSizeInBytes()
+	{
+		return sizeInBytes.get();
+	}
+
+	private void writeObject(final ObjectOutputStream out) throws IOException
+	{
+		synchronized (getLock())
+		{
+			out.defaultWriteObject();
+			out.writeInt(size());
+			for (Integer pageId : slots.keySet())
+			{
+				out.writeInt(pageId);
+				out.writeObject(getBytes(pageId));
+			}
+			for (Map.Entry<Integer, byte[]> entry : heapPages.entrySet())
+			{
+				out.writeInt(entry.getKey());
+				out.writeObject(entry.getValue());
+			}
+		}
+	}
+
+	private void readObject(final ObjectInputStream in) throws IOException,
+		ClassNotFoundException
+	{
+		in.defaultReadObject();
+		init();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++)
+		{
+			int pageId = in.readInt();
+			byte[] pageAsBytes = (byte[])in.readObject();
+			heapPages.put(pageId, pageAsBytes);
+			sizeInBytes.addAndGet(pageAsBytes.length);
+		}
+	}
+}
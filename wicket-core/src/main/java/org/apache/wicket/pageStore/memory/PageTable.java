@@ -22,12 +22,15 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.wicket.IClusterable;
+import org.apache.wicket.util.lang.WicketObjects;
 
 /**
  * A structure that holds page id => pageAsBytes.
  * 
  * <p>
  * Additionally it has an index of the least recently used pages
+ * 
+ * @see OffHeapPageTable
  */
 class PageTable implements IClusterable
 {
@@ -62,7 +65,7 @@ class PageTable implements IClusterable
 	{
 		synchronized (index)
 		{
-			pages.put(pageId, pageAsBytes);
+			putBytes(pageId, pageAsBytes);
 
 			updateIndex(pageId);
 		}
@@ -74,7 +77,7 @@ class PageTable implements IClusterable
 		{
 			updateIndex(pageId);
 
-			return pages.get(pageId);
+			return getBytes(pageId);
 		}
 	}
 
@@ -84,7 +87,7 @@ class PageTable implements IClusterable
 		{
 			index.remove(pageId);
 
-			return pages.remove(pageId);
+			return removeBytes(pageId);
 		}
 	}
 
@@ -93,7 +96,7 @@ class PageTable implements IClusterable
 		synchronized (index)
 		{
 			index.clear();
-			pages.clear();
+			clearBytes();
 		}
 	}
 
@@ -102,11 +105,64 @@ class PageTable implements IClusterable
 		return pages.size();
 	}
 
+	/**
+	 * @return the memory used by this table, in bytes
+	 */
+	long getSizeInBytes()
+	{
+		return WicketObjects.sizeof(this);
+	}
+
 	Integer getOldest()
 	{
 		return index.peek();
 	}
 
+	/**
+	 * @return the lock held while the pages are accessed
+	 */
+	Object getLock()
+	{
+		return index;
+	}
+
+	/**
+	 * Keeps the bytes of a page. Called while the index is locked.
+	 * 
+	 * @param pageId
+	 * @param pageAsBytes
+	 */
+	void putBytes(Integer pageId, byte[] pageAsBytes)
+	{
+		pages.put(pageId, pageAsBytes);
+	}
+
+	/**
+	 * @param pageId
+	 * @return the bytes of the page or {@code null}
+	 */
+	byte[] getBytes(Integer pageId)
+	{
+		return pages.get(pageId);
+	}
+
+	/**
+	 * @param pageId
+	 * @return the removed bytes of the page or {@code null}
+	 */
+	byte[] removeBytes(Integer pageId)
+	{
+		return pages.remove(pageId);
+	}
+
+	/**
+	 * Removes the bytes of all pages
+	 */
+	void clearBytes()
+	{
+		pages.clear();
+	}
+
 	/**
 	 * Updates the index of last/least recently used pages by removing the page id from the index
 	 * (in case it is already in) and (re-)adding it at the head
@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.protocol.http;
 
+import java.nio.channels.WritableByteChannel;
+
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 
@@ -168,6 +170,17 @@ class HeaderBufferingWebResponse extends WebResponse implements IMetaDataBufferi
 		originalResponse.write(array);
 	}
 
+	@Override
+	public WritableByteChannel getWritableByteChannel()
+	{
+		WritableByteChannel channel = originalResponse.getWritableByteChannel();
+		if (channel != null)
+		{
+			writeBuffered();
+		}
+		return channel;
+	}
+
 	@Override
 	public void reset()
 	{
@@ -17,6 +17,9 @@
 package org.apache.wicket.protocol.http.servlet;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 
 import javax.servlet.http.Cookie;
@@ -121,6 +124,25 @@ public class ServletWebResponse extends WebResponse
 		}
 	}
 
+	@Override
+	public WritableByteChannel getWritableByteChannel()
+	{
+		try
+		{
+			OutputStream out = httpServletResponse.getOutputStream();
+			if (out instanceof WritableByteChannel)
+			{
+				// the container exposes the channel of its connection
+				return (WritableByteChannel)out;
+			}
+			return Channels.newChannel(out);
+		}
+		catch (IOException e)
+		{
+			throw new ResponseIOException(e);
+		}
+	}
+
 	@Override
 	public void setStatus(int sc)
 	{
@@ -17,6 +17,7 @@
 package org.apache.wicket.request.handler;
 
 import org.apache.wicket.RequestListenerInterface;
+import org.apache.wicket.request.IKeyedRequestHandler;
 import org.apache.wicket.request.IRequestCycle;
 import org.apache.wicket.request.component.IRequestableComponent;
 import org.apache.wicket.request.component.IRequestablePage;
@@ -32,7 +33,8 @@ import org.apache.wicket.util.lang.Args;
 public class BookmarkableListenerInterfaceRequestHandler
 	implements
 		IPageRequestHandler,
-		IComponentRequestHandler
+		IComponentRequestHandler,
+		IKeyedRequestHandler
 {
 	private final IPageAndComponentProvider pageComponentProvider;
 
@@ -140,4 +142,13 @@ public class BookmarkableListenerInterfaceRequestHandler
 	{
 		// nothing to do here, this handler is only used to generate URLs
 	}
+
+	/**
+	 * @see org.apache.wicket.request.IKeyedRequestHandler#getMappingKey()
+	 */
+	public Object getMappingKey()
+	{
+		// mapped by the class of the page instance
+		return getPage().getClass();
+	}
 }
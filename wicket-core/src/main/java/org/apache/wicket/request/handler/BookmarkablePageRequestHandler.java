@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.request.handler;
 
+import org.apache.wicket.request.IKeyedRequestHandler;
 import org.apache.wicket.request.IRequestCycle;
 import org.apache.wicket.request.component.IRequestablePage;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
@@ -27,7 +28,10 @@ import org.apache.wicket.util.lang.Args;
  * 
  * @author Matej Knopp
  */
-public class BookmarkablePageRequestHandler implements IPageClassRequestHandler
+public class BookmarkablePageRequestHandler
+	implements
+		IPageClassRequestHandler,
+		IKeyedRequestHandler
 {
 	private final IPageProvider pageProvider;
 
@@ -75,4 +79,12 @@ public class BookmarkablePageRequestHandler implements IPageClassRequestHandler
 	public void detach(IRequestCycle requestCycle)
 	{
 	}
+
+	/**
+	 * @see org.apache.wicket.request.IKeyedRequestHandler#getMappingKey()
+	 */
+	public Object getMappingKey()
+	{
+		return getPageClass();
+	}
 }
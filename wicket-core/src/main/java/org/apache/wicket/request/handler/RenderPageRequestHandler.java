@@ -17,6 +17,7 @@
 package org.apache.wicket.request.handler;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.request.IKeyedRequestHandler;
 import org.apache.wicket.request.IRequestCycle;
 import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.component.IRequestablePage;
@@ -33,7 +34,11 @@ import org.apache.wicket.util.lang.Args;
  * 
  * @author Matej Knopp
  */
-public class RenderPageRequestHandler implements IPageRequestHandler, IPageClassRequestHandler
+public class RenderPageRequestHandler
+	implements
+		IPageRequestHandler,
+		IPageClassRequestHandler,
+		IKeyedRequestHandler
 {
 	private final IPageProvider pageProvider;
 
@@ -138,4 +143,12 @@ public class RenderPageRequestHandler implements IPageRequestHandler, IPageClass
 		PageRenderer renderer = Application.get().getPageRendererProvider().get(this);
 		renderer.respond((RequestCycle)requestCycle);
 	}
+
+	/**
+	 * @see org.apache.wicket.request.IKeyedRequestHandler#getMappingKey()
+	 */
+	public Object getMappingKey()
+	{
+		return getPageClass();
+	}
 }
@@ -19,6 +19,7 @@ package org.apache.wicket.request.mapper;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestablePage;
@@ -58,6 +59,9 @@ import org.apache.wicket.util.lang.Args;
  * @author Matej Knopp
  */
 public class MountedMapper extends AbstractBookmarkableMapper
+	implements
+		IPrefixedRequestMapper,
+		IKeyedRequestMapper
 {
 	private final IPageParametersEncoder pageParametersEncoder;
 
@@ -132,6 +136,12 @@ public class MountedMapper extends AbstractBookmarkableMapper
 	/** bookmarkable page class. */
 	private final ClassProvider<? extends IRequestablePage> pageClassProvider;
 
+	/**
+	 * Whether this mapper encodes handlers for its page class only, i.e. neither
+	 * {@link #checkPageClass(Class)} nor {@link #mapHandler(IRequestHandler)} is overridden
+	 */
+	private final boolean keyed;
+
 	/**
 	 * Construct.
 	 * 
@@ -187,6 +197,34 @@ public class MountedMapper extends AbstractBookmarkableMapper
 		this.pageClassProvider = pageClassProvider;
 		mountSegments = getMountSegments(mountPath);
 		pathSegments = getPathSegments(mountSegments);
+		keyed = !isOverridden("checkPageClass", Class.class) &&
+			!isOverridden("mapHandler", IRequestHandler.class);
+	}
+
+	/**
+	 * @param name
+	 * @param parameterTypes
+	 * @return whether a subclass declares the method with the given name and parameters
+	 */
+	private boolean isOverridden(String name, Class<?>... parameterTypes)
+	{
+		for (Class<?> c = getClass(); c != MountedMapper.class; c = c.getSuperclass())
+		{
+			try
+			{
+				c.getDeclaredMethod(name, parameterTypes);
+				return true;
+			}
+			catch (NoSuchMethodException e)
+			{
+				// look at the super class
+			}
+			catch (SecurityException e)
+			{
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private List<MountPathSegment> getPathSegments(String[] segments)
@@ -454,6 +492,26 @@ public class MountedMapper extends AbstractBookmarkableMapper
 		}
 	}
 
+	/**
+	 * @see org.apache.wicket.request.mapper.IPrefixedRequestMapper#getPrefixSegments()
+	 */
+	public String[] getPrefixSegments()
+	{
+		return getFixedPrefixSegments(mountSegments);
+	}
+
+	/**
+	 * Returns the mounted page class, or <code>null</code> if a subclass overrides
+	 * {@link #checkPageClass(Class)} or {@link #mapHandler(IRequestHandler)} and may encode
+	 * handlers for other pages.
+	 * 
+	 * @see org.apache.wicket.request.mapper.IKeyedRequestMapper#getMappingKey()
+	 */
+	public Object getMappingKey()
+	{
+		return keyed ? getPageClass() : null;
+	}
+
 	/**
 	 * @see org.apache.wicket.request.mapper.AbstractBookmarkableMapper#checkPageClass(java.lang.Class)
 	 */
@@ -57,7 +57,7 @@ import org.apache.wicket.util.lang.Args;
  * 
  * @author Peter Ertl
  */
-public class ResourceMapper extends AbstractMapper implements IRequestMapper
+public class ResourceMapper extends AbstractMapper implements IPrefixedRequestMapper
 {
 	// encode page parameters into url + decode page parameters from url
 	private final IPageParametersEncoder parametersEncoder;
@@ -143,6 +143,14 @@ public class ResourceMapper extends AbstractMapper implements IRequestMapper
 		return 0; // pages always have priority over resources
 	}
 
+	/**
+	 * @see org.apache.wicket.request.mapper.IPrefixedRequestMapper#getPrefixSegments()
+	 */
+	public String[] getPrefixSegments()
+	{
+		return getFixedPrefixSegments(mountSegments);
+	}
+
 	public Url mapHandler(IRequestHandler requestHandler)
 	{
 		if ((requestHandler instanceof ResourceReferenceRequestHandler) == false)
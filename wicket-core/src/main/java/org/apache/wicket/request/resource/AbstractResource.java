@@ -16,9 +16,17 @@
  */
 package org.apache.wicket.request.resource;
 
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -30,6 +38,8 @@ import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.settings.IResourceSettings;
 import org.apache.wicket.util.io.Streams;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.string.Strings;
 import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.time.Time;
 
@@ -74,9 +84,12 @@ public abstract class AbstractResource implements IResource
 		private String textEncoding;
 		private long contentLength = -1;
 		private Time lastModified = null;
+		private String etag = null;
+		private Integer statusCode = null;
 		private WriteCallback writeCallback;
 		private Duration cacheDuration;
 		private WebResponse.CacheScope cacheScope;
+		private final Map<String, String> headers = new LinkedHashMap<String, String>();
 
 		/**
 		 * Construct.
@@ -259,10 +272,56 @@ public abstract class AbstractResource implements IResource
 			return lastModified;
 		}
 
+		/**
+		 * Sets the entity tag of the resource, which is sent as <code>ETag</code> header and
+		 * checked against the <code>If-None-Match</code> header to determine if the data needs to
+		 * be sent to the client. The tag has to be quoted and prefixed with <code>W/</code> if it
+		 * is a weak validator, e.g. <code>"4f2a"</code> or <code>W/"4f2a"</code>.
+		 * 
+		 * @param etag
+		 *            entity tag or <code>null</code>
+		 * @see #newETag(String, boolean)
+		 */
+		public void setETag(String etag)
+		{
+			this.etag = etag;
+		}
+
+		/**
+		 * @return entity tag or <code>null</code>
+		 */
+		public String getETag()
+		{
+			return etag;
+		}
+
+		/**
+		 * Sets the status code of a successful response, e.g.
+		 * {@link HttpServletResponse#SC_PARTIAL_CONTENT}. Errors are set with
+		 * {@link #setError(Integer, String)} instead.
+		 * 
+		 * @param statusCode
+		 *            status code or <code>null</code> for the container's default
+		 */
+		public void setStatusCode(Integer statusCode)
+		{
+			this.statusCode = statusCode;
+		}
+
+		/**
+		 * @return status code or <code>null</code>
+		 */
+		public Integer getStatusCode()
+		{
+			return statusCode;
+		}
+
 		/**
 		 * Check to determine if the resource data needs to be written. This method checks the
-		 * <code>If-Modified-Since</code> request header and compares it to lastModified property.
-		 * In order for this method to work {@link #setLastModified(Time)} has to be called first.
+		 * <code>If-None-Match</code> request header against the entity tag or, if there is none,
+		 * the <code>If-Modified-Since</code> request header against the lastModified property. In
+		 * order for this method to work {@link #setETag(String)} or
+		 * {@link #setLastModified(Time)} has to be called first.
 		 * 
 		 * @param attributes
 		 *            request attributes
@@ -272,6 +331,14 @@ public abstract class AbstractResource implements IResource
 		public boolean dataNeedsToBeWritten(Attributes attributes)
 		{
 			WebRequest request = (WebRequest)attributes.getRequest();
+
+			String ifNoneMatch = request.getHeader("If-None-Match");
+			if (ifNoneMatch != null)
+			{
+				// If-Modified-Since is ignored along with If-None-Match
+				return (etag == null) || !matchesETag(ifNoneMatch, etag);
+			}
+
 			Time ifModifiedSince = request.getIfModifiedSinceHeader();
 
 			if (ifModifiedSince != null && lastModified != null)
@@ -291,6 +358,35 @@ public abstract class AbstractResource implements IResource
 			}
 		}
 
+		/**
+		 * Checks whether a list of entity tags as in an <code>If-None-Match</code> header contains
+		 * the given tag, using the weak comparison.
+		 * 
+		 * @param tags
+		 *            comma separated entity tags or <code>*</code>
+		 * @param etag
+		 *            entity tag
+		 * @return <code>true</code> if one of the tags matches
+		 */
+		private static boolean matchesETag(String tags, String etag)
+		{
+			String opaque = stripWeakPrefix(etag);
+			for (String tag : Strings.split(tags, ','))
+			{
+				tag = tag.trim();
+				if ("*".equals(tag) || opaque.equals(stripWeakPrefix(tag)))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static String stripWeakPrefix(String etag)
+		{
+			return etag.startsWith("W/") ? etag.substring(2) : etag;
+		}
+
 		/**
 		 * disable caching
 		 */
@@ -396,6 +492,30 @@ public abstract class AbstractResource implements IResource
 		{
 			return writeCallback;
 		}
+
+		/**
+		 * Sets an additional header which is sent along with the resource data, e.g.
+		 * <code>Content-Encoding</code>.
+		 * 
+		 * @param name
+		 *            header name
+		 * @param value
+		 *            header value
+		 */
+		public void setHeader(String name, String value)
+		{
+			Args.notEmpty(name, "name");
+			Args.notNull(value, "value");
+			headers.put(name, value);
+		}
+
+		/**
+		 * @return additional headers sent along with the resource data
+		 */
+		public Map<String, String> getHeaders()
+		{
+			return Collections.unmodifiableMap(headers);
+		}
 	}
 
 	/**
@@ -435,7 +555,7 @@ public abstract class AbstractResource implements IResource
 		ResourceResponse data = newResourceResponse(attributes);
 		setResponseHeaders(data, attributes);
 
-		if (!data.dataNeedsToBeWritten(attributes))
+		if (!data.dataNeedsToBeWritten(attributes) || (data.getErrorCode() != null))
 		{
 			return;
 		}
@@ -459,12 +579,16 @@ public abstract class AbstractResource implements IResource
 		{
 			WebResponse webResponse = (WebResponse)response;
 
-			// 1. Last Modified
+			// 1. Last Modified and Entity Tag
 			Time lastModified = data.getLastModified();
 			if (lastModified != null)
 			{
 				webResponse.setLastModifiedTime(lastModified);
 			}
+			if (data.getETag() != null)
+			{
+				webResponse.setHeader("ETag", data.getETag());
+			}
 
 			// 2. Caching
 			configureCache(data, attributes);
@@ -477,10 +601,17 @@ public abstract class AbstractResource implements IResource
 
 			if (data.getErrorCode() != null)
 			{
+				// additional headers may describe the error, e.g. Content-Range
+				setAdditionalHeaders(data, webResponse);
 				webResponse.sendError(data.getErrorCode(), data.getErrorMessage());
 				return;
 			}
 
+			if (data.getStatusCode() != null)
+			{
+				webResponse.setStatus(data.getStatusCode());
+			}
+
 			String fileName = data.getFileName();
 			ContentDisposition disposition = data.getContentDisposition();
 			String mimeType = data.getContentType();
@@ -522,13 +653,66 @@ public abstract class AbstractResource implements IResource
 				webResponse.setContentLength(contentLength);
 			}
 
-			// 6. Flush the response
+			// 6. Additional headers
+			setAdditionalHeaders(data, webResponse);
+
+			// 7. Flush the response
 			// This is necessary for firefox if this resource is an image, otherwise it messes up
 			// other images on page
 			webResponse.flush();
 		}
 	}
 
+	private static void setAdditionalHeaders(final ResourceResponse data,
+		final WebResponse webResponse)
+	{
+		for (Map.Entry<String, String> header : data.getHeaders().entrySet())
+		{
+			webResponse.setHeader(header.getKey(), header.getValue());
+		}
+	}
+
+	/**
+	 * Creates an entity tag for {@link ResourceResponse#setETag(String)}.
+	 * 
+	 * @param value
+	 *            opaque value of the tag, e.g. a content hash or a version, must not contain
+	 *            quotes
+	 * @param weak
+	 *            whether the tag is a weak validator, i.e. does not guarantee the data to be
+	 *            byte-for-byte identical
+	 * @return the quoted entity tag
+	 */
+	public static String newETag(final String value, final boolean weak)
+	{
+		Args.notEmpty(value, "value");
+		return (weak ? "W/\"" : "\"") + value + '"';
+	}
+
+	/**
+	 * Creates an entity tag from the version of the data. It is strong if the length is known as
+	 * well.
+	 * 
+	 * @param lastModified
+	 *            last modification time of the data
+	 * @param length
+	 *            length of the data, may be <code>null</code>
+	 * @return entity tag or <code>null</code> if the last modification time is unknown
+	 */
+	protected static String newVersionETag(final Time lastModified, final Bytes length)
+	{
+		if (lastModified == null)
+		{
+			return null;
+		}
+		String version = Long.toHexString(lastModified.getMilliseconds());
+		if (length == null)
+		{
+			return newETag(version, true);
+		}
+		return newETag(version + "-" + Long.toHexString(length.bytes()), false);
+	}
+
 	/**
 	 * Callback invoked when resource data needs to be written to response. Subclass needs to
 	 * implement the {@link #writeData(org.apache.wicket.request.resource.IResource.Attributes)}
@@ -538,6 +722,11 @@ public abstract class AbstractResource implements IResource
 	 */
 	public abstract static class WriteCallback
 	{
+		/**
+		 * The size of the chunks a file is written in if the response does not expose a channel
+		 */
+		private static final int FILE_CHUNK_SIZE = 64 * 1024;
+
 		/**
 		 * Write the resource data to response.
 		 * 
@@ -547,7 +736,9 @@ public abstract class AbstractResource implements IResource
 		public abstract void writeData(Attributes attributes);
 
 		/**
-		 * Convenience method to write an {@link InputStream} to response.
+		 * Convenience method to write an {@link InputStream} to response. The remainder of a
+		 * {@link FileInputStream} is written with
+		 * {@link #writeFile(Attributes, FileChannel, long, long)}.
 		 * 
 		 * @param attributes
 		 *            request attributes
@@ -556,6 +747,23 @@ public abstract class AbstractResource implements IResource
 		 */
 		protected final void writeStream(Attributes attributes, InputStream stream)
 		{
+			if (stream instanceof FileInputStream)
+			{
+				try
+				{
+					FileChannel channel = ((FileInputStream)stream).getChannel();
+					long position = channel.position();
+					long count = channel.size() - position;
+					writeFile(attributes, channel, position, count);
+					channel.position(position + count);
+				}
+				catch (IOException e)
+				{
+					throw new WicketRuntimeException(e);
+				}
+				return;
+			}
+
 			final Response response = attributes.getResponse();
 			OutputStream s = new OutputStream()
 			{
@@ -595,5 +803,70 @@ public abstract class AbstractResource implements IResource
 				throw new WicketRuntimeException(e);
 			}
 		}
+
+		/**
+		 * Convenience method to write a region of a file to response. If the response exposes a
+		 * {@link Response#getWritableByteChannel() channel} the region is transferred with
+		 * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+		 * This saves copying the data through the heap only if the channel is the one of the
+		 * connection; a channel wrapping the output stream of a servlet container still copies
+		 * it. Otherwise the region is read into a heap buffer and written in chunks.
+		 * 
+		 * @param attributes
+		 *            request attributes
+		 * @param channel
+		 *            channel of the file
+		 * @param position
+		 *            position of the first byte to write
+		 * @param count
+		 *            number of bytes to write
+		 * @throws IOException
+		 */
+		protected final void writeFile(Attributes attributes, FileChannel channel, long position,
+			long count) throws IOException
+		{
+			Response response = attributes.getResponse();
+			WritableByteChannel target = response.getWritableByteChannel();
+			if (target != null)
+			{
+				while (count > 0)
+				{
+					long transferred = channel.transferTo(position, count, target);
+					if (transferred <= 0)
+					{
+						throw new EOFException("Unexpected end of file");
+					}
+					position += transferred;
+					count -= transferred;
+				}
+				return;
+			}
+
+			byte[] chunk = new byte[(int)Math.min(FILE_CHUNK_SIZE, count)];
+			ByteBuffer buffer = ByteBuffer.wrap(chunk);
+			while (count > 0)
+			{
+				buffer.clear();
+				buffer.limit((int)Math.min(chunk.length, count));
+				int read = channel.read(buffer, position);
+				if (read <= 0)
+				{
+					throw new EOFException("Unexpected end of file");
+				}
+				if (read == chunk.length)
+				{
+					response.write(chunk);
+				}
+				else
+				{
+					// Response can only write whole arrays
+					byte[] part = new byte[read];
+					System.arraycopy(chunk, 0, part, 0, read);
+					response.write(part);
+				}
+				position += read;
+				count -= read;
+			}
+		}
 	}
 }
\ No newline at end of file
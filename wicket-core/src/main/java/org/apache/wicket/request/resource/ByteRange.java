@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.wicket.util.string.Strings;
+
+/**
+ * A range of bytes of a resource as requested with the HTTP <code>Range</code> header.
+ * 
+ * @see #parse(String, long)
+ */
+public final class ByteRange
+{
+	private static final String BYTES_UNIT = "bytes=";
+
+	private final long first;
+
+	private final long last;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param first
+	 *            position of the first byte
+	 * @param last
+	 *            position of the last byte, inclusive
+	 */
+	public ByteRange(final long first, final long last)
+	{
+		if ((first < 0) || (last < first))
+		{
+			throw new IllegalArgumentException("Invalid byte range " + first + "-" + last);
+		}
+		this.first = first;
+		this.last = last;
+	}
+
+	/**
+	 * @return position of the first byte
+	 */
+	public long getFirst()
+	{
+		return first;
+	}
+
+	/**
+	 * @return position of the last byte, inclusive
+	 */
+	public long getLast()
+	{
+		return last;
+	}
+
+	/**
+	 * @return number of bytes in this range
+	 */
+	public long getLength()
+	{
+		return last - first + 1;
+	}
+
+	/**
+	 * @param length
+	 *            total length of the resource
+	 * @return value for the <code>Content-Range</code> header
+	 */
+	public String toContentRange(final long length)
+	{
+		return "bytes " + first + "-" + last + "/" + length;
+	}
+
+	/**
+	 * Parses the value of a <code>Range</code> header. The satisfiable ranges are returned sorted
+	 * and with overlapping or adjacent ranges coalesced, so a resource can be streamed in a single
+	 * pass.
+	 * 
+	 * @param header
+	 *            value of the <code>Range</code> header, may be <code>null</code>
+	 * @param length
+	 *            total length of the resource
+	 * @return the satisfiable ranges, an empty list if none of them is satisfiable or
+	 *         <code>null</code> if the header is missing or malformed and has to be ignored
+	 */
+	public static List<ByteRange> parse(final String header, final long length)
+	{
+		if ((header == null) || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length()))
+		{
+			return null;
+		}
+
+		List<ByteRange> ranges = new ArrayList<ByteRange>();
+		for (String spec : Strings.split(header.substring(BYTES_UNIT.length()), ','))
+		{
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if (dash == -1)
+			{
+				return null;
+			}
+
+			long first;
+			long last;
+			try
+			{
+				if (dash == 0)
+				{
+					// suffix range with the number of trailing bytes
+					long suffix = Long.parseLong(spec.substring(1));
+					if ((suffix <= 0) || (length == 0))
+					{
+						continue;
+					}
+					first = Math.max(0, length - suffix);
+					last = length - 1;
+				}
+				else
+				{
+					first = Long.parseLong(spec.substring(0, dash));
+					last = (dash == spec.length() - 1) ? Long.MAX_VALUE
+						: Long.parseLong(spec.substring(dash + 1));
+					if ((first < 0) || (last < first))
+					{
+						return null;
+					}
+					if (first >= length)
+					{
+						continue;
+					}
+					last = Math.min(last, length - 1);
+				}
+			}
+			catch (NumberFormatException e)
+			{
+				return null;
+			}
+			ranges.add(new ByteRange(first, last));
+		}
+		return coalesce(ranges);
+	}
+
+	private static List<ByteRange> coalesce(final List<ByteRange> ranges)
+	{
+		if (ranges.size() < 2)
+		{
+			return ranges;
+		}
+
+		Collections.sort(ranges, new Comparator<ByteRange>()
+		{
+			public int compare(ByteRange o1, ByteRange o2)
+			{
+				return (o1.first < o2.first) ? -1 : ((o1.first == o2.first) ? 0 : 1);
+			}
+		});
+
+		List<ByteRange> coalesced = new ArrayList<ByteRange>(ranges.size());
+		ByteRange current = ranges.get(0);
+		for (int i = 1; i < ranges.size(); i++)
+		{
+			ByteRange next = ranges.get(i);
+			if (next.first <= current.last + 1)
+			{
+				current = new ByteRange(current.first, Math.max(current.last, next.last));
+			}
+			else
+			{
+				coalesced.add(current);
+				current = next;
+			}
+		}
+		coalesced.add(current);
+		return coalesced;
+	}
+
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof ByteRange))
+		{
+			return false;
+		}
+		ByteRange other = (ByteRange)obj;
+		return (first == other.first) && (last == other.last);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (int)(first ^ (first >>> 32)) * 31 + (int)(last ^ (last >>> 32));
+	}
+
+	@Override
+	public String toString()
+	{
+		return first + "-" + last;
+	}
+}
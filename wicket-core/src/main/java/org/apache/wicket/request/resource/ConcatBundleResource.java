@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A resource serving the concatenated contents of several package resources in a single response.
+ * Each part is processed as if requested on its own (e.g. compressed by the
+ * {@link org.apache.wicket.javascript.IJavaScriptCompressor}) and the concatenation is kept until
+ * one of the parts changes. Like a {@link PackageResource} the bundle is served gzipped to clients
+ * accepting that.
+ * <p>
+ * All parts are expected to share their content type and encoding, i.e. a bundle should consist of
+ * either JavaScript or CSS resources only.
+ * 
+ * @see ConcatResourceBundleReference
+ */
+public class ConcatBundleResource extends AbstractResource
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger log = LoggerFactory.getLogger(ConcatBundleResource.class);
+
+	private final List<ResourceReference> references;
+
+	/** the current concatenation, rebuilt as soon as one of the processed parts changes */
+	private transient volatile Bundle bundle;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param references
+	 *            the references to the parts, whose resources must be {@link PackageResource}s
+	 */
+	public ConcatBundleResource(final List<? extends ResourceReference> references)
+	{
+		Args.notNull(references, "references");
+
+		this.references = Collections.unmodifiableList(new ArrayList<ResourceReference>(
+			references));
+	}
+
+	/**
+	 * @return the references to the parts of this bundle
+	 */
+	public final List<ResourceReference> getReferences()
+	{
+		return references;
+	}
+
+	@Override
+	protected ResourceResponse newResourceResponse(final Attributes attributes)
+	{
+		final ResourceResponse resourceResponse = new ResourceResponse();
+
+		if (resourceResponse.dataNeedsToBeWritten(attributes))
+		{
+			final PackageResourceCache.Entry entry;
+
+			try
+			{
+				entry = getProcessedBundle(attributes);
+			}
+			catch (IOException e)
+			{
+				log.debug(e.getMessage(), e);
+				return sendResourceError(resourceResponse, 500, "Unable to read resource stream");
+			}
+			catch (ResourceStreamNotFoundException e)
+			{
+				log.debug(e.getMessage(), e);
+				return sendResourceError(resourceResponse, 500, "Unable to open resource stream");
+			}
+
+			if (entry == null)
+				return sendResourceError(resourceResponse, HttpServletResponse.SC_NOT_FOUND,
+					"Unable to find resource");
+
+			if (entry.getLastModified() != null)
+				resourceResponse.setLastModified(entry.getLastModified());
+
+			PackageResource.writeEntry(resourceResponse, entry, attributes.getRequest());
+		}
+
+		// modify the resource response depending on the current caching strategy needs
+		Application.get()
+			.getResourceSettings()
+			.getCachingStrategy()
+			.decorateResponse(resourceResponse);
+
+		return resourceResponse;
+	}
+
+	/**
+	 * Gets the processed parts and concatenates them unless they did not change since the last
+	 * request.
+	 * 
+	 * @param attributes
+	 *            current request attributes from client
+	 * @return the concatenated resource or <code>null</code> if a part could not be found
+	 * @throws IOException
+	 * @throws ResourceStreamNotFoundException
+	 */
+	private PackageResourceCache.Entry getProcessedBundle(final Attributes attributes)
+		throws IOException, ResourceStreamNotFoundException
+	{
+		final PackageResourceCache.Entry[] parts;
+		parts = new PackageResourceCache.Entry[references.size()];
+
+		for (int i = 0; i < parts.length; i++)
+		{
+			ResourceReference reference = references.get(i);
+			IResource resource = reference.getResource();
+			if (resource instanceof PackageResource == false)
+			{
+				log.warn("Unable to bundle resource {}, it is no package resource", reference);
+				return null;
+			}
+
+			parts[i] = ((PackageResource)resource).getProcessedResource(attributes);
+			if (parts[i] == null)
+			{
+				log.warn("Unable to find bundled resource {}", reference);
+				return null;
+			}
+		}
+
+		Bundle current = bundle;
+		if ((current == null) || !current.isConcatenationOf(parts))
+		{
+			current = new Bundle(parts, concatenate(parts));
+			bundle = current;
+		}
+		return current.entry;
+	}
+
+	/**
+	 * @param parts
+	 *            processed parts
+	 * @return the concatenation of the parts
+	 */
+	private PackageResourceCache.Entry concatenate(final PackageResourceCache.Entry[] parts)
+	{
+		Time lastModified = null;
+		String contentType = null;
+		int length = 0;
+
+		for (PackageResourceCache.Entry part : parts)
+		{
+			if ((part.getLastModified() != null) &&
+				((lastModified == null) || part.getLastModified().after(lastModified)))
+			{
+				lastModified = part.getLastModified();
+			}
+			if (contentType == null)
+			{
+				contentType = part.getContentType();
+			}
+			length += part.getData().length + 3;
+		}
+
+		final boolean javaScript = "js".equals(references.get(0).getExtension());
+		if ((contentType == null) && javaScript)
+		{
+			contentType = "text/javascript";
+		}
+
+		// an empty statement keeps scripts apart that do not end with a semicolon
+		final byte[] separator = javaScript ? new byte[] { '\n', ';', '\n' }
+			: new byte[] { '\n' };
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+		for (int i = 0; i < parts.length; i++)
+		{
+			if (i > 0)
+			{
+				out.write(separator, 0, separator.length);
+			}
+			byte[] data = parts[i].getData();
+			out.write(data, 0, data.length);
+		}
+
+		PackageResourceCache cache = Application.get()
+			.getResourceSettings()
+			.getPackageResourceCache();
+		if (cache != null)
+		{
+			return cache.newEntry(lastModified, contentType, out.toByteArray());
+		}
+		return new PackageResourceCache.Entry(lastModified, contentType, out.toByteArray(), null,
+			null);
+	}
+
+	private ResourceResponse sendResourceError(final ResourceResponse resourceResponse,
+		final int errorCode, final String errorMessage)
+	{
+		log.warn("bundle {}: {} (status={})", new Object[] { references, errorMessage, errorCode });
+
+		resourceResponse.setError(errorCode, errorMessage);
+		return resourceResponse;
+	}
+
+	/**
+	 * A concatenation along with the parts it was built from.
+	 */
+	private static final class Bundle
+	{
+		private final PackageResourceCache.Entry[] parts;
+
+		private final PackageResourceCache.Entry entry;
+
+		private Bundle(final PackageResourceCache.Entry[] parts,
+			final PackageResourceCache.Entry entry)
+		{
+			this.parts = parts;
+			this.entry = entry;
+		}
+
+		/**
+		 * Parts too large for the {@link PackageResourceCache} are read again for each request,
+		 * so parts are compared by their hash if they are cached, and by their modification time
+		 * and length otherwise.
+		 * 
+		 * @param parts
+		 * @return <code>true</code> if this bundle was built from the given parts
+		 */
+		private boolean isConcatenationOf(final PackageResourceCache.Entry[] parts)
+		{
+			if (this.parts.length != parts.length)
+			{
+				return false;
+			}
+			for (int i = 0; i < parts.length; i++)
+			{
+				if (isSameContents(this.parts[i], parts[i]) == false)
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static boolean isSameContents(final PackageResourceCache.Entry part,
+			final PackageResourceCache.Entry other)
+		{
+			if (part == other)
+			{
+				return true;
+			}
+			if ((part.getHash() != null) && (other.getHash() != null))
+			{
+				return part.getHash().equals(other.getHash());
+			}
+			return (part.getLastModified() != null) &&
+				part.getLastModified().equals(other.getLastModified()) &&
+				(part.getData().length == other.getData().length);
+		}
+	}
+}
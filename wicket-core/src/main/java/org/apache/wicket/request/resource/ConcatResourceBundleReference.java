@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.resource.caching.FilenameWithTimestampResourceCachingStrategy;
+import org.apache.wicket.util.crypt.Base64;
+import org.apache.wicket.util.lang.WicketObjects;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * A reference to a {@link ConcatBundleResource}, serving several package resources under a single
+ * URL. The bundle is last modified when its most recently modified part is, so a caching strategy
+ * like {@link FilenameWithTimestampResourceCachingStrategy} versions its URL whenever one of the
+ * parts changes.
+ * <p>
+ * The name of a bundle created by {@link #newName(List, String)} encodes the keys of its parts. The
+ * {@link ResourceReferenceRegistry} creates the bundle from its URL alone, so it need not be
+ * registered and resolves on any node of a cluster and after a restart. Like other automatically
+ * created references it is aged out of the registry, see
+ * {@link ResourceReferenceRegistry#setAutoAddedCapacity(int)}.
+ * 
+ * @see org.apache.wicket.resource.aggregation.ResourceBundlingHeaderResponse
+ */
+public class ConcatResourceBundleReference extends ResourceReference
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final String NAME_PREFIX = "bundle-";
+
+	/** separates the fields of the encoded part keys */
+	private static final char SEPARATOR = '\0';
+
+	/** the number of fields of an encoded part key */
+	private static final int KEY_FIELDS = 5;
+
+	private final List<ResourceReference> references;
+
+	private final ConcatBundleResource resource;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param scope
+	 *            the scope of the bundle
+	 * @param name
+	 *            the name of the bundle
+	 * @param references
+	 *            the references to the parts, whose resources must be {@link PackageResource}s
+	 */
+	public ConcatResourceBundleReference(final Class<?> scope, final String name,
+		final List<? extends ResourceReference> references)
+	{
+		super(scope, name);
+
+		this.references = Collections.unmodifiableList(new ArrayList<ResourceReference>(
+			references));
+		resource = new ConcatBundleResource(this.references);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param key
+	 *            the key of the bundle
+	 * @param references
+	 *            the references to the parts
+	 */
+	private ConcatResourceBundleReference(final Key key,
+		final List<? extends ResourceReference> references)
+	{
+		super(key);
+
+		this.references = Collections.unmodifiableList(new ArrayList<ResourceReference>(
+			references));
+		resource = new ConcatBundleResource(this.references);
+	}
+
+	/**
+	 * @return the references to the parts of this bundle
+	 */
+	public final List<ResourceReference> getReferences()
+	{
+		return references;
+	}
+
+	@Override
+	public IResource getResource()
+	{
+		return resource;
+	}
+
+	/**
+	 * @return the last modification time of the most recently modified part
+	 */
+	@Override
+	public Time getLastModified()
+	{
+		Time lastModified = null;
+		for (ResourceReference reference : references)
+		{
+			Time time = reference.getLastModified();
+			if ((time != null) && ((lastModified == null) || time.after(lastModified)))
+			{
+				lastModified = time;
+			}
+		}
+		return lastModified;
+	}
+
+	/**
+	 * Creates a name for a bundle which encodes the keys of its parts, so that the same parts are
+	 * always served under the same URL and the bundle can be created from its URL alone.
+	 * 
+	 * @param references
+	 *            the references to the parts
+	 * @param extension
+	 *            the extension of the name, e.g. <code>js</code> or <code>css</code>
+	 * @return the name of the bundle
+	 */
+	public static String newName(final List<? extends ResourceReference> references,
+		final String extension)
+	{
+		StringBuilder keys = new StringBuilder();
+		String previousScope = null;
+		for (ResourceReference reference : references)
+		{
+			if (keys.length() > 0)
+			{
+				keys.append(SEPARATOR);
+			}
+			// a scope is only written when it differs from the one of the previous part
+			String scope = reference.getScope().getName();
+			keys.append(scope.equals(previousScope) ? "" : scope).append(SEPARATOR);
+			keys.append(reference.getName()).append(SEPARATOR);
+			keys.append(toString(reference.getLocale())).append(SEPARATOR);
+			keys.append(toString(reference.getStyle())).append(SEPARATOR);
+			keys.append(toString(reference.getVariation()));
+			previousScope = scope;
+		}
+
+		byte[] bytes;
+		try
+		{
+			bytes = keys.toString().getBytes("UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+		// '-' would be mistaken for the version prefix of a caching strategy
+		String encoded = Base64.encodeBase64URLSafeString(bytes).replace('-', '~');
+		return NAME_PREFIX + encoded + "." + extension;
+	}
+
+	/**
+	 * Creates the bundle whose parts are encoded in the name of the given key.
+	 * 
+	 * @param key
+	 *            the key of the bundle
+	 * @param registry
+	 *            the registry to look up the parts in
+	 * @return the bundle or <code>null</code> if the key does not name a bundle or one of its parts
+	 *         does not exist
+	 */
+	static ConcatResourceBundleReference decode(final Key key,
+		final ResourceReferenceRegistry registry)
+	{
+		String name = key.getName();
+		int start = name.lastIndexOf('/') + 1;
+		int end = name.lastIndexOf('.');
+		if (!name.startsWith(NAME_PREFIX, start) || (end < start + NAME_PREFIX.length()))
+		{
+			return null;
+		}
+
+		String encoded = name.substring(start + NAME_PREFIX.length(), end).replace('~', '-');
+		String[] fields;
+		try
+		{
+			fields = new String(Base64.decodeBase64(encoded), "UTF-8").split(
+				String.valueOf(SEPARATOR), -1);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+		catch (RuntimeException e)
+		{
+			return null;
+		}
+		if ((fields.length % KEY_FIELDS) != 0)
+		{
+			return null;
+		}
+
+		List<ResourceReference> parts = new ArrayList<ResourceReference>();
+		String scope = null;
+		for (int i = 0; i < fields.length; i += KEY_FIELDS)
+		{
+			if (fields[i].length() > 0)
+			{
+				scope = fields[i];
+			}
+			if ((scope == null) || (WicketObjects.resolveClass(scope) == null))
+			{
+				return null;
+			}
+			Key partKey = new Key(scope, fields[i + 1], toLocale(fields[i + 2]),
+				nonEmpty(fields[i + 3]), nonEmpty(fields[i + 4]));
+			ResourceReference part = registry.getResourceReference(partKey, true, true);
+			if (part == null)
+			{
+				return null;
+			}
+			parts.add(part);
+		}
+		return new ConcatResourceBundleReference(key, parts);
+	}
+
+	private static String toString(final Object value)
+	{
+		return (value == null) ? "" : value.toString();
+	}
+
+	private static String nonEmpty(final String value)
+	{
+		return (value.length() == 0) ? null : value;
+	}
+
+	private static Locale toLocale(final String locale)
+	{
+		if (locale.length() == 0)
+		{
+			return null;
+		}
+		String[] parts = locale.split("_", 3);
+		if (parts.length == 1)
+		{
+			return new Locale(parts[0]);
+		}
+		else if (parts.length == 2)
+		{
+			return new Locale(parts[0], parts[1]);
+		}
+		return new Locale(parts[0], parts[1], parts[2]);
+	}
+}
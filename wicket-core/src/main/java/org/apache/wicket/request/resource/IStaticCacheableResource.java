@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.Serializable;
+
+import org.apache.wicket.util.resource.IResourceStream;
+
+/**
+ * A resource whose contents do not depend on the request, so they can be identified by a key and
+ * e.g. be versioned by their digest.
+ * 
+ * @see org.apache.wicket.request.resource.caching.FilenameWithContentHashResourceCachingStrategy
+ */
+public interface IStaticCacheableResource extends IResource
+{
+	/**
+	 * @return key identifying the contents of this resource, which has to implement
+	 *         {@link Object#equals(Object)} and {@link Object#hashCode()}
+	 */
+	Serializable getCacheKey();
+
+	/**
+	 * @return stream of the contents of this resource or <code>null</code> if it could not be
+	 *         found
+	 */
+	IResourceStream getCacheableResourceStream();
+}
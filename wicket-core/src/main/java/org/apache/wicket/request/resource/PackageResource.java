@@ -17,16 +17,21 @@
 package org.apache.wicket.request.resource;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.Locale;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.Session;
 import org.apache.wicket.ThreadContext;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.markup.html.IPackageResourceGuard;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.settings.IResourceSettings;
 import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.Packages;
 import org.apache.wicket.util.lang.WicketObjects;
 import org.apache.wicket.util.resource.IResourceStream;
@@ -51,13 +56,16 @@ import org.slf4j.LoggerFactory;
  * 
  * Access to resources can be granted or denied via a {@link IPackageResourceGuard}. Please see
  * {@link IResourceSettings#getPackageResourceGuard()} as well.
+ * <p>
+ * The processed data of package resources is kept in the application's
+ * {@link PackageResourceCache}, which also serves it gzipped to clients accepting that.
  * 
  * @author Jonathan Locke
  * @author Eelco Hillenius
  * @author Juergen Donnerstag
  * @author Matej Knopp
  */
-public class PackageResource extends AbstractResource
+public class PackageResource extends AbstractResource implements IStaticCacheableResource
 {
 	private static final Logger log = LoggerFactory.getLogger(PackageResource.class);
 
@@ -194,51 +202,11 @@ public class PackageResource extends AbstractResource
 
 		if (resourceResponse.dataNeedsToBeWritten(attributes))
 		{
-			// get resource stream
-			final IResourceStream resourceStream = getResourceStream();
-
-			// bail out if resource stream could not be found
-			if (resourceStream == null)
-				return sendResourceError(resourceResponse, HttpServletResponse.SC_NOT_FOUND,
-					"Unable to find resource");
-
-			// set Content-Type (may be null)
-			resourceResponse.setContentType(resourceStream.getContentType());
-
-			// add Last-Modified header (to support HEAD requests and If-Modified-Since)
-			final Time lastModified = resourceStream.lastModifiedTime();
-
-			if (lastModified != null)
-				resourceResponse.setLastModified(lastModified);
+			final PackageResourceCache.Entry entry;
 
 			try
 			{
-				// read resource data
-				final byte[] bytes;
-
-				try
-				{
-					bytes = IOUtils.toByteArray(resourceStream.getInputStream());
-				}
-				finally
-				{
-					resourceStream.close();
-				}
-
-				final byte[] processed = processResponse(attributes, bytes);
-
-				// send Content-Length header
-				resourceResponse.setContentLength(processed.length);
-
-				// send response body with resource data
-				resourceResponse.setWriteCallback(new WriteCallback()
-				{
-					@Override
-					public void writeData(Attributes attributes)
-					{
-						attributes.getResponse().write(processed);
-					}
-				});
+				entry = getProcessedResource(attributes);
 			}
 			catch (IOException e)
 			{
@@ -250,6 +218,17 @@ public class PackageResource extends AbstractResource
 				log.debug(e.getMessage(), e);
 				return sendResourceError(resourceResponse, 500, "Unable to open resource stream");
 			}
+
+			// bail out if resource stream could not be found
+			if (entry == null)
+				return sendResourceError(resourceResponse, HttpServletResponse.SC_NOT_FOUND,
+					"Unable to find resource");
+
+			// add Last-Modified header (to support HEAD requests and If-Modified-Since)
+			if (entry.getLastModified() != null)
+				resourceResponse.setLastModified(entry.getLastModified());
+
+			writeEntry(resourceResponse, entry, attributes.getRequest());
 		}
 
 		// modify the resource response depending on the current caching strategy needs
@@ -261,6 +240,203 @@ public class PackageResource extends AbstractResource
 		return resourceResponse;
 	}
 
+	/**
+	 * Gets the processed data of this resource, read from the {@link #getPackageResourceCache()
+	 * cache} if possible.
+	 * 
+	 * @param attributes
+	 *            current request attributes from client
+	 * @return the processed resource or <code>null</code> if the resource stream could not be
+	 *         found
+	 * @throws IOException
+	 * @throws ResourceStreamNotFoundException
+	 */
+	public PackageResourceCache.Entry getProcessedResource(final Attributes attributes)
+		throws IOException, ResourceStreamNotFoundException
+	{
+		final IResourceStream resourceStream = getResourceStream();
+
+		if (resourceStream == null)
+			return null;
+
+		try
+		{
+			final Time lastModified = resourceStream.lastModifiedTime();
+
+			// read and process resource data unless cached already
+			final PackageResourceCache cache = getPackageResourceCache();
+			PackageResourceCache.Entry entry = null;
+
+			if (cache != null)
+				entry = cache.get(this, lastModified);
+
+			if (entry == null)
+				entry = readResource(attributes, resourceStream, lastModified, cache);
+
+			return entry;
+		}
+		finally
+		{
+			resourceStream.close();
+		}
+	}
+
+	/**
+	 * Sets up the response to write the processed data of a resource, gzipped if the client
+	 * accepts it.
+	 * 
+	 * @param resourceResponse
+	 *            resource response
+	 * @param entry
+	 *            the processed resource
+	 * @param request
+	 *            the current request
+	 */
+	static void writeEntry(final ResourceResponse resourceResponse,
+		final PackageResourceCache.Entry entry, final Request request)
+	{
+		// set Content-Type (may be null)
+		resourceResponse.setContentType(entry.getContentType());
+
+		final byte[] processed;
+
+		if (entry.getGzippedData() != null)
+		{
+			// caches must not serve the gzipped variant to any client
+			resourceResponse.setHeader("Vary", "Accept-Encoding");
+		}
+
+		// the entity tag is strong, so it has to differ between the encodings
+		if ((entry.getGzippedData() != null) && acceptsGzip(request))
+		{
+			resourceResponse.setHeader("Content-Encoding", "gzip");
+			resourceResponse.setETag(newETag(entry.getHash() + "-gzip", false));
+			processed = entry.getGzippedData();
+		}
+		else
+		{
+			processed = entry.getData();
+			if (entry.getHash() != null)
+			{
+				resourceResponse.setETag(newETag(entry.getHash(), false));
+			}
+			else
+			{
+				// contents too large to be cached are not hashed on every request
+				resourceResponse.setETag(newVersionETag(entry.getLastModified(),
+					Bytes.bytes(processed.length)));
+			}
+		}
+
+		// send Content-Length header
+		resourceResponse.setContentLength(processed.length);
+
+		// send response body with resource data
+		resourceResponse.setWriteCallback(new WriteCallback()
+		{
+			@Override
+			public void writeData(Attributes attributes)
+			{
+				attributes.getResponse().write(processed);
+			}
+		});
+	}
+
+	/**
+	 * Reads and processes the resource data and caches it, if a cache is given
+	 * 
+	 * @param attributes
+	 *            current request attributes from client
+	 * @param resourceStream
+	 *            resource stream
+	 * @param lastModified
+	 *            last modification time of the resource, may be <code>null</code>
+	 * @param cache
+	 *            cache for the processed data, may be <code>null</code>
+	 * @return the processed resource
+	 * @throws IOException
+	 * @throws ResourceStreamNotFoundException
+	 */
+	private PackageResourceCache.Entry readResource(final Attributes attributes,
+		final IResourceStream resourceStream, final Time lastModified,
+		final PackageResourceCache cache) throws IOException, ResourceStreamNotFoundException
+	{
+		final String contentType = resourceStream.getContentType();
+		final byte[] bytes = IOUtils.toByteArray(resourceStream.getInputStream());
+		final byte[] processed = processResponse(attributes, bytes);
+
+		if (cache != null)
+		{
+			return cache.put(this, lastModified, contentType, processed);
+		}
+		return new PackageResourceCache.Entry(lastModified, contentType, processed, null, null);
+	}
+
+	/**
+	 * Gets the cache for the processed resource data. By default returns the cache configured on
+	 * application level, but can be overridden to return <code>null</code> for resources whose
+	 * processed data depends on the request.
+	 * 
+	 * @return the cache, may be <code>null</code>
+	 * @see IResourceSettings#getPackageResourceCache()
+	 */
+	protected PackageResourceCache getPackageResourceCache()
+	{
+		return ThreadContext.getApplication().getResourceSettings().getPackageResourceCache();
+	}
+
+	/**
+	 * Checks the <code>Accept-Encoding</code> headers of the request for gzip
+	 * 
+	 * @param request
+	 * @return <code>true</code> if the client accepts gzipped content
+	 */
+	private static boolean acceptsGzip(final Request request)
+	{
+		if (request instanceof WebRequest)
+		{
+			for (String header : ((WebRequest)request).getHeaders("Accept-Encoding"))
+			{
+				for (String coding : Strings.split(header, ','))
+				{
+					String[] parts = Strings.split(coding, ';');
+					String name = parts[0].trim();
+					if (("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) &&
+						!isZeroQuality(parts))
+					{
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param parts
+	 *            content coding followed by its parameters
+	 * @return <code>true</code> if the content coding is not acceptable
+	 */
+	private static boolean isZeroQuality(final String[] parts)
+	{
+		for (int i = 1; i < parts.length; i++)
+		{
+			String parameter = parts[i].trim();
+			if (parameter.startsWith("q="))
+			{
+				try
+				{
+					return Double.parseDouble(parameter.substring(2).trim()) == 0;
+				}
+				catch (NumberFormatException e)
+				{
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Gives a chance to modify the resource going to be written in the response
 	 * 
@@ -313,6 +489,48 @@ public class PackageResource extends AbstractResource
 			.locate(getScope(), absolutePath, style, variation, locale, null, false);
 	}
 
+	/**
+	 * The key includes the locale and style of the session if the resource does not specify them,
+	 * like the URL of a {@link PackageResourceReference} does.
+	 * 
+	 * @see org.apache.wicket.request.resource.IStaticCacheableResource#getCacheKey()
+	 */
+	public Serializable getCacheKey()
+	{
+		return new ResourceReference.Key(scopeName, absolutePath, getCurrentLocale(),
+			getCurrentStyle(), variation);
+	}
+
+	/**
+	 * @see org.apache.wicket.request.resource.IStaticCacheableResource#getCacheableResourceStream()
+	 */
+	public IResourceStream getCacheableResourceStream()
+	{
+		return ThreadContext.getApplication()
+			.getResourceSettings()
+			.getResourceStreamLocator()
+			.locate(getScope(), absolutePath, getCurrentStyle(), variation, getCurrentLocale(),
+				null, false);
+	}
+
+	private Locale getCurrentLocale()
+	{
+		if ((locale == null) && Session.exists())
+		{
+			return Session.get().getLocale();
+		}
+		return locale;
+	}
+
+	private String getCurrentStyle()
+	{
+		if ((style == null) && Session.exists())
+		{
+			return Session.get().getStyle();
+		}
+		return style;
+	}
+
 	/**
 	 * @param scope
 	 *            resource scope
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.lang.Generics;
+import org.apache.wicket.util.lang.Objects;
+import org.apache.wicket.util.string.Strings;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Application wide cache for the processed contents of {@link PackageResource}s, so they are not
+ * read and processed (e.g. by a {@link org.apache.wicket.javascript.IJavaScriptCompressor}) again
+ * for each request. For compressible content types a gzipped variant is kept as well, which is
+ * served to clients accepting the gzip content encoding.
+ * <p>
+ * An entry is discarded as soon as the last modification time of its resource changes. Resources
+ * larger than the maximum entry size are not cached, nor hashed or gzipped.
+ * 
+ * @see org.apache.wicket.settings.IResourceSettings#setPackageResourceCache(PackageResourceCache)
+ */
+public class PackageResourceCache
+{
+	private static final Logger log = LoggerFactory.getLogger(PackageResourceCache.class);
+
+	/** Default maximum size of a cached resource */
+	public static final Bytes DEFAULT_MAX_ENTRY_SIZE = Bytes.kilobytes(512);
+
+	private final ConcurrentMap<PackageResource, Entry> entries = Generics.newConcurrentHashMap();
+
+	private final Bytes maxEntrySize;
+
+	/**
+	 * Construct.
+	 */
+	public PackageResourceCache()
+	{
+		this(DEFAULT_MAX_ENTRY_SIZE);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxEntrySize
+	 *            maximum size of a processed resource to be cached
+	 */
+	public PackageResourceCache(final Bytes maxEntrySize)
+	{
+		this.maxEntrySize = Args.notNull(maxEntrySize, "maxEntrySize");
+	}
+
+	/**
+	 * @return maximum size of a processed resource to be cached
+	 */
+	public final Bytes getMaxEntrySize()
+	{
+		return maxEntrySize;
+	}
+
+	/**
+	 * Gets the cached contents of a resource.
+	 * 
+	 * @param resource
+	 *            the package resource
+	 * @param lastModified
+	 *            the current last modification time of the resource, may be <code>null</code>
+	 * @return the cached entry or <code>null</code> if there is none for the given modification
+	 *         time
+	 */
+	public Entry get(final PackageResource resource, final Time lastModified)
+	{
+		Entry entry = entries.get(resource);
+		if ((entry != null) && !Objects.equal(entry.getLastModified(), lastModified))
+		{
+			entries.remove(resource, entry);
+			entry = null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Caches the processed contents of a resource.
+	 * 
+	 * @param resource
+	 *            the package resource
+	 * @param lastModified
+	 *            the last modification time of the resource, may be <code>null</code>
+	 * @param contentType
+	 *            the content type of the resource, may be <code>null</code>
+	 * @param data
+	 *            the processed contents
+	 * @return the entry for the contents, which is only cached if it is not too large
+	 */
+	public Entry put(final PackageResource resource, final Time lastModified,
+		final String contentType, final byte[] data)
+	{
+		if (data.length > maxEntrySize.bytes())
+		{
+			return new Entry(lastModified, contentType, data, null, null);
+		}
+
+		Entry entry = newEntry(lastModified, contentType, data);
+		entries.put(resource, entry);
+		return entry;
+	}
+
+	/**
+	 * Creates an entry including the hash and the gzipped variant of compressible contents, without
+	 * caching it.
+	 * 
+	 * @param lastModified
+	 *            the last modification time of the contents, may be <code>null</code>
+	 * @param contentType
+	 *            the content type of the contents, may be <code>null</code>
+	 * @param data
+	 *            the contents
+	 * @return the entry
+	 */
+	Entry newEntry(final Time lastModified, final String contentType, final byte[] data)
+	{
+		byte[] gzipped = null;
+		if (isCompressible(contentType))
+		{
+			gzipped = gzip(data);
+			if ((gzipped != null) && (gzipped.length >= data.length))
+			{
+				// not worth the decompression on the client
+				gzipped = null;
+			}
+		}
+
+		return new Entry(lastModified, contentType, data, gzipped, hash(data));
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * @return number of cached resources
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Whether resources of the given content type should be kept gzipped too. By default textual
+	 * content types are compressed, while images or archives are expected to be compressed
+	 * already.
+	 * 
+	 * @param contentType
+	 *            the content type, may be <code>null</code>
+	 * @return <code>true</code> if a gzipped variant should be kept
+	 */
+	protected boolean isCompressible(final String contentType)
+	{
+		if (contentType == null)
+		{
+			return false;
+		}
+		String type = contentType.toLowerCase();
+		return type.startsWith("text/") || type.contains("javascript") || type.contains("json") ||
+			type.contains("xml");
+	}
+
+	private static byte[] gzip(final byte[] data)
+	{
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+			GZIPOutputStream gzip = new GZIPOutputStream(out);
+			gzip.write(data);
+			gzip.close();
+			return out.toByteArray();
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to gzip resource", e);
+			return null;
+		}
+	}
+
+	private static String hash(final byte[] data)
+	{
+		try
+		{
+			return Strings.toHexString(MessageDigest.getInstance("MD5").digest(data));
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	/**
+	 * The processed contents of a resource.
+	 */
+	public static final class Entry
+	{
+		private final Time lastModified;
+
+		private final String contentType;
+
+		private final byte[] data;
+
+		private final byte[] gzippedData;
+
+		private final String hash;
+
+		Entry(final Time lastModified, final String contentType, final byte[] data,
+			final byte[] gzippedData, final String hash)
+		{
+			this.lastModified = lastModified;
+			this.contentType = contentType;
+			this.data = data;
+			this.gzippedData = gzippedData;
+			this.hash = hash;
+		}
+
+		/**
+		 * @return last modification time of the resource, may be <code>null</code>
+		 */
+		public Time getLastModified()
+		{
+			return lastModified;
+		}
+
+		/**
+		 * @return content type of the resource, may be <code>null</code>
+		 */
+		public String getContentType()
+		{
+			return contentType;
+		}
+
+		/**
+		 * @return processed contents
+		 */
+		public byte[] getData()
+		{
+			return data;
+		}
+
+		/**
+		 * @return gzipped processed contents or <code>null</code> if the resource should not be
+		 *         served gzipped
+		 */
+		public byte[] getGzippedData()
+		{
+			return gzippedData;
+		}
+
+		/**
+		 * @return hex encoded MD5 hash of the processed contents, e.g. for an entity tag, or
+		 *         <code>null</code> if the contents are too large to be cached
+		 */
+		public String getHash()
+		{
+			return hash;
+		}
+	}
+}
@@ -108,7 +108,7 @@ public abstract class ResourceReference implements Serializable
 	 *         ResourceReferenceRegistry to make up the key under which the resource reference gets
 	 *         stored.
 	 */
-	Key getKey()
+	public final Key getKey()
 	{
 		return data;
 	}
@@ -354,6 +354,9 @@ public abstract class ResourceReference implements Serializable
 		final String style;
 		final String variation;
 
+		/** lazily computed, keys are used a lot in hash maps */
+		private transient int hashCode;
+
 		/**
 		 * Construct.
 		 * 
@@ -421,7 +424,13 @@ public abstract class ResourceReference implements Serializable
 		@Override
 		public int hashCode()
 		{
-			return Objects.hashCode(scope, name, locale, style, variation);
+			int result = hashCode;
+			if (result == 0)
+			{
+				result = Objects.hashCode(scope, name, locale, style, variation);
+				hashCode = result;
+			}
+			return result;
 		}
 
 		/**
@@ -350,7 +350,8 @@ public class ResourceReferenceRegistry
 	 * Creates a default resource reference in case no registry entry and it was requested to create
 	 * one.
 	 * <p>
-	 * A {@link PackageResourceReference} will be created by default
+	 * A {@link PackageResourceReference} will be created by default, or a
+	 * {@link ConcatResourceBundleReference} if the name is the one of a bundle.
 	 * 
 	 * @param key
 	 * @return The RR created or null if not successful
@@ -364,7 +365,7 @@ public class ResourceReferenceRegistry
 		}
 		else
 		{
-			return null;
+			return ConcatResourceBundleReference.decode(key, this);
 		}
 	}
 
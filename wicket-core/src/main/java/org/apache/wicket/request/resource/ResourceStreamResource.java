@@ -16,11 +16,20 @@
  */
 package org.apache.wicket.request.resource;
 
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.UUID;
 
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.resource.IResourceStream;
@@ -32,7 +41,13 @@ import org.slf4j.LoggerFactory;
 
 
 /**
- * TODO javadoc
+ * Resource that serves an {@link IResourceStream}.
+ * <p>
+ * An entity tag is derived from the last modification time and length of the stream. If the
+ * length is known, single and multiple byte ranges requested with the <code>Range</code> header
+ * are answered with <code>206 Partial Content</code>, reading only the requested parts from the
+ * stream. Files are transferred with {@link java.nio.channels.FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)} if the response exposes a channel.
  */
 public class ResourceStreamResource extends AbstractResource
 {
@@ -96,6 +111,8 @@ public class ResourceStreamResource extends AbstractResource
 		{
 			data.setLastModified(lastModifiedTime);
 		}
+		Bytes length = stream.length();
+		data.setETag(newVersionETag(lastModifiedTime, length));
 
 		// performance check; don't bother to do anything if the resource is still cached by client
 		if (data.dataNeedsToBeWritten(attributes))
@@ -115,7 +132,6 @@ public class ResourceStreamResource extends AbstractResource
 			}
 
 			data.setContentDisposition(contentDisposition);
-			Bytes length = stream.length();
 			if (length != null)
 			{
 				data.setContentLength(length.bytes());
@@ -136,28 +152,282 @@ public class ResourceStreamResource extends AbstractResource
 					}
 				});
 			}
+			else if ((length != null) && (inputStream != null))
+			{
+				data.setHeader("Accept-Ranges", "bytes");
+
+				List<ByteRange> ranges = getRequestedRanges(attributes, data, length.bytes());
+				if (ranges == null)
+				{
+					setStreamWriteCallback(data, inputStream);
+				}
+				else if (ranges.isEmpty())
+				{
+					data.setHeader("Content-Range", "bytes */" + length.bytes());
+					data.setError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+					close();
+				}
+				else
+				{
+					data.setStatusCode(HttpServletResponse.SC_PARTIAL_CONTENT);
+					setRangeWriteCallback(data, inputStream, ranges, length.bytes());
+				}
+			}
 			else
 			{
-				final InputStream s = inputStream;
-				data.setWriteCallback(new WriteCallback()
+				setStreamWriteCallback(data, inputStream);
+			}
+		}
+
+		return data;
+	}
+
+	private void setStreamWriteCallback(final ResourceResponse data, final InputStream s)
+	{
+		data.setWriteCallback(new WriteCallback()
+		{
+			@Override
+			public void writeData(Attributes attributes)
+			{
+				try
 				{
-					@Override
-					public void writeData(Attributes attributes)
+					writeStream(attributes, s);
+				}
+				finally
+				{
+					close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Sets the headers and write callback for a partial response
+	 * 
+	 * @param data
+	 * @param s
+	 * @param ranges
+	 *            sorted, non overlapping ranges
+	 * @param length
+	 *            total length of the stream
+	 */
+	private void setRangeWriteCallback(final ResourceResponse data, final InputStream s,
+		final List<ByteRange> ranges, final long length)
+	{
+		final byte[][] partHeaders;
+		final byte[] trailer;
+		if (ranges.size() == 1)
+		{
+			ByteRange range = ranges.get(0);
+			data.setHeader("Content-Range", range.toContentRange(length));
+			data.setContentLength(range.getLength());
+			partHeaders = null;
+			trailer = null;
+		}
+		else
+		{
+			String contentType = data.getContentType();
+			if ((contentType != null) && contentType.contains("text") && (textEncoding != null))
+			{
+				contentType += "; charset=" + textEncoding;
+			}
+
+			String boundary = UUID.randomUUID().toString();
+			long contentLength = 0;
+			partHeaders = new byte[ranges.size()][];
+			for (int i = 0; i < partHeaders.length; i++)
+			{
+				ByteRange range = ranges.get(i);
+				StringBuilder header = new StringBuilder();
+				header.append("\r\n--").append(boundary).append("\r\n");
+				if (contentType != null)
+				{
+					header.append("Content-Type: ").append(contentType).append("\r\n");
+				}
+				header.append("Content-Range: ")
+					.append(range.toContentRange(length))
+					.append("\r\n\r\n");
+				partHeaders[i] = toAscii(header);
+				contentLength += partHeaders[i].length + range.getLength();
+			}
+			trailer = toAscii("\r\n--" + boundary + "--\r\n");
+			contentLength += trailer.length;
+
+			data.setContentType("multipart/byteranges; boundary=" + boundary);
+			data.setContentLength(contentLength);
+		}
+
+		data.setWriteCallback(new WriteCallback()
+		{
+			@Override
+			public void writeData(Attributes attributes)
+			{
+				Response response = attributes.getResponse();
+				try
+				{
+					long position = 0;
+					for (int i = 0; i < ranges.size(); i++)
 					{
-						try
+						if (partHeaders != null)
+						{
+							response.write(partHeaders[i]);
+						}
+						ByteRange range = ranges.get(i);
+						if (s instanceof FileInputStream)
 						{
-							writeStream(attributes, s);
+							FileChannel channel = ((FileInputStream)s).getChannel();
+							writeFile(attributes, channel, range.getFirst(), range.getLength());
 						}
-						finally
+						else
 						{
-							close();
+							copyRange(s, position, range, response);
 						}
+						position = range.getLast() + 1;
 					}
-				});
+					if (trailer != null)
+					{
+						response.write(trailer);
+					}
+				}
+				catch (IOException e)
+				{
+					throw new WicketRuntimeException(e);
+				}
+				finally
+				{
+					close();
+				}
 			}
+		});
+	}
+
+	/**
+	 * Gets the ranges requested by the client, unless the <code>If-Range</code> precondition
+	 * fails.
+	 * 
+	 * @param attributes
+	 * @param data
+	 * @param length
+	 * @return requested ranges or <code>null</code> if the whole stream has to be written
+	 */
+	private List<ByteRange> getRequestedRanges(final Attributes attributes,
+		final ResourceResponse data, final long length)
+	{
+		if (!(attributes.getRequest() instanceof WebRequest))
+		{
+			return null;
+		}
+		WebRequest request = (WebRequest)attributes.getRequest();
+		String range = request.getHeader("Range");
+		if ((range == null) || !isRangeApplicable(request, data))
+		{
+			return null;
 		}
+		return ByteRange.parse(range, length);
+	}
 
-		return data;
+	/**
+	 * Checks the <code>If-Range</code> header, which requires the entity to be unchanged
+	 * 
+	 * @param request
+	 * @param data
+	 * @return <code>true</code> if the requested ranges can be sent
+	 */
+	private boolean isRangeApplicable(final WebRequest request, final ResourceResponse data)
+	{
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null)
+		{
+			return true;
+		}
+
+		ifRange = ifRange.trim();
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+		{
+			// only strong entity tags are valid
+			return !ifRange.startsWith("W/") && ifRange.equals(data.getETag());
+		}
+
+		Time lastModified = data.getLastModified();
+		if (lastModified == null)
+		{
+			return false;
+		}
+		try
+		{
+			Time date = request.getDateHeader("If-Range");
+			return (date != null) &&
+				(date.getMilliseconds() == lastModified.getMilliseconds() / 1000 * 1000);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Copies a range of the stream to the response
+	 * 
+	 * @param in
+	 *            the stream
+	 * @param position
+	 *            current position in the stream
+	 * @param range
+	 *            range to copy, starting at or after the position
+	 * @param response
+	 * @throws IOException
+	 */
+	private static void copyRange(final InputStream in, final long position,
+		final ByteRange range, final Response response) throws IOException
+	{
+		long skip = range.getFirst() - position;
+		while (skip > 0)
+		{
+			long skipped = in.skip(skip);
+			if (skipped <= 0)
+			{
+				if (in.read() == -1)
+				{
+					throw new EOFException("Unexpected end of stream");
+				}
+				skipped = 1;
+			}
+			skip -= skipped;
+		}
+
+		long remaining = range.getLength();
+		byte[] buffer = new byte[(int)Math.min(remaining, 4096)];
+		while (remaining > 0)
+		{
+			int read = in.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+			if (read == -1)
+			{
+				throw new EOFException("Unexpected end of stream");
+			}
+			if (read == buffer.length)
+			{
+				response.write(buffer);
+			}
+			else
+			{
+				byte[] chunk = new byte[read];
+				System.arraycopy(buffer, 0, chunk, 0, read);
+				response.write(chunk);
+			}
+			remaining -= read;
+		}
+	}
+
+	private static byte[] toAscii(final CharSequence text)
+	{
+		try
+		{
+			return text.toString().getBytes("US-ASCII");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
 	}
 
 	private void close()
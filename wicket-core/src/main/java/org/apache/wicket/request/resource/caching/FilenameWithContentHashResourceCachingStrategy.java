@@ -0,0 +1,404 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource.caching;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.ConcatResourceBundleReference;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.IStaticCacheableResource;
+import org.apache.wicket.request.resource.PackageResource;
+import org.apache.wicket.request.resource.PackageResourceCache;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Generics;
+import org.apache.wicket.util.listener.IChangeListener;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+import org.apache.wicket.util.string.Strings;
+import org.apache.wicket.util.time.Time;
+import org.apache.wicket.util.watch.IModificationWatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * resource caching strategy that adds a digest of the resource contents to the filename
+ * <p/>
+ * versioned_filename := [basename][version-prefix][digest](.extension)
+ * <p/>
+ * Unlike a last-modified timestamp the digest does not change when the resource is redeployed
+ * unmodified, so all nodes of a cluster render the same URL and browsers, proxies and CDNs keep
+ * their cached copies across deployments. As the contents of a versioned URL never change, they
+ * are served with far-future and immutable caching headers.
+ * <p/>
+ * The digest is computed once for each {@link IStaticCacheableResource}, i.e. package resource,
+ * and is cached for the lifetime of the application. Package resources are digested after
+ * processing, so the version changes with the served contents, e.g. when the compressor is
+ * replaced. In development mode it is discarded as soon
+ * as the {@link IModificationWatcher resource watcher} notices a modification. Bundles are
+ * versioned by the digests of their parts, while other resources are versioned by their last
+ * modification time.
+ */
+public class FilenameWithContentHashResourceCachingStrategy extends
+	AbstractResourceCachingStrategy
+{
+	private static final Logger log = LoggerFactory
+		.getLogger(FilenameWithContentHashResourceCachingStrategy.class);
+
+	protected static final String DEFAULT_VERSION_PREFIX = "-ver-";
+
+	/** cache control for contents which never change, far-future as of RFC-2616 */
+	private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=" +
+		(long)WebResponse.MAX_CACHE_DURATION.seconds() + ", immutable";
+
+	private final String versionPrefix;
+
+	private final ConcurrentMap<Serializable, String> digests = Generics.newConcurrentHashMap();
+
+	/**
+	 * Constructor
+	 */
+	public FilenameWithContentHashResourceCachingStrategy()
+	{
+		this(DEFAULT_VERSION_PREFIX);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param versionPrefix
+	 *            string appended to the filename before the version
+	 */
+	public FilenameWithContentHashResourceCachingStrategy(String versionPrefix)
+	{
+		Args.notEmpty(versionPrefix, "versionPrefix");
+		this.versionPrefix = versionPrefix;
+	}
+
+	/**
+	 * @return string appended to the filename before the version
+	 */
+	public final String getVersionPrefix()
+	{
+		return versionPrefix;
+	}
+
+	public void decorateUrl(ResourceUrl url, ResourceReference reference)
+	{
+		String version = getVersion(reference);
+
+		if (version == null)
+			return;
+
+		final String filename = url.getFileName();
+
+		// check if resource name has extension
+		int extensionAt = filename.lastIndexOf('.');
+
+		StringBuilder versionedFilename = new StringBuilder();
+		versionedFilename.append(extensionAt == -1 ? filename : filename.substring(0, extensionAt));
+		versionedFilename.append(versionPrefix);
+		versionedFilename.append(version);
+
+		if (extensionAt != -1)
+			versionedFilename.append(filename.substring(extensionAt));
+
+		url.setFileName(versionedFilename.toString());
+	}
+
+	public void undecorateUrl(ResourceUrl url)
+	{
+		final String filename = url.getFileName();
+		int pos = filename.lastIndexOf('.');
+
+		final String fullname = pos == -1 ? filename : filename.substring(0, pos);
+		final String extension = pos == -1 ? null : filename.substring(pos);
+
+		pos = fullname.lastIndexOf(versionPrefix);
+
+		if (pos != -1)
+		{
+			final String version = fullname.substring(pos + versionPrefix.length());
+
+			// a filename coincidentally containing the prefix is left as it is
+			if (isVersion(version))
+			{
+				final String basename = fullname.substring(0, pos);
+				url.setFileName(extension == null ? basename : basename + extension);
+			}
+		}
+	}
+
+	/**
+	 * set resource caching to maximum and set cache-visibility to 'public', contents requested by
+	 * a versioned URL are marked as immutable too
+	 * 
+	 * @param response
+	 */
+	public void decorateResponse(AbstractResource.ResourceResponse response)
+	{
+		response.setCacheDurationToMaximum();
+		response.setCacheScope(WebResponse.CacheScope.PUBLIC);
+		if (isVersionedRequest())
+		{
+			response.setHeader("Cache-Control", IMMUTABLE_CACHE_CONTROL);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the filename of the current request carries a version
+	 */
+	private boolean isVersionedRequest()
+	{
+		RequestCycle cycle = RequestCycle.get();
+		if ((cycle == null) || (cycle.getRequest() == null))
+		{
+			return false;
+		}
+		List<String> segments = cycle.getRequest().getUrl().getSegments();
+		if (segments.isEmpty())
+		{
+			return false;
+		}
+		String filename = segments.get(segments.size() - 1);
+		ResourceUrl url = new ResourceUrl(filename, new PageParameters());
+		undecorateUrl(url);
+		return !filename.equals(url.getFileName());
+	}
+
+	/**
+	 * Discards all cached digests.
+	 */
+	public void clearDigests()
+	{
+		digests.clear();
+	}
+
+	/**
+	 * Gets the version of the referenced resource.
+	 * 
+	 * @param reference
+	 *            resource reference
+	 * @return the digest of the contents, the last modification time if the resource is not static
+	 *         or <code>null</code> if there is neither
+	 */
+	protected String getVersion(ResourceReference reference)
+	{
+		if (reference instanceof ConcatResourceBundleReference)
+		{
+			StringBuilder versions = new StringBuilder();
+			ConcatResourceBundleReference bundle = (ConcatResourceBundleReference)reference;
+			for (ResourceReference part : bundle.getReferences())
+			{
+				String version = getVersion(part);
+				if (version == null)
+				{
+					return null;
+				}
+				versions.append(version).append('\n');
+			}
+			return Strings.toHexString(newDigest().digest(versions.toString().getBytes()));
+		}
+
+		IResource resource = reference.getResource();
+		if (resource instanceof IStaticCacheableResource)
+		{
+			String digest = getDigest((IStaticCacheableResource)resource);
+			if (digest != null)
+			{
+				return digest;
+			}
+		}
+
+		Time lastModified = getLastModified(reference);
+		return (lastModified == null) ? null : String.valueOf(lastModified.getMilliseconds());
+	}
+
+	/**
+	 * @param resource
+	 * @return the cached digest of the resource contents or <code>null</code> if they could not be
+	 *         read
+	 */
+	private String getDigest(IStaticCacheableResource resource)
+	{
+		final Serializable key = resource.getCacheKey();
+
+		String digest = digests.get(key);
+		if (digest == null)
+		{
+			IResourceStream stream = resource.getCacheableResourceStream();
+			if (stream == null)
+			{
+				return null;
+			}
+
+			try
+			{
+				if (resource instanceof PackageResource)
+				{
+					digest = getProcessedDigest((PackageResource)resource);
+				}
+				if (digest == null)
+				{
+					digest = computeDigest(stream.getInputStream());
+				}
+			}
+			catch (IOException e)
+			{
+				log.warn("Unable to compute digest of resource " + key, e);
+				return null;
+			}
+			catch (ResourceStreamNotFoundException e)
+			{
+				log.warn("Unable to compute digest of resource " + key, e);
+				return null;
+			}
+			finally
+			{
+				try
+				{
+					stream.close();
+				}
+				catch (IOException e)
+				{
+					log.debug(e.getMessage(), e);
+				}
+			}
+
+			if (digests.putIfAbsent(key, digest) == null)
+			{
+				watch(key, stream);
+			}
+		}
+		return digest;
+	}
+
+	/**
+	 * @param resource
+	 * @return the MD5 hash the {@link PackageResourceCache} keeps for the processed contents or
+	 *         <code>null</code> if there is no request to process the resource for or the
+	 *         contents are not cached
+	 * @throws IOException
+	 * @throws ResourceStreamNotFoundException
+	 */
+	private String getProcessedDigest(PackageResource resource) throws IOException,
+		ResourceStreamNotFoundException
+	{
+		RequestCycle cycle = RequestCycle.get();
+		if (cycle == null)
+		{
+			return null;
+		}
+		PackageResourceCache.Entry entry = resource.getProcessedResource(new IResource.Attributes(
+			cycle.getRequest(), cycle.getResponse()));
+		if (entry == null)
+		{
+			return null;
+		}
+		return entry.getHash();
+	}
+
+	/**
+	 * Discards the digest as soon as the resource is modified in development mode.
+	 * 
+	 * @param key
+	 * @param stream
+	 */
+	private void watch(final Serializable key, IResourceStream stream)
+	{
+		Application application = ThreadContext.getApplication();
+		if ((application != null) && application.usesDevelopmentConfig())
+		{
+			IModificationWatcher watcher = application.getResourceSettings().getResourceWatcher(
+				true);
+			if (watcher != null)
+			{
+				watcher.add(stream, new IChangeListener()
+				{
+					public void onChange()
+					{
+						digests.remove(key);
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Computes the digest of resource contents. The digest must consist of the characters
+	 * <code>[0-9a-z]</code>. Processed package resources are versioned by the MD5 hash their
+	 * cache entry holds already, if they are cached.
+	 * 
+	 * @param in
+	 *            the contents, closed by the caller
+	 * @return the digest
+	 * @throws IOException
+	 */
+	protected String computeDigest(InputStream in) throws IOException
+	{
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1)
+		{
+			digest.update(buffer, 0, read);
+		}
+		return Strings.toHexString(digest.digest());
+	}
+
+	private static MessageDigest newDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	private static boolean isVersion(String version)
+	{
+		if (version.length() == 0)
+		{
+			return false;
+		}
+		for (int i = 0; i < version.length(); i++)
+		{
+			char c = version.charAt(i);
+			if (((c < '0') || (c > '9')) && ((c < 'a') || (c > 'z')))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
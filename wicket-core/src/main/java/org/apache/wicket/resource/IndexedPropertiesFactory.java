@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.resource;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.resource.UrlResourceStream;
+import org.apache.wicket.util.resource.locator.ClasspathResourceIndex;
+import org.apache.wicket.util.value.ValueMap;
+import org.apache.wicket.util.watch.IModificationWatcher;
+
+
+/**
+ * A {@link PropertiesFactory} which scans the given packages of the classpath once for all
+ * properties bundles supported by its {@link #getPropertiesLoaders() loaders} and loads them into
+ * an immutable index. Any later lookup of a path within these packages is answered from the index
+ * without any I/O, most notably without probing the classpath for the many locale, style and
+ * variation combinations which do not exist. Paths outside the indexed packages are loaded by
+ * {@link PropertiesFactory} as usual.
+ * <p>
+ * The classpath of each class loader asked for properties is indexed separately, in the same order
+ * as {@link org.apache.wicket.util.resource.locator.ResourceStreamLocator} asks them. A path which
+ * is not found in the index of any of them is not loaded at all.
+ * <p>
+ * Only the classpath is indexed, hence this factory should not be used for packages whose
+ * properties are located by an {@link org.apache.wicket.util.file.IResourceFinder} of the
+ * resource settings. See {@link ClasspathResourceIndex} for the limitations of the scan.
+ * <p>
+ * In development mode the indexed files are added to the resource watcher and the index is rebuilt
+ * after one of them has changed.
+ * 
+ * <pre>
+ * getResourceSettings().setPropertiesFactory(
+ * 	new IndexedPropertiesFactory(this, &quot;org.apache.wicket&quot;, &quot;com.mycompany&quot;));
+ * </pre>
+ */
+public class IndexedPropertiesFactory extends PropertiesFactory
+{
+	private final Application application;
+
+	/** names of the packages to index, e.g. "org.apache.wicket" */
+	private final String[] packageNames;
+
+	/** indexes by class loader, replaced on change */
+	private volatile Map<ClassLoader, Index> indexes = Collections.emptyMap();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param application
+	 *            Application for this properties factory.
+	 * @param packageNames
+	 *            names of the packages, including their sub packages, to index
+	 */
+	public IndexedPropertiesFactory(final Application application, final String... packageNames)
+	{
+		super(application);
+
+		this.application = application;
+		this.packageNames = Args.notNull(packageNames, "packageNames");
+
+		addListener(new IPropertiesChangeListener()
+		{
+			public void propertiesChanged(final String key)
+			{
+				// the localizer must not keep strings read from the outdated index
+				indexes = Collections.emptyMap();
+				application.getResourceSettings().getLocalizer().clearCache();
+			}
+		});
+	}
+
+	/**
+	 * @see org.apache.wicket.resource.PropertiesFactory#load(java.lang.Class, java.lang.String)
+	 */
+	@Override
+	public Properties load(final Class<?> clazz, final String path)
+	{
+		for (ClassLoader classLoader : getClassLoaders(clazz))
+		{
+			final Index index = getIndex(classLoader);
+			if ((index.resources.covers(path) == false) || index.ambiguous.contains(path))
+			{
+				return super.load(clazz, path);
+			}
+
+			final Properties properties = index.properties.get(path);
+			if (properties != null)
+			{
+				return properties;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param clazz
+	 * @return the class loaders to ask, in the order the resource stream locator asks them
+	 */
+	private List<ClassLoader> getClassLoaders(final Class<?> clazz)
+	{
+		final List<ClassLoader> classLoaders = new ArrayList<ClassLoader>(3);
+		addClassLoader(clazz != null ? clazz.getClassLoader() : null, classLoaders);
+		addClassLoader(Thread.currentThread().getContextClassLoader(), classLoaders);
+		addClassLoader(getClass().getClassLoader(), classLoaders);
+		return classLoaders;
+	}
+
+	/**
+	 * @param classLoader
+	 *            optional
+	 * @param classLoaders
+	 */
+	private static void addClassLoader(final ClassLoader classLoader,
+		final List<ClassLoader> classLoaders)
+	{
+		if ((classLoader != null) && (classLoaders.contains(classLoader) == false))
+		{
+			classLoaders.add(classLoader);
+		}
+	}
+
+	/**
+	 * Scans the packages and replaces the current index. Call it e.g. from
+	 * {@link Application#init()} to build the index at startup instead of on first use.
+	 */
+	public final void rebuildIndex()
+	{
+		final Map<ClassLoader, Index> rebuilt = new IdentityHashMap<ClassLoader, Index>();
+		for (ClassLoader classLoader : getClassLoaders(null))
+		{
+			rebuilt.put(classLoader, newIndex(classLoader));
+		}
+		indexes = rebuilt;
+	}
+
+	/**
+	 * @param classLoader
+	 * @return the index of the class loader, built if necessary
+	 */
+	private Index getIndex(final ClassLoader classLoader)
+	{
+		Index current = indexes.get(classLoader);
+		if (current == null)
+		{
+			synchronized (this)
+			{
+				current = indexes.get(classLoader);
+				if (current == null)
+				{
+					current = newIndex(classLoader);
+
+					// copy on write, lookups do not lock
+					final Map<ClassLoader, Index> copy = new IdentityHashMap<ClassLoader, Index>(
+						indexes);
+					copy.put(classLoader, current);
+					indexes = copy;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Scans all packages of the class loader's classpath and loads the properties found
+	 * 
+	 * @param classLoader
+	 * @return new index
+	 */
+	private Index newIndex(final ClassLoader classLoader)
+	{
+		final String[] folders = new String[packageNames.length];
+		for (int i = 0; i < packageNames.length; i++)
+		{
+			folders[i] = packageNames[i].replace('.', '/');
+		}
+		final ClasspathResourceIndex resources = new ClasspathResourceIndex(classLoader,
+			folders);
+
+		// development mode only, watching files is too expensive in production
+		IModificationWatcher watcher = null;
+		if (application.usesDevelopmentConfig())
+		{
+			watcher = application.getResourceSettings().getResourceWatcher(true);
+		}
+
+		final Index index = new Index(resources);
+		for (String name : resources.getNames())
+		{
+			for (IPropertiesLoader loader : getPropertiesLoaders())
+			{
+				final String extension = loader.getFileExtension();
+				if (name.endsWith(extension))
+				{
+					final String path = name.substring(0, name.length() - extension.length());
+					if ((index.properties.containsKey(path) == false) &&
+						(index.ambiguous.contains(path) == false))
+					{
+						load(path, index, watcher);
+					}
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Loads the properties of the path with the first loader which has a matching file, just like
+	 * {@link PropertiesFactory#load(Class, String)} does.
+	 * 
+	 * @param path
+	 * @param index
+	 *            index to add the properties to
+	 * @param watcher
+	 *            optional
+	 */
+	private void load(final String path, final Index index, final IModificationWatcher watcher)
+	{
+		for (IPropertiesLoader loader : getPropertiesLoaders())
+		{
+			final String name = path + loader.getFileExtension();
+			if (index.resources.contains(name) == false)
+			{
+				continue;
+			}
+
+			final URL url = index.resources.getUrl(name);
+			if (url == null)
+			{
+				// let the class loaders decide which one to load
+				index.ambiguous.add(path);
+				return;
+			}
+
+			final UrlResourceStream resourceStream = new UrlResourceStream(url);
+			if (watcher != null)
+			{
+				addToWatcher(path, resourceStream, watcher);
+			}
+
+			final ValueMap props = loadFromLoader(loader, resourceStream);
+			if (props != null)
+			{
+				index.properties.put(path, new Properties(path, props));
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Index of the properties found in the scanned packages, not modified once built
+	 */
+	private static final class Index
+	{
+		private final ClasspathResourceIndex resources;
+
+		private final Map<String, Properties> properties = new HashMap<String, Properties>();
+
+		/** paths found in more than one classpath root */
+		private final Set<String> ambiguous = new HashSet<String>();
+
+		private Index(final ClasspathResourceIndex resources)
+		{
+			this.resources = resources;
+		}
+	}
+}
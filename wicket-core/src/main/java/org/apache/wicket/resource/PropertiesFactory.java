@@ -202,7 +202,7 @@ public class PropertiesFactory implements IPropertiesFactory
 	 * @param resourceStream
 	 * @return properties
 	 */
-	private ValueMap loadFromLoader(final IPropertiesLoader loader,
+	ValueMap loadFromLoader(final IPropertiesLoader loader,
 		final IResourceStream resourceStream)
 	{
 		if (log.isInfoEnabled())
@@ -258,7 +258,7 @@ public class PropertiesFactory implements IPropertiesFactory
 	 * @param resourceStream
 	 * @param watcher
 	 */
-	private void addToWatcher(final String path, final IResourceStream resourceStream,
+	void addToWatcher(final String path, final IResourceStream resourceStream,
 		final IModificationWatcher watcher)
 	{
 		watcher.add(resourceStream, new IChangeListener()
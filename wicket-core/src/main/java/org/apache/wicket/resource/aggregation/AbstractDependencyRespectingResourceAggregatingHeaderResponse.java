@@ -79,7 +79,7 @@ public abstract class AbstractDependencyRespectingResourceAggregatingHeaderRespo
 		}
 	}
 
-	private static ResourceReferenceAndStringData toData(
+	static ResourceReferenceAndStringData toData(
 		AbstractResourceDependentResourceReference child)
 	{
 		boolean css = ResourceType.CSS.equals(child.getResourceType());
@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.resource.aggregation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.wicket.markup.html.IHeaderResponse;
+import org.apache.wicket.request.resource.ConcatResourceBundleReference;
+import org.apache.wicket.request.resource.CssResourceReference;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.apache.wicket.request.resource.PackageResource;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.request.resource.ResourceReference.UrlAttributes;
+import org.apache.wicket.resource.ResourceUtil;
+import org.apache.wicket.resource.dependencies.AbstractResourceDependentResourceReference;
+import org.apache.wicket.util.lang.Objects;
+import org.apache.wicket.util.string.Strings;
+
+/**
+ * A header response bundling the package resources rendered by all components into as few
+ * requests as possible: consecutive JavaScript references and consecutive CSS references of the
+ * same media are rendered as a single {@link ConcatResourceBundleReference}. Dependencies of
+ * {@link AbstractResourceDependentResourceReference}s are bundled before their parent.
+ * <p>
+ * References rendered with an id, and references not backed by a {@link PackageResource}, are
+ * rendered on their own. As relative URLs in stylesheets must still resolve, CSS references are
+ * only bundled with references from the same folder of the same package.
+ * <p>
+ * Install it with
+ * 
+ * <pre>
+ * setHeaderResponseDecorator(new IHeaderResponseDecorator()
+ * {
+ * 	public IHeaderResponse decorate(IHeaderResponse response)
+ * 	{
+ * 		return new ResourceBundlingHeaderResponse(response);
+ * 	}
+ * });
+ * </pre>
+ * 
+ * The URL of a bundle encodes its parts, so it resolves without the bundle having been rendered
+ * before, e.g. on another node of a cluster or after a restart. As the URL grows with every part, a
+ * run of references is split into several bundles once the name of a bundle would exceed
+ * {@link #getMaxBundleNameLength()}.
+ */
+public class ResourceBundlingHeaderResponse
+	extends
+	AbstractDependencyRespectingResourceAggregatingHeaderResponse<ResourceReferenceCollection, ResourceBundlingHeaderResponse.BundleKey>
+{
+	/**
+	 * The default maximum length of the name of a bundle
+	 */
+	public static final int DEFAULT_MAX_BUNDLE_NAME_LENGTH = 512;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param real
+	 *            the header response we decorate
+	 */
+	public ResourceBundlingHeaderResponse(IHeaderResponse real)
+	{
+		super(real);
+	}
+
+	@Override
+	protected BundleKey newGroupingKey(ResourceReferenceAndStringData ref)
+	{
+		return new BundleKey(ref.isCss(), ref.isCss() ? ref.getString() : null);
+	}
+
+	@Override
+	protected void renderCollection(Set<ResourceReferenceAndStringData> alreadyRendered,
+		BundleKey key, ResourceReferenceCollection coll)
+	{
+		// dependencies first
+		Set<ResourceReferenceAndStringData> ordered;
+		ordered = new LinkedHashSet<ResourceReferenceAndStringData>();
+		for (ResourceReferenceAndStringData data : coll)
+		{
+			collect(data, ordered);
+		}
+
+		List<ResourceReferenceAndStringData> run = new ArrayList<ResourceReferenceAndStringData>();
+		List<ResourceReference> parts = new ArrayList<ResourceReference>();
+		for (ResourceReferenceAndStringData data : ordered)
+		{
+			if (alreadyRendered.contains(data))
+			{
+				continue;
+			}
+
+			ResourceReference part = toPart(key, data);
+			if ((part == null) ||
+				((parts.isEmpty() == false) && !(canBundle(key, parts.get(0), part) && fits(key,
+					parts, part))))
+			{
+				renderRun(alreadyRendered, key, run, parts);
+			}
+
+			if (part == null)
+			{
+				renderIfNotAlreadyRendered(alreadyRendered, data);
+			}
+			else
+			{
+				run.add(data);
+				parts.add(part);
+			}
+		}
+		renderRun(alreadyRendered, key, run, parts);
+	}
+
+	/**
+	 * Creates the reference to a bundle of the given parts. By default the bundle is put next to
+	 * its first part. The reference is not registered, so its name must be created with
+	 * {@link ConcatResourceBundleReference#newName(List, String)} for its URL to resolve.
+	 * 
+	 * @param key
+	 *            the group of the parts
+	 * @param parts
+	 *            the parts, at least two
+	 * @return the reference to the bundle
+	 */
+	protected ResourceReference newBundleReference(BundleKey key, List<ResourceReference> parts)
+	{
+		ResourceReference first = parts.get(0);
+		String name = ConcatResourceBundleReference.newName(parts, key.isCss() ? "css" : "js");
+		String folder = getFolder(first);
+		if (folder != null)
+		{
+			name = folder + "/" + name;
+		}
+		return new ConcatResourceBundleReference(first.getScope(), name, parts);
+	}
+
+	/**
+	 * The name of a bundle encodes its parts, so a run of references is split into several
+	 * bundles to keep their URLs short.
+	 * 
+	 * @return the maximum length of the name of a bundle, without its folder
+	 */
+	protected int getMaxBundleNameLength()
+	{
+		return DEFAULT_MAX_BUNDLE_NAME_LENGTH;
+	}
+
+	/**
+	 * @return whether the name of a bundle of the given parts and the new part is not too long
+	 */
+	private boolean fits(BundleKey key, List<ResourceReference> parts, ResourceReference part)
+	{
+		parts.add(part);
+		try
+		{
+			String name = ConcatResourceBundleReference.newName(parts, key.isCss() ? "css" : "js");
+			return name.length() <= getMaxBundleNameLength();
+		}
+		finally
+		{
+			parts.remove(parts.size() - 1);
+		}
+	}
+
+	/**
+	 * Renders the collected run of references, as a bundle if there is more than one, and starts
+	 * a new run.
+	 */
+	private void renderRun(Set<ResourceReferenceAndStringData> alreadyRendered, BundleKey key,
+		List<ResourceReferenceAndStringData> run, List<ResourceReference> parts)
+	{
+		if (run.size() == 1)
+		{
+			renderIfNotAlreadyRendered(alreadyRendered, run.get(0));
+		}
+		else if (run.size() > 1)
+		{
+			ResourceReference bundle = newBundleReference(key, parts);
+			ResourceUtil.renderTo(getRealResponse(), bundle, key.isCss(), key.getMedia());
+			alreadyRendered.addAll(run);
+		}
+		run.clear();
+		parts.clear();
+	}
+
+	private static void collect(ResourceReferenceAndStringData data,
+		Set<ResourceReferenceAndStringData> ordered)
+	{
+		if (ordered.contains(data))
+		{
+			return;
+		}
+
+		ResourceReference ref = data.getReference();
+		if (ref instanceof AbstractResourceDependentResourceReference)
+		{
+			AbstractResourceDependentResourceReference parent = (AbstractResourceDependentResourceReference)ref;
+			for (AbstractResourceDependentResourceReference child : parent.getDependentResourceReferences())
+			{
+				collect(toData(child), ordered);
+			}
+		}
+		ordered.add(data);
+	}
+
+	/**
+	 * @param key
+	 * @param data
+	 * @return the reference to bundle for the given data or <code>null</code> if it has to be
+	 *         rendered on its own
+	 */
+	private static ResourceReference toPart(BundleKey key, ResourceReferenceAndStringData data)
+	{
+		if (data.isCss() != key.isCss())
+		{
+			return null;
+		}
+		if (data.isCss() ? !Objects.equal(data.getString(), key.getMedia())
+			: !Strings.isEmpty(data.getString()))
+		{
+			return null;
+		}
+
+		ResourceReference ref = data.getReference();
+
+		// fix the variant the session would be served
+		if ((ref.getLocale() == null) || (ref.getStyle() == null))
+		{
+			if (ref.getClass() == JavaScriptResourceReference.class)
+			{
+				UrlAttributes attributes = ref.getUrlAttributes();
+				return new JavaScriptResourceReference(ref.getScope(), ref.getName(),
+					attributes.getLocale(), attributes.getStyle(), attributes.getVariation());
+			}
+			else if (ref.getClass() == CssResourceReference.class)
+			{
+				UrlAttributes attributes = ref.getUrlAttributes();
+				return new CssResourceReference(ref.getScope(), ref.getName(),
+					attributes.getLocale(), attributes.getStyle(), attributes.getVariation());
+			}
+			else if (ref.getClass() == PackageResourceReference.class)
+			{
+				UrlAttributes attributes = ref.getUrlAttributes();
+				return new PackageResourceReference(ref.getScope(), ref.getName(),
+					attributes.getLocale(), attributes.getStyle(), attributes.getVariation());
+			}
+		}
+
+		return (ref.getResource() instanceof PackageResource) ? ref : null;
+	}
+
+	private static boolean canBundle(BundleKey key, ResourceReference first, ResourceReference ref)
+	{
+		if (key.isCss())
+		{
+			return first.getScope().equals(ref.getScope()) &&
+				Objects.equal(getFolder(first), getFolder(ref));
+		}
+		return true;
+	}
+
+	private static String getFolder(ResourceReference ref)
+	{
+		int index = ref.getName().lastIndexOf('/');
+		return (index == -1) ? null : ref.getName().substring(0, index);
+	}
+
+	/**
+	 * The group of a reference, CSS of the same media or JavaScript. CSS is rendered first.
+	 */
+	public static final class BundleKey implements Comparable<BundleKey>
+	{
+		private final boolean css;
+
+		private final String media;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param css
+		 * @param media
+		 */
+		public BundleKey(boolean css, String media)
+		{
+			this.css = css;
+			this.media = Strings.isEmpty(media) ? null : media;
+		}
+
+		/**
+		 * @return whether CSS is grouped
+		 */
+		public boolean isCss()
+		{
+			return css;
+		}
+
+		/**
+		 * @return the media of the CSS, may be <code>null</code>
+		 */
+		public String getMedia()
+		{
+			return media;
+		}
+
+		public int compareTo(BundleKey o)
+		{
+			if (css != o.css)
+			{
+				return css ? -1 : 1;
+			}
+			if (media == null)
+			{
+				return (o.media == null) ? 0 : -1;
+			}
+			return (o.media == null) ? 1 : media.compareTo(o.media);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (obj instanceof BundleKey == false)
+			{
+				return false;
+			}
+			BundleKey that = (BundleKey)obj;
+			return (css == that.css) && Objects.equal(media, that.media);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hashCode(css, media);
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.pageStore.DiskDataStore;
+import org.apache.wicket.settings.IFrameworkSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link JavaSerializer} that writes a compact class id instead of the full
+ * {@link ObjectStreamClass} descriptor (class name, serial version uid and all field names and
+ * types) the first time a class is used in a stream.
+ * <p>
+ * The ids are assigned by a registry held by this serializer, i.e. by the application whose
+ * {@link IFrameworkSettings#setSerializer(org.apache.wicket.serialize.ISerializer) settings} it
+ * is set to. The ids are valid only for this node and this run of the application, so this
+ * serializer is meant for pages stored in a local store like {@link DiskDataStore} and should not
+ * be used when the http sessions are replicated. Data written by another instance of this
+ * serializer, e.g. before a restart, is recognized and treated as missing page.
+ */
+public class CompactJavaSerializer extends JavaSerializer
+{
+	private static final Logger log = LoggerFactory.getLogger(CompactJavaSerializer.class);
+
+	/**
+	 * The length of the header written by {@link ObjectOutputStream#writeStreamHeader()}
+	 */
+	private static final int STREAM_HEADER_LENGTH = 4;
+
+	private final ClassDescriptorRegistry registry = new ClassDescriptorRegistry();
+
+	/**
+	 * Identifies the data written by this instance
+	 */
+	private final long epoch = new Random().nextLong();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationKey
+	 */
+	public CompactJavaSerializer(final String applicationKey)
+	{
+		super(applicationKey);
+	}
+
+	@Override
+	public Object deserialize(final byte[] data)
+	{
+		if (data.length < STREAM_HEADER_LENGTH + 8 || readEpoch(data) != epoch)
+		{
+			log.debug("Ignoring data written with another class descriptor registry");
+			return null;
+		}
+		return super.deserialize(data);
+	}
+
+	@Override
+	protected ObjectOutputStream newObjectOutputStream(final OutputStream out) throws IOException
+	{
+		return new ClassIdObjectOutputStream(out);
+	}
+
+	@Override
+	protected ObjectInputStream newObjectInputStream(final InputStream in) throws IOException
+	{
+		return new ClassIdObjectInputStream(in, registry);
+	}
+
+	/**
+	 * @return the number of classes which have an id
+	 */
+	public int getRegisteredClassCount()
+	{
+		return registry.size();
+	}
+
+	private static long readEpoch(final byte[] data)
+	{
+		long result = 0;
+		for (int i = STREAM_HEADER_LENGTH; i < STREAM_HEADER_LENGTH + 8; i++)
+		{
+			result = (result << 8) | (data[i] & 0xff);
+		}
+		return result;
+	}
+
+	/**
+	 * Writes class ids instead of class descriptors.
+	 * <p>
+	 * This is an inner class because {@link #writeStreamHeader()} is called by the super
+	 * constructor, before any field of this class could be initialized.
+	 */
+	private class ClassIdObjectOutputStream extends ObjectOutputStream
+	{
+		private ClassIdObjectOutputStream(final OutputStream out) throws IOException
+		{
+			super(out);
+		}
+
+		@Override
+		protected void writeStreamHeader() throws IOException
+		{
+			super.writeStreamHeader();
+			writeLong(epoch);
+		}
+
+		@Override
+		protected void writeClassDescriptor(final ObjectStreamClass desc) throws IOException
+		{
+			int id = registry.id(desc);
+			// variable length encoding, most classes need one or two bytes
+			while ((id & ~0x7f) != 0)
+			{
+				write((id & 0x7f) | 0x80);
+				id >>>= 7;
+			}
+			write(id);
+		}
+	}
+
+	/**
+	 * Reads class ids written by {@link ClassIdObjectOutputStream}
+	 */
+	private static class ClassIdObjectInputStream extends ClassResolverObjectInputStream
+	{
+		private final ClassDescriptorRegistry registry;
+
+		private ClassIdObjectInputStream(final InputStream in,
+			final ClassDescriptorRegistry registry) throws IOException
+		{
+			super(in);
+			this.registry = registry;
+		}
+
+		@Override
+		protected void readStreamHeader() throws IOException
+		{
+			super.readStreamHeader();
+			// the epoch is already checked by CompactJavaSerializer#deserialize()
+			readLong();
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor() throws IOException,
+			ClassNotFoundException
+		{
+			int id = 0;
+			int shift = 0;
+			int b;
+			do
+			{
+				b = readUnsignedByte();
+				id |= (b & 0x7f) << shift;
+				shift += 7;
+			}
+			while ((b & 0x80) != 0);
+
+			ObjectStreamClass desc = registry.get(id);
+			if (desc == null)
+			{
+				throw new InvalidClassException("Unknown class id " + id);
+			}
+			return desc;
+		}
+	}
+
+	/**
+	 * Assigns ids to class descriptors. Notice these ids should not be used across cluster nodes.
+	 */
+	private static class ClassDescriptorRegistry
+	{
+		private final ConcurrentMap<String, Integer> nameToId = new ConcurrentHashMap<String, Integer>();
+		private final ConcurrentMap<Integer, ObjectStreamClass> idToDescriptor = new ConcurrentHashMap<Integer, ObjectStreamClass>();
+		private final AtomicInteger idCounter = new AtomicInteger();
+
+		/**
+		 * Returns a unique id that represents this class descriptor.
+		 * 
+		 * @param desc
+		 * @return id of the class descriptor
+		 */
+		private int id(final ObjectStreamClass desc)
+		{
+			final String name = desc.getName();
+			Integer id = nameToId.get(name);
+			if (id == null)
+			{
+				id = idCounter.incrementAndGet();
+				// register the descriptor before the id is published
+				idToDescriptor.put(id, desc);
+				Integer previousId = nameToId.putIfAbsent(name, id);
+				if (previousId != null)
+				{
+					idToDescriptor.remove(id);
+					id = previousId;
+				}
+			}
+			return id;
+		}
+
+		private ObjectStreamClass get(final int id)
+		{
+			return idToDescriptor.get(id);
+		}
+
+		private int size()
+		{
+			return nameToId.size();
+		}
+	}
+}
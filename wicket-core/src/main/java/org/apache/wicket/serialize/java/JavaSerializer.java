@@ -175,8 +175,14 @@ public class JavaSerializer implements ISerializer
 	/**
 	 * Extend {@link ObjectInputStream} to add framework class resolution logic.
 	 */
-	private static class ClassResolverObjectInputStream extends ObjectInputStream
+	protected static class ClassResolverObjectInputStream extends ObjectInputStream
 	{
+		/**
+		 * Construct.
+		 * 
+		 * @param in
+		 * @throws IOException
+		 */
 		public ClassResolverObjectInputStream(InputStream in) throws IOException
 		{
 			super(in);
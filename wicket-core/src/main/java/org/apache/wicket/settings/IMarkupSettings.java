@@ -16,7 +16,9 @@
  */
 package org.apache.wicket.settings;
 
+import org.apache.wicket.markup.LruCacheImplementation;
 import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.util.lang.Bytes;
 
 /**
  * Interface for markup related settings.
@@ -170,4 +172,36 @@ public interface IMarkupSettings
 	 * @param factory
 	 */
 	void setMarkupFactory(MarkupFactory factory);
+
+	/**
+	 * Sets the maximal number of entries of the markup cache. If the number of entries or the
+	 * size is limited the cache evicts the least recently used markup, see
+	 * {@link LruCacheImplementation}. Must be set before the markup cache is created.
+	 * 
+	 * @param maxEntries
+	 *            the maximal number of entries, {@code 0} for no limit (the default)
+	 */
+	void setMarkupCacheMaxEntries(int maxEntries);
+
+	/**
+	 * @return the maximal number of entries of the markup cache, {@code 0} for no limit
+	 * @see #setMarkupCacheMaxEntries(int)
+	 */
+	int getMarkupCacheMaxEntries();
+
+	/**
+	 * Sets the maximal estimated size of the markup in the markup cache. Must be set before the
+	 * markup cache is created.
+	 * 
+	 * @param maxSize
+	 *            the maximal size, {@code null} for no limit (the default)
+	 * @see #setMarkupCacheMaxEntries(int)
+	 */
+	void setMarkupCacheMaxSize(Bytes maxSize);
+
+	/**
+	 * @return the maximal estimated size of the markup in the markup cache, {@code null} for no
+	 *         limit
+	 */
+	Bytes getMarkupCacheMaxSize();
 }
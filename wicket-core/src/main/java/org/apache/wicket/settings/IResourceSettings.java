@@ -25,6 +25,7 @@ import org.apache.wicket.javascript.IJavaScriptCompressor;
 import org.apache.wicket.markup.html.IPackageResourceGuard;
 import org.apache.wicket.markup.html.PackageResourceGuard;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.request.resource.PackageResourceCache;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.resource.IPropertiesFactory;
 import org.apache.wicket.resource.loader.IStringResourceLoader;
@@ -371,4 +372,22 @@ public interface IResourceSettings
 	 *         Null is a valid value.
 	 */
 	ICssCompressor getCssCompressor();
+
+	/**
+	 * Sets the cache for the processed contents of
+	 * {@link org.apache.wicket.request.resource.PackageResource PackageResource}s.
+	 * 
+	 * @param cache
+	 *            the cache or <code>null</code> to read and process package resources on each
+	 *            request
+	 */
+	void setPackageResourceCache(PackageResourceCache cache);
+
+	/**
+	 * Gets the cache for the processed contents of
+	 * {@link org.apache.wicket.request.resource.PackageResource PackageResource}s.
+	 * 
+	 * @return the cache, may be <code>null</code>
+	 */
+	PackageResourceCache getPackageResourceCache();
 }
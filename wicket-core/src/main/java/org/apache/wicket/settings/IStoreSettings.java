@@ -20,9 +20,11 @@ import java.io.File;
 
 import org.apache.wicket.page.IPageManager;
 import org.apache.wicket.pageStore.AsynchronousDataStore;
+import org.apache.wicket.pageStore.DeltaDataStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
+import org.apache.wicket.serialize.CompressingSerializer;
 import org.apache.wicket.util.lang.Bytes;
 
 /**
@@ -95,6 +97,68 @@ public interface IStoreSettings
 	 */
 	void setAsynchronousQueueCapacity(int capacity);
 
+	/**
+	 * @return the number of threads which store the pages asynchronously
+	 * @see AsynchronousDataStore
+	 */
+	int getAsynchronousWriterThreads();
+
+	/**
+	 * Sets the number of threads which store the pages asynchronously. The pages of a session are
+	 * always stored by the same thread.
+	 * 
+	 * @param writerThreads
+	 *            the number of threads
+	 * @see AsynchronousDataStore
+	 */
+	void setAsynchronousWriterThreads(int writerThreads);
+
+	/**
+	 * @return the maximum number of pages which are stored asynchronously at once
+	 * @see AsynchronousDataStore
+	 */
+	int getAsynchronousBatchSize();
+
+	/**
+	 * Sets the maximum number of pages which are stored asynchronously at once. Older versions of
+	 * the same page in a batch are skipped.
+	 * 
+	 * @param batchSize
+	 *            the maximum number of pages per batch
+	 * @see AsynchronousDataStore
+	 */
+	void setAsynchronousBatchSize(int batchSize);
+
+	/**
+	 * Sets a flag whether to compress the serialized pages before they are cached and stored. The
+	 * page serializer is wrapped with {@link CompressingSerializer} then.
+	 * 
+	 * @param compress
+	 *            {@code true} to compress the pages, {@code false} - otherwise
+	 */
+	void setCompressPages(boolean compress);
+
+	/**
+	 * @return {@code true} if the serialized pages are compressed
+	 */
+	boolean isCompressPages();
+
+	/**
+	 * Sets a flag whether to wrap the configured {@link IDataStore} with {@link DeltaDataStore}.
+	 * The pages of a session are stored as binary deltas against a snapshot of an earlier page
+	 * then, which reduces the disk I/O and the used space per session for pages which change a
+	 * little between the requests, e.g. by Ajax.
+	 * 
+	 * @param storeDeltas
+	 *            {@code true} to store the pages as deltas, {@code false} - otherwise
+	 */
+	void setStorePageDeltas(boolean storeDeltas);
+
+	/**
+	 * @return {@code true} if the pages are stored as deltas
+	 */
+	boolean isStorePageDeltas();
+
 	/**
 	 * Sets a flag whether to wrap the configured {@link IDataStore} with
 	 * {@link AsynchronousDataStore}. By doing this the HTTP worker thread will not wait for the
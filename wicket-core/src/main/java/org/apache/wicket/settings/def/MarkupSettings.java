@@ -19,6 +19,7 @@ package org.apache.wicket.settings.def;
 import org.apache.wicket.markup.MarkupFactory;
 import org.apache.wicket.settings.IMarkupSettings;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 
 /**
  * @author Jonathan Locke
@@ -61,6 +62,12 @@ public class MarkupSettings implements IMarkupSettings
 	 */
 	private boolean stripWicketTags = false;
 
+	/** The maximal number of entries of the markup cache, 0 for no limit */
+	private int markupCacheMaxEntries = 0;
+
+	/** The maximal size of the markup cache, null for no limit */
+	private Bytes markupCacheMaxSize;
+
 	/**
 	 * Construct
 	 */
@@ -216,4 +223,37 @@ public class MarkupSettings implements IMarkupSettings
 	{
 		throwExceptionOnMissingXmlDeclaration = throwException;
 	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#setMarkupCacheMaxEntries(int)
+	 */
+	public void setMarkupCacheMaxEntries(int maxEntries)
+	{
+		Args.withinRange(0, Integer.MAX_VALUE, maxEntries, "maxEntries");
+		markupCacheMaxEntries = maxEntries;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#getMarkupCacheMaxEntries()
+	 */
+	public int getMarkupCacheMaxEntries()
+	{
+		return markupCacheMaxEntries;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#setMarkupCacheMaxSize(org.apache.wicket.util.lang.Bytes)
+	 */
+	public void setMarkupCacheMaxSize(Bytes maxSize)
+	{
+		markupCacheMaxSize = maxSize;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#getMarkupCacheMaxSize()
+	 */
+	public Bytes getMarkupCacheMaxSize()
+	{
+		return markupCacheMaxSize;
+	}
 }
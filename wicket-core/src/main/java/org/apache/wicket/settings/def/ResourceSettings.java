@@ -27,6 +27,7 @@ import org.apache.wicket.javascript.IJavaScriptCompressor;
 import org.apache.wicket.markup.html.IPackageResourceGuard;
 import org.apache.wicket.markup.html.PackageResourceGuard;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.resource.PackageResourceCache;
 import org.apache.wicket.request.resource.caching.FilenameWithTimestampResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.NoOpResourceCachingStrategy;
@@ -108,6 +109,9 @@ public class ResourceSettings implements IResourceSettings
 	/** The Css compressor */
 	private ICssCompressor cssCompressor;
 
+	/** Cache for the processed contents of package resources */
+	private PackageResourceCache packageResourceCache = new PackageResourceCache();
+
 	/** escape string for '..' within resource keys */
 	private String parentFolderPlaceholder = null;
 
@@ -389,6 +393,7 @@ public class ResourceSettings implements IResourceSettings
 	{
 		IJavaScriptCompressor old = javascriptCompressor;
 		javascriptCompressor = compressor;
+		clearPackageResourceCache();
 		return old;
 	}
 
@@ -401,9 +406,36 @@ public class ResourceSettings implements IResourceSettings
 	{
 		ICssCompressor old = cssCompressor;
 		cssCompressor = compressor;
+		clearPackageResourceCache();
 		return old;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IResourceSettings#getPackageResourceCache()
+	 */
+	public PackageResourceCache getPackageResourceCache()
+	{
+		return packageResourceCache;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IResourceSettings#setPackageResourceCache(org.apache.wicket.request.resource.PackageResourceCache)
+	 */
+	public void setPackageResourceCache(final PackageResourceCache cache)
+	{
+		packageResourceCache = cache;
+	}
+
+	/**
+	 * Discards the processed package resources, e.g. after a compressor was changed
+	 */
+	private void clearPackageResourceCache()
+	{
+		if (packageResourceCache != null)
+		{
+			packageResourceCache.clear();
+		}
+	}
 
 	/**
 	 * @see org.apache.wicket.settings.IResourceSettings#getParentFolderPlaceholder()
@@ -37,6 +37,10 @@ public class StoreSettings implements IStoreSettings
 
 	private static final int DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY = 100;
 
+	private static final int DEFAULT_ASYNCHRONOUS_WRITER_THREADS = 1;
+
+	private static final int DEFAULT_ASYNCHRONOUS_BATCH_SIZE = 10;
+
 	private int inmemoryCacheSize = DEFAULT_CACHE_SIZE;
 
 	private Bytes maxSizePerSession = DEFAULT_MAX_SIZE_PER_SESSION;
@@ -45,8 +49,16 @@ public class StoreSettings implements IStoreSettings
 
 	private int asynchronousQueueCapacity = DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY;
 
+	private int asynchronousWriterThreads = DEFAULT_ASYNCHRONOUS_WRITER_THREADS;
+
+	private int asynchronousBatchSize = DEFAULT_ASYNCHRONOUS_BATCH_SIZE;
+
 	private boolean isAsynchronous = true;
 
+	private boolean compressPages = false;
+
+	private boolean storePageDeltas = false;
+
 	/**
 	 * Construct.
 	 * 
@@ -123,6 +135,56 @@ public class StoreSettings implements IStoreSettings
 		asynchronousQueueCapacity = queueCapacity;
 	}
 
+	public int getAsynchronousWriterThreads()
+	{
+		return asynchronousWriterThreads;
+	}
+
+	public void setAsynchronousWriterThreads(int writerThreads)
+	{
+		if (writerThreads < 1)
+		{
+			throw new IllegalArgumentException(
+				"The number of asynchronous writer threads should be at least 1.");
+		}
+		asynchronousWriterThreads = writerThreads;
+	}
+
+	public int getAsynchronousBatchSize()
+	{
+		return asynchronousBatchSize;
+	}
+
+	public void setAsynchronousBatchSize(int batchSize)
+	{
+		if (batchSize < 1)
+		{
+			throw new IllegalArgumentException(
+				"The size of the asynchronous batches should be at least 1.");
+		}
+		asynchronousBatchSize = batchSize;
+	}
+
+	public void setCompressPages(boolean compress)
+	{
+		compressPages = compress;
+	}
+
+	public boolean isCompressPages()
+	{
+		return compressPages;
+	}
+
+	public void setStorePageDeltas(boolean storeDeltas)
+	{
+		storePageDeltas = storeDeltas;
+	}
+
+	public boolean isStorePageDeltas()
+	{
+		return storePageDeltas;
+	}
+
 	public void setAsynchronous(boolean async)
 	{
 		isAsynchronous = async;
@@ -20,9 +20,12 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.Session;
@@ -73,6 +76,11 @@ public final class PropertyResolver
 
 	private final static Map<Object, IClassCache> applicationToClassesToGetAndSetters = Generics.newConcurrentHashMap(2);
 
+	private final static Map<Object, ConcurrentMap<String, CompiledExpression>> applicationToCompiledExpressions = Generics.newConcurrentHashMap(2);
+
+	/** Maximum number of compiled expressions cached for an application */
+	private static final int MAX_COMPILED_EXPRESSIONS = 4096;
+
 	private static final String GET = "get";
 	private static final String IS = "is";
 	private static final String SET = "set";
@@ -94,13 +102,7 @@ public final class PropertyResolver
 			return object;
 		}
 
-		ObjectAndGetSetter getter = getObjectAndGetSetter(expression, object, RETURN_NULL);
-		if (getter == null)
-		{
-			return null;
-		}
-
-		return getter.getValue();
+		return compile(expression).getValue(object);
 	}
 
 	/**
@@ -257,82 +259,79 @@ public final class PropertyResolver
 	private static ObjectAndGetSetter getObjectAndGetSetter(final String expression,
 		final Object object, final int tryToCreateNull, Class<?> clz)
 	{
-		String expressionBracketsSeperated = Strings.replaceAll(expression, "[", ".[").toString();
-		int index = getNextDotIndex(expressionBracketsSeperated, 0);
-		int lastIndex = 0;
-		Object value = object;
-		String exp = expressionBracketsSeperated;
-		while (index != -1)
+		return compile(expression).getObjectAndGetSetter(object, tryToCreateNull, clz);
+	}
+
+	/**
+	 * Gets the compiled form of an expression, which is parsed once and then cached for the
+	 * application. Expressions with a concrete index, e.g. <code>rows[123].name</code> or
+	 * <code>rows.123.name</code>, are compiled for each call instead, as large tables would
+	 * otherwise fill the cache with expressions used once per render only.
+	 * 
+	 * @param expression
+	 *            The expression string
+	 * @return the compiled expression
+	 */
+	public static CompiledExpression compile(final String expression)
+	{
+		Args.notNull(expression, "expression");
+
+		ConcurrentMap<String, CompiledExpression> expressions = getCompiledExpressions();
+		CompiledExpression compiled = expressions.get(expression);
+		if (compiled == null)
 		{
-			exp = expressionBracketsSeperated.substring(lastIndex, index);
-			if (exp.length() == 0)
+			compiled = new CompiledExpression(expression);
+			if (hasIndex(expression))
 			{
-				exp = expressionBracketsSeperated.substring(index + 1);
-				break;
+				return compiled;
 			}
 
-			IGetAndSet getAndSetter = null;
-			try
+			// other expressions built at runtime, e.g. map keys, must not fill up the memory.
+			// Starting over keeps lookups free of locks, the expressions in use are compiled again
+			if (expressions.size() >= MAX_COMPILED_EXPRESSIONS)
 			{
-				getAndSetter = getGetAndSetter(exp, clz);
+				expressions.clear();
 			}
-			catch (WicketRuntimeException ex)
+			CompiledExpression existing = expressions.putIfAbsent(expression, compiled);
+			if (existing != null)
 			{
-				// expression by it self can't be found. try to find a
-				// setPropertyByIndex(int,value) method
-				index = getNextDotIndex(expressionBracketsSeperated, index + 1);
-				if (index != -1)
-				{
-					String indexExpression = expressionBracketsSeperated.substring(lastIndex, index);
-					getAndSetter = getGetAndSetter(indexExpression, clz);
-				}
-				else
-				{
-					exp = expressionBracketsSeperated.substring(lastIndex);
-					break;
-				}
-			}
-			Object newValue = null;
-			if (value != null)
-			{
-				newValue = getAndSetter.getValue(value);
+				compiled = existing;
 			}
-			if (newValue == null)
+		}
+		return compiled;
+	}
+
+	/**
+	 * @param expression
+	 * @return <code>true</code> if a step of the expression is a number, i.e. a list or array
+	 *         index
+	 */
+	private static boolean hasIndex(final String expression)
+	{
+		boolean stepStart = true;
+		boolean digits = false;
+		for (int i = 0; i < expression.length(); i++)
+		{
+			char c = expression.charAt(i);
+			if ((c == '.') || (c == '[') || (c == ']'))
 			{
-				if (tryToCreateNull == CREATE_NEW_VALUE)
-				{
-					newValue = getAndSetter.newValue(value);
-					if (newValue == null)
-					{
-						return null;
-					}
-				}
-				else if (tryToCreateNull == RESOLVE_CLASS)
-				{
-					clz = getAndSetter.getTargetClass();
-				}
-				else
+				if (digits)
 				{
-					return null;
+					return true;
 				}
+				stepStart = true;
 			}
-			value = newValue;
-			if (value != null)
+			else if (stepStart)
 			{
-				// value can be null if we are in the RESOLVE_CLASS
-				clz = value.getClass();
+				digits = Character.isDigit(c);
+				stepStart = false;
 			}
-
-			lastIndex = index + 1;
-			index = getNextDotIndex(expressionBracketsSeperated, lastIndex);
-			if (index == -1)
+			else if (digits && (Character.isDigit(c) == false))
 			{
-				exp = expressionBracketsSeperated.substring(lastIndex);
-				break;
+				digits = false;
 			}
 		}
-		IGetAndSet getAndSetter = getGetAndSetter(exp, clz);
-		return new ObjectAndGetSetter(getAndSetter, value);
+		return digits;
 	}
 
 	/**
@@ -1426,6 +1425,26 @@ public final class PropertyResolver
 		return result;
 	}
 
+	private static ConcurrentMap<String, CompiledExpression> getCompiledExpressions()
+	{
+		Object key = null;
+		if (Application.exists())
+		{
+			key = Application.get();
+		}
+		else
+		{
+			key = PropertyResolver.class;
+		}
+		ConcurrentMap<String, CompiledExpression> result = applicationToCompiledExpressions.get(key);
+		if (result == null)
+		{
+			applicationToCompiledExpressions.put(key,
+				result = new ConcurrentHashMap<String, CompiledExpression>(64));
+		}
+		return result;
+	}
+
 	/**
 	 * Clean up cache for this app.
 	 * 
@@ -1434,6 +1453,7 @@ public final class PropertyResolver
 	public static void destroy(Application application)
 	{
 		applicationToClassesToGetAndSetters.remove(application);
+		applicationToCompiledExpressions.remove(application);
 	}
 
 	/**
@@ -1453,10 +1473,299 @@ public final class PropertyResolver
 		if (application != null)
 		{
 			applicationToClassesToGetAndSetters.put(application, classCache);
+
+			// compiled expressions remember the accessors they got from the previous cache
+			applicationToCompiledExpressions.remove(application);
 		}
 		else
 		{
 			applicationToClassesToGetAndSetters.put(PropertyResolver.class, classCache);
+			applicationToCompiledExpressions.remove(PropertyResolver.class);
+		}
+	}
+
+	/**
+	 * A property expression which is parsed once only. Each step of the expression remembers the
+	 * accessor it used for the class of the last evaluated object, so evaluating the expression
+	 * again neither parses it nor looks up the accessors in the {@link IClassCache}. The results
+	 * are the same as of {@link PropertyResolver#getValue(String, Object)} and
+	 * {@link PropertyResolver#setValue(String, Object, Object, PropertyResolverConverter)}, i.e.
+	 * <code>null</code> is returned as soon as a step evaluates to <code>null</code>.
+	 * <p>
+	 * Instances are immutable apart from the remembered accessors and can be shared between
+	 * threads.
+	 * 
+	 * @see PropertyResolver#compile(String)
+	 */
+	public static final class CompiledExpression
+	{
+		private final String expression;
+
+		/** indexes of the dots separating the steps, brackets being preceded by a dot */
+		private final int[] dots;
+
+		/** expression of each step, up to the respective dot */
+		private final String[] steps;
+
+		/** expressions spanning two steps, for a getProperty(int) method */
+		private final String[] indexedSteps;
+
+		/** the remaining expression starting with each step */
+		private final String[] tails;
+
+		private final AtomicReferenceArray<Accessor> stepAccessors;
+
+		private final AtomicReferenceArray<Accessor> indexedStepAccessors;
+
+		private final AtomicReferenceArray<Accessor> tailAccessors;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param expression
+		 *            The expression string
+		 */
+		CompiledExpression(final String expression)
+		{
+			this.expression = expression;
+
+			String separated = Strings.replaceAll(expression, "[", ".[").toString();
+
+			List<Integer> indexes = new ArrayList<Integer>();
+			int index = getNextDotIndex(separated, 0);
+			while (index != -1)
+			{
+				indexes.add(index);
+				index = getNextDotIndex(separated, index + 1);
+			}
+
+			int count = indexes.size();
+			dots = new int[count];
+			for (int i = 0; i < count; i++)
+			{
+				dots[i] = indexes.get(i);
+			}
+
+			steps = new String[count];
+			indexedSteps = new String[count];
+			tails = new String[count + 1];
+			for (int i = 0; i < count; i++)
+			{
+				steps[i] = separated.substring(start(i), dots[i]);
+				if (i + 1 < count)
+				{
+					indexedSteps[i] = separated.substring(start(i), dots[i + 1]);
+				}
+			}
+			for (int i = 0; i <= count; i++)
+			{
+				tails[i] = separated.substring(start(i));
+			}
+
+			stepAccessors = new AtomicReferenceArray<Accessor>(count);
+			indexedStepAccessors = new AtomicReferenceArray<Accessor>(count);
+			tailAccessors = new AtomicReferenceArray<Accessor>(count + 1);
+		}
+
+		/**
+		 * @param step
+		 * @return index of the first character of the step
+		 */
+		private int start(final int step)
+		{
+			return (step == 0) ? 0 : dots[step - 1] + 1;
+		}
+
+		/**
+		 * @return The expression string
+		 */
+		public String getExpression()
+		{
+			return expression;
+		}
+
+		/**
+		 * Looks up the value from the object.
+		 * 
+		 * @param object
+		 *            The object which is evaluated.
+		 * @return The value that is evaluated. Null something in the expression evaluated to null.
+		 * @see PropertyResolver#getValue(String, Object)
+		 */
+		public Object getValue(final Object object)
+		{
+			if (expression.length() == 0 || object == null)
+			{
+				return object;
+			}
+
+			ObjectAndGetSetter getter = getObjectAndGetSetter(object, RETURN_NULL,
+				object.getClass());
+			if (getter == null)
+			{
+				return null;
+			}
+
+			return getter.getValue();
+		}
+
+		/**
+		 * Sets the value on the object.
+		 * 
+		 * @param object
+		 *            The object which is evaluated to set the value on.
+		 * @param value
+		 *            The value to set.
+		 * @param converter
+		 *            The converter to convert the value if needed to the right type.
+		 * @see PropertyResolver#setValue(String, Object, Object, PropertyResolverConverter)
+		 */
+		public void setValue(final Object object, final Object value,
+			final PropertyResolverConverter converter)
+		{
+			PropertyResolver.setValue(expression, object, value, converter);
+		}
+
+		/**
+		 * Evaluates the steps of the expression up to the last one.
+		 * 
+		 * @param object
+		 * @param tryToCreateNull
+		 * @param clz
+		 * @return {@link ObjectAndGetSetter}
+		 */
+		private ObjectAndGetSetter getObjectAndGetSetter(final Object object,
+			final int tryToCreateNull, Class<?> clz)
+		{
+			Object value = object;
+			int step = 0;
+			int tailIndex = 0;
+			while (step < dots.length)
+			{
+				if (steps[step].length() == 0)
+				{
+					tailIndex = step + 1;
+					break;
+				}
+
+				int next = step + 1;
+				IGetAndSet getAndSetter = getAccessor(stepAccessors, step, steps[step], clz, true);
+				if (getAndSetter == null)
+				{
+					// expression by it self can't be found. try to find a
+					// setPropertyByIndex(int,value) method
+					if (next < dots.length)
+					{
+						getAndSetter = getAccessor(indexedStepAccessors, step, indexedSteps[step],
+							clz, false);
+						next++;
+					}
+					else
+					{
+						tailIndex = step;
+						break;
+					}
+				}
+
+				Object newValue = null;
+				if (value != null)
+				{
+					newValue = getAndSetter.getValue(value);
+				}
+				if (newValue == null)
+				{
+					if (tryToCreateNull == CREATE_NEW_VALUE)
+					{
+						newValue = getAndSetter.newValue(value);
+						if (newValue == null)
+						{
+							return null;
+						}
+					}
+					else if (tryToCreateNull == RESOLVE_CLASS)
+					{
+						clz = getAndSetter.getTargetClass();
+					}
+					else
+					{
+						return null;
+					}
+				}
+				value = newValue;
+				if (value != null)
+				{
+					// value can be null if we are in the RESOLVE_CLASS
+					clz = value.getClass();
+				}
+
+				step = next;
+				tailIndex = step;
+			}
+			IGetAndSet getAndSetter = getAccessor(tailAccessors, tailIndex, tails[tailIndex], clz,
+				false);
+			return new ObjectAndGetSetter(getAndSetter, value);
+		}
+
+		/**
+		 * Gets the accessor for a step, remembering it for the given class.
+		 * 
+		 * @param accessors
+		 * @param index
+		 * @param exp
+		 * @param clz
+		 * @param lenient
+		 *            whether to return <code>null</code> if there is no accessor instead of
+		 *            throwing an exception
+		 * @return the accessor
+		 */
+		private static IGetAndSet getAccessor(final AtomicReferenceArray<Accessor> accessors,
+			final int index, final String exp, final Class<?> clz, final boolean lenient)
+		{
+			Accessor accessor = accessors.get(index);
+			if ((accessor == null) || (accessor.clz != clz))
+			{
+				IGetAndSet getAndSetter;
+				if (lenient)
+				{
+					try
+					{
+						getAndSetter = getGetAndSetter(exp, clz);
+					}
+					catch (WicketRuntimeException ex)
+					{
+						getAndSetter = null;
+					}
+				}
+				else
+				{
+					getAndSetter = getGetAndSetter(exp, clz);
+				}
+				accessor = new Accessor(clz, getAndSetter);
+				accessors.set(index, accessor);
+			}
+			return accessor.getAndSetter;
+		}
+
+		@Override
+		public String toString()
+		{
+			return expression;
+		}
+	}
+
+	/**
+	 * The accessor of a step for a class, <code>null</code> if there is none.
+	 */
+	private static final class Accessor
+	{
+		private final Class<?> clz;
+
+		private final IGetAndSet getAndSetter;
+
+		private Accessor(final Class<?> clz, final IGetAndSet getAndSetter)
+		{
+			this.clz = clz;
+			this.getAndSetter = getAndSetter;
 		}
 	}
 
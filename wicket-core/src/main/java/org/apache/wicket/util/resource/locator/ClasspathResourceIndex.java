@@ -0,0 +1,400 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.resource.locator;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import org.apache.wicket.util.lang.Args;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * An immutable index of the names of all files found in some folders of the classpath of a class
+ * loader, including their sub folders. It allows to tell whether a resource exists without asking
+ * the class loader.
+ * <p>
+ * The classpath roots are enumerated from the class loader and its parents up to the system class
+ * loader, which must be {@link URLClassLoader}s, or the system class loader itself. Each directory
+ * and jar is scanned, including the jars of a <code>Class-Path</code> manifest attribute, so jars
+ * without directory entries are indexed too. If a root can not be enumerated or scanned (e.g. a
+ * virtual file system of an application server), the folders are not {@link #covers(String)
+ * covered} by the index and have to be looked up by the class loader. A name found in more than one
+ * classpath root is {@link #isAmbiguous(String) ambiguous}, as the index can not tell which one the
+ * class loader would pick.
+ */
+public final class ClasspathResourceIndex
+{
+	/** Log. */
+	private static final Logger log = LoggerFactory.getLogger(ClasspathResourceIndex.class);
+
+	/** folders which have been scanned, e.g. "org/apache/wicket/" */
+	private final String[] prefixes;
+
+	/** resource name to url, <code>null</code> if the name is ambiguous */
+	private final Map<String, URL> resources;
+
+	/**
+	 * Scans the folders.
+	 * 
+	 * @param classLoader
+	 *            class loader whose classpath is scanned
+	 * @param folders
+	 *            folder names, e.g. "org/apache/wicket"
+	 */
+	public ClasspathResourceIndex(final ClassLoader classLoader, final String... folders)
+	{
+		Args.notNull(classLoader, "classLoader");
+		Args.notNull(folders, "folders");
+
+		final String[] prefixes = new String[folders.length];
+		for (int i = 0; i < folders.length; i++)
+		{
+			prefixes[i] = folders[i] + '/';
+		}
+
+		final Map<String, URL> resources = new HashMap<String, URL>();
+		if (scan(classLoader, prefixes, resources))
+		{
+			this.prefixes = prefixes;
+			this.resources = Collections.unmodifiableMap(resources);
+
+			if (log.isInfoEnabled())
+			{
+				log.info("Indexed " + resources.size() + " resources in folders " +
+					Arrays.asList(folders) + " of " + classLoader);
+			}
+		}
+		else
+		{
+			this.prefixes = new String[0];
+			this.resources = Collections.emptyMap();
+		}
+	}
+
+	/**
+	 * @param name
+	 *            resource name, e.g. "org/apache/wicket/Application.properties"
+	 * @return true, if the index is authoritative for the name
+	 */
+	public boolean covers(final String name)
+	{
+		for (String prefix : prefixes)
+		{
+			if (name.startsWith(prefix))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param name
+	 *            resource name
+	 * @return true, if the resource exists in one or more classpath roots
+	 */
+	public boolean contains(final String name)
+	{
+		return resources.containsKey(name);
+	}
+
+	/**
+	 * @param name
+	 *            resource name
+	 * @return true, if the resource exists in more than one classpath root
+	 */
+	public boolean isAmbiguous(final String name)
+	{
+		return resources.containsKey(name) && (resources.get(name) == null);
+	}
+
+	/**
+	 * @param name
+	 *            resource name
+	 * @return the url of the resource, <code>null</code> if it is not found or ambiguous
+	 */
+	public URL getUrl(final String name)
+	{
+		return resources.get(name);
+	}
+
+	/**
+	 * @return names of all indexed resources
+	 */
+	public Set<String> getNames()
+	{
+		return resources.keySet();
+	}
+
+	/**
+	 * Collects all files in the folders and their sub folders from all classpath roots.
+	 * 
+	 * @param classLoader
+	 * @param prefixes
+	 *            folder names ending with a slash, e.g. "org/apache/wicket/"
+	 * @param resources
+	 *            resource name to url map to add the files to
+	 * @return <code>false</code> if the classpath could not be scanned completely
+	 */
+	private static boolean scan(final ClassLoader classLoader, final String[] prefixes,
+		final Map<String, URL> resources)
+	{
+		final LinkedList<URL> roots = getRoots(classLoader);
+		if (roots == null)
+		{
+			log.warn("Unable to enumerate the classpath of {}, it is not indexed", classLoader);
+			return false;
+		}
+
+		final Set<File> scanned = new HashSet<File>();
+		while (roots.isEmpty() == false)
+		{
+			final URL root = roots.removeFirst();
+			try
+			{
+				if ("file".equals(root.getProtocol()) == false)
+				{
+					log.warn("Unable to index classpath root {}", root);
+					return false;
+				}
+
+				final File file = new File(root.toURI()).getAbsoluteFile();
+				if (scanned.add(file) == false)
+				{
+					continue;
+				}
+				if (file.isDirectory())
+				{
+					for (String prefix : prefixes)
+					{
+						if (isNested(prefix, prefixes) == false)
+						{
+							String folder = prefix.substring(0, prefix.length() - 1);
+							scanFolder(new File(file, folder), folder, resources);
+						}
+					}
+				}
+				else if (file.isFile())
+				{
+					scanJar(file, prefixes, resources, roots);
+				}
+			}
+			catch (IOException e)
+			{
+				log.warn("Unable to index classpath root " + root, e);
+				return false;
+			}
+			catch (URISyntaxException e)
+			{
+				log.warn("Unable to index classpath root " + root, e);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param classLoader
+	 * @return the classpath roots of the class loader and its parents up to the system class loader,
+	 *         <code>null</code> if they can not be enumerated
+	 */
+	private static LinkedList<URL> getRoots(final ClassLoader classLoader)
+	{
+		final ClassLoader system = ClassLoader.getSystemClassLoader();
+		final ClassLoader platform = (system != null) ? system.getParent() : null;
+
+		// parents first, as they are asked first
+		final LinkedList<URL> roots = new LinkedList<URL>();
+		for (ClassLoader loader = classLoader; (loader != null) && (loader != platform); loader = loader.getParent())
+		{
+			final List<URL> urls = new ArrayList<URL>();
+			if (loader instanceof URLClassLoader)
+			{
+				Collections.addAll(urls, ((URLClassLoader)loader).getURLs());
+			}
+			else if (loader == system)
+			{
+				final String classPath = System.getProperty("java.class.path", "");
+				for (String entry : classPath.split(File.pathSeparator))
+				{
+					if (entry.length() > 0)
+					{
+						try
+						{
+							urls.add(new File(entry).getAbsoluteFile().toURI().toURL());
+						}
+						catch (MalformedURLException e)
+						{
+							return null;
+						}
+					}
+				}
+			}
+			else
+			{
+				return null;
+			}
+			roots.addAll(0, urls);
+		}
+		return roots;
+	}
+
+	/**
+	 * @param prefix
+	 * @param prefixes
+	 * @return whether the folder is a sub folder of another one, so it is scanned with that one
+	 */
+	private static boolean isNested(final String prefix, final String[] prefixes)
+	{
+		for (String other : prefixes)
+		{
+			if ((other.length() < prefix.length()) && prefix.startsWith(other))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param dir
+	 * @param name
+	 *            resource name of the directory
+	 * @param found
+	 *            files found so far
+	 * @throws IOException
+	 */
+	private static void scanFolder(final File dir, final String name, final Map<String, URL> found)
+		throws IOException
+	{
+		final File[] files = dir.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+
+		for (File file : files)
+		{
+			final String fileName = name + '/' + file.getName();
+			if (file.isDirectory())
+			{
+				scanFolder(file, fileName, found);
+			}
+			else
+			{
+				add(fileName, file.toURI().toURL(), found);
+			}
+		}
+	}
+
+	/**
+	 * Adds the files of the jar within the folders, whether it has directory entries or not.
+	 * 
+	 * @param file
+	 *            the jar
+	 * @param prefixes
+	 * @param found
+	 *            files found so far
+	 * @param roots
+	 *            roots still to scan, the jars of the manifest class path are added
+	 * @throws IOException
+	 */
+	private static void scanJar(final File file, final String[] prefixes,
+		final Map<String, URL> found, final List<URL> roots) throws IOException
+	{
+		final URL fileUrl = file.toURI().toURL();
+		final String jarUrl = "jar:" + fileUrl + "!/";
+		final JarFile jar = new JarFile(file);
+		try
+		{
+			final Enumeration<JarEntry> entries = jar.entries();
+			while (entries.hasMoreElements())
+			{
+				final JarEntry entry = entries.nextElement();
+				final String name = entry.getName();
+				if ((entry.isDirectory() == false) && (name.endsWith("/") == false))
+				{
+					for (String prefix : prefixes)
+					{
+						if (name.startsWith(prefix))
+						{
+							add(name, new URL(jarUrl + name), found);
+							break;
+						}
+					}
+				}
+			}
+
+			final Manifest manifest = jar.getManifest();
+			final String classPath = (manifest != null) ? manifest.getMainAttributes().getValue(
+				Attributes.Name.CLASS_PATH) : null;
+			if (classPath != null)
+			{
+				for (String entry : classPath.trim().split("\\s+"))
+				{
+					if (entry.length() > 0)
+					{
+						roots.add(new URL(fileUrl, entry));
+					}
+				}
+			}
+		}
+		finally
+		{
+			jar.close();
+		}
+	}
+
+	/**
+	 * Adds the resource, marking it as ambiguous if another root has the same name.
+	 * 
+	 * @param name
+	 * @param url
+	 * @param found
+	 */
+	private static void add(final String name, final URL url, final Map<String, URL> found)
+	{
+		if (found.containsKey(name))
+		{
+			found.put(name, null);
+		}
+		else
+		{
+			found.put(name, url);
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.resource.locator;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.util.file.IResourceFinder;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.UrlResourceStream;
+
+
+/**
+ * A {@link ResourceStreamLocator} which scans the given packages of the classpath once and answers
+ * any later lookup of a resource within these packages from a {@link ClasspathResourceIndex}.
+ * Hence the many locale, style and variation combinations tried for each resource which do not
+ * exist are rejected without asking any class loader. Resources outside the indexed packages, and
+ * those found in more than one classpath root, are located by the class loaders as usual. The
+ * {@link IResourceFinder resource finder} is asked first, as before.
+ * <p>
+ * The classpath of each class loader is indexed separately, and the indexes are asked in the same
+ * order as {@link ResourceStreamLocator} asks the class loaders. A resource is only rejected if
+ * none of them has it.
+ * <p>
+ * Resources added to the classpath later on, e.g. by a developer while the application is running,
+ * are not found before {@link #rebuildIndex()} is called.
+ * 
+ * <pre>
+ * IResourceStreamLocator locator = new IndexedResourceStreamLocator(getResourceSettings()
+ * 	.getResourceFinder(), &quot;org.apache.wicket&quot;, &quot;com.mycompany&quot;);
+ * getResourceSettings().setResourceStreamLocator(new CachingResourceStreamLocator(locator));
+ * </pre>
+ */
+public class IndexedResourceStreamLocator extends ResourceStreamLocator
+{
+	/** Servlet 3.0 like folder for resources */
+	private static final String META_INF_RESOURCES = "META-INF/resources/";
+
+	/** names of the packages to index, e.g. "org.apache.wicket" */
+	private final String[] packageNames;
+
+	/** indexes by class loader, replaced on change */
+	private volatile Map<ClassLoader, ClasspathResourceIndex> indexes = Collections.emptyMap();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param packageNames
+	 *            names of the packages, including their sub packages, to index
+	 */
+	public IndexedResourceStreamLocator(final String... packageNames)
+	{
+		this.packageNames = Args.notNull(packageNames, "packageNames");
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param finder
+	 *            resource finder
+	 * @param packageNames
+	 *            names of the packages, including their sub packages, to index
+	 */
+	public IndexedResourceStreamLocator(final IResourceFinder finder,
+		final String... packageNames)
+	{
+		super(finder);
+
+		this.packageNames = Args.notNull(packageNames, "packageNames");
+	}
+
+	/**
+	 * @see org.apache.wicket.util.resource.locator.ResourceStreamLocator#locateByClassLoader(java.lang.Class,
+	 *      java.lang.String)
+	 */
+	@Override
+	protected IResourceStream locateByClassLoader(final Class<?> clazz, final String path)
+	{
+		for (ClassLoader classLoader : getClassLoaders(clazz))
+		{
+			final ClasspathResourceIndex index = getIndex(classLoader);
+
+			// maybe it is in the Servlet 3.0 like directory
+			for (String name : new String[] { path, META_INF_RESOURCES + path })
+			{
+				if ((index.covers(name) == false) || index.isAmbiguous(name))
+				{
+					return super.locateByClassLoader(clazz, path);
+				}
+
+				final URL url = index.getUrl(name);
+				if (url != null)
+				{
+					return new UrlResourceStream(url);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Scans the packages and replaces the current indexes.
+	 */
+	public final void rebuildIndex()
+	{
+		final Map<ClassLoader, ClasspathResourceIndex> rebuilt = new IdentityHashMap<ClassLoader, ClasspathResourceIndex>();
+		for (ClassLoader classLoader : getClassLoaders(null))
+		{
+			rebuilt.put(classLoader, newIndex(classLoader));
+		}
+		indexes = rebuilt;
+	}
+
+	/**
+	 * @param clazz
+	 *            optional
+	 * @return the class loaders to ask, in the order {@link ResourceStreamLocator} asks them
+	 */
+	private List<ClassLoader> getClassLoaders(final Class<?> clazz)
+	{
+		final List<ClassLoader> classLoaders = new ArrayList<ClassLoader>(3);
+		addClassLoader(clazz != null ? clazz.getClassLoader() : null, classLoaders);
+		addClassLoader(Thread.currentThread().getContextClassLoader(), classLoaders);
+		addClassLoader(getClass().getClassLoader(), classLoaders);
+		return classLoaders;
+	}
+
+	/**
+	 * @param classLoader
+	 *            optional
+	 * @param classLoaders
+	 */
+	private static void addClassLoader(final ClassLoader classLoader,
+		final List<ClassLoader> classLoaders)
+	{
+		if ((classLoader != null) && (classLoaders.contains(classLoader) == false))
+		{
+			classLoaders.add(classLoader);
+		}
+	}
+
+	/**
+	 * @param classLoader
+	 * @return the index of the class loader, built if necessary
+	 */
+	private ClasspathResourceIndex getIndex(final ClassLoader classLoader)
+	{
+		ClasspathResourceIndex current = indexes.get(classLoader);
+		if (current == null)
+		{
+			synchronized (this)
+			{
+				current = indexes.get(classLoader);
+				if (current == null)
+				{
+					current = newIndex(classLoader);
+
+					// copy on write, lookups do not lock
+					final Map<ClassLoader, ClasspathResourceIndex> copy = new IdentityHashMap<ClassLoader, ClasspathResourceIndex>(
+						indexes);
+					copy.put(classLoader, current);
+					indexes = copy;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * @param classLoader
+	 * @return new index of the packages and their counterparts in META-INF/resources
+	 */
+	private ClasspathResourceIndex newIndex(final ClassLoader classLoader)
+	{
+		final String[] folders = new String[packageNames.length * 2];
+		for (int i = 0; i < packageNames.length; i++)
+		{
+			final String folder = packageNames[i].replace('.', '/');
+			folders[2 * i] = folder;
+			folders[2 * i + 1] = META_INF_RESOURCES + folder;
+		}
+		return new ClasspathResourceIndex(classLoader, folders);
+	}
+}
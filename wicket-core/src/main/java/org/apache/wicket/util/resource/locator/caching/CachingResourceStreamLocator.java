@@ -16,11 +16,13 @@
  */
 package org.apache.wicket.util.resource.locator.caching;
 
+import java.util.Collections;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import org.apache.wicket.request.resource.ResourceReference.Key;
+import org.apache.wicket.util.collections.MostRecentlyUsedMap;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.resource.FileResourceStream;
 import org.apache.wicket.util.resource.IResourceStream;
@@ -39,11 +41,13 @@ import org.apache.wicket.util.resource.locator.ResourceNameIterator;
  * This locator mitigates this problem by caching (indefinitely) references to
  * {@link UrlResourceStream} and {@link FileResourceStream} objects as they are found, and
  * {@link NullResourceStreamReference} for all which are missing so they are not looked up again and
- * again.
+ * again. Applications locating a large number of different resources may
+ * {@link #CachingResourceStreamLocator(IResourceStreamLocator, int) limit} the number of cached
+ * references instead, evicting the least recently used ones.
  */
 public class CachingResourceStreamLocator implements IResourceStreamLocator
 {
-	private final ConcurrentMap<Key, IResourceStreamReference> cache;
+	private final Map<Key, IResourceStreamReference> cache;
 
 	private final IResourceStreamLocator delegate;
 
@@ -62,6 +66,25 @@ public class CachingResourceStreamLocator implements IResourceStreamLocator
 		cache = new ConcurrentHashMap<Key, IResourceStreamReference>();
 	}
 
+	/**
+	 * Construct.
+	 * 
+	 * @param resourceStreamLocator
+	 *            the delegate
+	 * @param maxEntries
+	 *            maximum number of cached references
+	 */
+	public CachingResourceStreamLocator(final IResourceStreamLocator resourceStreamLocator,
+		final int maxEntries)
+	{
+		Args.notNull(resourceStreamLocator, "resourceStreamLocator");
+
+		delegate = resourceStreamLocator;
+
+		cache = Collections.synchronizedMap(new MostRecentlyUsedMap<Key, IResourceStreamReference>(
+			maxEntries));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket;
+
+/**
+ * Timing benchmarks are skipped by the regular test run. They are run by setting the system
+ * property {@value #PROPERTY} to <code>true</code>, e.g.
+ * <code>mvn test -Dwicket.benchmark=true -Dtest=CompoundRequestMapperTest</code>.
+ */
+public final class Benchmarks
+{
+	/** the system property enabling the benchmarks */
+	public static final String PROPERTY = "wicket.benchmark";
+
+	private Benchmarks()
+	{
+	}
+
+	/**
+	 * @return <code>true</code> if the benchmarks should be run
+	 */
+	public static boolean isEnabled()
+	{
+		return Boolean.getBoolean(PROPERTY);
+	}
+}
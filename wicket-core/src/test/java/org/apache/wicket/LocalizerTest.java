@@ -16,9 +16,12 @@
  */
 package org.apache.wicket;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.MissingResourceException;
 
 import junit.framework.Assert;
@@ -261,6 +264,99 @@ public class LocalizerTest extends TestCase
 		}
 	}
 
+	/**
+	 * Cache keys of the same component in two page instances are equal, those of siblings are not
+	 */
+	public void testCacheKey()
+	{
+		MyMockPage page1 = new MyMockPage();
+		MyMockPage page2 = new MyMockPage();
+
+		Localizer.CacheKey key1 = localizer.getCacheKey("null", page1.drop1, Locale.ENGLISH, null,
+			null);
+		Localizer.CacheKey key2 = localizer.getCacheKey("null", page2.drop1, Locale.ENGLISH, null,
+			null);
+		assertEquals(key1, key2);
+		assertEquals(key1.hashCode(), key2.hashCode());
+
+		assertFalse(key1.equals(localizer.getCacheKey("null", page1.drop2, Locale.ENGLISH, null,
+			null)));
+		assertFalse(key1.equals(localizer.getCacheKey("null", page1.drop1, Locale.GERMAN, null,
+			null)));
+		assertFalse(key1.equals(localizer.getCacheKey("null", page1.drop1, Locale.ENGLISH,
+			"style", null)));
+		assertFalse(key1.equals(localizer.getCacheKey("null", null, Locale.ENGLISH, null, null)));
+	}
+
+	/**
+	 * The key names the component path from the page down to the component, loop items and pages
+	 * without their ids
+	 */
+	public void testComponentPath()
+	{
+		MyMockPage page = new MyMockPage();
+
+		Localizer.CacheKey key = localizer.getCacheKey("key", page.drop1, Locale.ENGLISH, null,
+			null);
+		assertEquals("key-" + MyMockPage.class.getName() + ":null/" + Form.class.getName() +
+			":form/" + DropDownChoice.class.getName() + ":drop1-en-null-null", key.toString());
+		assertEquals(key, localizer.getCacheKey("key", page.drop1, Locale.ENGLISH, null, null));
+	}
+
+	/**
+	 * A bounded cache evicting entries must still return the right strings
+	 */
+	public void testBoundedCache()
+	{
+		Localizer bounded = new Localizer()
+		{
+			@Override
+			protected Map<CacheKey, String> newCache()
+			{
+				return newBoundedCache(1);
+			}
+		};
+
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals("This is a test", bounded.getString("test.string", null, null, "DEFAULT"));
+			assertEquals("Welcome, ${user}",
+				bounded.getString("test.substitute", null, null, "DEFAULT"));
+			assertEquals("DEFAULT", bounded.getString("unknown.string", null, null, "DEFAULT"));
+		}
+	}
+
+	/**
+	 * Strings are looked up through {@link Localizer#getFromCache(Localizer.CacheKey)}, keys
+	 * without a value are cached too
+	 */
+	public void testGetFromCache()
+	{
+		final List<String> hits = new ArrayList<String>();
+		Localizer localizer = new Localizer()
+		{
+			@Override
+			protected String getFromCache(CacheKey cacheKey)
+			{
+				String value = super.getFromCache(cacheKey);
+				if (value != null)
+				{
+					hits.add(value);
+				}
+				return value;
+			}
+		};
+
+		assertEquals("This is a test", localizer.getString("test.string", null, null, "DEFAULT"));
+		assertEquals("DEFAULT", localizer.getString("unknown.string", null, null, "DEFAULT"));
+		assertTrue(hits.isEmpty());
+
+		assertEquals("This is a test", localizer.getString("test.string", null, null, "DEFAULT"));
+		assertEquals("DEFAULT", localizer.getString("unknown.string", null, null, "DEFAULT"));
+		assertEquals(2, hits.size());
+		assertEquals("This is a test", hits.get(0));
+	}
+
 	/**
 	 * Test label.
 	 */
@@ -16,8 +16,17 @@
  */
 package org.apache.wicket;
 
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
 import org.apache.wicket.markup.html.WebComponent;
 import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.repeater.RepeatingView;
+import org.apache.wicket.util.lang.WicketObjects;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
@@ -26,6 +35,8 @@ import org.apache.wicket.markup.html.WebMarkupContainer;
  */
 public class MarkupContainerTest extends WicketTestCase
 {
+	private static final Logger log = LoggerFactory.getLogger(MarkupContainerTest.class);
+
 	/**
 	 * Construct.
 	 * 
@@ -60,4 +71,108 @@ public class MarkupContainerTest extends WicketTestCase
 	{
 		executeTest(MarkupIdTestPage.class, "MarkupIdTestPageExpectedResult.html");
 	}
+
+	/**
+	 * Children of large containers are found by id after adding, replacing, removing and swapping
+	 * them
+	 */
+	public void testLargeContainer()
+	{
+		MarkupContainer container = new WebMarkupContainer("component");
+		for (int i = 0; i < 100; i++)
+		{
+			container.add(new WebComponent(Integer.toString(i)));
+		}
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(Integer.toString(i), container.get(Integer.toString(i)).getId());
+		}
+		assertNull(container.get("missing"));
+
+		container.remove("10");
+		assertNull(container.get("10"));
+		assertEquals("11", container.get(10).getId());
+		assertSame(container.get(10), container.get("11"));
+
+		WebComponent replacement = new WebComponent("50");
+		container.replace(replacement);
+		assertSame(replacement, container.get("50"));
+
+		container.swap(0, 98);
+		assertSame(container.get(0), container.get("99"));
+		assertSame(container.get(98), container.get("0"));
+
+		container.remove("99");
+		assertNull(container.get("99"));
+		assertEquals(98, container.size());
+		assertEquals("0", container.get(97).getId());
+
+		container.add(new WebComponent("100"));
+		assertSame(container.get(98), container.get("100"));
+
+		// the index is not serialized
+		MarkupContainer copy = (MarkupContainer)WicketObjects.cloneObject(container);
+		assertEquals(99, copy.size());
+		for (int i = 0; i < copy.size(); i++)
+		{
+			Component child = copy.get(i);
+			assertSame(child, copy.get(child.getId()));
+		}
+	}
+
+	/**
+	 * Builds and renders a page with a repeater of 10000 rows
+	 */
+	public void testLargeRepeaterBenchmark()
+	{
+		if (!Benchmarks.isEnabled())
+		{
+			return;
+		}
+
+		// warm up
+		tester.startPage(new RepeatingPage(1000));
+
+		long start = System.nanoTime();
+		RepeatingPage page = new RepeatingPage(10000);
+		long built = System.nanoTime();
+		tester.startPage(page);
+		long rendered = System.nanoTime();
+
+		log.info("10000 rows: build {} ms, render {} ms", (built - start) / 1000000L,
+			(rendered - built) / 1000000L);
+		assertTrue(tester.getLastResponseAsString().contains(">row 9999<"));
+	}
+
+	/**
+	 * A page with a repeating view
+	 */
+	public static class RepeatingPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param rows
+		 */
+		public RepeatingPage(int rows)
+		{
+			RepeatingView view = new RepeatingView("rows");
+			add(view);
+			for (int i = 0; i < rows; i++)
+			{
+				WebMarkupContainer row = new WebMarkupContainer(view.newChildId());
+				view.add(row);
+				row.add(new Label("label", "row " + i));
+			}
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<html><body><ul><li wicket:id=\"rows\"><span wicket:id=\"label\"></span></li></ul></body></html>");
+		}
+	}
 }
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket;
+
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.handler.BookmarkablePageRequestHandler;
+import org.apache.wicket.request.handler.PageProvider;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+
+/**
+ * Tests for {@link SystemMapper}
+ */
+public class SystemMapperTest extends WicketTestCase
+{
+	private Url mapHandler(PageParameters parameters)
+	{
+		IRequestMapper mapper = tester.getApplication().getRootRequestMapper();
+		return mapper.mapHandler(new BookmarkablePageRequestHandler(new PageProvider(
+			MockPageWithLink.class, parameters)));
+	}
+
+	/**
+	 * Cached urls of bookmarkable pages are not affected by changes to the returned urls
+	 */
+	public void testCachedUrlIsCopied()
+	{
+		Url url = mapHandler(null);
+		String expected = url.toString();
+		url.getSegments().add("changed");
+
+		assertEquals(expected, mapHandler(null).toString());
+		assertNotSame(mapHandler(null), mapHandler(null));
+	}
+
+	/**
+	 * Mounting a page discards the cached urls
+	 */
+	public void testMountDiscardsCachedUrls()
+	{
+		assertFalse("link".equals(mapHandler(null).toString()));
+
+		tester.getApplication().mountPage("link", MockPageWithLink.class);
+		assertEquals("link", mapHandler(null).toString());
+		assertEquals("link?a=b", mapHandler(new PageParameters().add("a", "b")).toString());
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.parser.XmlTag.TagType;
+import org.apache.wicket.response.StringResponse;
+
+/**
+ * Tests for {@link ComponentTag#writeOutput(org.apache.wicket.request.Response, boolean, String)}
+ */
+public class ComponentTagRenderTest extends WicketTestCase
+{
+	/**
+	 * Attribute values are escaped and wicket attributes are stripped on request
+	 */
+	public void testTagOutput()
+	{
+		ComponentTag tag = new ComponentTag("td", TagType.OPEN);
+		tag.put("wicket:id", "cell");
+		tag.put("class", "a&b");
+		tag.put("title", "\"quoted\"");
+
+		assertEquals("<td class=\"a&amp;b\" title=\"&quot;quoted&quot;\">", render(tag, true,
+			"wicket"));
+		assertTrue(render(tag, false, "wicket").startsWith("<td wicket:id=\"cell\""));
+		assertTrue(render(tag, true, "other").startsWith("<td wicket:id=\"cell\""));
+
+		assertEquals("</td>", render(new ComponentTag("td", TagType.CLOSE), true, "wicket"));
+		assertEquals("<br/>", render(new ComponentTag("br", TagType.OPEN_CLOSE), true, "wicket"));
+	}
+
+	private static String render(ComponentTag tag, boolean stripWicketAttributes, String namespace)
+	{
+		StringResponse response = new StringResponse();
+		tag.writeOutput(response, stripWicketAttributes, namespace);
+		return response.toString();
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LruCacheImplementation}
+ */
+public class LruCacheImplementationTest
+{
+	/**
+	 * The least recently used entries are evicted when the number of entries is exceeded
+	 */
+	@Test
+	public void maxEntries()
+	{
+		LruCacheImplementation<String, String> cache = new LruCacheImplementation<String, String>(
+			3, null);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		cache.put("c", "3");
+		assertEquals("1", cache.get("a"));
+
+		cache.put("d", "4");
+		assertEquals(3, cache.size());
+		assertTrue(cache.containsKey("a"));
+		assertFalse(cache.containsKey("b"));
+		assertEquals(1, cache.getEvictions());
+	}
+
+	/**
+	 * The entries are evicted when the estimated size is exceeded
+	 */
+	@Test
+	public void maxSize()
+	{
+		LruCacheImplementation<String, String> cache = new LruCacheImplementation<String, String>(
+			0, Bytes.bytes(1000), new LruCacheImplementation.IWeigher<String>()
+			{
+				public long weigh(String value)
+				{
+					return value.length();
+				}
+			});
+
+		for (int i = 0; i < 100; i++)
+		{
+			cache.put("key" + i, "0123456789");
+		}
+		assertTrue(cache.getWeight() <= 1000);
+		assertTrue(cache.size() <= 100);
+		assertTrue(cache.getEvictions() > 0);
+		assertEquals(100, cache.size() + cache.getEvictions());
+
+		// a value bigger than the limit is kept until the next put
+		cache.put("big", new String(new char[2000]));
+		assertTrue(cache.containsKey("big"));
+	}
+
+	/**
+	 * The default weigher estimates markup by the text of its parsed elements
+	 */
+	@Test
+	public void markupWeight()
+	{
+		String small = "<html><body><span wicket:id=\"label\">text</span></body></html>";
+		String big = "<html><body><span wicket:id=\"label\">" + new String(new char[1000]).replace(
+			'\0', 'x') + "</span></body></html>";
+
+		WicketTester tester = new WicketTester();
+		try
+		{
+			long smallWeight = LruCacheImplementation.DEFAULT_WEIGHER.weigh(Markup.of(small));
+			long bigWeight = LruCacheImplementation.DEFAULT_WEIGHER.weigh(Markup.of(big));
+			assertTrue(smallWeight >= 2 * small.length());
+			assertTrue(bigWeight >= 2 * big.length());
+			assertTrue(bigWeight - smallWeight >= 2 * (big.length() - small.length()));
+		}
+		finally
+		{
+			tester.destroy();
+		}
+	}
+
+	/**
+	 * Hits and misses are counted, removing a key through the iterator removes it from the cache
+	 */
+	@Test
+	public void statisticsAndKeys()
+	{
+		LruCacheImplementation<String, String> cache = new LruCacheImplementation<String, String>(
+			100, null);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		cache.get("a");
+		cache.get("x");
+		assertNull(cache.get(null));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		Iterator<String> keys = cache.getKeys().iterator();
+		while (keys.hasNext())
+		{
+			if (keys.next().equals("a"))
+			{
+				keys.remove();
+			}
+		}
+		assertFalse(cache.containsKey("a"));
+		assertTrue(cache.containsKey("b"));
+		assertTrue(cache.remove("b"));
+		assertFalse(cache.remove("b"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+}
@@ -16,10 +16,20 @@
  */
 package org.apache.wicket.markup;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
 import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.panel.InlinePanelPage_1;
+import org.apache.wicket.markup.html.panel.InlinePanelPage_2;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.time.Duration;
 
 /**
  * @author Timo Rantalaiho
@@ -51,6 +61,108 @@ public class MarkupCacheTest extends WicketTestCase
 		assertNull(markup);
 	}
 
+	/**
+	 * A bounded markup cache is used if configured and evicts markup
+	 */
+	public void testBoundedCache()
+	{
+		tester.getApplication().getMarkupSettings().setMarkupCacheMaxEntries(1);
+		MarkupCache boundedCache = new MarkupCache();
+		assertTrue(boundedCache.getMarkupCache() instanceof LruCacheImplementation);
+
+		assertNotNull(boundedCache.getMarkup(new InlinePanelPage_1(), null, false));
+		assertNotNull(boundedCache.getMarkup(new InlinePanelPage_2(), null, false));
+		assertEquals(1, boundedCache.size());
+		assertNotNull(boundedCache.getMarkup(new InlinePanelPage_1(), null, false));
+		LruCacheImplementation<?, ?> lruCache = (LruCacheImplementation<?, ?>)boundedCache.getMarkupCache();
+		assertTrue(lruCache.getEvictions() > 0);
+		// the markup is weighted by the size of its file
+		assertTrue(lruCache.getWeight() > 100);
+	}
+
+	/**
+	 * Concurrent requests for the same markup load it only once
+	 * 
+	 * @throws Exception
+	 */
+	public void testConcurrentLoadsAreCoalesced() throws Exception
+	{
+		final SlowMarkupPanel panel = new SlowMarkupPanel("panel");
+		tester.startComponent(panel);
+
+		final Application application = tester.getApplication();
+		final Session session = tester.getSession();
+		final CountDownLatch start = new CountDownLatch(1);
+		final IMarkupFragment[] results = new IMarkupFragment[5];
+		Thread[] threads = new Thread[results.length];
+		for (int i = 0; i < threads.length; i++)
+		{
+			final int index = i;
+			threads[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					ThreadContext.setApplication(application);
+					ThreadContext.setSession(session);
+					try
+					{
+						start.await();
+						results[index] = cache.getMarkup(panel, null, false);
+					}
+					catch (InterruptedException e)
+					{
+						throw new RuntimeException(e);
+					}
+					finally
+					{
+						ThreadContext.detach();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertEquals(1, panel.loads.get());
+		assertEquals(results.length - 1, cache.getCoalescedLoadCount());
+		for (IMarkupFragment result : results)
+		{
+			assertSame(results[0], result);
+		}
+	}
+
+	private static class SlowMarkupPanel extends Panel implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final AtomicInteger loads = new AtomicInteger();
+
+		public SlowMarkupPanel(final String id)
+		{
+			super(id);
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			loads.incrementAndGet();
+			// give the other threads time to miss the cache
+			Duration.milliseconds(300).sleep();
+			return new StringResourceStream("<wicket:panel>slow</wicket:panel>");
+		}
+
+		@Override
+		public MarkupType getMarkupType()
+		{
+			return MarkupType.HTML_MARKUP_TYPE;
+		}
+	}
+
 	private static class MarkupCachingAssumingComponent extends Panel
 		implements
 			IMarkupResourceStreamProvider
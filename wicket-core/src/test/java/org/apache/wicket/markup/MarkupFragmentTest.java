@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import org.apache.wicket.WicketTestCase;
+
+/**
+ * Tests for {@link Markup#find(String)} and {@link MarkupFragment#find(String)}
+ */
+public class MarkupFragmentTest extends WicketTestCase
+{
+	/**
+	 * Only the components of the same nesting level are found
+	 */
+	public void testFind()
+	{
+		Markup markup = Markup.of("<div wicket:id=\"a\"><span wicket:id=\"b\">1</span>"
+			+ "<div wicket:id=\"c\"><span wicket:id=\"b\">2</span></div></div>"
+			+ "<span wicket:id=\"d\"/>");
+
+		IMarkupFragment a = markup.find("a");
+		assertNotNull(a);
+		assertSame(a, markup.find("a"));
+		assertEquals("d", ((ComponentTag)markup.find("d").get(0)).getId());
+		assertNull(markup.find("b"));
+		assertNull(markup.find("c"));
+
+		IMarkupFragment b = a.find("b");
+		assertEquals("<span wicket:id=\"b\">1</span>", b.toString(true));
+		assertSame(b, markup.find("a").find("b"));
+		assertNull(a.find("d"));
+
+		IMarkupFragment c = a.find("c");
+		assertEquals("<span wicket:id=\"b\">2</span>", c.find("b").toString(true));
+		assertSame(c.find("b"), markup.find("a").find("c").find("b"));
+	}
+
+	/**
+	 * The id of a tag might be changed after the markup was loaded
+	 */
+	public void testChangedId()
+	{
+		Markup markup = Markup.of("<div wicket:id=\"a\"><span wicket:id=\"b\"></span></div>");
+		IMarkupFragment a = markup.find("a");
+		ComponentTag tag = (ComponentTag)a.find("b").get(0);
+
+		tag.setId("x");
+		assertNull(a.find("b"));
+		assertSame(tag, a.find("x").get(0));
+		assertSame(a.find("x"), a.find("x"));
+	}
+
+	/**
+	 * Each of many sibling panels finds its own children, and repeated lookups return the same
+	 * fragment
+	 */
+	public void testManySiblings()
+	{
+		StringBuilder builder = new StringBuilder("<div wicket:id=\"root\">");
+		for (int i = 0; i < 100; i++)
+		{
+			builder.append("<div wicket:id=\"panel")
+				.append(i)
+				.append("\"><span wicket:id=\"label\">")
+				.append(i)
+				.append("</span><span wicket:id=\"other\"></span></div>");
+		}
+		builder.append("</div>");
+		Markup markup = Markup.of(builder.toString());
+
+		IMarkupFragment root = markup.find("root");
+		for (int i = 0; i < 100; i++)
+		{
+			IMarkupFragment panel = root.find("panel" + i);
+			assertEquals("<span wicket:id=\"label\">" + i + "</span>", panel.find("label")
+				.toString(true));
+			assertNotNull(panel.find("other"));
+			assertNull(panel.find("panel" + i));
+			assertSame(panel, markup.find("root").find("panel" + i));
+		}
+		assertNull(root.find("label"));
+	}
+}
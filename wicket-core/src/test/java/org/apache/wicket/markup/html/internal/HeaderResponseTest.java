@@ -18,6 +18,8 @@ package org.apache.wicket.markup.html.internal;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.nio.charset.Charset;
@@ -50,6 +52,8 @@ public class HeaderResponseTest
 
 	private ResourceReference reference;
 
+	private RequestCycle requestCycle;
+
 	/**
 	 * Prepare
 	 */
@@ -78,7 +82,7 @@ public class HeaderResponseTest
 			}
 		};
 
-		RequestCycle requestCycle = mock(RequestCycle.class);
+		requestCycle = mock(RequestCycle.class);
 		when(requestCycle.urlFor(any(IRequestHandler.class))).thenReturn(RESOURCE_NAME);
 
 		Request request = mock(Request.class);
@@ -159,4 +163,58 @@ public class HeaderResponseTest
 		Assert.assertEquals(expected, actual);
 	}
 
+	/**
+	 * Tests that the url of an already rendered reference is not rendered again
+	 */
+	@Test
+	public void testReferenceRenderedOnce()
+	{
+		headerResponse.renderJavaScriptReference(reference);
+		headerResponse.renderJavaScriptReference(reference, "some-id");
+		headerResponse.renderCSSReference(reference);
+		headerResponse.renderCSSReference(reference);
+
+		verify(requestCycle, times(2)).urlFor(any(IRequestHandler.class));
+
+		String expected = "<script type=\"text/javascript\" src=\"" + RESOURCE_NAME +
+			"\"></script>\n" + "<link rel=\"stylesheet\" type=\"text/css\" href=\"" +
+			RESOURCE_NAME + "\" />\n";
+		Assert.assertEquals(expected, headerResponse.getResponse().toString());
+	}
+
+	/**
+	 * Tests that a css reference is rendered once per media
+	 */
+	@Test
+	public void testCSSReferenceMedia()
+	{
+		headerResponse.renderCSSReference(reference, "screen");
+		headerResponse.renderCSSReference(reference, "print");
+		headerResponse.renderCSSReference(reference, "screen");
+
+		verify(requestCycle, times(2)).urlFor(any(IRequestHandler.class));
+
+		String expected = "<link rel=\"stylesheet\" type=\"text/css\" href=\"" + RESOURCE_NAME +
+			"\" media=\"screen\" />\n" + "<link rel=\"stylesheet\" type=\"text/css\" href=\"" +
+			RESOURCE_NAME + "\" media=\"print\" />\n";
+		Assert.assertEquals(expected, headerResponse.getResponse().toString());
+	}
+
+	/**
+	 * Tests that a javascript reference skipped because of its id only is rendered later on
+	 */
+	@Test
+	public void testJavaScriptReferenceSkippedById()
+	{
+		headerResponse.renderJavaScriptReference("other.js", "some-id");
+		when(requestCycle.urlFor(any(IRequestHandler.class))).thenReturn("reference.js");
+
+		headerResponse.renderJavaScriptReference(reference, "some-id");
+		headerResponse.renderJavaScriptReference(reference);
+
+		String expected = "<script type=\"text/javascript\" id=\"some-id\" src=\"" +
+			RESOURCE_NAME + "\"></script>\n" +
+			"<script type=\"text/javascript\" src=\"reference.js\"></script>\n";
+		Assert.assertEquals(expected, headerResponse.getResponse().toString());
+	}
 }
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.html.internal;
+
+import org.apache.wicket.Benchmarks;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.IHeaderResponse;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.WicketEventReference;
+import org.apache.wicket.markup.html.tree.AbstractTree;
+import org.apache.wicket.markup.repeater.RepeatingView;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.resource.CssResourceReference;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.apache.wicket.response.StringResponse;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A page with many components contributing the same header items
+ */
+public class ManyHeaderContributorsTest extends WicketTestCase
+{
+	private static final Logger log = LoggerFactory.getLogger(ManyHeaderContributorsTest.class);
+
+	private static final int COMPONENTS = 500;
+
+	/**
+	 * Each header item is rendered once only
+	 */
+	public void testRender()
+	{
+		tester.startPage(new ContributorsPage());
+
+		final String document = tester.getLastResponseAsString();
+		assertEquals(1, count(document, "wicket-event"));
+		assertEquals(1, count(document, "tree.js"));
+		assertEquals(1, count(document, "base-tree.css\" media=\"screen\""));
+		assertEquals(1, count(document, "base-tree.css\" media=\"print\""));
+		assertEquals(1, count(document, "var shared = 1;"));
+	}
+
+	/**
+	 * Renders the header contributions of {@link #COMPONENTS} components, by themselves and as
+	 * part of the page
+	 */
+	public void testBenchmark()
+	{
+		if (!Benchmarks.isEnabled())
+		{
+			return;
+		}
+
+		final int iterations = 200;
+
+		long rendered = 0;
+		long page = 0;
+		for (int round = 0; round < 3; round++)
+		{
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; i++)
+			{
+				final StringResponse response = new StringResponse();
+				final IHeaderResponse headerResponse = new HeaderResponse()
+				{
+					@Override
+					protected Response getRealResponse()
+					{
+						return response;
+					}
+				};
+				for (int c = 0; c < COMPONENTS; c++)
+				{
+					contribute(headerResponse);
+				}
+			}
+			rendered = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < iterations / 10; i++)
+			{
+				tester.startPage(new ContributorsPage());
+			}
+			page = System.nanoTime() - start;
+		}
+
+		log.info("{} components: {} us rendering the header items, {} us rendering the page",
+			new Object[] { COMPONENTS, rendered / iterations / 1000,
+					page / (iterations / 10) / 1000 });
+	}
+
+	private static int count(final String document, final String fragment)
+	{
+		int count = 0;
+		int index = document.indexOf(fragment);
+		while (index != -1)
+		{
+			count++;
+			index = document.indexOf(fragment, index + 1);
+		}
+		return count;
+	}
+
+	/**
+	 * Header items typically contributed by a component.
+	 * 
+	 * @param response
+	 */
+	private static void contribute(final IHeaderResponse response)
+	{
+		response.renderJavaScriptReference(WicketEventReference.INSTANCE);
+		response.renderJavaScriptReference(new JavaScriptResourceReference(AbstractTree.class,
+			"res/tree.js"));
+		response.renderCSSReference(new CssResourceReference(AbstractTree.class,
+			"res/base-tree.css"), "screen");
+		response.renderCSSReference(new CssResourceReference(AbstractTree.class,
+			"res/base-tree.css"), "print");
+		response.renderJavaScript("var shared = 1;", "shared");
+	}
+
+	/** */
+	public static class ContributorsPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/** */
+		public ContributorsPage()
+		{
+			final RepeatingView items = new RepeatingView("items");
+			add(items);
+			for (int i = 0; i < COMPONENTS; i++)
+			{
+				items.add(new WebMarkupContainer(items.newChildId())
+				{
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public void renderHead(final IHeaderResponse response)
+					{
+						contribute(response);
+					}
+				});
+			}
+		}
+
+		public IResourceStream getMarkupResourceStream(final MarkupContainer container,
+			final Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<html><head></head><body><span wicket:id=\"items\"></span></body></html>");
+		}
+	}
+}
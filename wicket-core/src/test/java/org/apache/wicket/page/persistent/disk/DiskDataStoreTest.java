@@ -31,9 +31,11 @@ import junit.framework.TestCase;
 import org.apache.wicket.pageStore.AsynchronousDataStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
+import org.apache.wicket.pageStore.MappedDiskDataStore;
 import org.apache.wicket.settings.IStoreSettings;
 import org.apache.wicket.settings.def.StoreSettings;
 import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -345,4 +347,24 @@ public class DiskDataStoreTest extends TestCase
 
 		dataStore.destroy();
 	}
+
+	/**
+	 * Runs the same scenario against {@link MappedDiskDataStore}
+	 */
+	public void testMappedDiskDataStore()
+	{
+		generateFiles();
+
+		IStoreSettings storeSettings = new StoreSettings(null);
+		java.io.File fileStoreFolder = storeSettings.getFileStoreFolder();
+
+		dataStore = new MappedDiskDataStore("app1", fileStoreFolder, MAX_SIZE_PER_SESSION,
+			Bytes.megabytes(16), 64, Duration.milliseconds(100));
+		int asynchronousQueueCapacity = storeSettings.getAsynchronousQueueCapacity();
+		dataStore = new AsynchronousDataStore(dataStore, asynchronousQueueCapacity);
+
+		doTestDataStore();
+
+		dataStore.destroy();
+	}
 }
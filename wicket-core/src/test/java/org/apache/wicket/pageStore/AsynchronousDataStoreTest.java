@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.util.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.MethodRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Tests for {@link AsynchronousDataStore}
+ */
+public class AsynchronousDataStoreTest
+{
+	/**	 */
+	@Rule
+	public MethodRule globalTimeout = new Timeout((int)Duration.seconds(30).getMilliseconds());
+
+	/**
+	 * The queued pages of a session are passed in one batch and older versions of a page are
+	 * skipped
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void batchAndSupersede() throws Exception
+	{
+		RecordingDataStore recorder = new RecordingDataStore();
+		AsynchronousDataStore dataStore = new AsynchronousDataStore(recorder, 100, 1, 10);
+
+		// the writer thread blocks in the first store until all other pages are queued
+		dataStore.storeData("s1", 0, new byte[] { 0 });
+		assertTrue(recorder.blocked.await(5, TimeUnit.SECONDS));
+
+		dataStore.storeData("s1", 1, new byte[] { 1 });
+		dataStore.storeData("s1", 2, new byte[] { 2 });
+		dataStore.storeData("s1", 1, new byte[] { 3 });
+		assertArrayEquals(new byte[] { 3 }, dataStore.getData("s1", 1));
+
+		recorder.release.countDown();
+		dataStore.destroy();
+
+		assertEquals(2, recorder.batches.size());
+		assertEquals(Collections.singletonList("s1:0"), recorder.batches.get(0));
+		assertEquals(2, recorder.batches.get(1).size());
+		assertArrayEquals(new byte[] { 3 }, recorder.data.get("s1:1"));
+		assertArrayEquals(new byte[] { 2 }, recorder.data.get("s1:2"));
+
+		assertEquals(3, dataStore.getStoredCount());
+		assertEquals(2, dataStore.getBatchCount());
+		assertEquals(1, dataStore.getSupersededCount());
+		assertEquals(0, dataStore.getFallbackCount());
+	}
+
+	/**
+	 * The pages of each session are stored in order with several writer threads
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void severalWriters() throws Exception
+	{
+		RecordingDataStore recorder = new RecordingDataStore();
+		recorder.release.countDown();
+		AsynchronousDataStore dataStore = new AsynchronousDataStore(recorder, 1000, 4, 5);
+		assertEquals(4, dataStore.getWriterThreads());
+
+		for (int page = 0; page < 50; page++)
+		{
+			for (int session = 0; session < 10; session++)
+			{
+				dataStore.storeData("s" + session, 1, new byte[] { (byte)page });
+			}
+		}
+
+		// wait until the queues are drained
+		while (dataStore.getQueueSize() > 0)
+		{
+			Thread.sleep(10);
+		}
+		dataStore.destroy();
+
+		for (int session = 0; session < 10; session++)
+		{
+			assertArrayEquals(new byte[] { 49 }, recorder.data.get("s" + session + ":1"));
+		}
+		assertEquals(500,
+			dataStore.getStoredCount() + dataStore.getSupersededCount() +
+				dataStore.getFallbackCount());
+	}
+
+	/**
+	 * Removing a session waits for its pages which are being stored, so they are not stored again
+	 * afterwards
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void removeSessionWhileStoring() throws Exception
+	{
+		RecordingDataStore recorder = new RecordingDataStore();
+		final AsynchronousDataStore dataStore = new AsynchronousDataStore(recorder, 100, 1, 10);
+
+		dataStore.storeData("s1", 0, new byte[] { 0 });
+		assertTrue(recorder.blocked.await(5, TimeUnit.SECONDS));
+		dataStore.storeData("s1", 1, new byte[] { 1 });
+
+		Thread remover = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				dataStore.removeData("s1");
+			}
+		};
+		remover.start();
+		remover.join(100);
+		assertTrue(remover.isAlive());
+
+		recorder.release.countDown();
+		remover.join();
+		dataStore.destroy();
+
+		assertNull(recorder.getData("s1", 0));
+		assertNull(recorder.getData("s1", 1));
+	}
+
+	private static class RecordingDataStore implements IBatchDataStore
+	{
+		private final CountDownLatch blocked = new CountDownLatch(1);
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		private final Map<String, byte[]> data = new ConcurrentHashMap<String, byte[]>();
+
+		private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+
+		public void storeData(String sessionId, Map<Integer, byte[]> pages)
+		{
+			List<String> batch = new ArrayList<String>();
+			for (Map.Entry<Integer, byte[]> page : pages.entrySet())
+			{
+				String key = sessionId + ":" + page.getKey();
+				data.put(key, page.getValue());
+				batch.add(key);
+			}
+			batches.add(batch);
+		}
+
+		public void storeData(String sessionId, int id, byte[] data)
+		{
+			blocked.countDown();
+			try
+			{
+				release.await();
+			}
+			catch (InterruptedException e)
+			{
+				throw new RuntimeException(e);
+			}
+			String key = sessionId + ":" + id;
+			this.data.put(key, data);
+			batches.add(Collections.singletonList(key));
+		}
+
+		public byte[] getData(String sessionId, int id)
+		{
+			return data.get(sessionId + ":" + id);
+		}
+
+		public void removeData(String sessionId, int id)
+		{
+			data.remove(sessionId + ":" + id);
+		}
+
+		public void removeData(String sessionId)
+		{
+			for (String key : data.keySet())
+			{
+				if (key.startsWith(sessionId + ":"))
+				{
+					data.remove(key);
+				}
+			}
+		}
+
+		public void destroy()
+		{
+		}
+
+		public boolean isReplicated()
+		{
+			return false;
+		}
+	}
+}
@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeltaDataStore} and {@link BinaryDelta}
+ */
+public class DeltaDataStoreTest
+{
+	private final Random random = new Random(42);
+
+	/**
+	 * A delta restores the target for unrelated, similar and empty data
+	 */
+	@Test
+	public void binaryDelta()
+	{
+		byte[] base = randomBytes(10000);
+		byte[] similar = mutate(base, 5);
+		byte[] unrelated = randomBytes(3000);
+
+		assertDelta(base, similar);
+		assertDelta(base, unrelated);
+		assertDelta(base, new byte[0]);
+		assertDelta(new byte[0], similar);
+		assertDelta(new byte[] { 1, 2, 3 }, new byte[] { 1, 2, 3 });
+
+		assertTrue(BinaryDelta.create(base, similar).length < 500);
+	}
+
+	/**
+	 * Re-stored pages are stored as small deltas and read back
+	 */
+	@Test
+	public void storeDeltas()
+	{
+		MapDataStore delegate = new MapDataStore();
+		DeltaDataStore dataStore = new DeltaDataStore(delegate);
+
+		byte[] page = randomBytes(20000);
+		dataStore.storeData("s1", 1, page);
+		assertEquals(1, dataStore.getBaseCount());
+
+		for (int i = 0; i < 10; i++)
+		{
+			page = mutate(page, 3);
+			dataStore.storeData("s1", 1, page);
+			assertArrayEquals(page, dataStore.getData("s1", 1));
+		}
+		assertEquals(1, dataStore.getBaseCount());
+		assertEquals(10, dataStore.getDeltaCount());
+		assertTrue(delegate.get("s1", 1).length < 1000);
+
+		// a new version of the page is stored against the same base
+		byte[] version = mutate(page, 3);
+		dataStore.storeData("s1", 2, version);
+		assertEquals(1, dataStore.getBaseCount());
+		assertArrayEquals(version, dataStore.getData("s1", 2));
+		assertArrayEquals(page, dataStore.getData("s1", 1));
+	}
+
+	/**
+	 * A page which differs too much from the base becomes a new base, unused bases are removed
+	 */
+	@Test
+	public void rebase()
+	{
+		MapDataStore delegate = new MapDataStore();
+		DeltaDataStore dataStore = new DeltaDataStore(delegate);
+
+		dataStore.storeData("s1", 1, randomBytes(5000));
+		assertEquals(2, delegate.size("s1"));
+
+		byte[] page = randomBytes(5000);
+		dataStore.storeData("s1", 1, page);
+		assertEquals(2, dataStore.getBaseCount());
+		assertEquals(0, dataStore.getDeltaCount());
+		// the first base is not used anymore
+		assertEquals(2, delegate.size("s1"));
+		assertArrayEquals(page, dataStore.getData("s1", 1));
+
+		dataStore.removeData("s1", 1);
+
+		dataStore.removeData("s1");
+		assertEquals(0, delegate.size("s1"));
+	}
+
+	/**
+	 * Pages stored against a base which was removed by the wrapped store are expired, data not
+	 * stored by {@link DeltaDataStore} is returned as is
+	 */
+	@Test
+	public void missingBaseAndForeignData()
+	{
+		MapDataStore delegate = new MapDataStore();
+		DeltaDataStore dataStore = new DeltaDataStore(delegate);
+
+		byte[] page = randomBytes(5000);
+		dataStore.storeData("s1", 1, page);
+		delegate.removeBases("s1");
+		assertNull(new DeltaDataStore(delegate).getData("s1", 1));
+
+		byte[] raw = randomBytes(100);
+		raw[0] = 0;
+		delegate.storeData("s1", 5, raw);
+		assertArrayEquals(raw, dataStore.getData("s1", 5));
+	}
+
+	/**
+	 * After a restart bases of the previous run are not overwritten, a page whose base has been
+	 * overwritten by another run is expired
+	 */
+	@Test
+	public void restart()
+	{
+		MapDataStore delegate = new MapDataStore();
+		byte[] page = randomBytes(5000);
+		new DeltaDataStore(delegate).storeData("s1", 1, page);
+
+		DeltaDataStore restarted = new DeltaDataStore(delegate);
+		byte[] other = randomBytes(5000);
+		restarted.storeData("s1", 2, other);
+		assertEquals(4, delegate.size("s1"));
+		assertArrayEquals(page, restarted.getData("s1", 1));
+		assertArrayEquals(other, restarted.getData("s1", 2));
+
+		// the base of page 1 overwritten by the base of page 2
+		delegate.storeData("s1", delegate.baseIdOf("s1", 1), delegate.get("s1",
+			delegate.baseIdOf("s1", 2)));
+		assertNull(restarted.getData("s1", 1));
+		assertArrayEquals(other, restarted.getData("s1", 2));
+	}
+
+	/**
+	 * The bases are stored again before {@link DiskDataStore} drops them as the oldest data of a
+	 * session which grows beyond its size limit
+	 */
+	@Test
+	public void diskDataStoreSizeLimit()
+	{
+		File folder = new File(System.getProperty("java.io.tmpdir"), "DeltaDataStoreTest");
+		Bytes maxSizePerSession = Bytes.kilobytes(64);
+		DiskDataStore diskDataStore = new DiskDataStore("app1", folder, maxSizePerSession);
+		DeltaDataStore dataStore = new DeltaDataStore(diskDataStore,
+			DeltaDataStore.DEFAULT_REBASE_RATIO, maxSizePerSession);
+		try
+		{
+			byte[] page = randomBytes(20000);
+			byte[][] versions = new byte[2000][];
+			for (int i = 0; i < versions.length; i++)
+			{
+				versions[i] = mutate(page, 3);
+				dataStore.storeData("s1", i, versions[i]);
+			}
+
+			assertEquals(1, dataStore.getBaseCount());
+			assertTrue(dataStore.getStoredBytes() > maxSizePerSession.bytes() * 2);
+			// without the bases cached in memory
+			DeltaDataStore reader = new DeltaDataStore(diskDataStore);
+			for (int i = versions.length - 10; i < versions.length; i++)
+			{
+				assertArrayEquals(versions[i], reader.getData("s1", i));
+			}
+		}
+		finally
+		{
+			dataStore.destroy();
+		}
+	}
+
+	/**
+	 * Pages dropped by {@link DiskDataStore} are forgotten together with their bases, which are
+	 * neither kept in memory nor stored again
+	 */
+	@Test
+	public void diskDataStoreEvictsSeveralBases()
+	{
+		File folder = new File(System.getProperty("java.io.tmpdir"), "DeltaDataStoreTest");
+		Bytes maxSizePerSession = Bytes.kilobytes(64);
+		DiskDataStore diskDataStore = new DiskDataStore("app1", folder, maxSizePerSession);
+		DeltaDataStore dataStore = new DeltaDataStore(diskDataStore,
+			DeltaDataStore.DEFAULT_REBASE_RATIO, maxSizePerSession);
+		try
+		{
+			// 50 unrelated pages with 5 versions each, 12KB per page
+			byte[][] versions = new byte[250][];
+			long minimalBytes = 0;
+			for (int page = 0; page < 50; page++)
+			{
+				byte[] data = randomBytes(5000);
+				for (int version = 0; version < 5; version++)
+				{
+					data = mutate(data, 3);
+					versions[page * 5 + version] = data;
+					dataStore.storeData("s1", page * 5 + version, data);
+				}
+				minimalBytes += 2 * data.length;
+			}
+
+			assertEquals(50, dataStore.getBaseCount());
+			// the bases of dropped pages are not stored again
+			assertTrue(dataStore.getStoredBytes() < minimalBytes * 3 / 2);
+			assertTrue(dataStore.getTrackedPageCount("s1") <= 40);
+			assertNull(dataStore.getData("s1", 0));
+
+			DeltaDataStore reader = new DeltaDataStore(diskDataStore);
+			for (int i = versions.length - 10; i < versions.length; i++)
+			{
+				assertArrayEquals(versions[i], dataStore.getData("s1", i));
+				assertArrayEquals(versions[i], reader.getData("s1", i));
+			}
+		}
+		finally
+		{
+			dataStore.destroy();
+		}
+	}
+
+	/**
+	 * Compares the bytes passed to the wrapped store with and without deltas for a page which
+	 * changes a little with every request
+	 */
+	@Test
+	public void storedBytes()
+	{
+		MapDataStore full = new MapDataStore();
+		long fullBytes = 0;
+		DeltaDataStore deltas = new DeltaDataStore(new MapDataStore());
+
+		byte[] page = randomBytes(50000);
+		for (int i = 0; i < 200; i++)
+		{
+			page = mutate(page, 4);
+			full.storeData("s1", i % 5, page);
+			fullBytes += page.length;
+			deltas.storeData("s1", i % 5, page);
+		}
+		assertTrue(deltas.getStoredBytes() < fullBytes / 5);
+
+		for (int id = 0; id < 5; id++)
+		{
+			assertArrayEquals(full.getData("s1", id), deltas.getData("s1", id));
+		}
+	}
+
+	private static void assertDelta(byte[] base, byte[] target)
+	{
+		byte[] delta = BinaryDelta.create(base, target);
+		assertArrayEquals(target, BinaryDelta.apply(base, delta, 0));
+	}
+
+	private byte[] randomBytes(int length)
+	{
+		byte[] data = new byte[length];
+		random.nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * Copies the data and changes a few bytes, inserts or removes some too
+	 */
+	private byte[] mutate(byte[] data, int changes)
+	{
+		byte[] result = data.clone();
+		for (int i = 0; i < changes; i++)
+		{
+			result[random.nextInt(result.length)] = (byte)random.nextInt();
+		}
+		int position = random.nextInt(result.length);
+		byte[] moved = new byte[result.length + 2];
+		System.arraycopy(result, 0, moved, 0, position);
+		moved[position] = 7;
+		moved[position + 1] = 8;
+		System.arraycopy(result, position, moved, position + 2, result.length - position);
+		return moved;
+	}
+
+	private static class MapDataStore implements IDataStore
+	{
+		private final Map<String, byte[]> data = new ConcurrentHashMap<String, byte[]>();
+
+		private byte[] get(String sessionId, int id)
+		{
+			return data.get(sessionId + ":" + id);
+		}
+
+		private int baseIdOf(String sessionId, int id)
+		{
+			byte[] record = get(sessionId, id);
+			return ((record[1] & 0xff) << 24) | ((record[2] & 0xff) << 16) |
+				((record[3] & 0xff) << 8) | (record[4] & 0xff);
+		}
+
+		private void removeBases(String sessionId)
+		{
+			for (String key : data.keySet())
+			{
+				if (key.startsWith(sessionId + ":-"))
+				{
+					data.remove(key);
+				}
+			}
+		}
+
+		private int size(String sessionId)
+		{
+			int size = 0;
+			for (String key : data.keySet())
+			{
+				if (key.startsWith(sessionId + ":"))
+				{
+					size++;
+				}
+			}
+			return size;
+		}
+
+		public byte[] getData(String sessionId, int id)
+		{
+			return get(sessionId, id);
+		}
+
+		public void removeData(String sessionId, int id)
+		{
+			data.remove(sessionId + ":" + id);
+		}
+
+		public void removeData(String sessionId)
+		{
+			for (String key : data.keySet())
+			{
+				if (key.startsWith(sessionId + ":"))
+				{
+					data.remove(key);
+				}
+			}
+		}
+
+		public void storeData(String sessionId, int id, byte[] data)
+		{
+			this.data.put(sessionId + ":" + id, data);
+		}
+
+		public void destroy()
+		{
+			data.clear();
+		}
+
+		public boolean isReplicated()
+		{
+			return false;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MappedDiskDataStore}
+ */
+public class MappedDiskDataStoreTest
+{
+	private MappedDiskDataStore dataStore;
+
+	/** */
+	@Before
+	public void before()
+	{
+		File folder = new File(System.getProperty("java.io.tmpdir"));
+		// small segments and no background compaction during the test
+		dataStore = new MappedDiskDataStore("MappedDiskDataStoreTest", folder, Bytes.kilobytes(4),
+			Bytes.kilobytes(4), 4, Duration.hours(1));
+	}
+
+	/** */
+	@After
+	public void after()
+	{
+		dataStore.destroy();
+	}
+
+	/**
+	 * Stores, loads and removes pages of several sessions
+	 */
+	@Test
+	public void storeAndRemove()
+	{
+		dataStore.storeData("s1", 1, data(100, 1));
+		dataStore.storeData("s1", 2, data(100, 2));
+		dataStore.storeData("s2", 1, data(100, 3));
+
+		assertArrayEquals(data(100, 1), dataStore.getData("s1", 1));
+		assertArrayEquals(data(100, 2), dataStore.getData("s1", 2));
+		assertArrayEquals(data(100, 3), dataStore.getData("s2", 1));
+		assertNull(dataStore.getData("s2", 2));
+
+		dataStore.removeData("s1", 1);
+		assertNull(dataStore.getData("s1", 1));
+
+		dataStore.removeData("s1");
+		assertNull(dataStore.getData("s1", 2));
+		assertArrayEquals(data(100, 3), dataStore.getData("s2", 1));
+		assertEquals(100, dataStore.getLiveBytes());
+	}
+
+	/**
+	 * The oldest pages of a session are dropped when it exceeds its maximum size
+	 */
+	@Test
+	public void maxSizePerSession()
+	{
+		for (int i = 0; i < 5; i++)
+		{
+			dataStore.storeData("s1", i, data(1024, i));
+		}
+
+		assertNull(dataStore.getData("s1", 0));
+		for (int i = 1; i < 5; i++)
+		{
+			assertArrayEquals(data(1024, i), dataStore.getData("s1", i));
+		}
+	}
+
+	/**
+	 * Replaced pages leave garbage that is reclaimed by compaction
+	 */
+	@Test
+	public void compact()
+	{
+		for (int round = 0; round < 20; round++)
+		{
+			for (int i = 0; i < 3; i++)
+			{
+				dataStore.storeData("s" + i, 1, data(1000, round + i));
+			}
+			dataStore.compact();
+		}
+
+		assertTrue(dataStore.getSegmentCount() <= 4);
+		assertEquals(3000, dataStore.getLiveBytes());
+		for (int i = 0; i < 3; i++)
+		{
+			assertArrayEquals(data(1000, 19 + i), dataStore.getData("s" + i, 1));
+		}
+	}
+
+	/**
+	 * The compaction of a segment is aborted when its pages cannot be moved, no page is lost
+	 */
+	@Test
+	public void compactWithoutRoom()
+	{
+		// the first segment keeps a single live page
+		for (int i = 0; i < 4; i++)
+		{
+			dataStore.storeData("a" + i, 1, data(1024, i));
+		}
+		for (int i = 1; i < 4; i++)
+		{
+			dataStore.removeData("a" + i, 1);
+		}
+		// all other segments are full
+		for (int i = 0; i < 12; i++)
+		{
+			dataStore.storeData("b" + i, 1, data(1024, i));
+		}
+		assertEquals(4, dataStore.getSegmentCount());
+
+		dataStore.compact();
+
+		assertArrayEquals(data(1024, 0), dataStore.getData("a0", 1));
+		for (int i = 0; i < 12; i++)
+		{
+			assertArrayEquals(data(1024, i), dataStore.getData("b" + i, 1));
+		}
+		assertEquals(13 * 1024, dataStore.getLiveBytes());
+
+		// once there is room the compaction succeeds
+		for (int i = 0; i < 4; i++)
+		{
+			dataStore.removeData("b" + i, 1);
+		}
+		dataStore.compact();
+		dataStore.storeData("c", 1, data(1024, 5));
+		assertArrayEquals(data(1024, 0), dataStore.getData("a0", 1));
+		assertArrayEquals(data(1024, 5), dataStore.getData("c", 1));
+	}
+
+	/**
+	 * The pages of the oldest segment are evicted when all segments are full
+	 */
+	@Test
+	public void evictWhenFull()
+	{
+		for (int i = 0; i < 16; i++)
+		{
+			dataStore.storeData("s" + i, 1, data(1024, i));
+		}
+		assertEquals(4, dataStore.getSegmentCount());
+
+		dataStore.storeData("s16", 1, data(1024, 16));
+
+		assertEquals(4, dataStore.getSegmentCount());
+		for (int i = 0; i < 4; i++)
+		{
+			assertNull(dataStore.getData("s" + i, 1));
+		}
+		for (int i = 4; i < 17; i++)
+		{
+			assertArrayEquals(data(1024, i), dataStore.getData("s" + i, 1));
+		}
+		assertEquals(13 * 1024, dataStore.getLiveBytes());
+
+		// unbinding releases the bytes of all segments the session used
+		dataStore.storeData("s4", 2, data(1024, 4));
+		dataStore.removeData("s4");
+		assertEquals(12 * 1024, dataStore.getLiveBytes());
+	}
+
+	private static byte[] data(int length, int value)
+	{
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte)value);
+		return data;
+	}
+}
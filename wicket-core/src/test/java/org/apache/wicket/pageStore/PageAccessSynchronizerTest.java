@@ -16,16 +16,35 @@
  */
 package org.apache.wicket.pageStore;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Field;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.wicket.mock.MockPageManager;
 import org.apache.wicket.page.CouldNotLockPageException;
+import org.apache.wicket.page.IManageablePage;
+import org.apache.wicket.page.IPageManager;
 import org.apache.wicket.page.PageAccessSynchronizer;
+import org.apache.wicket.page.PageLockStatistics;
+import org.apache.wicket.util.IProvider;
 import org.apache.wicket.util.lang.WicketObjects;
 import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.tester.WicketTester;
 import org.apache.wicket.util.time.Time;
 import org.junit.Rule;
 import org.junit.Test;
@@ -104,6 +123,363 @@ public class PageAccessSynchronizerTest
 		assertTrue(!t2locks[0].before(t1locks[0].add(hold)));
 	}
 
+	/**
+	 * Threads waiting for a page acquire it in the order they started to wait
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testFairness() throws Exception
+	{
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.seconds(10));
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+
+		sync.lockPage(1);
+
+		Thread[] waiters = new Thread[5];
+		for (int i = 0; i < waiters.length; i++)
+		{
+			final int index = i;
+			waiters[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					sync.lockPage(1);
+					order.add(index);
+					sync.unlockAllPages();
+				}
+			};
+			waiters[i].start();
+			// let the thread enqueue before the next one starts
+			Duration.milliseconds(100).sleep();
+		}
+
+		sync.unlockAllPages();
+		for (Thread waiter : waiters)
+		{
+			waiter.join();
+		}
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+	}
+
+	/**
+	 * A thread gives up waiting after the timeout, the page can be locked again after the release
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testTimeout() throws Exception
+	{
+		final PageLockStatistics statistics = new PageLockStatistics();
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.milliseconds(200),
+			statistics);
+		final boolean[] failed = new boolean[1];
+
+		sync.lockPage(1);
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					sync.lockPage(1);
+				}
+				catch (CouldNotLockPageException e)
+				{
+					failed[0] = true;
+				}
+				finally
+				{
+					sync.unlockAllPages();
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+		assertTrue(failed[0]);
+		assertEquals(1, statistics.getTimeoutCount());
+
+		sync.unlockAllPages();
+		thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				sync.lockPage(1);
+				sync.unlockAllPages();
+			}
+		};
+		thread.start();
+		thread.join();
+	}
+
+	/**
+	 * A lock which is neither owned nor waited for after a waiting thread gave up is removed
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testAbandonedLockRemoved() throws Exception
+	{
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.seconds(30));
+		Field field = PageAccessSynchronizer.class.getDeclaredField("locks");
+		field.setAccessible(true);
+		Map<?, ?> locks = (Map<?, ?>)((IProvider<?>)field.get(sync)).get();
+
+		sync.lockPage(1);
+		Thread waiter = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					sync.lockPage(1);
+				}
+				catch (RuntimeException e)
+				{
+					// interrupted
+				}
+				finally
+				{
+					sync.unlockAllPages();
+				}
+			}
+		};
+		waiter.start();
+		while (waiter.getState() != Thread.State.TIMED_WAITING)
+		{
+			Thread.sleep(10);
+		}
+
+		// the waiter gives up only after the lock has been released in favor of it
+		synchronized (locks.get(1))
+		{
+			waiter.interrupt();
+			sync.unlockAllPages();
+		}
+		waiter.join();
+
+		assertTrue(locks.isEmpty());
+	}
+
+	/**
+	 * The time waited for a page is recorded for the page class
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testStatistics() throws Exception
+	{
+		final PageLockStatistics statistics = new PageLockStatistics();
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.seconds(5),
+			statistics);
+		final IPageManager pageManager = sync.adapt(new MockPageManager());
+
+		final TestPage page = new TestPage();
+		pageManager.touchPage(page);
+
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				pageManager.touchPage(page);
+				pageManager.commitRequest();
+			}
+		};
+		thread.start();
+		Duration.milliseconds(200).sleep();
+		pageManager.commitRequest();
+		thread.join();
+
+		List<PageLockStatistics.Entry> entries = statistics.getEntries();
+		assertEquals(1, entries.size());
+		PageLockStatistics.Entry entry = entries.get(0);
+		assertEquals(TestPage.class.getName(), entry.getPageClass());
+		assertEquals(2, entry.getAcquisitions());
+		assertEquals(1, entry.getContentions());
+		assertTrue(entry.getMaxWaitNanos() >= Duration.milliseconds(100).getMilliseconds() * 1000000L);
+	}
+
+	/**
+	 * After the synchronizer has been deserialized the wait times are recorded to the statistics
+	 * of the application again
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testStatisticsAfterDeserialization() throws Exception
+	{
+		WicketTester tester = new WicketTester();
+		try
+		{
+			final PageLockStatistics statistics = tester.getApplication().getPageLockStatistics();
+			final PageAccessSynchronizer original = new PageAccessSynchronizer(
+				Duration.milliseconds(100), statistics);
+			final PageAccessSynchronizer sync = (PageAccessSynchronizer)WicketObjects.cloneObject(original);
+			final IPageManager pageManager = sync.adapt(new MockPageManager());
+
+			pageManager.touchPage(new TestPage());
+			pageManager.commitRequest();
+
+			assertEquals(1, statistics.getEntries().size());
+			assertEquals(TestPage.class.getName(), statistics.getEntries().get(0).getPageClass());
+		}
+		finally
+		{
+			tester.destroy();
+		}
+	}
+
+	/**
+	 * A thread releasing a lock must not remove the new lock another thread has put for the page
+	 * meanwhile, or a third thread could lock the page at the same time.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testReleaseAndRelock() throws Exception
+	{
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.milliseconds(500));
+		final Thread releaser = Thread.currentThread();
+		final CountDownLatch relocked = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+
+		// a second thread locks the page right after the releaser has discarded its lock, but
+		// before the releaser removes the lock from the map
+		final Thread relocker = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				sync.lockPage(1);
+				relocked.countDown();
+				try
+				{
+					done.await();
+				}
+				catch (InterruptedException e)
+				{
+					// ignore
+				}
+				sync.unlockAllPages();
+			}
+		};
+		final ConcurrentHashMap<Integer, Object> locks = new ConcurrentHashMap<Integer, Object>()
+		{
+			private static final long serialVersionUID = 1L;
+
+			private boolean relocking = true;
+
+			private void relock()
+			{
+				if (relocking && Thread.currentThread() == releaser)
+				{
+					relocking = false;
+					relocker.start();
+					try
+					{
+						relocked.await();
+					}
+					catch (InterruptedException e)
+					{
+						throw new RuntimeException(e);
+					}
+				}
+			}
+
+			@Override
+			public boolean remove(Object key, Object value)
+			{
+				relock();
+				return super.remove(key, value);
+			}
+
+			@Override
+			public Collection<Object> values()
+			{
+				final Collection<Object> values = super.values();
+				return new AbstractCollection<Object>()
+				{
+					@Override
+					public Iterator<Object> iterator()
+					{
+						final Iterator<Object> iterator = values.iterator();
+						return new Iterator<Object>()
+						{
+							public boolean hasNext()
+							{
+								return iterator.hasNext();
+							}
+
+							public Object next()
+							{
+								return iterator.next();
+							}
+
+							public void remove()
+							{
+								relock();
+								iterator.remove();
+							}
+						};
+					}
+
+					@Override
+					public int size()
+					{
+						return values.size();
+					}
+				};
+			}
+		};
+		Field field = PageAccessSynchronizer.class.getDeclaredField("locks");
+		field.setAccessible(true);
+		field.set(sync, new IProvider<ConcurrentHashMap<Integer, Object>>()
+		{
+			public ConcurrentHashMap<Integer, Object> get()
+			{
+				return locks;
+			}
+		});
+
+		sync.lockPage(1);
+		sync.unlockAllPages();
+		relocked.await();
+
+		// the page is still locked by the relocker
+		final boolean[] locked = new boolean[1];
+		Thread third = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					sync.lockPage(1);
+					locked[0] = true;
+				}
+				catch (CouldNotLockPageException e)
+				{
+					// expected
+				}
+				finally
+				{
+					sync.unlockAllPages();
+				}
+			}
+		};
+		third.start();
+		third.join();
+		done.countDown();
+		relocker.join();
+
+		assertFalse("page 1 locked by two threads", locked[0]);
+	}
+
 	/**
 	 * @param pages
 	 * @param workers
@@ -300,4 +676,28 @@ public class PageAccessSynchronizerTest
 		locker2.run();
 		assertTrue(Duration.milliseconds(System.currentTimeMillis() - start).lessThan(timeout));
 	}
+
+	private static class TestPage implements IManageablePage
+	{
+		private static final long serialVersionUID = 1L;
+
+		public boolean isPageStateless()
+		{
+			return false;
+		}
+
+		public int getPageId()
+		{
+			return 3;
+		}
+
+		public void detach()
+		{
+		}
+
+		public boolean setFreezePageId(boolean freeze)
+		{
+			return false;
+		}
+	}
 }
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPage;
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPagesCache;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SerializedPagesCache}
+ */
+public class SerializedPagesCacheTest
+{
+	private final byte[] data = new byte[] { 1 };
+
+	/**
+	 * Pages are found by session id and page id
+	 */
+	@Test
+	public void storeAndGet()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(10);
+		SerializedPage page = new SerializedPage("s1", 1, data);
+		cache.storePage(page);
+
+		assertSame(page, cache.getPage("s1", 1));
+		assertNull(cache.getPage("s1", 2));
+		assertNull(cache.getPage("s2", 1));
+
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	/**
+	 * Storing a page with the same ids replaces the old one
+	 */
+	@Test
+	public void replace()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(10);
+		cache.storePage(new SerializedPage("s1", 1, data));
+		SerializedPage page = new SerializedPage("s1", 1, new byte[] { 2 });
+		cache.storePage(page);
+
+		assertSame(page, cache.getPage("s1", 1));
+		assertEquals(1, cache.getCount());
+	}
+
+	/**
+	 * The least recently used page is evicted when the cache is full
+	 */
+	@Test
+	public void evictLeastRecentlyUsed()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(3);
+		cache.storePage(new SerializedPage("s1", 1, data));
+		cache.storePage(new SerializedPage("s1", 2, data));
+		cache.storePage(new SerializedPage("s1", 3, data));
+
+		// touch the first page so the second one becomes the eldest
+		assertNotNull(cache.getPage("s1", 1));
+
+		cache.storePage(new SerializedPage("s1", 4, data));
+
+		assertEquals(3, cache.getCount());
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.getPage("s1", 2));
+		assertNotNull(cache.getPage("s1", 1));
+		assertNotNull(cache.getPage("s1", 3));
+		assertNotNull(cache.getPage("s1", 4));
+	}
+
+	/**
+	 * A single session may use the whole size of a cache with several segments, other sessions
+	 * are evicted in its favour
+	 */
+	@Test
+	public void sessionUsesWholeSize()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(1000);
+		for (int i = 0; i < 100; i++)
+		{
+			cache.storePage(new SerializedPage("other" + i, 1, data));
+		}
+		for (int i = 0; i < 1000; i++)
+		{
+			cache.storePage(new SerializedPage("s1", i, data));
+		}
+
+		assertEquals(1000, cache.getCount());
+		assertEquals(100, cache.getEvictions());
+		for (int i = 0; i < 1000; i++)
+		{
+			assertNotNull(cache.getPage("s1", i));
+		}
+
+		cache.storePage(new SerializedPage("s1", 1000, data));
+		assertEquals(1000, cache.getCount());
+		assertNull(cache.getPage("s1", 0));
+	}
+
+	/**
+	 * Removes single pages and all pages of a session
+	 */
+	@Test
+	public void remove()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(100);
+		for (int i = 0; i < 10; i++)
+		{
+			cache.storePage(new SerializedPage("s1", i, data));
+			cache.storePage(new SerializedPage("s2", i, data));
+		}
+
+		assertNotNull(cache.removePage("s1", 5));
+		assertNull(cache.removePage("s1", 5));
+		assertEquals(19, cache.getCount());
+
+		cache.removePages("s1");
+		assertEquals(10, cache.getCount());
+		assertNull(cache.getPage("s1", 1));
+		assertNotNull(cache.getPage("s2", 1));
+	}
+
+	/**
+	 * A cache with size 0 doesn't store anything
+	 */
+	@Test
+	public void disabled()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(0);
+		cache.storePage(new SerializedPage("s1", 1, data));
+
+		assertNull(cache.getPage("s1", 1));
+		assertEquals(0, cache.getCount());
+	}
+}
@@ -19,6 +19,7 @@ package org.apache.wicket.pageStore.memory;
 import static org.junit.Assert.assertArrayEquals;
 
 import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.util.lang.Bytes;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -100,6 +101,27 @@ public class HttpSessionDataStoreTest extends WicketTestCase
 		assertNull(store.getData(sessionId, pageId));
 	}
 
+	/**
+	 * storeOffHeap()
+	 */
+	@Test
+	public void storeOffHeap()
+	{
+		OffHeapPageStorage storage = new OffHeapPageStorage(Bytes.megabytes(1));
+		DummyPageManagerContext context = new DummyPageManagerContext();
+		HttpSessionDataStore offHeapStore = new HttpSessionDataStore(context,
+			new NoopEvictionStrategy(), storage);
+
+		offHeapStore.storeData(sessionId, pageId, PAGE1);
+		assertTrue(context.attribute instanceof OffHeapPageTable);
+		assertTrue(storage.getUsedBytes() > 0);
+		assertArrayEquals(PAGE1, offHeapStore.getData(sessionId, pageId));
+
+		offHeapStore.removeData(sessionId);
+		assertNull(offHeapStore.getData(sessionId, pageId));
+		assertEquals(0, storage.getUsedBytes());
+	}
+
 
 	private static final class NoopEvictionStrategy implements DataStoreEvictionStrategy
 	{
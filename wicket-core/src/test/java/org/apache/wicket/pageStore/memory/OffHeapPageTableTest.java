@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.memory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.lang.WicketObjects;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OffHeapPageTable} and {@link OffHeapPageStorage}
+ */
+public class OffHeapPageTableTest
+{
+	private final OffHeapPageStorage storage = new OffHeapPageStorage(Bytes.kilobytes(64),
+		Bytes.kilobytes(16), Bytes.kilobytes(1));
+
+	/**
+	 * Pages spanning several blocks are stored outside of the heap and read back
+	 */
+	@Test
+	public void storeAndRemove()
+	{
+		OffHeapPageTable pageTable = new OffHeapPageTable(storage);
+		byte[] page1 = bytes(3000, 1);
+		byte[] page2 = bytes(10, 2);
+
+		pageTable.storePage(1, page1);
+		pageTable.storePage(2, page2);
+		assertEquals(2, pageTable.size());
+		assertEquals(3010, pageTable.getSizeInBytes());
+		assertEquals(Bytes.kilobytes(4).bytes(), storage.getUsedBytes());
+		assertArrayEquals(page1, pageTable.getPage(1));
+		assertArrayEquals(page2, pageTable.getPage(2));
+
+		// replace a page
+		pageTable.storePage(1, page2);
+		assertArrayEquals(page2, pageTable.getPage(1));
+		assertEquals(Bytes.kilobytes(2).bytes(), storage.getUsedBytes());
+
+		assertArrayEquals(page2, pageTable.removePage(2));
+		assertNull(pageTable.getPage(2));
+
+		pageTable.clear();
+		assertEquals(0, pageTable.size());
+		assertEquals(0, storage.getUsedBytes());
+		assertEquals(Bytes.kilobytes(16).bytes(), storage.getAllocatedBytes());
+	}
+
+	/**
+	 * Pages which do not fit in the budget are kept on the heap
+	 */
+	@Test
+	public void budgetExhausted()
+	{
+		OffHeapPageTable pageTable = new OffHeapPageTable(storage);
+		byte[] page = bytes(Bytes.kilobytes(60).bytes(), 3);
+		pageTable.storePage(1, page);
+		pageTable.storePage(2, page);
+
+		assertEquals(storage.getMaxBytes(), storage.getAllocatedBytes());
+		assertArrayEquals(page, pageTable.getPage(1));
+		assertArrayEquals(page, pageTable.getPage(2));
+
+		pageTable.removePage(1);
+		assertEquals(0, storage.getUsedBytes());
+		assertArrayEquals(page, pageTable.getPage(2));
+	}
+
+	/**
+	 * The pages are serialized with the table and moved to the storage when attached again
+	 */
+	@Test
+	public void passivation()
+	{
+		OffHeapPageTable pageTable = new OffHeapPageTable(storage);
+		byte[] page = bytes(2000, 4);
+		pageTable.storePage(1, page);
+		pageTable.storePage(2, page);
+		pageTable.getPage(1);
+
+		OffHeapPageTable copy = (OffHeapPageTable)WicketObjects.cloneObject(pageTable);
+		assertEquals(2, copy.size());
+		assertEquals(Integer.valueOf(2), copy.getOldest());
+		assertArrayEquals(page, copy.getPage(1));
+
+		pageTable.clear();
+		copy.attach(storage);
+		assertEquals(Bytes.kilobytes(4).bytes(), storage.getUsedBytes());
+		assertArrayEquals(page, copy.getPage(2));
+	}
+
+	/**
+	 * The eviction strategies work with the sizes of the pages in the storage
+	 */
+	@Test
+	public void eviction()
+	{
+		OffHeapPageTable pageTable = new OffHeapPageTable(storage);
+		for (int i = 0; i < 10; i++)
+		{
+			pageTable.storePage(i, bytes(1000, i));
+		}
+
+		new PageNumberEvictionStrategy(8).evict(pageTable);
+		assertEquals(8, pageTable.size());
+		assertNull(pageTable.getPage(0));
+
+		new MemorySizeEvictionStrategy(Bytes.bytes(5000)).evict(pageTable);
+		assertEquals(5, pageTable.size());
+		assertTrue(pageTable.getSizeInBytes() <= 5000);
+		assertEquals(Bytes.kilobytes(5).bytes(), storage.getUsedBytes());
+	}
+
+	private static byte[] bytes(long length, int seed)
+	{
+		byte[] data = new byte[(int)length];
+		for (int i = 0; i < data.length; i++)
+		{
+			data[i] = (byte)(i * 31 + seed);
+		}
+		return data;
+	}
+}
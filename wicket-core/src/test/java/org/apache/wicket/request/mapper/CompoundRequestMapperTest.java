@@ -0,0 +1,430 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.wicket.Benchmarks;
+import org.apache.wicket.MockPage;
+import org.apache.wicket.MockPageWithLink;
+import org.apache.wicket.request.IRequestCycle;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.handler.BookmarkablePageRequestHandler;
+import org.apache.wicket.request.handler.PageProvider;
+import org.apache.wicket.request.handler.RenderPageRequestHandler;
+import org.apache.wicket.util.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for {@link CompoundRequestMapper}
+ */
+public class CompoundRequestMapperTest extends AbstractMapperTest
+{
+	private static final Logger log = LoggerFactory.getLogger(CompoundRequestMapperTest.class);
+
+	private final CompoundRequestMapper compound = new CompoundRequestMapper();
+
+	private MountedMapper mount(String path, Class<? extends IRequestablePage> pageClass)
+	{
+		return new MountedMapper(path, pageClass)
+		{
+			@Override
+			protected IMapperContext getContext()
+			{
+				return context;
+			}
+
+			// opt in to the prefix index
+			@Override
+			public String[] getPrefixSegments()
+			{
+				return super.getPrefixSegments();
+			}
+		};
+	}
+
+	private Class<?> mapPageClass(String url)
+	{
+		IRequestHandler handler = compound.mapRequest(getRequest(Url.parse(url)));
+		if (handler == null)
+		{
+			return null;
+		}
+		return ((RenderPageRequestHandler)handler).getPageClass();
+	}
+
+	private Url mapPageClass(Class<? extends IRequestablePage> pageClass)
+	{
+		return compound.mapHandler(new BookmarkablePageRequestHandler(new PageProvider(pageClass)));
+	}
+
+	/**
+	 * Loads the given number of distinct copies of {@link MockPage}, each one by its own class
+	 * loader
+	 * 
+	 * @param count
+	 * @return page classes
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	private static Class<? extends IRequestablePage>[] newPageClasses(int count)
+		throws IOException
+	{
+		InputStream in = MockPage.class.getResourceAsStream("MockPage.class");
+		byte[] bytes;
+		try
+		{
+			bytes = IOUtils.toByteArray(in);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+
+		Class<? extends IRequestablePage>[] classes =
+			(Class<? extends IRequestablePage>[])new Class<?>[count];
+		for (int i = 0; i < count; i++)
+		{
+			classes[i] = (Class<? extends IRequestablePage>)new PageClassLoader().define(bytes);
+		}
+		return classes;
+	}
+
+	/**
+	 * The mapper with the most matching segments maps the request
+	 */
+	public void testMostSpecificMount()
+	{
+		compound.add(mount("a/b", MockPageWithLink.class));
+		compound.add(mount("a", MockPage.class));
+
+		assertEquals(MockPage.class, mapPageClass("a"));
+		assertEquals(MockPage.class, mapPageClass("a/c"));
+		assertEquals(MockPageWithLink.class, mapPageClass("a/b"));
+		assertEquals(MockPageWithLink.class, mapPageClass("a/b/c"));
+		assertNull(mapPageClass("b"));
+	}
+
+	/**
+	 * Placeholders end the prefix of a mount
+	 */
+	public void testPlaceholders()
+	{
+		compound.add(mount("a/${p}/c", MockPageWithLink.class));
+		compound.add(mount("#{o}/b", MockPage.class));
+
+		assertEquals(MockPageWithLink.class, mapPageClass("a/x/c"));
+		assertEquals(MockPage.class, mapPageClass("x/b"));
+		assertEquals(MockPage.class, mapPageClass("b"));
+	}
+
+	/**
+	 * The last registered mapper wins if the scores are equal, also for mappers which are not
+	 * indexed
+	 */
+	public void testEqualScores()
+	{
+		MountedMapper first = mount("a", MockPageWithLink.class);
+		compound.add(first);
+		compound.add(mount("a", MockPage.class));
+		assertEquals(MockPage.class, mapPageClass("a"));
+
+		HandlerMapper unprefixed = new HandlerMapper(1);
+		compound.add(unprefixed);
+		assertSame(unprefixed.handler, compound.mapRequest(getRequest(Url.parse("a"))));
+
+		compound.add(mount("a", MockPageWithLink.class));
+		assertEquals(MockPageWithLink.class, mapPageClass("a"));
+	}
+
+	/**
+	 * Mappers which are removed are not consulted anymore
+	 */
+	public void testRemove()
+	{
+		MountedMapper mapper = mount("a", MockPage.class);
+		compound.add(mapper);
+		assertEquals(MockPage.class, mapPageClass("a"));
+
+		compound.remove(mapper);
+		assertNull(mapPageClass("a"));
+	}
+
+	/**
+	 * Subclasses which do not declare their prefix are consulted for urls outside of the inherited
+	 * prefix
+	 */
+	public void testInheritedPrefix()
+	{
+		compound.add(mount("a", MockPage.class));
+		compound.add(new MountedMapper("b", MockPageWithLink.class)
+		{
+			@Override
+			protected IMapperContext getContext()
+			{
+				return context;
+			}
+
+			@Override
+			public IRequestHandler mapRequest(Request request)
+			{
+				return super.mapRequest(getRequest(Url.parse("b")));
+			}
+		});
+
+		assertEquals(MockPageWithLink.class, mapPageClass("c"));
+	}
+
+	/**
+	 * Mounted pages are consulted for the empty url, as they might redirect the home page
+	 */
+	public void testHomePage()
+	{
+		compound.add(mount("home", MockPage.class));
+		compound.add(mount("other", MockPageWithLink.class));
+
+		assertEquals(MockPage.class, mapPageClass(""));
+	}
+
+	/**
+	 * Maps requests with 1000 pages mounted and a mapper without prefix
+	 */
+	public void testBenchmark()
+	{
+		if (!Benchmarks.isEnabled())
+		{
+			return;
+		}
+
+		final int mounts = 1000;
+		for (int i = 0; i < mounts; i++)
+		{
+			compound.add(mount("section" + (i % 20) + "/page" + i, MockPage.class));
+		}
+		compound.add(new HandlerMapper(0));
+
+		Request[] requests = new Request[100];
+		for (int i = 0; i < requests.length; i++)
+		{
+			int page = (i * 37) % mounts;
+			requests[i] = getRequest(Url.parse("section" + (page % 20) + "/page" + page +
+				"/param?a=b"));
+		}
+
+		for (int i = 0; i < 100; i++)
+		{
+			for (Request request : requests)
+			{
+				assertNotNull(compound.mapRequest(request));
+			}
+		}
+
+		final int iterations = 100;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+		{
+			for (Request request : requests)
+			{
+				compound.mapRequest(request);
+			}
+		}
+		long duration = System.nanoTime() - start;
+		log.info("{} mounts: {} ns/request", mounts, duration / iterations / requests.length);
+	}
+
+	/**
+	 * Handlers are mapped by the last mounted mapper for their page class
+	 */
+	public void testMapHandlerByPageClass()
+	{
+		compound.add(mount("a", MockPage.class));
+		compound.add(mount("b", MockPageWithLink.class));
+		compound.add(mount("c", MockPage.class));
+
+		assertEquals("b", mapPageClass(MockPageWithLink.class).toString());
+		assertEquals("c", mapPageClass(MockPage.class).toString());
+	}
+
+	/**
+	 * Mappers without a mapping key are consulted in registration order together with the keyed
+	 * ones
+	 */
+	public void testMapHandlerUnkeyed()
+	{
+		HandlerMapper before = new HandlerMapper(0, Url.parse("before"));
+		compound.add(before);
+		compound.add(mount("a", MockPage.class));
+		assertEquals("a", mapPageClass(MockPage.class).toString());
+		assertEquals("before", mapPageClass(MockPageWithLink.class).toString());
+
+		compound.add(new HandlerMapper(0, Url.parse("after")));
+		assertEquals("after", mapPageClass(MockPage.class).toString());
+		assertEquals("after", mapPageClass(MockPageWithLink.class).toString());
+	}
+
+	/**
+	 * Mappers which are removed do not map handlers anymore
+	 */
+	public void testMapHandlerRemove()
+	{
+		MountedMapper mapper = mount("a", MockPage.class);
+		compound.add(mapper);
+		assertEquals("a", mapPageClass(MockPage.class).toString());
+
+		compound.remove(mapper);
+		assertNull(mapPageClass(MockPage.class));
+	}
+
+	/**
+	 * Only the mappers with the mapping key of a handler are asked to encode it
+	 * 
+	 * @throws IOException
+	 */
+	public void testMapHandlerConsultsMappersOfKey() throws IOException
+	{
+		final int mounts = 100;
+		Class<? extends IRequestablePage>[] pageClasses = newPageClasses(mounts);
+		PageClassMapper[] mappers = new PageClassMapper[mounts];
+		for (int i = 0; i < mounts; i++)
+		{
+			mappers[i] = new PageClassMapper(pageClasses[i], Url.parse("page" + i));
+			compound.add(mappers[i]);
+		}
+
+		for (int i = 0; i < mounts; i++)
+		{
+			assertEquals("page" + i, mapPageClass(pageClasses[i]).toString());
+		}
+		for (PageClassMapper mapper : mappers)
+		{
+			assertEquals(1, mapper.consulted);
+		}
+	}
+
+	/**
+	 * Class loader which defines its own copy of {@link MockPage}
+	 */
+	private static class PageClassLoader extends ClassLoader
+	{
+		private PageClassLoader()
+		{
+			super(MockPage.class.getClassLoader());
+		}
+
+		private Class<?> define(byte[] bytes)
+		{
+			return defineClass(MockPage.class.getName(), bytes, 0, bytes.length);
+		}
+	}
+
+	/**
+	 * Mapper keyed by a page class which encodes the bookmarkable handlers of that class
+	 */
+	private static class PageClassMapper implements IKeyedRequestMapper
+	{
+		private final Class<? extends IRequestablePage> pageClass;
+
+		private final Url url;
+
+		private int consulted;
+
+		private PageClassMapper(Class<? extends IRequestablePage> pageClass, Url url)
+		{
+			this.pageClass = pageClass;
+			this.url = url;
+		}
+
+		public IRequestHandler mapRequest(Request request)
+		{
+			return null;
+		}
+
+		public int getCompatibilityScore(Request request)
+		{
+			return 0;
+		}
+
+		public Url mapHandler(IRequestHandler requestHandler)
+		{
+			consulted++;
+			if (requestHandler instanceof BookmarkablePageRequestHandler &&
+				((BookmarkablePageRequestHandler)requestHandler).getPageClass() == pageClass)
+			{
+				return url;
+			}
+			return null;
+		}
+
+		public Object getMappingKey()
+		{
+			return pageClass;
+		}
+	}
+
+	/**
+	 * Mapper without prefix which maps all requests with the given score
+	 */
+	private static class HandlerMapper implements IRequestMapper
+	{
+		private final int score;
+
+		private final IRequestHandler handler = new IRequestHandler()
+		{
+			public void respond(IRequestCycle requestCycle)
+			{
+			}
+
+			public void detach(IRequestCycle requestCycle)
+			{
+			}
+		};
+
+		private final Url url;
+
+		private HandlerMapper(int score)
+		{
+			this(score, null);
+		}
+
+		private HandlerMapper(int score, Url url)
+		{
+			this.score = score;
+			this.url = url;
+		}
+
+		public IRequestHandler mapRequest(Request request)
+		{
+			return handler;
+		}
+
+		public int getCompatibilityScore(Request request)
+		{
+			return score;
+		}
+
+		public Url mapHandler(IRequestHandler requestHandler)
+		{
+			return url;
+		}
+	}
+}
@@ -692,4 +692,40 @@ public class MountedMapperTest extends AbstractMapperTest
 		Url url = optionPlaceholderEncoder.mapHandler(handler);
 		assertEquals("some/path/p2/p3/i1/i2?a=b&b=c", url.toString());
 	}
+
+	/**
+	 * A mapper is keyed by its page class unless a subclass may encode other pages too
+	 */
+	public void testMappingKey()
+	{
+		assertEquals(MockPage.class, encoder.getMappingKey());
+
+		MountedMapper anyPage = new MountedMapper("/some/mount/path", MockPage.class)
+		{
+			@Override
+			protected IMapperContext getContext()
+			{
+				return context;
+			}
+
+			@Override
+			protected boolean checkPageClass(Class<? extends IRequestablePage> pageClass)
+			{
+				return true;
+			}
+		};
+		assertNull(anyPage.getMappingKey());
+
+		PageProvider provider = new PageProvider(OtherPage.class, new PageParameters());
+		provider.setPageSource(context);
+		IRequestHandler handler = new BookmarkablePageRequestHandler(provider);
+		Url url = new CompoundRequestMapper().add(anyPage).mapHandler(handler);
+		assertEquals("some/mount/path", url.toString());
+	}
+
+	/** */
+	public static class OtherPage extends MockPage
+	{
+		private static final long serialVersionUID = 1L;
+	}
 }
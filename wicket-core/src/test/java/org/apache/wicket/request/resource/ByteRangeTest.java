@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link ByteRange}
+ */
+public class ByteRangeTest extends TestCase
+{
+	/**
+	 * Single ranges in all three forms
+	 */
+	public void testSingleRanges()
+	{
+		assertEquals(Arrays.asList(new ByteRange(0, 9)), ByteRange.parse("bytes=0-9", 100));
+		assertEquals(Arrays.asList(new ByteRange(90, 99)), ByteRange.parse("bytes=90-", 100));
+		assertEquals(Arrays.asList(new ByteRange(95, 99)), ByteRange.parse("bytes=-5", 100));
+		assertEquals(Arrays.asList(new ByteRange(0, 99)), ByteRange.parse("bytes=-500", 100));
+		assertEquals(Arrays.asList(new ByteRange(50, 99)), ByteRange.parse("bytes=50-500", 100));
+	}
+
+	/**
+	 * Multiple ranges are sorted and coalesced
+	 */
+	public void testMultipleRanges()
+	{
+		assertEquals(Arrays.asList(new ByteRange(0, 1), new ByteRange(5, 6)),
+			ByteRange.parse("bytes=5-6, 0-1", 100));
+		assertEquals(Arrays.asList(new ByteRange(0, 20)),
+			ByteRange.parse("bytes=0-10,5-20,11-12", 100));
+		assertEquals(Arrays.asList(new ByteRange(0, 9), new ByteRange(95, 99)),
+			ByteRange.parse("bytes=0-9,200-300,-5", 100));
+	}
+
+	/**
+	 * Unsatisfiable ranges yield an empty list
+	 */
+	public void testUnsatisfiable()
+	{
+		assertTrue(ByteRange.parse("bytes=100-", 100).isEmpty());
+		assertTrue(ByteRange.parse("bytes=-0", 100).isEmpty());
+		assertTrue(ByteRange.parse("bytes=0-", 0).isEmpty());
+	}
+
+	/**
+	 * Malformed headers are ignored
+	 */
+	public void testMalformed()
+	{
+		assertNull(ByteRange.parse(null, 100));
+		assertNull(ByteRange.parse("items=0-9", 100));
+		assertNull(ByteRange.parse("bytes=", 100));
+		assertNull(ByteRange.parse("bytes=9-0", 100));
+		assertNull(ByteRange.parse("bytes=a-b", 100));
+		assertNull(ByteRange.parse("bytes=0-9,x", 100));
+	}
+
+	/**
+	 * Content-Range header value
+	 */
+	public void testContentRange()
+	{
+		assertEquals("bytes 5-9/100", new ByteRange(5, 9).toContentRange(100));
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.markup.html.PackageResourceTest;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * Tests for {@link ConcatBundleResource}
+ */
+public class ConcatBundleResourceTest extends WicketTestCase
+{
+	private List<ResourceReference> newParts(String... names)
+	{
+		ResourceReference[] parts = new ResourceReference[names.length];
+		for (int i = 0; i < names.length; i++)
+		{
+			parts[i] = new PackageResourceReference(PackageResourceTest.class, names[i]);
+		}
+		return Arrays.asList(parts);
+	}
+
+	/**
+	 * The parts are concatenated once
+	 */
+	public void testConcatenated()
+	{
+		ConcatBundleResource resource = new ConcatBundleResource(newParts("packaged3.js",
+			"packaged4.js"));
+
+		tester.startResource(resource);
+		String bundle = tester.getLastResponseAsString();
+		assertEquals("TEST\n;\nTEST", bundle);
+		String etag = tester.getLastResponse().getHeader("ETag");
+
+		tester.startResource(resource);
+		assertEquals(bundle, tester.getLastResponseAsString());
+		assertEquals(etag, tester.getLastResponse().getHeader("ETag"));
+	}
+
+	/**
+	 * Bundles are served gzipped
+	 * 
+	 * @throws Exception
+	 */
+	public void testGzip() throws Exception
+	{
+		ConcatBundleResource resource = new ConcatBundleResource(Arrays.asList(
+			new JavaScriptResourceReference(AbstractDefaultAjaxBehavior.class, "wicket-ajax.js"),
+			new JavaScriptResourceReference(AbstractDefaultAjaxBehavior.class,
+				"wicket-ajax-debug.js")));
+
+		tester.startResource(resource);
+		byte[] plain = tester.getLastResponse().getBinaryContent();
+		assertEquals("Accept-Encoding", tester.getLastResponse().getHeader("Vary"));
+
+		tester.addRequestHeader("Accept-Encoding", "gzip");
+		tester.startResource(resource);
+		assertEquals("gzip", tester.getLastResponse().getHeader("Content-Encoding"));
+		byte[] unzipped = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(
+			tester.getLastResponse().getBinaryContent())));
+		assertTrue(Arrays.equals(plain, unzipped));
+	}
+
+	/**
+	 * A missing part fails the bundle
+	 */
+	public void testMissingPart()
+	{
+		tester.startResource(new ConcatBundleResource(newParts("packaged3.js", "missing.js")));
+		assertEquals(HttpServletResponse.SC_NOT_FOUND, tester.getLastResponse().getStatus());
+	}
+
+	/**
+	 * Parts too large to be cached do not cause the bundle to be concatenated again
+	 */
+	public void testUncachedParts()
+	{
+		final int[] entries = { 0 };
+		tester.getApplication().getResourceSettings().setPackageResourceCache(
+			new PackageResourceCache(Bytes.bytes(1))
+			{
+				@Override
+				Entry newEntry(Time lastModified, String contentType, byte[] data)
+				{
+					entries[0]++;
+					return super.newEntry(lastModified, contentType, data);
+				}
+			});
+		ConcatBundleResource resource = new ConcatBundleResource(newParts("packaged3.js",
+			"packaged4.js"));
+
+		tester.startResource(resource);
+		assertEquals("TEST\n;\nTEST", tester.getLastResponseAsString());
+		tester.startResource(resource);
+		assertEquals("TEST\n;\nTEST", tester.getLastResponseAsString());
+		assertEquals(1, entries[0]);
+	}
+}
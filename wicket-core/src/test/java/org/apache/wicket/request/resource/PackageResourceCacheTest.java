@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.javascript.IJavaScriptCompressor;
+import org.apache.wicket.markup.html.PackageResourceTest;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * Tests for {@link PackageResourceCache}
+ */
+public class PackageResourceCacheTest extends WicketTestCase
+{
+	private JavaScriptPackageResource newAjaxResource()
+	{
+		return new JavaScriptPackageResource(AbstractDefaultAjaxBehavior.class, "wicket-ajax.js",
+			null, null, null);
+	}
+
+	/**
+	 * Resources are processed only once
+	 */
+	public void testProcessedOnce()
+	{
+		final int[] compressed = { 0 };
+		JavaScriptPackageResource resource = new JavaScriptPackageResource(
+			PackageResourceTest.class, "packaged1.txt", null, null, null)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected IJavaScriptCompressor getCompressor()
+			{
+				return new IJavaScriptCompressor()
+				{
+					public String compress(String original)
+					{
+						compressed[0]++;
+						return original.toLowerCase();
+					}
+				};
+			}
+		};
+
+		tester.startResource(resource);
+		assertEquals("test", tester.getLastResponseAsString());
+		tester.startResource(resource);
+		assertEquals("test", tester.getLastResponseAsString());
+		assertEquals(1, compressed[0]);
+
+		tester.getApplication().getResourceSettings().setPackageResourceCache(null);
+		tester.startResource(resource);
+		assertEquals("test", tester.getLastResponseAsString());
+		assertEquals(2, compressed[0]);
+	}
+
+	/**
+	 * Textual resources are served gzipped to clients accepting it
+	 * 
+	 * @throws IOException
+	 */
+	public void testGzip() throws IOException
+	{
+		tester.startResource(newAjaxResource());
+		byte[] plain = tester.getLastResponse().getBinaryContent();
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", tester.getLastResponse().getHeader("Vary"));
+
+		tester.addRequestHeader("Accept-Encoding", "gzip, deflate");
+		tester.startResource(newAjaxResource());
+		assertEquals("gzip", tester.getLastResponse().getHeader("Content-Encoding"));
+		byte[] gzipped = tester.getLastResponse().getBinaryContent();
+		assertTrue(gzipped.length < plain.length);
+		assertEquals(String.valueOf(gzipped.length),
+			tester.getLastResponse().getHeader("Content-Length"));
+
+		byte[] unzipped = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(
+			gzipped)));
+		assertTrue(Arrays.equals(plain, unzipped));
+
+		tester.addRequestHeader("Accept-Encoding", "gzip;q=0, deflate");
+		tester.startResource(newAjaxResource());
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+	}
+
+	/**
+	 * The entity tag is a content hash, which differs between the encodings
+	 */
+	public void testETag()
+	{
+		tester.startResource(newAjaxResource());
+		String etag = tester.getLastResponse().getHeader("ETag");
+		assertTrue(etag.matches("\"[0-9a-f]{32}\""));
+
+		tester.addRequestHeader("Accept-Encoding", "gzip");
+		tester.startResource(newAjaxResource());
+		String gzipETag = tester.getLastResponse().getHeader("ETag");
+		assertFalse(etag.equals(gzipETag));
+
+		tester.addRequestHeader("If-None-Match", etag);
+		tester.startResource(newAjaxResource());
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, tester.getLastResponse().getStatus());
+		assertEquals(0, tester.getLastResponse().getBinaryContent().length);
+	}
+
+	/**
+	 * Entries are discarded when the resource is modified
+	 */
+	public void testLastModified()
+	{
+		PackageResourceCache cache = new PackageResourceCache();
+		JavaScriptPackageResource resource = newAjaxResource();
+		Time time = Time.millis(1000);
+
+		cache.put(resource, time, "text/javascript", new byte[] { 1 });
+		assertNotNull(cache.get(newAjaxResource(), Time.millis(1000)));
+
+		assertNull(cache.get(resource, Time.millis(2000)));
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Resources too large to be cached are neither hashed nor gzipped, their entity tag is based
+	 * on the modification time and length
+	 */
+	public void testLargeResource()
+	{
+		PackageResourceCache cache = new PackageResourceCache(Bytes.bytes(1));
+		tester.getApplication().getResourceSettings().setPackageResourceCache(cache);
+
+		PackageResourceCache.Entry entry = cache.put(newAjaxResource(), Time.millis(1000),
+			"text/javascript", new byte[] { 1, 2 });
+		assertNull(entry.getHash());
+		assertNull(entry.getGzippedData());
+
+		tester.addRequestHeader("Accept-Encoding", "gzip");
+		tester.startResource(newAjaxResource());
+		assertEquals(0, cache.size());
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+		String etag = tester.getLastResponse().getHeader("ETag");
+		assertTrue(etag, etag.matches("\"[0-9a-f]+-[0-9a-f]+\""));
+
+		tester.addRequestHeader("If-None-Match", etag);
+		tester.startResource(newAjaxResource());
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, tester.getLastResponse().getStatus());
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.util.resource.FileResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * Tests for conditional and partial requests to {@link ResourceStreamResource}
+ */
+public class ResourceStreamResourceTest extends WicketTestCase
+{
+	private ResourceStreamResource newResource()
+	{
+		StringResourceStream stream = new StringResourceStream("0123456789", "text/plain");
+		stream.setLastModified(Time.millis(1000000));
+		return new ResourceStreamResource(stream);
+	}
+
+	private MockHttpServletResponse request(String header, String value)
+	{
+		if (header != null)
+		{
+			tester.addRequestHeader(header, value);
+		}
+		tester.startResource(newResource());
+		return tester.getLastResponse();
+	}
+
+	/**
+	 * The full stream is sent along with validators
+	 */
+	public void testFullResponse()
+	{
+		MockHttpServletResponse response = request(null, null);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals("0123456789", response.getDocument());
+		assertEquals("bytes", response.getHeader("Accept-Ranges"));
+		assertEquals("\"f4240-a\"", response.getHeader("ETag"));
+	}
+
+	/**
+	 * A matching entity tag results in not modified
+	 */
+	public void testIfNoneMatch()
+	{
+		String etag = request(null, null).getHeader("ETag");
+
+		MockHttpServletResponse response = request("If-None-Match", "\"other\", " + etag);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		assertEquals("", response.getDocument());
+
+		response = request("If-None-Match", "\"other\"");
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals("0123456789", response.getDocument());
+	}
+
+	/**
+	 * A single range is sent as partial content
+	 */
+	public void testSingleRange()
+	{
+		MockHttpServletResponse response = request("Range", "bytes=2-4");
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals("234", response.getDocument());
+		assertEquals("bytes 2-4/10", response.getHeader("Content-Range"));
+		assertEquals("3", response.getHeader("Content-Length"));
+	}
+
+	/**
+	 * Multiple ranges are sent as multipart
+	 */
+	public void testMultipleRanges()
+	{
+		MockHttpServletResponse response = request("Range", "bytes=7-,0-1");
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+
+		String contentType = response.getContentType();
+		assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+		String boundary = contentType.substring(contentType.indexOf('=') + 1);
+
+		String expected = "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\n" +
+			"Content-Range: bytes 0-1/10\r\n\r\n01" + "\r\n--" + boundary +
+			"\r\nContent-Type: text/plain\r\n" + "Content-Range: bytes 7-9/10\r\n\r\n789" +
+			"\r\n--" + boundary + "--\r\n";
+		assertEquals(expected, response.getDocument());
+		assertEquals(String.valueOf(expected.length()), response.getHeader("Content-Length"));
+	}
+
+	/**
+	 * Unsatisfiable ranges are rejected
+	 */
+	public void testUnsatisfiableRange()
+	{
+		MockHttpServletResponse response = request("Range", "bytes=10-");
+		assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+		assertEquals("bytes */10", response.getHeader("Content-Range"));
+	}
+
+	/**
+	 * Ranges are only sent if the entity is unchanged
+	 */
+	public void testIfRange()
+	{
+		String etag = request(null, null).getHeader("ETag");
+
+		tester.addRequestHeader("If-Range", etag);
+		MockHttpServletResponse response = request("Range", "bytes=2-4");
+		assertEquals("234", response.getDocument());
+
+		tester.addRequestHeader("If-Range", "\"changed\"");
+		response = request("Range", "bytes=2-4");
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals("0123456789", response.getDocument());
+	}
+
+	/**
+	 * Ranges of files are transferred from the file channel
+	 * 
+	 * @throws IOException
+	 */
+	public void testFileRanges() throws IOException
+	{
+		File file = File.createTempFile("ResourceStreamResourceTest", ".txt");
+		try
+		{
+			OutputStream out = new FileOutputStream(file);
+			try
+			{
+				out.write("0123456789".getBytes("US-ASCII"));
+			}
+			finally
+			{
+				out.close();
+			}
+
+			ResourceStreamResource resource = new ResourceStreamResource(new FileResourceStream(
+				file));
+			tester.startResource(resource);
+			assertEquals("0123456789", tester.getLastResponse().getDocument());
+
+			tester.addRequestHeader("Range", "bytes=7-8,2-4");
+			tester.startResource(resource);
+			String document = tester.getLastResponse().getDocument();
+			assertTrue(document.contains("Content-Range: bytes 2-4/10\r\n\r\n234\r\n"));
+			assertTrue(document.contains("Content-Range: bytes 7-8/10\r\n\r\n78\r\n"));
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+}
@@ -17,12 +17,22 @@
 package org.apache.wicket.request.resource;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
 import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.request.Response;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.resource.AbstractResource.WriteCallback;
 import org.apache.wicket.request.resource.IResource.Attributes;
@@ -34,6 +44,50 @@ import org.apache.wicket.response.ByteArrayResponse;
  */
 public class WriteCallbackTest extends TestCase
 {
+	private final WriteCallback callback = new WriteCallback()
+	{
+		@Override
+		public void writeData(Attributes attributes)
+		{
+		}
+	};
+
+	private File file;
+
+	private byte[] fileData;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		fileData = new byte[300 * 1024];
+		new Random(42).nextBytes(fileData);
+		file = File.createTempFile("WriteCallbackTest", ".bin");
+		writeFile(file, fileData);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		file.delete();
+	}
+
+	private static void writeFile(File file, byte[] data) throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(data);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	private Attributes newAttributes(Response response)
+	{
+		return new Attributes(new MockWebRequest(new Url()), response);
+	}
 
 	/**
 	 */
@@ -60,4 +114,118 @@ public class WriteCallbackTest extends TestCase
 		assertTrue("Content not equal", Arrays.equals(response.getBytes(), srcData));
 	}
 
+	/**
+	 * Files are copied through a buffer if the response does not expose a channel
+	 * 
+	 * @throws IOException
+	 */
+	public void testWriteFileStream() throws IOException
+	{
+		ByteArrayResponse response = new ByteArrayResponse();
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			assertEquals(10, in.skip(10));
+			callback.writeStream(newAttributes(response), in);
+			assertEquals(-1, in.read());
+		}
+		finally
+		{
+			in.close();
+		}
+
+		byte[] expected = new byte[fileData.length - 10];
+		System.arraycopy(fileData, 10, expected, 0, expected.length);
+		assertTrue("Content not equal", Arrays.equals(expected, response.getBytes()));
+	}
+
+	/**
+	 * Files are transferred to the channel of the response
+	 * 
+	 * @throws IOException
+	 */
+	public void testWriteFileToChannel() throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ChannelResponse response = new ChannelResponse(Channels.newChannel(out));
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			callback.writeFile(newAttributes(response), in.getChannel(), 100, 200000);
+		}
+		finally
+		{
+			in.close();
+		}
+
+		byte[] expected = new byte[200000];
+		System.arraycopy(fileData, 100, expected, 0, expected.length);
+		assertTrue("Content not equal", Arrays.equals(expected, out.toByteArray()));
+	}
+
+	/**
+	 * File streams are transferred to the channel of the response
+	 * 
+	 * @throws IOException
+	 */
+	public void testWriteFileStreamToChannel() throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ChannelResponse response = new ChannelResponse(Channels.newChannel(out));
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			callback.writeStream(newAttributes(response), in);
+		}
+		finally
+		{
+			in.close();
+		}
+
+		assertTrue("Content not equal", Arrays.equals(fileData, out.toByteArray()));
+	}
+
+	/**
+	 * Response which exposes a channel
+	 */
+	private static class ChannelResponse extends Response
+	{
+		private final WritableByteChannel channel;
+
+		private ChannelResponse(WritableByteChannel channel)
+		{
+			this.channel = channel;
+		}
+
+		@Override
+		public WritableByteChannel getWritableByteChannel()
+		{
+			return channel;
+		}
+
+		@Override
+		public void write(CharSequence sequence)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void write(byte[] array)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String encodeURL(CharSequence url)
+		{
+			return url.toString();
+		}
+
+		@Override
+		public Object getContainerResponse()
+		{
+			return null;
+		}
+	}
+
 }
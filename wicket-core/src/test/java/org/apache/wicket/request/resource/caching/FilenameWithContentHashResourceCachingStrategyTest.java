@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource.caching;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.javascript.IJavaScriptCompressor;
+import org.apache.wicket.markup.html.PackageResourceTest;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.ConcatResourceBundleReference;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.IStaticCacheableResource;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.listener.IChangeListener;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.watch.IModifiable;
+import org.apache.wicket.util.watch.IModificationWatcher;
+
+/**
+ * Tests for {@link FilenameWithContentHashResourceCachingStrategy}
+ */
+public class FilenameWithContentHashResourceCachingStrategyTest extends WicketTestCase
+{
+	private final FilenameWithContentHashResourceCachingStrategy strategy = new FilenameWithContentHashResourceCachingStrategy();
+
+	private String decorate(String filename, ResourceReference reference)
+	{
+		ResourceUrl url = new ResourceUrl(filename, new PageParameters());
+		strategy.decorateUrl(url, reference);
+		return url.getFileName();
+	}
+
+	private String undecorate(String filename)
+	{
+		ResourceUrl url = new ResourceUrl(filename, new PageParameters());
+		strategy.undecorateUrl(url);
+		return url.getFileName();
+	}
+
+	/**
+	 * Package resources are versioned by the digest of the contents they serve
+	 */
+	public void testPackageResource()
+	{
+		String filename = decorate("packaged1.txt", new PackageResourceReference(
+			PackageResourceTest.class, "packaged1.txt"));
+
+		// MD5 of packaged1.txt
+		assertEquals("packaged1-ver-033bd94b1168d7e4f0d644c3c95e35bf.txt", filename);
+		assertEquals("packaged1.txt", undecorate(filename));
+
+		// MD5 of packaged1_en.txt
+		assertEquals("packaged1-ver-a9a3b730d499933a5e81d1989ac89dd1.txt", decorate(
+			"packaged1.txt", new PackageResourceReference(PackageResourceTest.class,
+				"packaged1.txt", Locale.ENGLISH, null, null)));
+	}
+
+	/**
+	 * Package resources are digested after processing
+	 */
+	public void testProcessedResource()
+	{
+		tester.getApplication()
+			.getResourceSettings()
+			.setJavaScriptCompressor(new IJavaScriptCompressor()
+			{
+				public String compress(String original)
+				{
+					return "compressed";
+				}
+			});
+
+		// MD5 of "compressed"
+		assertEquals("packaged3-ver-2b98a4ad988a18c42682f388901f2672.js", decorate(
+			"packaged3.js", new PackageResourceReference(PackageResourceTest.class,
+				"packaged3.js")));
+	}
+
+	/**
+	 * Filenames which just contain the prefix are not modified
+	 */
+	public void testUndecorateUnversioned()
+	{
+		assertEquals("jquery-ver-1.4.js", undecorate("jquery-ver-1.4.js"));
+		assertEquals("file-ver-X.js", undecorate("file-ver-X.js"));
+		assertEquals("file.js", undecorate("file.js"));
+	}
+
+	/**
+	 * The digest is computed once only and does not depend on the modification time
+	 */
+	public void testDigestCached()
+	{
+		TestResource resource = new TestResource("first");
+		TestReference reference = new TestReference(resource);
+
+		String version = decorate("test.js", reference);
+		assertEquals(version, decorate("test.js", reference));
+		assertEquals(1, resource.opened);
+
+		resource.contents = "second";
+		assertEquals(version, decorate("test.js", reference));
+
+		strategy.clearDigests();
+		assertFalse(version.equals(decorate("test.js", reference)));
+		assertEquals(2, resource.opened);
+	}
+
+	/**
+	 * The digest is discarded when the resource watcher notices a modification
+	 */
+	public void testWatched()
+	{
+		TestWatcher watcher = new TestWatcher();
+		tester.getApplication().getResourceSettings().setResourceWatcher(watcher);
+
+		TestResource resource = new TestResource("first");
+		TestReference reference = new TestReference(resource);
+		String version = decorate("test.js", reference);
+		assertEquals(1, watcher.listeners.size());
+
+		resource.contents = "second";
+		watcher.listeners.iterator().next().onChange();
+		assertFalse(version.equals(decorate("test.js", reference)));
+	}
+
+	/**
+	 * Bundles are versioned by their parts
+	 */
+	public void testBundle()
+	{
+		ConcatResourceBundleReference bundle = new ConcatResourceBundleReference(
+			PackageResourceTest.class, "bundle.js", Arrays.asList(new PackageResourceReference(
+				PackageResourceTest.class, "packaged1.txt"), new PackageResourceReference(
+				PackageResourceTest.class, "packaged2.txt")));
+		String filename = decorate("bundle.js", bundle);
+		assertTrue(filename, filename.matches("bundle-ver-[0-9a-f]{32}\\.js"));
+		assertEquals(filename, decorate("bundle.js", bundle));
+	}
+
+	/**
+	 * Responses to versioned URLs are cached far into the future and marked immutable
+	 */
+	public void testDecorateResponse()
+	{
+		tester.getApplication().getResourceSettings().setCachingStrategy(strategy);
+		PackageResourceReference reference = new PackageResourceReference(
+			PackageResourceTest.class, "packaged1.txt");
+
+		Url url = tester.urlFor(new ResourceReferenceRequestHandler(reference));
+		assertTrue(url.toString(), url.toString().contains("-ver-"));
+		tester.executeUrl(url.toString());
+		assertEquals("public, max-age=31536000, immutable",
+			tester.getLastResponse().getHeader("Cache-Control"));
+
+		tester.executeUrl(url.toString().replaceAll("-ver-[0-9a-f]+", ""));
+		assertEquals(200, tester.getLastResponse().getStatus());
+		assertFalse(tester.getLastResponse().getHeader("Cache-Control").contains("immutable"));
+	}
+
+	private static class TestResource extends AbstractResource implements IStaticCacheableResource
+	{
+		private static final long serialVersionUID = 1L;
+
+		private String contents;
+
+		private int opened;
+
+		private TestResource(String contents)
+		{
+			this.contents = contents;
+		}
+
+		public Serializable getCacheKey()
+		{
+			return TestResource.class;
+		}
+
+		public IResourceStream getCacheableResourceStream()
+		{
+			opened++;
+			return new StringResourceStream(contents);
+		}
+
+		@Override
+		protected ResourceResponse newResourceResponse(Attributes attributes)
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static class TestReference extends ResourceReference
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final TestResource resource;
+
+		private TestReference(TestResource resource)
+		{
+			super(TestReference.class, "test.js");
+			this.resource = resource;
+		}
+
+		@Override
+		public IResource getResource()
+		{
+			return resource;
+		}
+	}
+
+	private static class TestWatcher implements IModificationWatcher
+	{
+		private final Set<IChangeListener> listeners = new HashSet<IChangeListener>();
+
+		public boolean add(IModifiable modifiable, IChangeListener listener)
+		{
+			return listeners.add(listener);
+		}
+
+		public IModifiable remove(IModifiable modifiable)
+		{
+			return null;
+		}
+
+		public void start(Duration pollFrequency)
+		{
+		}
+
+		public void destroy()
+		{
+		}
+
+		public Set<IModifiable> getEntries()
+		{
+			return null;
+		}
+	}
+}
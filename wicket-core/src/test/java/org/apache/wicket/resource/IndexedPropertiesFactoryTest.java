@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.resource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.locator.IResourceStreamLocator;
+import org.apache.wicket.util.resource.locator.ResourceNameIterator;
+
+/**
+ * Runs the component string resource loader tests against an {@link IndexedPropertiesFactory}.
+ */
+public class IndexedPropertiesFactoryTest extends ComponentStringResourceLoaderTest
+{
+	private IndexedPropertiesFactory factory;
+
+	/** properties paths the locator has been asked for */
+	private final List<String> located = new ArrayList<String>();
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		factory = new IndexedPropertiesFactory(tester.getApplication(),
+			"org.apache.wicket.resource");
+		tester.getApplication().getResourceSettings().setPropertiesFactory(factory);
+
+		final IResourceStreamLocator locator = tester.getApplication()
+			.getResourceSettings()
+			.getResourceStreamLocator();
+		tester.getApplication().getResourceSettings().setResourceStreamLocator(
+			new IResourceStreamLocator()
+			{
+				public IResourceStream locate(Class<?> clazz, String path)
+				{
+					record(path);
+					return locator.locate(clazz, path);
+				}
+
+				public IResourceStream locate(Class<?> clazz, String path, String style,
+					String variation, Locale locale, String extension, boolean strict)
+				{
+					record(path);
+					return locator.locate(clazz, path, style, variation, locale, extension,
+						strict);
+				}
+
+				public ResourceNameIterator newResourceNameIterator(String path, Locale locale,
+					String style, String variation, String extension, boolean strict)
+				{
+					return locator.newResourceNameIterator(path, locale, style, variation,
+						extension, strict);
+				}
+			});
+	}
+
+	private void record(final String path)
+	{
+		if (path.indexOf(".properties") != -1)
+		{
+			located.add(path);
+		}
+	}
+
+	/**
+	 * Lookups within the indexed package are answered without asking the locator
+	 */
+	public void testNoLookupOfIndexedProperties()
+	{
+		factory.rebuildIndex();
+
+		assertEquals("This is a test", loader.loadStringResource(component.getClass(),
+			"test.string", Locale.getDefault(), null, null));
+		assertEquals("Flib flob", loader.loadStringResource(component.getClass(), "test.string",
+			new Locale("zz"), null, null));
+		assertNull(loader.loadStringResource(component.getClass(), "unknown.string", new Locale(
+			"zz", "ZZ"), "style", "variation"));
+
+		assertEquals("valeur", factory.load(PageWithXmlProperties.class,
+			"org/apache/wicket/resource/PageWithXmlProperties_fr_FR.").getString("testProperty"));
+		assertNull(factory.load(PageWithXmlProperties.class,
+			"org/apache/wicket/resource/PageWithXmlProperties_de."));
+
+		// the superclasses outside of the indexed package are still probed
+		for (String path : located)
+		{
+			assertFalse(path, path.startsWith("org/apache/wicket/resource/"));
+		}
+	}
+
+	/**
+	 * Paths outside of the indexed packages are still loaded through the locator
+	 */
+	public void testNotIndexedPackage()
+	{
+		assertNotNull(factory.load(getClass(), "org/apache/wicket/LocalizerTest$MyMockPage_nl."));
+		assertEquals(1, located.size());
+	}
+}
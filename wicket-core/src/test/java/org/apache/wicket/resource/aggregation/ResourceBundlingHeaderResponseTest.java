@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.resource.aggregation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.IHeaderResponse;
+import org.apache.wicket.markup.html.IHeaderResponseDecorator;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.parser.XmlPullParser;
+import org.apache.wicket.markup.parser.XmlTag;
+import org.apache.wicket.request.resource.CssResourceReference;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.request.resource.ResourceReferenceRegistry;
+import org.apache.wicket.resource.dependencies.AbstractResourceDependentResourceReference;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+
+/**
+ * Tests for {@link ResourceBundlingHeaderResponse}
+ */
+public class ResourceBundlingHeaderResponseTest extends WicketTestCase
+{
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		tester.getApplication().setHeaderResponseDecorator(new IHeaderResponseDecorator()
+		{
+			public IHeaderResponse decorate(IHeaderResponse response)
+			{
+				return new ResourceBundlingHeaderResponse(response);
+			}
+		});
+	}
+
+	/**
+	 * Scripts are served in a single bundle, dependencies before their parent
+	 * 
+	 * @throws Exception
+	 */
+	public void testJavaScriptBundle() throws Exception
+	{
+		TestPage page = new TestPage();
+		page.js.add(new JavaScriptResourceReference(getClass(), "a.js"));
+		page.js.add(new JavaScriptResourceReference(getClass(), "b.js"));
+		page.js.add(new DependentReference("c.js", new DependentReference("base.js")));
+		tester.startPage(page);
+
+		List<String> urls = getUrls("script", "src");
+		assertEquals(1, urls.size());
+		assertTrue(urls.get(0), urls.get(0).contains("bundle-"));
+
+		tester.executeUrl(urls.get(0));
+		String bundle = tester.getLastResponseAsString();
+		assertTrue(bundle, bundle.indexOf("var a = 1;") >= 0);
+		assertTrue(bundle, bundle.indexOf("var a = 1;") < bundle.indexOf("var b = 2;"));
+		assertTrue(bundle, bundle.indexOf("var b = 2;") < bundle.indexOf("var base = 0;"));
+		assertTrue(bundle, bundle.indexOf("var base = 0;") < bundle.indexOf("var c = base;"));
+	}
+
+	/**
+	 * The URL of a bundle resolves without the bundle having been rendered, e.g. after a restart
+	 * 
+	 * @throws Exception
+	 */
+	public void testBundleResolvedAfterRestart() throws Exception
+	{
+		TestPage page = new TestPage();
+		page.js.add(new JavaScriptResourceReference(getClass(), "a.js"));
+		page.js.add(new DependentReference("c.js", new DependentReference("base.js")));
+		tester.startPage(page);
+		String url = getUrls("script", "src").get(0);
+
+		tearDown();
+		setUp();
+
+		tester.executeUrl(url);
+		String bundle = tester.getLastResponseAsString();
+		assertTrue(bundle, bundle.indexOf("var a = 1;") >= 0);
+		assertTrue(bundle, bundle.indexOf("var base = 0;") < bundle.indexOf("var c = base;"));
+	}
+
+	/**
+	 * Many scripts are split into several bundles whose names are not too long
+	 * 
+	 * @throws Exception
+	 */
+	public void testBundleNameLength() throws Exception
+	{
+		TestPage page = new TestPage();
+		for (int i = 0; i < 40; i++)
+		{
+			page.js.add(new JavaScriptResourceReference(getClass(), "script-number-" + i + ".js"));
+		}
+		tester.startPage(page);
+
+		List<String> urls = getUrls("script", "src");
+		assertTrue(urls.toString(), urls.size() > 1);
+		assertTrue(urls.toString(), urls.size() < 40);
+		for (String url : urls)
+		{
+			String name = url.substring(url.lastIndexOf('/') + 1);
+			assertTrue(name, name.startsWith("bundle-"));
+			assertTrue(name, name.length() <=
+				ResourceBundlingHeaderResponse.DEFAULT_MAX_BUNDLE_NAME_LENGTH);
+		}
+	}
+
+	/**
+	 * A bundle name is only resolved if all its parts exist
+	 * 
+	 * @throws Exception
+	 */
+	public void testUnknownBundle() throws Exception
+	{
+		TestPage page = new TestPage();
+		page.js.add(new JavaScriptResourceReference(getClass(), "a.js"));
+		page.js.add(new JavaScriptResourceReference(getClass(), "b.js"));
+		page.js.add(new JavaScriptResourceReference(getClass(), "missing.js"));
+		tester.startPage(page);
+		String url = getUrls("script", "src").get(0);
+		String name = url.substring(url.lastIndexOf('/') + 1);
+		assertTrue(name, name.startsWith("bundle-"));
+
+		ResourceReferenceRegistry registry = tester.getApplication()
+			.getResourceReferenceRegistry();
+		assertNull(registry.getResourceReference(getClass(), name, null, null, null, true, true));
+		assertNull(registry.getResourceReference(getClass(), "bundle-Zm9v.js", null, null, null,
+			true, true));
+	}
+
+	/**
+	 * The same parts are bundled under the same URL
+	 * 
+	 * @throws Exception
+	 */
+	public void testSameBundle() throws Exception
+	{
+		TestPage page = new TestPage();
+		page.js.add(new JavaScriptResourceReference(getClass(), "a.js"));
+		page.js.add(new JavaScriptResourceReference(getClass(), "b.js"));
+		tester.startPage(page);
+		List<String> urls = getUrls("script", "src");
+
+		tester.startPage(page);
+		assertEquals(urls, getUrls("script", "src"));
+
+		page.js.add(new JavaScriptResourceReference(getClass(), "base.js"));
+		tester.startPage(page);
+		assertFalse(urls.equals(getUrls("script", "src")));
+	}
+
+	/**
+	 * Scripts with an id are not bundled
+	 * 
+	 * @throws Exception
+	 */
+	public void testScriptWithId() throws Exception
+	{
+		TestPage page = new TestPage()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void renderHead(IHeaderResponse response)
+			{
+				super.renderHead(response);
+
+				response.renderJavaScriptReference(new JavaScriptResourceReference(
+					ResourceBundlingHeaderResponseTest.class, "b.js"), "b");
+			}
+		};
+		page.js.add(new JavaScriptResourceReference(getClass(), "a.js"));
+		tester.startPage(page);
+
+		List<String> urls = getUrls("script", "src");
+		assertEquals(2, urls.size());
+		assertTrue(urls.get(0), urls.get(0).contains("a.js"));
+		assertTrue(urls.get(1), urls.get(1).contains("b.js"));
+	}
+
+	/**
+	 * Stylesheets are bundled by media
+	 * 
+	 * @throws Exception
+	 */
+	public void testCssBundle() throws Exception
+	{
+		TestPage page = new TestPage()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void renderHead(IHeaderResponse response)
+			{
+				super.renderHead(response);
+
+				response.renderCSSReference(new CssResourceReference(
+					ResourceBundlingHeaderResponseTest.class, "one.css"), "print");
+			}
+		};
+		page.css.add(new CssResourceReference(getClass(), "one.css"));
+		page.css.add(new CssResourceReference(getClass(), "two.css"));
+		tester.startPage(page);
+
+		List<String> urls = getUrls("link", "href");
+		assertEquals(2, urls.size());
+		assertTrue(urls.get(0), urls.get(0).contains("bundle-"));
+		assertTrue(urls.get(1), urls.get(1).contains("one.css"));
+
+		tester.executeUrl(urls.get(0));
+		String bundle = tester.getLastResponseAsString();
+		assertTrue(bundle, bundle.matches("(?s).*h1 \\{ color: red; \\}\n\n/\\*.*h2 .*"));
+	}
+
+	private List<String> getUrls(String tagName, String attribute) throws Exception
+	{
+		XmlPullParser parser = new XmlPullParser();
+		parser.parse(tester.getLastResponseAsString());
+		List<String> urls = new ArrayList<String>();
+		XmlTag tag;
+		while ((tag = parser.nextTag()) != null)
+		{
+			if ((tag.isOpen() || tag.isOpenClose()) && tagName.equals(tag.getName()))
+			{
+				// relative to the bookmarkable page
+				urls.add("wicket/" + tag.getAttribute(attribute));
+			}
+		}
+		return urls;
+	}
+
+	private static class DependentReference extends AbstractResourceDependentResourceReference
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final AbstractResourceDependentResourceReference[] dependencies;
+
+		private DependentReference(String name,
+			AbstractResourceDependentResourceReference... dependencies)
+		{
+			super(ResourceBundlingHeaderResponseTest.class, name);
+
+			this.dependencies = dependencies;
+		}
+
+		@Override
+		public AbstractResourceDependentResourceReference[] getDependentResourceReferences()
+		{
+			return dependencies;
+		}
+
+		@Override
+		public IResource getResource()
+		{
+			return new JavaScriptResourceReference(getScope(), getName()).getResource();
+		}
+	}
+
+	/**
+	 * Page rendering the given references
+	 */
+	public static class TestPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List<ResourceReference> js = new ArrayList<ResourceReference>();
+
+		private final List<ResourceReference> css = new ArrayList<ResourceReference>();
+
+		@Override
+		public void renderHead(IHeaderResponse response)
+		{
+			for (ResourceReference reference : css)
+			{
+				response.renderCSSReference(reference);
+			}
+			for (ResourceReference reference : js)
+			{
+				response.renderJavaScriptReference(reference);
+			}
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream("<html><head></head><body></body></html>");
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.apache.wicket.Benchmarks;
+import org.apache.wicket.Page;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.list.IncrementalTableNavigationPage;
+import org.apache.wicket.markup.html.list.PagedTableNavigatorPage;
+import org.apache.wicket.markup.html.list.PagedTablePage;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for {@link CompressingSerializer}
+ */
+public class CompressingSerializerTest extends WicketTestCase
+{
+	private static final Logger log = LoggerFactory.getLogger(CompressingSerializerTest.class);
+
+	private JavaSerializer javaSerializer;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		javaSerializer = new JavaSerializer(tester.getApplication().getApplicationKey());
+	}
+
+	/**
+	 * Pages are compressed and restored
+	 */
+	public void testPageRoundTrip()
+	{
+		CompressingSerializer serializer = new CompressingSerializer(javaSerializer);
+		Page page = tester.startPage(PagedTableNavigatorPage.class);
+
+		byte[] raw = javaSerializer.serialize(page);
+		byte[] compressed = serializer.serialize(page);
+		assertTrue(compressed.length < raw.length);
+
+		Page restored = (Page)serializer.deserialize(compressed);
+		assertEquals(page.getPageId(), restored.getPageId());
+		assertEquals(page.getClass(), restored.getClass());
+	}
+
+	/**
+	 * Data below the threshold is stored as produced by the delegate
+	 */
+	public void testThreshold()
+	{
+		CompressingSerializer serializer = new CompressingSerializer(javaSerializer,
+			new DeflateCompressionCodec(), Integer.MAX_VALUE);
+
+		byte[] raw = javaSerializer.serialize("value");
+		byte[] data = serializer.serialize("value");
+		assertEquals(raw.length, data.length);
+		assertEquals("value", serializer.deserialize(data));
+	}
+
+	/**
+	 * Data stored before the compression was enabled can still be read
+	 */
+	public void testUncompressedData()
+	{
+		CompressingSerializer serializer = new CompressingSerializer(javaSerializer);
+		byte[] raw = javaSerializer.serialize("value");
+		assertEquals("value", serializer.deserialize(raw));
+	}
+
+	/**
+	 * Data which starts with a marker byte is escaped
+	 */
+	public void testMarkerBytes()
+	{
+		ISerializer identity = new ISerializer()
+		{
+			public byte[] serialize(Object object)
+			{
+				return (byte[])object;
+			}
+
+			public Object deserialize(byte[] data)
+			{
+				return data;
+			}
+		};
+		CompressingSerializer serializer = new CompressingSerializer(identity);
+
+		for (byte first = 0; first < 3; first++)
+		{
+			byte[] data = new byte[] { first, 5, 6 };
+			byte[] restored = (byte[])serializer.deserialize(serializer.serialize(data));
+			assertEquals(3, restored.length);
+			assertEquals(first, restored[0]);
+			assertEquals(6, restored[2]);
+		}
+	}
+
+	/**
+	 * A preset dictionary is used for compression and decompression
+	 */
+	public void testDictionary()
+	{
+		byte[] dictionary = javaSerializer.serialize(tester.startPage(PagedTablePage.class));
+		CompressingSerializer serializer = new CompressingSerializer(javaSerializer,
+			new DeflateCompressionCodec(Deflater.BEST_SPEED, dictionary), 0);
+		CompressingSerializer withoutDictionary = new CompressingSerializer(javaSerializer,
+			new DeflateCompressionCodec(), 0);
+
+		Page page = tester.startPage(PagedTableNavigatorPage.class);
+		byte[] data = serializer.serialize(page);
+		assertTrue(data.length < withoutDictionary.serialize(page).length);
+		assertEquals(page.getPageId(), ((Page)serializer.deserialize(data)).getPageId());
+	}
+
+	/**
+	 * Compares the stored bytes and the CPU cost of plain Java serialization with the compressing
+	 * serializers for some of the test pages
+	 */
+	public void testBenchmark()
+	{
+		if (!Benchmarks.isEnabled())
+		{
+			return;
+		}
+
+		List<Page> pages = new ArrayList<Page>();
+		pages.add(tester.startPage(PagedTablePage.class));
+		pages.add(tester.startPage(PagedTableNavigatorPage.class));
+		pages.add(tester.startPage(IncrementalTableNavigationPage.class));
+
+		byte[] dictionary = javaSerializer.serialize(pages.get(0));
+
+		benchmark("java", javaSerializer, pages);
+		benchmark("deflate", new CompressingSerializer(javaSerializer), pages);
+		benchmark("deflate+dictionary", new CompressingSerializer(javaSerializer,
+			new DeflateCompressionCodec(Deflater.BEST_SPEED, dictionary),
+			CompressingSerializer.DEFAULT_THRESHOLD), pages);
+	}
+
+	private void benchmark(String name, ISerializer serializer, List<Page> pages)
+	{
+		final int iterations = 50;
+		long bytes = 0;
+		long serializeTime = 0;
+		long deserializeTime = 0;
+
+		for (int i = 0; i < iterations; i++)
+		{
+			for (Page page : pages)
+			{
+				long start = System.nanoTime();
+				byte[] data = serializer.serialize(page);
+				long middle = System.nanoTime();
+				assertNotNull(serializer.deserialize(data));
+				long end = System.nanoTime();
+
+				serializeTime += middle - start;
+				deserializeTime += end - middle;
+				bytes += data.length;
+			}
+		}
+
+		int count = iterations * pages.size();
+		log.info("{}: {} bytes/page, serialize {} us/page, deserialize {} us/page", new Object[] {
+				name, bytes / count, serializeTime / count / 1000, deserializeTime / count / 1000 });
+	}
+}
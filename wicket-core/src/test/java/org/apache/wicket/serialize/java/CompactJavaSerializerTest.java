@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.UnsupportedEncodingException;
+
+import org.apache.wicket.Page;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.list.PagedTableNavigatorPage;
+import org.apache.wicket.markup.html.list.PagedTablePage;
+
+/**
+ * Tests for {@link CompactJavaSerializer}
+ */
+public class CompactJavaSerializerTest extends WicketTestCase
+{
+	private String applicationKey;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		applicationKey = tester.getApplication().getApplicationKey();
+	}
+
+	/**
+	 * Pages are written without class descriptors and restored
+	 */
+	public void testPageRoundTrip()
+	{
+		CompactJavaSerializer serializer = new CompactJavaSerializer(applicationKey);
+		Page page = tester.startPage(PagedTableNavigatorPage.class);
+
+		byte[] raw = new JavaSerializer(applicationKey).serialize(page);
+		byte[] compact = serializer.serialize(page);
+		assertTrue(compact.length < raw.length);
+		assertTrue(serializer.getRegisteredClassCount() > 0);
+
+		Page restored = (Page)serializer.deserialize(compact);
+		assertEquals(page.getPageId(), restored.getPageId());
+		assertEquals(page.getClass(), restored.getClass());
+	}
+
+	/**
+	 * The same class gets the same id for every serialization
+	 */
+	public void testIdsAreReused()
+	{
+		CompactJavaSerializer serializer = new CompactJavaSerializer(applicationKey);
+		Page page = tester.startPage(PagedTablePage.class);
+
+		serializer.serialize(page);
+		int count = serializer.getRegisteredClassCount();
+		byte[] data = serializer.serialize(page);
+		assertEquals(count, serializer.getRegisteredClassCount());
+		assertEquals(page.getPageId(), ((Page)serializer.deserialize(data)).getPageId());
+	}
+
+	/**
+	 * Data written by another instance, e.g. before a restart, is treated as missing
+	 */
+	public void testDataOfAnotherInstanceIsIgnored()
+	{
+		CompactJavaSerializer serializer = new CompactJavaSerializer(applicationKey);
+		byte[] data = serializer.serialize("value");
+		assertEquals("value", serializer.deserialize(data));
+
+		assertNull(new CompactJavaSerializer(applicationKey).deserialize(data));
+		assertNull(serializer.deserialize(new JavaSerializer(applicationKey).serialize("value")));
+	}
+
+	/**
+	 * Neither the class names nor the descriptors of the page classes are written
+	 * 
+	 * @throws UnsupportedEncodingException
+	 */
+	public void testNoClassNames() throws UnsupportedEncodingException
+	{
+		Page page = tester.startPage(PagedTableNavigatorPage.class);
+		String className = PagedTableNavigatorPage.class.getName();
+
+		assertTrue(contains(new JavaSerializer(applicationKey).serialize(page), className));
+		assertFalse(contains(new CompactJavaSerializer(applicationKey).serialize(page), className));
+	}
+
+	private static boolean contains(byte[] data, String text) throws UnsupportedEncodingException
+	{
+		return new String(data, "ISO-8859-1").indexOf(text) != -1;
+	}
+}
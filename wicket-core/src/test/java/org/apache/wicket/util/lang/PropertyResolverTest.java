@@ -27,6 +27,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Vector;
 
+import org.apache.wicket.Benchmarks;
 import org.apache.wicket.ConverterLocator;
 import org.apache.wicket.IConverterLocator;
 import org.apache.wicket.WicketRuntimeException;
@@ -34,6 +35,8 @@ import org.apache.wicket.WicketTestCase;
 import org.apache.wicket.util.convert.ConversionException;
 import org.apache.wicket.util.convert.IConverter;
 import org.apache.wicket.util.convert.converter.AbstractConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * @author jcompagner
@@ -41,6 +44,8 @@ import org.apache.wicket.util.convert.converter.AbstractConverter;
  */
 public class PropertyResolverTest extends WicketTestCase
 {
+	private static final Logger log = LoggerFactory.getLogger(PropertyResolverTest.class);
+
 	private static final PropertyResolverConverter CONVERTER = new PropertyResolverConverter(
 		new ConverterLocator(), Locale.US);
 
@@ -703,4 +708,119 @@ public class PropertyResolverTest extends WicketTestCase
 		Object actual = converter.convert(date, Long.class);
 		assertEquals(date.getTime(), actual);
 	}
+
+	/**
+	 * Compiled expressions are cached and remember the accessors per class
+	 */
+	public void testCompiledExpression()
+	{
+		PropertyResolver.CompiledExpression compiled = PropertyResolver.compile("address.street");
+		assertSame(compiled, PropertyResolver.compile("address.street"));
+
+		person.setAddress(new Address());
+		person.getAddress().setStreet("wicket-street");
+		assertEquals("wicket-street", compiled.getValue(person));
+
+		Map<String, Object> address = new HashMap<String, Object>();
+		address.put("street", "map-street");
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("address", address);
+		assertEquals("map-street", compiled.getValue(map));
+		assertEquals("wicket-street", compiled.getValue(person));
+
+		compiled.setValue(person, "other-street", CONVERTER);
+		assertEquals("other-street", person.getAddress().getStreet());
+
+		person.setAddress(null);
+		assertNull(compiled.getValue(person));
+	}
+
+	/**
+	 * Expressions with concrete indexes are not cached, so they do not evict other expressions
+	 */
+	public void testIndexedExpressionsNotCached()
+	{
+		PropertyResolver.CompiledExpression compiled = PropertyResolver.compile("address.street");
+		for (int i = 0; i < 5000; i++)
+		{
+			PropertyResolver.compile("addressList[" + i + "].street");
+			PropertyResolver.compile("addressList." + i + ".street");
+		}
+		assertSame(compiled, PropertyResolver.compile("address.street"));
+		assertNotSame(PropertyResolver.compile("addressList[0].street"),
+			PropertyResolver.compile("addressList[0].street"));
+		assertNotSame(PropertyResolver.compile("addressAt.0"),
+			PropertyResolver.compile("addressAt.0"));
+		assertSame(PropertyResolver.compile("address0.street1"),
+			PropertyResolver.compile("address0.street1"));
+	}
+
+	/**
+	 * Many other expressions built at runtime do not fill up the cache, new expressions are still
+	 * cached
+	 */
+	public void testCompiledExpressionsBounded()
+	{
+		PropertyResolver.CompiledExpression compiled = PropertyResolver.compile("address.street");
+		for (int i = 0; i < 5000; i++)
+		{
+			PropertyResolver.compile("addressMap.key" + i + ".street");
+		}
+		assertNotSame(compiled, PropertyResolver.compile("address.street"));
+		assertSame(PropertyResolver.compile("address.street"),
+			PropertyResolver.compile("address.street"));
+	}
+
+	/**
+	 * Indexed getters are found when evaluating a compiled expression again
+	 */
+	public void testCompiledPropertyByIndex()
+	{
+		PropertyResolver.setValue("addressAt.0", person, new Address(), CONVERTER);
+		for (int i = 0; i < 3; i++)
+		{
+			PropertyResolver.setValue("addressAt.0.street", person, "street" + i, CONVERTER);
+			assertEquals("street" + i, PropertyResolver.getValue("addressAt.0.street", person));
+		}
+	}
+
+	/**
+	 * Compares evaluating a compiled expression with parsing the expression and looking up its
+	 * accessors for each evaluation
+	 */
+	public void testBenchmark()
+	{
+		if (!Benchmarks.isEnabled())
+		{
+			return;
+		}
+
+		person.setAddress(new Address());
+		person.getAddress().setStreet("wicket-street");
+
+		final String expression = "address.street";
+		final int iterations = 200000;
+
+		long compiled = 0;
+		long parsed = 0;
+		for (int round = 0; round < 3; round++)
+		{
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; i++)
+			{
+				assertEquals("wicket-street", PropertyResolver.getValue(expression, person));
+			}
+			compiled = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < iterations; i++)
+			{
+				new PropertyResolver.CompiledExpression(expression).getValue(person);
+			}
+			parsed = System.nanoTime() - start;
+		}
+
+		log.info("{}: {} ns compiled, {} ns parsed per evaluation", new Object[] { expression,
+				compiled / iterations, parsed / iterations });
+	}
 }
@@ -64,13 +64,22 @@ public class ResourceTest extends WicketTestCase
 	public void createAndTestResource(Path sourcePath, String style, String variation,
 		Locale locale, String extension)
 	{
-		IResourceStreamLocator locator = new ResourceStreamLocator(sourcePath);
-		IResourceStream resource = locator.locate(this.getClass(), this.getClass()
+		IResourceStreamLocator locator = newResourceStreamLocator(sourcePath);
+		IResourceStream resource = locator.locate(ResourceTest.class, ResourceTest.class
 			.getName()
 			.replace('.', '/'), style, variation, locale, "txt", false);
 		compareFilename(resource, extension);
 	}
 
+	/**
+	 * @param sourcePath
+	 * @return the locator to test
+	 */
+	protected IResourceStreamLocator newResourceStreamLocator(Path sourcePath)
+	{
+		return new ResourceStreamLocator(sourcePath);
+	}
+
 	/**
 	 * 
 	 * @param sourcePath
@@ -115,8 +124,8 @@ public class ResourceTest extends WicketTestCase
 
 		// Determine source path
 		IResourceStreamLocator locator = new ResourceStreamLocator();
-		IResourceStream resource = locator.locate(getClass(),
-			this.getClass().getName().replace('.', '/'), null, null, null, "txt", false);
+		IResourceStream resource = locator.locate(ResourceTest.class,
+			ResourceTest.class.getName().replace('.', '/'), null, null, null, "txt", false);
 		String path = getPath(resource);
 		path = Strings.beforeLastPathComponent(path, '/') + "/sourcePath";
 
@@ -134,7 +143,7 @@ public class ResourceTest extends WicketTestCase
 	{
 		assertNotNull("Did not find resource: " + name, resource);
 
-		String filename = Strings.replaceAll(this.getClass().getName(), ".", "/").toString();
+		String filename = Strings.replaceAll(ResourceTest.class.getName(), ".", "/").toString();
 		filename += name + ".txt";
 		String resourcePath = getPath(resource);
 
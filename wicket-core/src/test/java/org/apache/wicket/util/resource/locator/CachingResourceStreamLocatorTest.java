@@ -133,4 +133,29 @@ public class CachingResourceStreamLocatorTest
 		verify(resourceStreamLocator, times(2)).locate(String.class, "path", "style", "variation",
 			null, "extension", true);
 	}
+
+	/**
+	 * Tests that a bounded cache evicts the least recently used reference
+	 */
+	@Test
+	public void testBoundedCache()
+	{
+		IResourceStreamLocator resourceStreamLocator = mock(IResourceStreamLocator.class);
+
+		CachingResourceStreamLocator cachingLocator = new CachingResourceStreamLocator(
+			resourceStreamLocator, 2);
+
+		cachingLocator.locate(String.class, "path1");
+		cachingLocator.locate(String.class, "path2");
+		cachingLocator.locate(String.class, "path1");
+		cachingLocator.locate(String.class, "path3");
+
+		// path2 has been evicted, path1 has been used more recently
+		cachingLocator.locate(String.class, "path1");
+		cachingLocator.locate(String.class, "path2");
+
+		verify(resourceStreamLocator, times(1)).locate(String.class, "path1");
+		verify(resourceStreamLocator, times(2)).locate(String.class, "path2");
+		verify(resourceStreamLocator, times(1)).locate(String.class, "path3");
+	}
 }
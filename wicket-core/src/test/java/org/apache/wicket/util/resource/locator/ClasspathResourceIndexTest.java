@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.resource.locator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ClasspathResourceIndex}
+ */
+public class ClasspathResourceIndexTest
+{
+	private File dir;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		dir = File.createTempFile("classpath", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	/**
+	 */
+	@After
+	public void after()
+	{
+		delete(dir);
+	}
+
+	private void delete(final File file)
+	{
+		File[] files = file.listFiles();
+		if (files != null)
+		{
+			for (File child : files)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Jars without directory entries are indexed too
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void jarWithoutDirectoryEntries() throws IOException
+	{
+		File jar = jar("nodirs.jar", null, "com/acme/extra/My.properties", "com/acme/Other.txt");
+
+		ClasspathResourceIndex index = new ClasspathResourceIndex(loader(jar), "com/acme/extra");
+
+		assertTrue(index.covers("com/acme/extra/My.properties"));
+		assertTrue(index.contains("com/acme/extra/My.properties"));
+		assertEquals(new URL("jar:" + jar.toURI().toURL() + "!/com/acme/extra/My.properties"),
+			index.getUrl("com/acme/extra/My.properties"));
+		assertFalse(index.covers("com/acme/Other.txt"));
+		assertFalse(index.contains("com/acme/Other.txt"));
+	}
+
+	/**
+	 * Jars of the manifest class path are indexed and duplicates in folders and jars are ambiguous
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void manifestClassPathAndAmbiguous() throws IOException
+	{
+		File referenced = jar("referenced.jar", null, "com/acme/My.properties",
+			"com/acme/sub/Sub.properties");
+		File booter = jar("booter.jar", referenced.getName());
+
+		File folder = new File(dir, "classes");
+		File file = new File(folder, "com/acme/My.properties");
+		file.getParentFile().mkdirs();
+		file.createNewFile();
+
+		ClasspathResourceIndex index = new ClasspathResourceIndex(loader(booter, folder),
+			"com/acme", "com/acme/sub");
+
+		assertTrue(index.contains("com/acme/sub/Sub.properties"));
+		assertFalse(index.isAmbiguous("com/acme/sub/Sub.properties"));
+		assertTrue(index.isAmbiguous("com/acme/My.properties"));
+		assertNull(index.getUrl("com/acme/My.properties"));
+		assertEquals(2, index.getNames().size());
+	}
+
+	/**
+	 * Nothing is covered if the class path can not be enumerated
+	 */
+	@Test
+	public void notEnumerable()
+	{
+		ClassLoader loader = new ClassLoader(getClass().getClassLoader())
+		{
+		};
+
+		ClasspathResourceIndex index = new ClasspathResourceIndex(loader, "org/apache/wicket");
+
+		assertFalse(index.covers("org/apache/wicket/Application.properties"));
+		assertTrue(index.getNames().isEmpty());
+	}
+
+	private ClassLoader loader(final File... roots) throws IOException
+	{
+		URL[] urls = new URL[roots.length];
+		for (int i = 0; i < roots.length; i++)
+		{
+			urls[i] = roots[i].toURI().toURL();
+		}
+		return new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+	}
+
+	private File jar(final String name, final String classPath, final String... entries)
+		throws IOException
+	{
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		if (classPath != null)
+		{
+			manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+		}
+
+		File jar = new File(dir, name);
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest);
+		try
+		{
+			for (String entry : entries)
+			{
+				out.putNextEntry(new JarEntry(entry));
+				out.write(entry.getBytes("UTF-8"));
+				out.closeEntry();
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+		return jar;
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.resource.locator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.wicket.util.file.Path;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.ResourceTest;
+import org.apache.wicket.util.resource.UrlResourceStream;
+
+/**
+ * Runs the resource tests against an {@link IndexedResourceStreamLocator}.
+ */
+public class IndexedResourceStreamLocatorTest extends ResourceTest
+{
+	@Override
+	protected IResourceStreamLocator newResourceStreamLocator(Path sourcePath)
+	{
+		return new IndexedResourceStreamLocator(sourcePath, "org.apache.wicket.util.resource");
+	}
+
+	/**
+	 * Resources are found in the indexed package, its sub packages and META-INF/resources
+	 */
+	public void testIndexedResources()
+	{
+		IResourceStreamLocator locator = new IndexedResourceStreamLocator(new Path(),
+			"org.apache.wicket.util.resource", "org.apache.wicket.request.resource");
+
+		assertNotNull(locator.locate(getClass(),
+			"org/apache/wicket/util/resource/locator/IndexedResourceStreamLocatorTest.class"));
+		assertNull(locator.locate(getClass(), "org/apache/wicket/util/resource/missing.txt"));
+
+		IResourceStream stream = locator.locate(getClass(),
+			"org/apache/wicket/request/resource/sample.js");
+		assertTrue(((UrlResourceStream)stream).getURL()
+			.toString()
+			.endsWith("META-INF/resources/org/apache/wicket/request/resource/sample.js"));
+	}
+
+	/**
+	 * Resources outside of the indexed packages are located by the class loaders
+	 */
+	public void testNotIndexedResource()
+	{
+		IResourceStreamLocator locator = new IndexedResourceStreamLocator(new Path(),
+			"org.apache.wicket.util.resource");
+
+		assertNotNull(locator.locate(getClass(), "org/apache/wicket/Component.class"));
+	}
+
+	/**
+	 * Resources only visible to the context class loader, in a jar without directory entries, are
+	 * found too
+	 * 
+	 * @throws IOException
+	 */
+	public void testContextClassLoader() throws IOException
+	{
+		File jar = File.createTempFile("nodirs", ".jar");
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+		try
+		{
+			out.putNextEntry(new JarEntry("org/apache/wicket/util/resource/extra.txt"));
+			out.write("extra".getBytes("UTF-8"));
+			out.closeEntry();
+		}
+		finally
+		{
+			out.close();
+		}
+
+		Thread thread = Thread.currentThread();
+		ClassLoader contextClassLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(new URLClassLoader(new URL[] { jar.toURI().toURL() },
+			getClass().getClassLoader()));
+		try
+		{
+			IResourceStreamLocator locator = new IndexedResourceStreamLocator(new Path(),
+				"org.apache.wicket.util.resource");
+
+			assertNotNull(locator.locate(getClass(), "org/apache/wicket/util/resource/extra.txt"));
+			assertNull(locator.locate(getClass(), "org/apache/wicket/util/resource/missing.txt"));
+		}
+		finally
+		{
+			thread.setContextClassLoader(contextClassLoader);
+			jar.delete();
+		}
+	}
+}
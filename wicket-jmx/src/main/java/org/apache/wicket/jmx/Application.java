@@ -17,8 +17,10 @@
 package org.apache.wicket.jmx;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.wicket.ThreadContext;
+import org.apache.wicket.page.PageLockStatistics;
 
 /**
  * Exposes Application related functionality for JMX.
@@ -103,4 +105,34 @@ public class Application implements ApplicationMBean
 	{
 		application.getResourceSettings().getLocalizer().clearCache();
 	}
+
+	/**
+	 * @see org.apache.wicket.jmx.ApplicationMBean#getPageLockStatistics()
+	 */
+	public String[] getPageLockStatistics() throws IOException
+	{
+		List<PageLockStatistics.Entry> entries = application.getPageLockStatistics().getEntries();
+		String[] result = new String[entries.size()];
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = entries.get(i).toString();
+		}
+		return result;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.ApplicationMBean#getPageLockTimeouts()
+	 */
+	public long getPageLockTimeouts() throws IOException
+	{
+		return application.getPageLockStatistics().getTimeoutCount();
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.ApplicationMBean#clearPageLockStatistics()
+	 */
+	public void clearPageLockStatistics() throws IOException
+	{
+		application.getPageLockStatistics().clear();
+	}
 }
@@ -91,4 +91,28 @@ public interface ApplicationMBean
 	 * @throws IOException
 	 */
 	void clearLocalizerCache() throws IOException;
+
+	/**
+	 * Gets the page lock statistics per page class, the page class with the longest total wait
+	 * time first.
+	 * 
+	 * @return the page lock statistics
+	 * @throws IOException
+	 */
+	String[] getPageLockStatistics() throws IOException;
+
+	/**
+	 * Gets the number of failed attempts to lock a page.
+	 * 
+	 * @return the number of page lock timeouts
+	 * @throws IOException
+	 */
+	long getPageLockTimeouts() throws IOException;
+
+	/**
+	 * Clears the page lock statistics.
+	 * 
+	 * @throws IOException
+	 */
+	void clearPageLockStatistics() throws IOException;
 }
@@ -16,6 +16,13 @@
  */
 package org.apache.wicket.jmx;
 
+import org.apache.wicket.markup.IMarkupCache;
+import org.apache.wicket.markup.LruCacheImplementation;
+import org.apache.wicket.markup.Markup;
+import org.apache.wicket.markup.MarkupCache;
+import org.apache.wicket.markup.MarkupCache.ICache;
+import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.util.lang.Bytes;
 
 /**
  * Exposes Application related functionality for JMX.
@@ -147,4 +154,85 @@ public class MarkupSettings implements MarkupSettingsMBean
 	{
 		application.getMarkupSettings().setStripWicketTags(stripWicketTags);
 	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheMaxEntries()
+	 */
+	public int getMarkupCacheMaxEntries()
+	{
+		return application.getMarkupSettings().getMarkupCacheMaxEntries();
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheMaxSize()
+	 */
+	public String getMarkupCacheMaxSize()
+	{
+		Bytes maxSize = application.getMarkupSettings().getMarkupCacheMaxSize();
+		return maxSize != null ? maxSize.toString() : "";
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheHits()
+	 */
+	public long getMarkupCacheHits()
+	{
+		LruCacheImplementation<?, ?> cache = getLruMarkupCache();
+		return cache != null ? cache.getHits() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheMisses()
+	 */
+	public long getMarkupCacheMisses()
+	{
+		LruCacheImplementation<?, ?> cache = getLruMarkupCache();
+		return cache != null ? cache.getMisses() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheEvictions()
+	 */
+	public long getMarkupCacheEvictions()
+	{
+		LruCacheImplementation<?, ?> cache = getLruMarkupCache();
+		return cache != null ? cache.getEvictions() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheCoalescedLoads()
+	 */
+	public long getMarkupCacheCoalescedLoads()
+	{
+		MarkupCache markupCache = getMarkupCache();
+		return markupCache != null ? markupCache.getCoalescedLoadCount() : -1;
+	}
+
+	private MarkupCache getMarkupCache()
+	{
+		MarkupFactory markupFactory = application.getMarkupSettings().getMarkupFactory();
+		if (markupFactory.hasMarkupCache())
+		{
+			IMarkupCache markupCache = markupFactory.getMarkupCache();
+			if (markupCache instanceof MarkupCache)
+			{
+				return (MarkupCache)markupCache;
+			}
+		}
+		return null;
+	}
+
+	private LruCacheImplementation<?, ?> getLruMarkupCache()
+	{
+		MarkupCache markupCache = getMarkupCache();
+		if (markupCache != null)
+		{
+			ICache<String, Markup> cache = markupCache.getMarkupCache();
+			if (cache instanceof LruCacheImplementation)
+			{
+				return (LruCacheImplementation<?, ?>)cache;
+			}
+		}
+		return null;
+	}
 }
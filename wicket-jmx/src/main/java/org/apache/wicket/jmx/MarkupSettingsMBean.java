@@ -134,4 +134,38 @@ public interface MarkupSettingsMBean
 	 *            whether to remove wicket tags from the output
 	 */
 	void setStripWicketTags(boolean stripWicketTags);
+
+	/**
+	 * @return the maximal number of entries of the markup cache, {@code 0} for no limit
+	 */
+	int getMarkupCacheMaxEntries();
+
+	/**
+	 * @return the maximal estimated size of the markup cache, empty for no limit
+	 */
+	String getMarkupCacheMaxSize();
+
+	/**
+	 * @return the number of lookups in the markup cache which found an entry, {@code -1} if the
+	 *         markup cache is not bounded
+	 */
+	long getMarkupCacheHits();
+
+	/**
+	 * @return the number of lookups in the markup cache which did not find an entry, {@code -1}
+	 *         if the markup cache is not bounded
+	 */
+	long getMarkupCacheMisses();
+
+	/**
+	 * @return the number of entries evicted from the markup cache, {@code -1} if the markup cache
+	 *         is not bounded
+	 */
+	long getMarkupCacheEvictions();
+
+	/**
+	 * @return the number of times a thread waited for markup loaded by another thread instead of
+	 *         loading it again, {@code -1} if there is no markup cache
+	 */
+	long getMarkupCacheCoalescedLoads();
 }
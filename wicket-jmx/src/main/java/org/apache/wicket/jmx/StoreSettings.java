@@ -17,6 +17,11 @@
 package org.apache.wicket.jmx;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.page.IPageManager;
+import org.apache.wicket.page.PageStoreManager;
+import org.apache.wicket.pageStore.AsynchronousDataStore;
+import org.apache.wicket.pageStore.DefaultPageStore;
+import org.apache.wicket.pageStore.IPageStore;
 
 /**
  * Exposes Application's StoreSettings for JMX.
@@ -60,4 +65,103 @@ public class StoreSettings implements StoreSettingsMBean
 		return application.getStoreSettings().isAsynchronous();
 	}
 
+	public boolean isCompressPages()
+	{
+		return application.getStoreSettings().isCompressPages();
+	}
+
+	public boolean isStorePageDeltas()
+	{
+		return application.getStoreSettings().isStorePageDeltas();
+	}
+
+	public int getAsynchronousWriterThreads()
+	{
+		return application.getStoreSettings().getAsynchronousWriterThreads();
+	}
+
+	public int getAsynchronousBatchSize()
+	{
+		return application.getStoreSettings().getAsynchronousBatchSize();
+	}
+
+	public int getAsynchronousQueueSize()
+	{
+		AsynchronousDataStore dataStore = getAsynchronousDataStore();
+		return dataStore != null ? dataStore.getQueueSize() : -1;
+	}
+
+	public long getAsynchronousStoredCount()
+	{
+		AsynchronousDataStore dataStore = getAsynchronousDataStore();
+		return dataStore != null ? dataStore.getStoredCount() : -1;
+	}
+
+	public long getAsynchronousBatchCount()
+	{
+		AsynchronousDataStore dataStore = getAsynchronousDataStore();
+		return dataStore != null ? dataStore.getBatchCount() : -1;
+	}
+
+	public long getAsynchronousSupersededCount()
+	{
+		AsynchronousDataStore dataStore = getAsynchronousDataStore();
+		return dataStore != null ? dataStore.getSupersededCount() : -1;
+	}
+
+	public long getAsynchronousFallbackCount()
+	{
+		AsynchronousDataStore dataStore = getAsynchronousDataStore();
+		return dataStore != null ? dataStore.getFallbackCount() : -1;
+	}
+
+	public long getInmemoryCacheHits()
+	{
+		DefaultPageStore pageStore = getDefaultPageStore();
+		return pageStore != null ? pageStore.getInmemoryCacheHits() : -1;
+	}
+
+	public long getInmemoryCacheMisses()
+	{
+		DefaultPageStore pageStore = getDefaultPageStore();
+		return pageStore != null ? pageStore.getInmemoryCacheMisses() : -1;
+	}
+
+	public long getInmemoryCacheEvictions()
+	{
+		DefaultPageStore pageStore = getDefaultPageStore();
+		return pageStore != null ? pageStore.getInmemoryCacheEvictions() : -1;
+	}
+
+	/**
+	 * @return the {@link DefaultPageStore} of the application or <code>null</code> if another page
+	 *         store is used
+	 */
+	private DefaultPageStore getDefaultPageStore()
+	{
+		IPageManager pageManager = application.getPageManager();
+		if (pageManager instanceof PageStoreManager)
+		{
+			IPageStore pageStore = ((PageStoreManager)pageManager).getPageStore();
+			if (pageStore instanceof DefaultPageStore)
+			{
+				return (DefaultPageStore)pageStore;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the {@link AsynchronousDataStore} of the application or <code>null</code> if the
+	 *         pages are stored synchronously
+	 */
+	private AsynchronousDataStore getAsynchronousDataStore()
+	{
+		DefaultPageStore pageStore = getDefaultPageStore();
+		if (pageStore != null && pageStore.getDataStore() instanceof AsynchronousDataStore)
+		{
+			return (AsynchronousDataStore)pageStore.getDataStore();
+		}
+		return null;
+	}
 }
@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.jmx;
 
+import org.apache.wicket.pageStore.AsynchronousDataStore;
+import org.apache.wicket.pageStore.DefaultPageStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 
@@ -53,4 +55,72 @@ public interface StoreSettingsMBean
 	 *         bytes in {@link IDataStore}
 	 */
 	boolean isAsynchronous();
+
+	/**
+	 * @return {@code true} if the serialized pages are compressed
+	 */
+	boolean isCompressPages();
+
+	/**
+	 * @return {@code true} if the pages are stored as deltas
+	 */
+	boolean isStorePageDeltas();
+
+	/**
+	 * @return the number of threads which store the pages asynchronously
+	 */
+	int getAsynchronousWriterThreads();
+
+	/**
+	 * @return the maximum number of pages which are stored asynchronously at once
+	 */
+	int getAsynchronousBatchSize();
+
+	/**
+	 * @return the number of pages waiting in the {@link AsynchronousDataStore} queues or -1 if the
+	 *         page store is not asynchronous
+	 */
+	int getAsynchronousQueueSize();
+
+	/**
+	 * @return the number of pages stored by the {@link AsynchronousDataStore} writer threads or -1
+	 *         if the page store is not asynchronous
+	 */
+	long getAsynchronousStoredCount();
+
+	/**
+	 * @return the number of batches stored by the {@link AsynchronousDataStore} writer threads or
+	 *         -1 if the page store is not asynchronous
+	 */
+	long getAsynchronousBatchCount();
+
+	/**
+	 * @return the number of pages skipped by the {@link AsynchronousDataStore} because a newer
+	 *         version was queued or -1 if the page store is not asynchronous
+	 */
+	long getAsynchronousSupersededCount();
+
+	/**
+	 * @return the number of pages stored synchronously because the {@link AsynchronousDataStore}
+	 *         queue was full or -1 if the page store is not asynchronous
+	 */
+	long getAsynchronousFallbackCount();
+
+	/**
+	 * @return the number of lookups that found the page in the in-memory cache of
+	 *         {@link DefaultPageStore} or -1 if it is not used
+	 */
+	long getInmemoryCacheHits();
+
+	/**
+	 * @return the number of lookups that didn't find the page in the in-memory cache of
+	 *         {@link DefaultPageStore} or -1 if it is not used
+	 */
+	long getInmemoryCacheMisses();
+
+	/**
+	 * @return the number of pages evicted from the in-memory cache of {@link DefaultPageStore} or
+	 *         -1 if it is not used
+	 */
+	long getInmemoryCacheEvictions();
 }
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request;
+
+import org.apache.wicket.request.mapper.CompoundRequestMapper;
+import org.apache.wicket.request.mapper.IKeyedRequestMapper;
+
+/**
+ * {@link IRequestHandler} that can only be encoded by the {@link IKeyedRequestMapper}s with the
+ * same mapping key, e.g. a handler for a page that can only be encoded by the mapper the page class
+ * has been mounted with. {@link CompoundRequestMapper} uses the key to skip all other keyed
+ * mappers when mapping the handler to an url.
+ */
+public interface IKeyedRequestHandler extends IRequestHandler
+{
+	/**
+	 * @return the key of the mappers which can encode this handler or <code>null</code> if any
+	 *         mapper might
+	 */
+	Object getMappingKey();
+}
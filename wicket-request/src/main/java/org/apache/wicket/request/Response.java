@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.request;
 
+import java.nio.channels.WritableByteChannel;
+
 /**
  * Abstract base class for different implementations of response writing.
  * <p>
@@ -45,6 +47,19 @@ public abstract class Response
 	 */
 	public abstract void write(byte[] array);
 
+	/**
+	 * Gets a channel which writes straight to the output of the container, e.g. to transfer files
+	 * with {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}.
+	 * Data written to the channel bypasses this response, so implementations which buffer or
+	 * process the written data must not expose one.
+	 * 
+	 * @return channel or <code>null</code> if data has to be written with {@link #write(byte[])}
+	 */
+	public WritableByteChannel getWritableByteChannel()
+	{
+		return null;
+	}
+
 	/**
 	 * Closes the response
 	 */
@@ -227,4 +227,26 @@ public abstract class AbstractMapper implements IRequestMapper
 		return res;
 	}
 
+	/**
+	 * Gets the leading segments of the mount path which are not placeholders, i.e. the segments
+	 * every url matching the mount path starts with.
+	 * 
+	 * @param mountSegments
+	 *            the segments of the mount path
+	 * @return the fixed leading segments
+	 */
+	protected static String[] getFixedPrefixSegments(final String[] mountSegments)
+	{
+		int count = 0;
+		while ((count < mountSegments.length) &&
+			(getPlaceholder(mountSegments[count]) == null) &&
+			(getOptionalPlaceholder(mountSegments[count]) == null))
+		{
+			count++;
+		}
+
+		String[] res = new String[count];
+		System.arraycopy(mountSegments, 0, res, 0, count);
+		return res;
+	}
 }
\ No newline at end of file
@@ -17,21 +17,34 @@
 package org.apache.wicket.request.mapper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.apache.wicket.request.IKeyedRequestHandler;
 import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestHandlerDelegate;
 import org.apache.wicket.request.IRequestMapper;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
+import org.apache.wicket.util.lang.Generics;
 
 
 /**
  * Thread safe compound {@link IRequestMapper}. The mappers are searched depending on their
  * compatibility score and the orders they were registered. If two or more {@link IRequestMapper}s
  * have the same compatibility score, the last registered mapper has highest priority.
+ * <p>
+ * {@link IPrefixedRequestMapper}s are indexed by their prefix segments, so that only the mappers
+ * whose prefix matches the url of a request are scored and consulted. As a subclass may map
+ * additional urls, a mapper is only indexed if its own class declares
+ * {@link IPrefixedRequestMapper#getPrefixSegments()}. Likewise
+ * {@link IKeyedRequestMapper}s are indexed by their mapping key, so that only the mappers with the
+ * key of an {@link IKeyedRequestHandler} are asked to encode it.
  * 
  * @author igor.vaynberg
  * @author Matej Knopp
@@ -45,16 +58,29 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	{
 		private final IRequestMapper mapper;
 		private final int compatibilityScore;
+		private final int order;
 
 		public EncoderWithSegmentsCount(final IRequestMapper encoder, final int compatibilityScore)
+		{
+			this(encoder, compatibilityScore, 0);
+		}
+
+		public EncoderWithSegmentsCount(final IRequestMapper encoder,
+			final int compatibilityScore, final int order)
 		{
 			mapper = encoder;
 			this.compatibilityScore = compatibilityScore;
+			this.order = order;
 		}
 
 		public int compareTo(final EncoderWithSegmentsCount o)
 		{
-			return o.compatibilityScore - compatibilityScore;
+			int result = o.compatibilityScore - compatibilityScore;
+			if (result == 0)
+			{
+				result = order - o.order;
+			}
+			return result;
 		}
 
 		public IRequestMapper getMapper()
@@ -72,8 +98,48 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 		}
 	}
 
+	/**
+	 * Node of the tree of the prefix segments of the registered mappers
+	 */
+	private static class PrefixNode
+	{
+		private final Map<String, PrefixNode> children = new HashMap<String, PrefixNode>();
+
+		/** The mappers whose prefix ends at this node along with their position in the list */
+		private final List<IRequestMapper> mappers = new ArrayList<IRequestMapper>(1);
+		private final List<Integer> orders = new ArrayList<Integer>(1);
+
+		private PrefixNode getChild(final String segment)
+		{
+			PrefixNode child = children.get(segment);
+			if (child == null)
+			{
+				child = new PrefixNode();
+				children.put(segment, child);
+			}
+			return child;
+		}
+	}
+
+	/**
+	 * The mappers to ask for encoding a handler by the mapping key of the handler
+	 */
+	private static class HandlerIndex
+	{
+		private final Map<Object, IRequestMapper[]> keyed = new HashMap<Object, IRequestMapper[]>();
+
+		/** The mappers without key, used for handlers with other keys */
+		private IRequestMapper[] unkeyed;
+	}
+
 	private final List<IRequestMapper> mappers = new CopyOnWriteArrayList<IRequestMapper>();
 
+	/** The registered mappers by their prefix segments, built on demand */
+	private volatile PrefixNode index;
+
+	/** The registered mappers by their mapping key, built on demand */
+	private volatile HandlerIndex handlerIndex;
+
 	/**
 	 * Construct.
 	 */
@@ -86,7 +152,12 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 */
 	public CompoundRequestMapper add(final IRequestMapper encoder)
 	{
-		mappers.add(0, encoder);
+		synchronized (mappers)
+		{
+			mappers.add(0, encoder);
+			index = null;
+			handlerIndex = null;
+		}
 		return this;
 	}
 
@@ -95,7 +166,12 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 */
 	public CompoundRequestMapper remove(final IRequestMapper encoder)
 	{
-		mappers.remove(encoder);
+		synchronized (mappers)
+		{
+			mappers.remove(encoder);
+			index = null;
+			handlerIndex = null;
+		}
 		return this;
 	}
 
@@ -113,13 +189,34 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 */
 	public IRequestHandler mapRequest(final Request request)
 	{
-		List<EncoderWithSegmentsCount> list = new ArrayList<EncoderWithSegmentsCount>(
-			mappers.size());
+		List<EncoderWithSegmentsCount> list;
 
-		for (IRequestMapper encoder : mappers)
+		final List<String> segments = request.getUrl().getSegments();
+		if (segments.isEmpty())
 		{
-			int score = encoder.getCompatibilityScore(request);
-			list.add(new EncoderWithSegmentsCount(encoder, score));
+			// prefixed mappers may still map the empty url, e.g. to redirect the home page
+			list = new ArrayList<EncoderWithSegmentsCount>(mappers.size());
+			for (IRequestMapper encoder : mappers)
+			{
+				int score = encoder.getCompatibilityScore(request);
+				list.add(new EncoderWithSegmentsCount(encoder, score));
+			}
+		}
+		else
+		{
+			// only the mappers along the path of the url segments can map the request
+			list = new ArrayList<EncoderWithSegmentsCount>();
+			PrefixNode node = getIndex();
+			addCandidates(node, request, list);
+			for (int i = 0; i < segments.size(); i++)
+			{
+				node = node.children.get(segments.get(i));
+				if (node == null)
+				{
+					break;
+				}
+				addCandidates(node, request, list);
+			}
 		}
 
 		Collections.sort(list);
@@ -136,6 +233,141 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 		return null;
 	}
 
+	/**
+	 * Scores the mappers of the given node.
+	 * 
+	 * @param node
+	 * @param request
+	 * @param list
+	 *            the list to add the scored mappers to
+	 */
+	private void addCandidates(final PrefixNode node, final Request request,
+		final List<EncoderWithSegmentsCount> list)
+	{
+		for (int i = 0; i < node.mappers.size(); i++)
+		{
+			IRequestMapper encoder = node.mappers.get(i);
+			int score = encoder.getCompatibilityScore(request);
+			list.add(new EncoderWithSegmentsCount(encoder, score, node.orders.get(i)));
+		}
+	}
+
+	/**
+	 * @return the tree of the prefix segments of the registered mappers
+	 */
+	private PrefixNode getIndex()
+	{
+		PrefixNode root = index;
+		if (root == null)
+		{
+			synchronized (mappers)
+			{
+				root = index;
+				if (root == null)
+				{
+					root = new PrefixNode();
+					int order = 0;
+					for (IRequestMapper mapper : mappers)
+					{
+						PrefixNode node = root;
+						if ((mapper instanceof IPrefixedRequestMapper) &&
+							declaresPrefix(mapper.getClass()))
+						{
+							IPrefixedRequestMapper prefixed = (IPrefixedRequestMapper)mapper;
+							for (String segment : prefixed.getPrefixSegments())
+							{
+								node = node.getChild(segment);
+							}
+						}
+						node.mappers.add(mapper);
+						node.orders.add(order++);
+					}
+					index = root;
+				}
+			}
+		}
+		return root;
+	}
+
+	/**
+	 * @param mapperClass
+	 * @return <code>true</code> if the class declares the prefix segments itself rather than
+	 *         inheriting them
+	 */
+	private static boolean declaresPrefix(final Class<?> mapperClass)
+	{
+		try
+		{
+			mapperClass.getDeclaredMethod("getPrefixSegments");
+			return true;
+		}
+		catch (NoSuchMethodException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * @return the mappers by the mapping key of the handlers they can encode
+	 */
+	private HandlerIndex getHandlerIndex()
+	{
+		HandlerIndex index = handlerIndex;
+		if (index == null)
+		{
+			synchronized (mappers)
+			{
+				index = handlerIndex;
+				if (index == null)
+				{
+					index = new HandlerIndex();
+
+					// collect the mappers of each key in the order they are consulted
+					Map<Object, List<IRequestMapper>> keyed = Generics.newHashMap();
+					List<IRequestMapper> unkeyed = new ArrayList<IRequestMapper>();
+					for (IRequestMapper mapper : mappers)
+					{
+						Object key = null;
+						if (mapper instanceof IKeyedRequestMapper)
+						{
+							key = ((IKeyedRequestMapper)mapper).getMappingKey();
+						}
+
+						if (key == null)
+						{
+							// mappers without key might encode handlers of any key
+							unkeyed.add(mapper);
+							for (List<IRequestMapper> list : keyed.values())
+							{
+								list.add(mapper);
+							}
+						}
+						else
+						{
+							List<IRequestMapper> list = keyed.get(key);
+							if (list == null)
+							{
+								list = new ArrayList<IRequestMapper>(unkeyed);
+								keyed.put(key, list);
+							}
+							list.add(mapper);
+						}
+					}
+
+					for (Map.Entry<Object, List<IRequestMapper>> entry : keyed.entrySet())
+					{
+						List<IRequestMapper> list = entry.getValue();
+						IRequestMapper[] array = list.toArray(new IRequestMapper[list.size()]);
+						index.keyed.put(entry.getKey(), array);
+					}
+					index.unkeyed = unkeyed.toArray(new IRequestMapper[unkeyed.size()]);
+					handlerIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
 	/**
 	 * Searches the registered {@link IRequestMapper}s to find one that can encode the
 	 * {@link IRequestHandler}. Each registered {@link IRequestMapper} is asked to encode the
@@ -150,7 +382,25 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 */
 	public Url mapHandler(final IRequestHandler handler)
 	{
-		for (IRequestMapper encoder : mappers)
+		IRequestHandler keyedHandler = handler;
+		while (keyedHandler instanceof IRequestHandlerDelegate)
+		{
+			keyedHandler = ((IRequestHandlerDelegate)keyedHandler).getDelegateHandler();
+		}
+
+		Iterable<IRequestMapper> candidates = mappers;
+		if (keyedHandler instanceof IKeyedRequestHandler)
+		{
+			Object key = ((IKeyedRequestHandler)keyedHandler).getMappingKey();
+			if (key != null)
+			{
+				HandlerIndex index = getHandlerIndex();
+				IRequestMapper[] keyed = index.keyed.get(key);
+				candidates = Arrays.asList(keyed != null ? keyed : index.unkeyed);
+			}
+		}
+
+		for (IRequestMapper encoder : candidates)
 		{
 			Url url = encoder.mapHandler(handler);
 			if (url != null)
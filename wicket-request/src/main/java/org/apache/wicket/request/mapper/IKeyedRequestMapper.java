@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import org.apache.wicket.request.IKeyedRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+
+/**
+ * {@link IRequestMapper} that only encodes {@link IKeyedRequestHandler}s with a certain mapping
+ * key, e.g. the class of the page it has been mounted for. {@link CompoundRequestMapper} indexes
+ * the mappers by this key so that {@link CompoundRequestMapper#mapHandler} goes straight to the
+ * mappers which can possibly encode a handler.
+ * <p>
+ * The key is a promise about {@link #mapHandler(org.apache.wicket.request.IRequestHandler)}: a
+ * keyed handler with a different key is never passed to the mapper. A subclass of an
+ * implementation which changes the handlers the mapper encodes must return a matching key or
+ * <code>null</code>.
+ * 
+ * @see IKeyedRequestHandler
+ */
+public interface IKeyedRequestMapper extends IRequestMapper
+{
+	/**
+	 * Returns the mapping key of the handlers this mapper can encode. For
+	 * {@link IKeyedRequestHandler}s with a different non null key
+	 * {@link #mapHandler(org.apache.wicket.request.IRequestHandler)} must return <code>null</code>.
+	 * 
+	 * @return the mapping key or <code>null</code> if the mapper might encode handlers with any key
+	 */
+	Object getMappingKey();
+}
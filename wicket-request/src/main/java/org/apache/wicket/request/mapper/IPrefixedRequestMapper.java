@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import org.apache.wicket.request.IRequestMapper;
+
+/**
+ * {@link IRequestMapper} that only maps urls starting with a fixed sequence of segments, e.g. the
+ * fixed part of the path a page or resource has been mounted to. {@link CompoundRequestMapper}
+ * indexes the mappers by these segments and only consults the mappers whose segments match the
+ * url of the request.
+ * <p>
+ * Implementing this interface is opt-in for every class: the prefix is only used if the class of
+ * the mapper declares {@link #getPrefixSegments()} itself. Subclasses of a prefixed mapper, which
+ * might map urls outside of the inherited prefix, are consulted for every url unless they
+ * override {@link #getPrefixSegments()} too.
+ * 
+ * @see CompoundRequestMapper
+ */
+public interface IPrefixedRequestMapper extends IRequestMapper
+{
+	/**
+	 * Returns the segments every url mapped by this mapper starts with. For any other non empty url
+	 * {@link #mapRequest(org.apache.wicket.request.Request)} must return <code>null</code>.
+	 * 
+	 * @return the leading segments or an empty array if the mapper may map urls starting with any
+	 *         segment
+	 */
+	String[] getPrefixSegments();
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * An {@link ISerializer} that compresses the data produced by another serializer.
+ * <p>
+ * Data smaller than the threshold or which does not get smaller by compression is stored as
+ * produced by the delegate. Compressed data starts with a marker byte followed by the length of
+ * the decompressed data. Data that starts with one of the marker bytes is prefixed by
+ * {@link #RAW} to be distinguishable. Since Java serialization streams never start with a marker
+ * byte, data stored before the compression was turned on can still be read.
+ */
+public class CompressingSerializer implements ISerializer
+{
+	/**
+	 * The default size in bytes below which the data is not compressed
+	 */
+	public static final int DEFAULT_THRESHOLD = 1024;
+
+	/**
+	 * Marks uncompressed data
+	 */
+	private static final byte RAW = 0;
+
+	/**
+	 * Marks compressed data
+	 */
+	private static final byte COMPRESSED = 1;
+
+	/**
+	 * The length of the header of compressed data: marker and decompressed length
+	 */
+	private static final int HEADER_LENGTH = 5;
+
+	private final ISerializer delegate;
+
+	private final ICompressionCodec codec;
+
+	private final int threshold;
+
+	/**
+	 * Construct that uses {@link DeflateCompressionCodec} and {@link #DEFAULT_THRESHOLD}
+	 * 
+	 * @param delegate
+	 *            the serializer which produces the data to compress
+	 */
+	public CompressingSerializer(final ISerializer delegate)
+	{
+		this(delegate, new DeflateCompressionCodec(), DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param delegate
+	 *            the serializer which produces the data to compress
+	 * @param codec
+	 *            the codec which compresses the data
+	 * @param threshold
+	 *            the size in bytes below which the data is not compressed
+	 */
+	public CompressingSerializer(final ISerializer delegate, final ICompressionCodec codec,
+		final int threshold)
+	{
+		this.delegate = Args.notNull(delegate, "delegate");
+		this.codec = Args.notNull(codec, "codec");
+		this.threshold = threshold;
+	}
+
+	public byte[] serialize(final Object object)
+	{
+		byte[] data = delegate.serialize(object);
+		if (data == null)
+		{
+			return null;
+		}
+
+		if (data.length >= threshold)
+		{
+			byte[] compressed = codec.compress(data);
+			if (compressed.length + HEADER_LENGTH < data.length)
+			{
+				byte[] result = new byte[compressed.length + HEADER_LENGTH];
+				result[0] = COMPRESSED;
+				writeInt(result, 1, data.length);
+				System.arraycopy(compressed, 0, result, HEADER_LENGTH, compressed.length);
+				return result;
+			}
+		}
+
+		if (data.length > 0 && (data[0] == RAW || data[0] == COMPRESSED))
+		{
+			byte[] result = new byte[data.length + 1];
+			result[0] = RAW;
+			System.arraycopy(data, 0, result, 1, data.length);
+			return result;
+		}
+		return data;
+	}
+
+	public Object deserialize(final byte[] data)
+	{
+		if (data.length > 0)
+		{
+			if (data[0] == COMPRESSED)
+			{
+				int length = readInt(data, 1);
+				byte[] decompressed = codec.decompress(data, HEADER_LENGTH, data.length -
+					HEADER_LENGTH, length);
+				return delegate.deserialize(decompressed);
+			}
+			else if (data[0] == RAW)
+			{
+				byte[] raw = new byte[data.length - 1];
+				System.arraycopy(data, 1, raw, 0, raw.length);
+				return delegate.deserialize(raw);
+			}
+		}
+		return delegate.deserialize(data);
+	}
+
+	/**
+	 * @return the serializer which produces the data to compress
+	 */
+	public ISerializer getDelegate()
+	{
+		return delegate;
+	}
+
+	private static void writeInt(final byte[] data, final int offset, final int value)
+	{
+		data[offset] = (byte)(value >>> 24);
+		data[offset + 1] = (byte)(value >>> 16);
+		data[offset + 2] = (byte)(value >>> 8);
+		data[offset + 3] = (byte)value;
+	}
+
+	private static int readInt(final byte[] data, final int offset)
+	{
+		return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16) |
+			((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+	}
+}
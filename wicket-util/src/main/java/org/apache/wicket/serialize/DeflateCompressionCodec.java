@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An {@link ICompressionCodec} based on {@link Deflater} and {@link Inflater}.
+ * <p>
+ * Optionally a preset dictionary can be used. It should contain byte sequences that are likely to
+ * occur in the data, e.g. the serialized form of a typical page. The same dictionary has to be used
+ * for compression and decompression.
+ */
+public class DeflateCompressionCodec implements ICompressionCodec
+{
+	private final int level;
+
+	private final byte[] dictionary;
+
+	/**
+	 * Construct with the fastest compression level and without dictionary.
+	 */
+	public DeflateCompressionCodec()
+	{
+		this(Deflater.BEST_SPEED, null);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param level
+	 *            the compression level (0-9)
+	 * @param dictionary
+	 *            the preset dictionary or <code>null</code>
+	 */
+	public DeflateCompressionCodec(final int level, final byte[] dictionary)
+	{
+		this.level = level;
+		this.dictionary = dictionary;
+	}
+
+	public byte[] compress(final byte[] data)
+	{
+		Deflater deflater = new Deflater(level);
+		try
+		{
+			if (dictionary != null)
+			{
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(data);
+			deflater.finish();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 16);
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished())
+			{
+				int count = deflater.deflate(buffer);
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	public byte[] decompress(final byte[] data, final int offset, final int length,
+		final int decompressedLength)
+	{
+		Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput(data, offset, length);
+			byte[] result = new byte[decompressedLength];
+			int position = 0;
+			while (position < decompressedLength)
+			{
+				int count = inflater.inflate(result, position, decompressedLength - position);
+				if (count == 0)
+				{
+					if (inflater.needsDictionary())
+					{
+						if (dictionary == null)
+						{
+							throw new IllegalArgumentException(
+								"The compressed data needs a preset dictionary");
+						}
+						inflater.setDictionary(dictionary);
+					}
+					else if (inflater.finished() || inflater.needsInput())
+					{
+						throw new IllegalArgumentException("Truncated compressed data");
+					}
+				}
+				position += count;
+			}
+			return result;
+		}
+		catch (DataFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid compressed data", e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+}
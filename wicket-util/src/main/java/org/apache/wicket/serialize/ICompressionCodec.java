@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize;
+
+/**
+ * A codec which compresses and decompresses byte arrays
+ * 
+ * @see CompressingSerializer
+ */
+public interface ICompressionCodec
+{
+	/**
+	 * Compresses the data
+	 * 
+	 * @param data
+	 *            the data to compress
+	 * @return the compressed data
+	 */
+	byte[] compress(byte[] data);
+
+	/**
+	 * Decompresses a part of an array
+	 * 
+	 * @param data
+	 *            the array with the compressed data
+	 * @param offset
+	 *            the offset of the compressed data in <code>data</code>
+	 * @param length
+	 *            the length of the compressed data
+	 * @param decompressedLength
+	 *            the length of the data before its compression
+	 * @return the decompressed data
+	 */
+	byte[] decompress(byte[] data, int offset, int length, int decompressedLength);
+}